@@ -0,0 +1,62 @@
+package engine.nn;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Implementazione delle operazioni della rete con la Vector API ({@code jdk.incubator.vector}).
+ * Richiede {@code --add-modules jdk.incubator.vector} sia in compilazione sia in esecuzione: per questo sta nella
+ * cartella {@code simd}, fuori dai sorgenti del modulo, si compila a parte e viene caricata solo per riflessione
+ * da {@link Kernels}.
+ * Le code che non riempiono un vettore intero vengono elaborate in modo scalare.
+ */
+class SimdKernel implements Kernel {
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+    @Override
+    public void add(int[] accumulator, int[] weights, int offset, int length) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+            IntVector a = IntVector.fromArray(SPECIES, accumulator, i);
+            IntVector w = IntVector.fromArray(SPECIES, weights, offset + i);
+            a.add(w).intoArray(accumulator, i);
+        }
+        for (; i < length; i++) accumulator[i] += weights[offset + i];
+    }
+
+    @Override
+    public void sub(int[] accumulator, int[] weights, int offset, int length) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+            IntVector a = IntVector.fromArray(SPECIES, accumulator, i);
+            IntVector w = IntVector.fromArray(SPECIES, weights, offset + i);
+            a.sub(w).intoArray(accumulator, i);
+        }
+        for (; i < length; i++) accumulator[i] -= weights[offset + i];
+    }
+
+    @Override
+    public long clippedDot(int[] accumulator, int[] weights, int offset, int length, int max) {
+        // Con attivazioni fino a 255 e pesi int16 ogni prodotto sta in 24 bit: le somme parziali per corsia
+        // restano in int per reti fino a qualche migliaio di neuroni
+        IntVector sum = IntVector.zero(SPECIES);
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+            IntVector a = IntVector.fromArray(SPECIES, accumulator, i).max(0).min(max);
+            IntVector w = IntVector.fromArray(SPECIES, weights, offset + i);
+            sum = sum.add(a.mul(w));
+        }
+        long result = sum.reduceLanesToLong(VectorOperators.ADD);
+        for (; i < length; i++) {
+            int value = Math.min(Math.max(accumulator[i], 0), max);
+            result += (long) value * weights[offset + i];
+        }
+        return result;
+    }
+
+    @Override
+    public String name() {
+        return "SIMD " + SPECIES.vectorBitSize() + " bit";
+    }
+}
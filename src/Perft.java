@@ -0,0 +1,108 @@
+import board.ParallelPerft;
+import board.PerftCounter;
+import board.PerftSuite;
+import board.Position;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Punto di ingresso da riga di comando per il perft del generatore di mosse.
+ *
+ * Utilizzo:
+ * - {@code Perft <profondità> [fen]}: stampa il divide per ogni mossa della radice, il totale dei nodi e i nodi al secondo
+ *   (senza FEN viene usata la posizione iniziale);
+ * - {@code Perft suite}: esegue la suite di regressione con le posizioni di riferimento e termina con codice 1 se fallisce;
+ * - {@code Perft parallel <profondità> [thread] [fen]}: conta i nodi con un thread e poi con il pool fork/join,
+ *   riportando nodi al secondo e speedup (di default un thread per ogni core). Dopo un giro di riscaldamento le due
+ *   misure si alternano più volte e si confrontano i tempi migliori.
+ */
+public class Perft {
+    private static final int ROUNDS = 3; // Misure alternate per il confronto parallelo
+
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.out.println("Utilizzo: Perft <profondità> [fen] | Perft suite | Perft parallel <profondità> [thread] [fen]");
+            return;
+        }
+
+        if (args[0].equals("suite")) {
+            if (!PerftSuite.run(System.out)) System.exit(1);
+            return;
+        }
+
+        if (args[0].equals("parallel")) {
+            parallel(args);
+            return;
+        }
+
+        int depth = Integer.parseInt(args[0]);
+
+        // La FEN può essere passata come unico argomento tra virgolette o come più argomenti separati
+        String fen = args.length > 1 ? String.join(" ", Arrays.copyOfRange(args, 1, args.length)) : Position.START_FEN;
+        PerftCounter counter = new PerftCounter(Position.fromFen(fen), depth);
+
+        long start = System.nanoTime();
+        Map<String, Long> divide = counter.divide(depth);
+        long elapsed = System.nanoTime() - start;
+
+        long total = 0;
+        for (Map.Entry<String, Long> entry : divide.entrySet()) {
+            System.out.println(entry.getKey() + ": " + entry.getValue());
+            total += entry.getValue();
+        }
+
+        System.out.println();
+        System.out.println("Mosse: " + divide.size());
+        System.out.println("Nodi: " + total);
+        System.out.println("Tempo: " + elapsed / 1_000_000 + " ms");
+        System.out.println("Nodi/s: " + PerftSuite.nodesPerSecond(total, elapsed));
+    }
+
+    /**
+     * Modalità parallela: confronta il perft sequenziale con quello fork/join sulla stessa posizione.
+     * @param args Argomenti: "parallel", profondità, numero di thread opzionale e FEN opzionale
+     */
+    private static void parallel(String[] args) {
+        int depth = Integer.parseInt(args[1]);
+        int threads = Runtime.getRuntime().availableProcessors();
+        int fenStart = 2;
+
+        // Il numero di thread è opzionale: se il terzo argomento è un numero lo si usa come parallelismo
+        if (args.length > 2 && args[2].matches("\\d+")) {
+            threads = Integer.parseInt(args[2]);
+            fenStart = 3;
+        }
+
+        String fen = args.length > fenStart ? String.join(" ", Arrays.copyOfRange(args, fenStart, args.length)) : Position.START_FEN;
+        Position position = Position.fromFen(fen);
+
+        try (ParallelPerft perft = new ParallelPerft(threads)) {
+            // Un giro a vuoto per entrambi, così il JIT e il pool non penalizzano la prima misura
+            long single = PerftCounter.perft(position, depth);
+            long nodes = perft.perft(position, depth);
+
+            // Le misure si alternano e di ciascuna si tiene la migliore, così entrambe partono nelle stesse condizioni
+            long singleTime = Long.MAX_VALUE;
+            long time = Long.MAX_VALUE;
+            for (int round = 0; round < ROUNDS; round++) {
+                long start = System.nanoTime();
+                single = PerftCounter.perft(position, depth);
+                singleTime = Math.min(singleTime, System.nanoTime() - start);
+
+                start = System.nanoTime();
+                nodes = perft.perft(position, depth);
+                time = Math.min(time, System.nanoTime() - start);
+            }
+
+            System.out.println("1 thread: " + single + " nodi in " + singleTime / 1_000_000 + " ms, " + PerftSuite.nodesPerSecond(single, singleTime) + " nodi/s");
+            System.out.println(threads + " thread: " + nodes + " nodi in " + time / 1_000_000 + " ms, " + PerftSuite.nodesPerSecond(nodes, time) + " nodi/s");
+            System.out.printf("Speedup: %.2fx (migliore di %d misure dopo un giro di riscaldamento)%n", time == 0 ? 0.0 : (double) singleTime / time, ROUNDS);
+
+            if (nodes != single) {
+                System.out.println("ERRORE: i conteggi non coincidono.");
+                System.exit(1);
+            }
+        }
+    }
+}
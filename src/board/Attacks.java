@@ -0,0 +1,305 @@
+package board;
+
+import utils.constant.ChessColor;
+
+/**
+ * Tabelle precalcolate degli attacchi per ogni tipo di pezzo.
+ *
+ * Cavallo, re e pedone usano una semplice tabella indicizzata per casella.
+ * Per i pezzi a lungo raggio (torre, alfiere, regina) si usano le "magic bitboard":
+ * l'occupazione rilevante della casella viene moltiplicata per un numero magico e i bit alti del risultato
+ * indicizzano direttamente la tabella degli attacchi. In questo modo l'insieme delle caselle attaccate,
+ * per qualsiasi casella e occupazione, si ottiene con una moltiplicazione, uno shift e un accesso in memoria,
+ * senza allocare nulla.
+ *
+ * I numeri magici sono stati trovati una volta per tutte con una ricerca casuale di moltiplicatori "sparsi"
+ * e sono riportati come costanti: all'avvio viene solo riempita la tabella degli attacchi.
+ */
+public class Attacks {
+    private static final long[] KNIGHT = new long[64];
+    private static final long[] KING = new long[64];
+    private static final long[][] PAWN = new long[2][64];
+
+    /* Magic bitboard delle torri */
+    private static final long[] ROOK_MASK = new long[64];
+    private static final long[] ROOK_MAGIC = {
+            0x1080004008801020L, 0x0840092002C03000L, 0x1900200010400900L, 0x0880100008000480L,
+            0x4200100420080200L, 0x8100020100080400L, 0x0200040110886200L, 0x0200008040220411L,
+            0x0404800084400220L, 0x0000401000402000L, 0x0086001081220440L, 0x0408800800100280L,
+            0x000A001201040820L, 0x8848800200840080L, 0x4001000100040200L, 0x0442000102105084L,
+            0x9080010020804100L, 0x0040404000201009L, 0x0000808010002009L, 0x2200090021D00100L,
+            0x0008008008040080L, 0x0004004002010040L, 0x0011040008015042L, 0x00000A0001768104L,
+            0x0000800080204009L, 0x2010004140002001L, 0x9800200280100080L, 0x1000100080080080L,
+            0x0442000A00049020L, 0x2100040080020080L, 0x0800120400900148L, 0x0010040A00128541L,
+            0x2800804000800030L, 0x1010002000400041L, 0x4000200011004100L, 0x0610008410800800L,
+            0x0400802402800800L, 0xC100020080800400L, 0x0002000802000401L, 0x0182085882000401L,
+            0x0220204000808000L, 0x2860100040024022L, 0x0001002004110040L, 0x99101042000A0020L,
+            0x0004080004008080L, 0x0010040002008080L, 0x2012004881020004L, 0x8300842444820011L,
+            0x0088403882010200L, 0x0820400080210100L, 0x0110910040A00300L, 0x0801100280080480L,
+            0x0242009008200600L, 0x1002000489500200L, 0x0040800200010080L, 0x0091800041000080L,
+            0x0000209300488001L, 0x04C1002414824001L, 0x020020000B001041L, 0x7000100004200901L,
+            0x8002002004100802L, 0x30010002084C0007L, 0x0888221800813004L, 0x4000002840840112L
+    };
+    private static final int[] ROOK_SHIFT = new int[64];
+    private static final int[] ROOK_OFFSET = new int[64];
+    private static final long[] ROOK_TABLE = new long[102400];
+
+    /* Magic bitboard degli alfieri */
+    private static final long[] BISHOP_MASK = new long[64];
+    private static final long[] BISHOP_MAGIC = {
+            0xA010041108003100L, 0x006082020A002900L, 0x6810010619200000L, 0x08281A0520000408L,
+            0x0001104001000400L, 0x0018901008048400L, 0x00040A0210245280L, 0x000200210808A402L,
+            0x9140048410821200L, 0x0800091010820041L, 0x20504804832202C0L, 0x0100091401081000L,
+            0x8021011140000012L, 0x0810020804450400L, 0x208B0542109008A2L, 0x0080084A08040204L,
+            0x0040E2A80811244CL, 0x2505022008008108L, 0x0430220100420040L, 0x010A040420220040L,
+            0x1105000290400000L, 0x0093001200822120L, 0x4000A62048043004L, 0x280120048A015004L,
+            0x006090002A020814L, 0x44042000240800D0L, 0x01102800040A4400L, 0x1004080080220040L,
+            0x0001001011004024L, 0x0010044000805040L, 0x0914041200820100L, 0x0004821012821480L,
+            0x0024040500C05021L, 0x0088611002080200L, 0x0116080A00040020L, 0x4000020080080080L,
+            0x2450450140840040L, 0x0000880201484100L, 0x0222020404020092L, 0x8081110600002E00L,
+            0x2842101105000801L, 0x1100809008001025L, 0x00020202221C0400L, 0x0422014022009020L,
+            0x0210046102100C00L, 0xC004008082029102L, 0x00AA461801101200L, 0x0404080080201108L,
+            0x020542108C205002L, 0x0410544804100100L, 0x0040910841100000L, 0x0400200042021100L,
+            0x00004204850400C0L, 0x0200100410A42102L, 0x1040020801210102L, 0x0805040410420000L,
+            0x2884804130100200L, 0x800C262201242000L, 0x1058000194108800L, 0x0014221054420204L,
+            0x0104000012A02200L, 0x0200881003300100L, 0x0140400202840100L, 0x0402020801010201L
+    };
+    private static final int[] BISHOP_SHIFT = new int[64];
+    private static final int[] BISHOP_OFFSET = new int[64];
+    private static final long[] BISHOP_TABLE = new long[5248];
+
+    /* Caselle comprese tra due caselle allineate, e linea intera che le attraversa */
+    private static final long[][] BETWEEN = new long[64][64];
+    private static final long[][] LINE = new long[64][64];
+
+    private static final int[][] ROOK_DIRECTIONS = {{1, 0}, {-1, 0}, {0, 1}, {0, -1}};
+    private static final int[][] BISHOP_DIRECTIONS = {{1, 1}, {1, -1}, {-1, 1}, {-1, -1}};
+
+    static {
+        initLeapers();
+        initMagics(ROOK_DIRECTIONS, ROOK_MASK, ROOK_MAGIC, ROOK_SHIFT, ROOK_OFFSET, ROOK_TABLE);
+        initMagics(BISHOP_DIRECTIONS, BISHOP_MASK, BISHOP_MAGIC, BISHOP_SHIFT, BISHOP_OFFSET, BISHOP_TABLE);
+        initLines();
+    }
+
+    /**
+     * Restituisce le caselle attaccate da un cavallo.
+     * @param square Casella del cavallo
+     * @return La bitboard degli attacchi
+     */
+    public static long knight(int square) {
+        return KNIGHT[square];
+    }
+
+    /**
+     * Restituisce le caselle attaccate da un re (arrocco escluso).
+     * @param square Casella del re
+     * @return La bitboard degli attacchi
+     */
+    public static long king(int square) {
+        return KING[square];
+    }
+
+    /**
+     * Restituisce le caselle attaccate (in cattura) da un pedone.
+     * @param color  Colore del pedone
+     * @param square Casella del pedone
+     * @return La bitboard degli attacchi
+     */
+    public static long pawn(int color, int square) {
+        return PAWN[color][square];
+    }
+
+    /**
+     * Restituisce le caselle attaccate da una torre, dato l'insieme delle caselle occupate.
+     * @param square   Casella della torre
+     * @param occupied Bitboard delle caselle occupate
+     * @return La bitboard degli attacchi (comprese le caselle dei pezzi che bloccano)
+     */
+    public static long rook(int square, long occupied) {
+        return ROOK_TABLE[ROOK_OFFSET[square] + (int) (((occupied & ROOK_MASK[square]) * ROOK_MAGIC[square]) >>> ROOK_SHIFT[square])];
+    }
+
+    /**
+     * Restituisce le caselle attaccate da un alfiere, dato l'insieme delle caselle occupate.
+     * @param square   Casella dell'alfiere
+     * @param occupied Bitboard delle caselle occupate
+     * @return La bitboard degli attacchi (comprese le caselle dei pezzi che bloccano)
+     */
+    public static long bishop(int square, long occupied) {
+        return BISHOP_TABLE[BISHOP_OFFSET[square] + (int) (((occupied & BISHOP_MASK[square]) * BISHOP_MAGIC[square]) >>> BISHOP_SHIFT[square])];
+    }
+
+    /**
+     * Restituisce le caselle attaccate da una regina, dato l'insieme delle caselle occupate.
+     * @param square   Casella della regina
+     * @param occupied Bitboard delle caselle occupate
+     * @return La bitboard degli attacchi
+     */
+    public static long queen(int square, long occupied) {
+        return rook(square, occupied) | bishop(square, occupied);
+    }
+
+    /**
+     * Restituisce le caselle strettamente comprese tra due caselle allineate (in riga, colonna o diagonale).
+     * @param from Prima casella
+     * @param to   Seconda casella
+     * @return La bitboard delle caselle intermedie, vuota se le caselle non sono allineate
+     */
+    public static long between(int from, int to) {
+        return BETWEEN[from][to];
+    }
+
+    /**
+     * Restituisce l'intera linea (da bordo a bordo) che passa per due caselle allineate.
+     * @param a Prima casella
+     * @param b Seconda casella
+     * @return La bitboard della linea, vuota se le caselle non sono allineate
+     */
+    public static long line(int a, int b) {
+        return LINE[a][b];
+    }
+
+    /**
+     * Inizializza le tabelle di cavallo, re e pedoni.
+     */
+    private static void initLeapers() {
+        int[][] knightSteps = {{-2, -1}, {-2, 1}, {2, -1}, {2, 1}, {-1, -2}, {-1, 2}, {1, -2}, {1, 2}};
+        int[][] kingSteps = {{-1, -1}, {-1, 0}, {-1, 1}, {0, -1}, {0, 1}, {1, -1}, {1, 0}, {1, 1}};
+
+        for (int square = 0; square < 64; square++) {
+            int rank = Square.rank(square);
+            int file = Square.file(square);
+
+            for (int[] s : knightSteps) KNIGHT[square] |= bitIfValid(rank + s[0], file + s[1]);
+            for (int[] s : kingSteps) KING[square] |= bitIfValid(rank + s[0], file + s[1]);
+
+            PAWN[ChessColor.WHITE][square] = bitIfValid(rank + 1, file - 1) | bitIfValid(rank + 1, file + 1);
+            PAWN[ChessColor.BLACK][square] = bitIfValid(rank - 1, file - 1) | bitIfValid(rank - 1, file + 1);
+        }
+    }
+
+    /**
+     * Inizializza le tabelle BETWEEN e LINE a partire dagli attacchi su scacchiera vuota.
+     */
+    private static void initLines() {
+        for (int a = 0; a < 64; a++) {
+            for (int b = 0; b < 64; b++) {
+                if (a == b) continue;
+
+                long bitA = 1L << a;
+                long bitB = 1L << b;
+                if ((rook(a, 0) & bitB) != 0) {
+                    BETWEEN[a][b] = rook(a, bitB) & rook(b, bitA);
+                    LINE[a][b] = (rook(a, 0) & rook(b, 0)) | bitA | bitB;
+                } else if ((bishop(a, 0) & bitB) != 0) {
+                    BETWEEN[a][b] = bishop(a, bitB) & bishop(b, bitA);
+                    LINE[a][b] = (bishop(a, 0) & bishop(b, 0)) | bitA | bitB;
+                }
+            }
+        }
+    }
+
+    /**
+     * Riempie la tabella degli attacchi di un pezzo a lungo raggio a partire dai numeri magici.
+     * Per ogni casella vengono enumerati tutti i sottoinsiemi dell'occupazione rilevante e calcolati
+     * gli attacchi di riferimento percorrendo i raggi; ogni sottoinsieme viene poi scritto all'indice magico.
+     * @param directions Direzioni di movimento del pezzo
+     * @param masks      Maschere di occupazione rilevante da riempire
+     * @param magics     Numeri magici per casella
+     * @param shifts     Shift per casella da riempire
+     * @param offsets    Offset per casella nella tabella condivisa
+     * @param table      Tabella condivisa degli attacchi
+     * @throws IllegalStateException se un numero magico produce una collisione distruttiva
+     */
+    private static void initMagics(int[][] directions, long[] masks, long[] magics, int[] shifts, int[] offsets, long[] table) {
+        int offset = 0;
+
+        for (int square = 0; square < 64; square++) {
+            long mask = relevantMask(square, directions);
+            int bits = Long.bitCount(mask);
+
+            masks[square] = mask;
+            shifts[square] = 64 - bits;
+            offsets[square] = offset;
+
+            // Enumera tutti i sottoinsiemi della maschera (Carry-Rippler)
+            long subset = 0;
+            do {
+                long attacks = slidingAttacks(square, subset, directions);
+                int index = offset + (int) ((subset * magics[square]) >>> shifts[square]);
+
+                if (table[index] != 0 && table[index] != attacks)
+                    throw new IllegalStateException("Numero magico non valido per la casella " + Square.name(square));
+
+                table[index] = attacks;
+                subset = (subset - mask) & mask;
+            } while (subset != 0);
+
+            offset += 1 << bits;
+        }
+    }
+
+    /**
+     * Calcola la maschera di occupazione rilevante: le caselle dei raggi, esclusi i bordi finali.
+     * @param square     Casella del pezzo
+     * @param directions Direzioni di movimento
+     * @return La maschera
+     */
+    private static long relevantMask(int square, int[][] directions) {
+        long res = 0;
+        for (int[] d : directions) {
+            int rank = Square.rank(square) + d[0];
+            int file = Square.file(square) + d[1];
+            while (isValid(rank + d[0], file + d[1])) {
+                res |= 1L << (rank * 8 + file);
+                rank += d[0];
+                file += d[1];
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Calcola gli attacchi di un pezzo a lungo raggio percorrendo i raggi (versione lenta, usata solo all'avvio).
+     * @param square     Casella del pezzo
+     * @param occupied   Caselle occupate
+     * @param directions Direzioni di movimento
+     * @return La bitboard degli attacchi
+     */
+    private static long slidingAttacks(int square, long occupied, int[][] directions) {
+        long res = 0;
+        for (int[] d : directions) {
+            int rank = Square.rank(square) + d[0];
+            int file = Square.file(square) + d[1];
+            while (isValid(rank, file)) {
+                long bit = 1L << (rank * 8 + file);
+                res |= bit;
+                if ((occupied & bit) != 0) break;
+                rank += d[0];
+                file += d[1];
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Restituisce il bit della casella se le coordinate sono sulla scacchiera, altrimenti 0.
+     * @param rank Traversa
+     * @param file Colonna
+     * @return La bitboard della casella o 0
+     */
+    private static long bitIfValid(int rank, int file) {
+        return isValid(rank, file) ? 1L << (rank * 8 + file) : 0;
+    }
+
+    /**
+     * Verifica se le coordinate sono all'interno della scacchiera.
+     * @param rank Traversa
+     * @param file Colonna
+     * @return true se la casella esiste
+     */
+    private static boolean isValid(int rank, int file) {
+        return rank >= 0 && rank < 8 && file >= 0 && file < 8;
+    }
+}
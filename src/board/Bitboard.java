@@ -0,0 +1,87 @@
+package board;
+
+/**
+ * Classe di utilità per la manipolazione delle bitboard.
+ * Una bitboard è un {@code long} in cui il bit i-esimo indica l'occupazione della casella i (vedi {@link Square}).
+ */
+public class Bitboard {
+    public static final long EMPTY = 0L;
+
+    /* Colonne */
+    public static final long FILE_A = 0x0101010101010101L;
+    public static final long FILE_B = FILE_A << 1;
+    public static final long FILE_G = FILE_A << 6;
+    public static final long FILE_H = FILE_A << 7;
+
+    /* Traverse */
+    public static final long RANK_1 = 0xFFL;
+    public static final long RANK_2 = RANK_1 << 8;
+    public static final long RANK_3 = RANK_1 << 16;
+    public static final long RANK_4 = RANK_1 << 24;
+    public static final long RANK_5 = RANK_1 << 32;
+    public static final long RANK_6 = RANK_1 << 40;
+    public static final long RANK_7 = RANK_1 << 48;
+    public static final long RANK_8 = RANK_1 << 56;
+
+    /**
+     * Restituisce la bitboard con il solo bit della casella impostato.
+     * @param square Indice della casella
+     * @return La bitboard corrispondente
+     */
+    public static long bit(int square) {
+        return 1L << square;
+    }
+
+    /**
+     * Verifica se la casella è presente nella bitboard.
+     * @param bitboard La bitboard
+     * @param square   Indice della casella
+     * @return true se il bit della casella è impostato
+     */
+    public static boolean contains(long bitboard, int square) {
+        return (bitboard & (1L << square)) != 0;
+    }
+
+    /**
+     * Restituisce l'indice del bit meno significativo impostato.
+     * @param bitboard La bitboard (non vuota)
+     * @return L'indice della prima casella occupata
+     */
+    public static int lsb(long bitboard) {
+        return Long.numberOfTrailingZeros(bitboard);
+    }
+
+    /**
+     * Conta le caselle presenti nella bitboard.
+     * @param bitboard La bitboard
+     * @return Il numero di bit impostati
+     */
+    public static int count(long bitboard) {
+        return Long.bitCount(bitboard);
+    }
+
+    /**
+     * Verifica se nella bitboard sono presenti almeno due caselle.
+     * @param bitboard La bitboard
+     * @return true se ci sono almeno due bit impostati
+     */
+    public static boolean moreThanOne(long bitboard) {
+        return (bitboard & (bitboard - 1)) != 0;
+    }
+
+    /**
+     * Restituisce una rappresentazione testuale 8x8 della bitboard, utile per il debug.
+     * @param bitboard La bitboard da stampare
+     * @return La stringa con la traversa 8 in alto
+     */
+    public static String toString(long bitboard) {
+        StringBuilder sb = new StringBuilder();
+        for (int rank = 7; rank >= 0; rank--) {
+            for (int file = 0; file < 8; file++) {
+                sb.append(contains(bitboard, rank * 8 + file) ? '1' : '.');
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+}
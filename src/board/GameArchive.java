@@ -0,0 +1,50 @@
+package board;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Lettura delle partite salvate dalla GUI e dal server.
+ * Ogni partita è un file .csv con una FEN per riga (quella scritta da Window.writeFen dopo ogni mossa),
+ * a partire dalla posizione iniziale; le righe vuote o non valide vengono ignorate.
+ */
+public class GameArchive {
+    public static final String EXTENSION = ".csv"; // Estensione dei file delle partite
+
+    /**
+     * Legge le posizioni di una partita salvata.
+     * @param file Il file della partita
+     * @return Le posizioni nell'ordine in cui sono state giocate
+     * @throws IOException Se il file non può essere letto
+     */
+    public static List<Position> read(Path file) throws IOException {
+        List<Position> positions = new ArrayList<>();
+        for (String line : Files.readAllLines(file)) {
+            if (line.isBlank()) continue;
+            try {
+                positions.add(Position.fromFen(line));
+            } catch (IllegalArgumentException e) {
+                System.out.println("Riga non valida in " + file + ": " + line);
+            }
+        }
+        return positions;
+    }
+
+    /**
+     * Elenca i file delle partite contenuti in una cartella e nelle sue sottocartelle.
+     * Se il percorso è un file, viene restituito così com'è.
+     * @param path Un file o una cartella
+     * @return I file delle partite, in ordine alfabetico
+     * @throws IOException Se la cartella non può essere letta
+     */
+    public static List<Path> files(Path path) throws IOException {
+        if (!Files.isDirectory(path)) return List.of(path);
+        try (Stream<Path> stream = Files.walk(path)) {
+            return stream.filter(p -> Files.isRegularFile(p) && p.toString().endsWith(EXTENSION)).sorted().toList();
+        }
+    }
+}
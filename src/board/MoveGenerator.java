@@ -0,0 +1,321 @@
+package board;
+
+import utils.constant.ChessCastling;
+import utils.constant.ChessColor;
+import utils.constant.ChessType;
+
+/**
+ * Generatore di mosse completamente legali.
+ *
+ * Per ogni posizione vengono calcolati una sola volta:
+ * - la bitboard dei pezzi che danno scacco (checkers);
+ * - la maschera di evasione dallo scacco, cioè le caselle in cui un pezzo diverso dal re può muoversi
+ *   (il pezzo che dà scacco e le caselle tra lui e il re, tutta la scacchiera se non c'è scacco);
+ * - i pezzi inchiodati, che possono muoversi solo lungo la linea che li unisce al re.
+ *
+ * Con queste informazioni ogni mossa prodotta è legale, senza dover giocare la mossa e verificare lo scacco.
+ * L'unica eccezione è l'en passant, che toglie due pezzi dalla stessa traversa e viene verificato a parte.
+ * Scacco matto e stallo si riducono quindi a "nessuna mossa legale", con o senza scacco.
+ */
+public class MoveGenerator {
+    private static final long ALL = ~0L;
+
+    /* Ordine delle promozioni generate, dalla più forte */
+    private static final int[] PROMOTIONS = {ChessType.QUEEN, ChessType.TOWER, ChessType.BISHOP, ChessType.KNIGHT};
+
+    /**
+     * Genera tutte le mosse legali della posizione in una nuova lista.
+     * @param position La posizione
+     * @return La lista delle mosse legali
+     */
+    public static MoveList generateLegalMoves(Position position) {
+        MoveList moves = new MoveList();
+        generateLegalMoves(position, moves);
+        return moves;
+    }
+
+    /**
+     * Genera tutte le mosse legali della posizione in una lista esistente, che viene svuotata.
+     * Da preferire nei cicli di ricerca, riutilizzando una lista per ogni livello.
+     * @param position La posizione
+     * @param moves    La lista in cui scrivere le mosse
+     */
+    public static void generateLegalMoves(Position position, MoveList moves) {
+        moves.clear();
+
+        int us = position.getSideToMove();
+        int them = us ^ 1;
+        long own = position.occupancy(us);
+        long enemy = position.occupancy(them);
+        long occupied = own | enemy;
+        int king = position.kingSquare(us);
+
+        long checkers = 0;
+        long pinned = 0;
+
+        if (king != Square.NONE) {
+            checkers = position.attackersTo(king, occupied) & enemy;
+
+            // Mosse del re: la casella di arrivo non deve essere attaccata, togliendo il re dall'occupazione
+            // per non considerarlo come uno schermo contro i pezzi a lungo raggio
+            long kingless = occupied ^ (1L << king);
+            long targets = Attacks.king(king) & ~own;
+            while (targets != 0) {
+                int to = Long.numberOfTrailingZeros(targets);
+                targets &= targets - 1;
+                if ((position.attackersTo(to, kingless) & enemy) == 0) {
+                    moves.add(PackedMove.of(king, to, (enemy & (1L << to)) != 0 ? PackedMove.CAPTURE : 0));
+                }
+            }
+
+            // Con uno scacco doppio solo il re può muoversi
+            if (Bitboard.moreThanOne(checkers)) return;
+
+            pinned = pinnedPieces(position, us, king, own, enemy);
+        }
+
+        // Maschera di evasione: catturare il pezzo che dà scacco o interporsi
+        long checkMask = ALL;
+        if (checkers != 0) {
+            int checker = Long.numberOfTrailingZeros(checkers);
+            checkMask = checkers | Attacks.between(king, checker);
+        }
+
+        long allowed = ~own & checkMask;
+
+        generatePawnMoves(position, moves, us, king, occupied, enemy, checkMask, pinned);
+
+        // Cavalli: un cavallo inchiodato non può mai muoversi
+        long knights = position.pieces(us, ChessType.KNIGHT) & ~pinned;
+        while (knights != 0) {
+            int from = Long.numberOfTrailingZeros(knights);
+            knights &= knights - 1;
+            addMoves(moves, from, Attacks.knight(from) & allowed, enemy);
+        }
+
+        // Pezzi a lungo raggio: se inchiodati restano sulla linea del re
+        long diagonals = position.pieces(us, ChessType.BISHOP) | position.pieces(us, ChessType.QUEEN);
+        while (diagonals != 0) {
+            int from = Long.numberOfTrailingZeros(diagonals);
+            diagonals &= diagonals - 1;
+            long targets = Attacks.bishop(from, occupied) & allowed;
+            if ((pinned & (1L << from)) != 0) targets &= Attacks.line(king, from);
+            addMoves(moves, from, targets, enemy);
+        }
+
+        long orthogonals = position.pieces(us, ChessType.TOWER) | position.pieces(us, ChessType.QUEEN);
+        while (orthogonals != 0) {
+            int from = Long.numberOfTrailingZeros(orthogonals);
+            orthogonals &= orthogonals - 1;
+            long targets = Attacks.rook(from, occupied) & allowed;
+            if ((pinned & (1L << from)) != 0) targets &= Attacks.line(king, from);
+            addMoves(moves, from, targets, enemy);
+        }
+
+        if (checkers == 0 && king != Square.NONE) generateCastling(position, moves, us, occupied);
+    }
+
+    /**
+     * Verifica se il lato al tratto ha almeno una mossa legale.
+     * @param position La posizione
+     * @return true se esiste almeno una mossa legale
+     */
+    public static boolean hasLegalMoves(Position position) {
+        return !generateLegalMoves(position).isEmpty();
+    }
+
+    /**
+     * Verifica se il lato al tratto ha subito scacco matto.
+     * @param position La posizione
+     * @return true se il lato al tratto è sotto scacco e non ha mosse legali
+     */
+    public static boolean isCheckmate(Position position) {
+        return position.isInCheck() && !hasLegalMoves(position);
+    }
+
+    /**
+     * Verifica se la posizione è di stallo.
+     * @param position La posizione
+     * @return true se il lato al tratto non è sotto scacco e non ha mosse legali
+     */
+    public static boolean isStalemate(Position position) {
+        return !position.isInCheck() && !hasLegalMoves(position);
+    }
+
+    /**
+     * Calcola i pezzi del lato al tratto inchiodati al proprio re.
+     * Si parte dai pezzi avversari a lungo raggio che vedrebbero il re attraverso i soli pezzi propri (raggi X):
+     * se tra uno di questi e il re c'è esattamente un pezzo, quel pezzo è inchiodato.
+     * @param position La posizione
+     * @param us       Colore al tratto
+     * @param king     Casella del re
+     * @param own      Occupazione del lato al tratto
+     * @param enemy    Occupazione dell'avversario
+     * @return La bitboard dei pezzi inchiodati
+     */
+    private static long pinnedPieces(Position position, int us, int king, long own, long enemy) {
+        int them = us ^ 1;
+        long queens = position.pieces(them, ChessType.QUEEN);
+        long snipers = (Attacks.rook(king, enemy) & (position.pieces(them, ChessType.TOWER) | queens))
+                | (Attacks.bishop(king, enemy) & (position.pieces(them, ChessType.BISHOP) | queens));
+
+        long pinned = 0;
+        long occupied = own | enemy;
+        while (snipers != 0) {
+            int sniper = Long.numberOfTrailingZeros(snipers);
+            snipers &= snipers - 1;
+
+            long blockers = Attacks.between(king, sniper) & occupied;
+            if (blockers != 0 && !Bitboard.moreThanOne(blockers) && (blockers & own) != 0) pinned |= blockers;
+        }
+        return pinned;
+    }
+
+    /**
+     * Genera le mosse dei pedoni: spinte singole e doppie, catture, promozioni ed en passant.
+     * @param position  La posizione
+     * @param moves     La lista in cui scrivere le mosse
+     * @param us        Colore al tratto
+     * @param king      Casella del re (NONE se assente)
+     * @param occupied  Occupazione totale
+     * @param enemy     Occupazione dell'avversario
+     * @param checkMask Maschera di evasione dallo scacco
+     * @param pinned    Pezzi inchiodati
+     */
+    private static void generatePawnMoves(Position position, MoveList moves, int us, int king, long occupied, long enemy,
+                                          long checkMask, long pinned) {
+        long pawns = position.pieces(us, ChessType.PAWN);
+        int forward = us == ChessColor.WHITE ? 8 : -8;
+        long startRank = us == ChessColor.WHITE ? Bitboard.RANK_2 : Bitboard.RANK_7;
+        long lastRank = us == ChessColor.WHITE ? Bitboard.RANK_8 : Bitboard.RANK_1;
+        int enPassant = position.getEnPassantSquare();
+
+        while (pawns != 0) {
+            int from = Long.numberOfTrailingZeros(pawns);
+            pawns &= pawns - 1;
+
+            // Un pedone inchiodato può muoversi solo lungo la linea del re
+            long pinMask = (pinned & (1L << from)) != 0 ? Attacks.line(king, from) : ALL;
+
+            // Spinte
+            int single = from + forward;
+            if ((occupied & (1L << single)) == 0) {
+                if ((checkMask & pinMask & (1L << single)) != 0) addPawnMove(moves, from, single, 0, lastRank);
+
+                int twice = single + forward;
+                if ((startRank & (1L << from)) != 0 && (occupied & (1L << twice)) == 0
+                        && (checkMask & pinMask & (1L << twice)) != 0) {
+                    moves.add(PackedMove.of(from, twice, PackedMove.DOUBLE_PUSH));
+                }
+            }
+
+            // Catture
+            long captures = Attacks.pawn(us, from) & enemy & checkMask & pinMask;
+            while (captures != 0) {
+                int to = Long.numberOfTrailingZeros(captures);
+                captures &= captures - 1;
+                addPawnMove(moves, from, to, PackedMove.CAPTURE, lastRank);
+            }
+
+            // En passant: si verifica direttamente che il re non resti attaccato dopo aver tolto entrambi i pedoni
+            if (enPassant != Square.NONE && (Attacks.pawn(us, from) & (1L << enPassant)) != 0) {
+                int captured = enPassant - forward;
+                if (king == Square.NONE || isEnPassantLegal(position, us, king, from, enPassant, captured, occupied)) {
+                    moves.add(PackedMove.of(from, enPassant, PackedMove.CAPTURE | PackedMove.EN_PASSANT));
+                }
+            }
+        }
+    }
+
+    /**
+     * Verifica che una cattura en passant non lasci il re sotto scacco.
+     * @param position La posizione
+     * @param us       Colore al tratto
+     * @param king     Casella del re
+     * @param from     Casella del pedone che cattura
+     * @param to       Casella en passant
+     * @param captured Casella del pedone catturato
+     * @param occupied Occupazione totale prima della mossa
+     * @return true se la cattura è legale
+     */
+    private static boolean isEnPassantLegal(Position position, int us, int king, int from, int to, int captured, long occupied) {
+        long after = (occupied ^ (1L << from) ^ (1L << captured)) | (1L << to);
+        long attackers = position.attackersTo(king, after) & position.occupancy(us ^ 1) & ~(1L << captured);
+        return attackers == 0;
+    }
+
+    /**
+     * Genera gli arrocchi ancora disponibili. Il re non deve essere sotto scacco (verificato dal chiamante),
+     * le caselle tra re e torre devono essere vuote e quelle attraversate dal re non devono essere attaccate.
+     * @param position La posizione
+     * @param moves    La lista in cui scrivere le mosse
+     * @param us       Colore al tratto
+     * @param occupied Occupazione totale
+     */
+    private static void generateCastling(Position position, MoveList moves, int us, long occupied) {
+        int rights = position.getCastlingRights();
+        int them = us ^ 1;
+        long rooks = position.pieces(us, ChessType.TOWER);
+
+        if (us == ChessColor.WHITE) {
+            if ((rights & ChessCastling.WHITE_SHORT) != 0 && position.kingSquare(us) == Square.E1
+                    && (rooks & (1L << Square.H1)) != 0
+                    && (occupied & ((1L << Square.F1) | (1L << Square.G1))) == 0
+                    && !position.isSquareAttacked(Square.F1, them) && !position.isSquareAttacked(Square.G1, them)) {
+                moves.add(PackedMove.of(Square.E1, Square.G1, PackedMove.CASTLE));
+            }
+            if ((rights & ChessCastling.WHITE_LONG) != 0 && position.kingSquare(us) == Square.E1
+                    && (rooks & (1L << Square.A1)) != 0
+                    && (occupied & ((1L << Square.B1) | (1L << Square.C1) | (1L << Square.D1))) == 0
+                    && !position.isSquareAttacked(Square.D1, them) && !position.isSquareAttacked(Square.C1, them)) {
+                moves.add(PackedMove.of(Square.E1, Square.C1, PackedMove.CASTLE));
+            }
+        } else {
+            if ((rights & ChessCastling.BLACK_SHORT) != 0 && position.kingSquare(us) == Square.E8
+                    && (rooks & (1L << Square.H8)) != 0
+                    && (occupied & ((1L << Square.F8) | (1L << Square.G8))) == 0
+                    && !position.isSquareAttacked(Square.F8, them) && !position.isSquareAttacked(Square.G8, them)) {
+                moves.add(PackedMove.of(Square.E8, Square.G8, PackedMove.CASTLE));
+            }
+            if ((rights & ChessCastling.BLACK_LONG) != 0 && position.kingSquare(us) == Square.E8
+                    && (rooks & (1L << Square.A8)) != 0
+                    && (occupied & ((1L << Square.B8) | (1L << Square.C8) | (1L << Square.D8))) == 0
+                    && !position.isSquareAttacked(Square.D8, them) && !position.isSquareAttacked(Square.C8, them)) {
+                moves.add(PackedMove.of(Square.E8, Square.C8, PackedMove.CASTLE));
+            }
+        }
+    }
+
+    /**
+     * Aggiunge una mossa di pedone, espandendola nelle quattro promozioni se arriva in ultima traversa.
+     * @param moves    La lista in cui scrivere le mosse
+     * @param from     Casella di partenza
+     * @param to       Casella di arrivo
+     * @param flags    Flag della mossa
+     * @param lastRank Traversa di promozione
+     */
+    private static void addPawnMove(MoveList moves, int from, int to, int flags, long lastRank) {
+        if ((lastRank & (1L << to)) == 0) {
+            moves.add(PackedMove.of(from, to, flags));
+            return;
+        }
+        for (int promotion : PROMOTIONS) {
+            moves.add(PackedMove.promotion(from, to, promotion, flags));
+        }
+    }
+
+    /**
+     * Aggiunge una mossa per ogni casella di arrivo, marcando come catture quelle occupate dall'avversario.
+     * @param moves   La lista in cui scrivere le mosse
+     * @param from    Casella di partenza
+     * @param targets Bitboard delle caselle di arrivo
+     * @param enemy   Occupazione dell'avversario
+     */
+    private static void addMoves(MoveList moves, int from, long targets, long enemy) {
+        while (targets != 0) {
+            int to = Long.numberOfTrailingZeros(targets);
+            targets &= targets - 1;
+            moves.add(PackedMove.of(from, to, (enemy & (1L << to)) != 0 ? PackedMove.CAPTURE : 0));
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package board;
+
+/**
+ * Lista di mosse codificate ({@link PackedMove}) su un array di interi preallocato.
+ * Pensata per essere creata una sola volta per ogni livello di ricerca e riutilizzata con {@link #clear()},
+ * così la generazione delle mosse non produce garbage.
+ */
+public class MoveList {
+    public static final int MAX_MOVES = 256; // Limite superiore delle mosse in una posizione legale (218)
+
+    private final int[] moves;
+    private final int[] scores; // Punteggi opzionali per l'ordinamento delle mosse
+    private int size;
+
+    /**
+     * Costruttore di una lista con capacità {@link #MAX_MOVES}.
+     */
+    public MoveList() {
+        this.moves = new int[MAX_MOVES];
+        this.scores = new int[MAX_MOVES];
+    }
+
+    /**
+     * Crea un buffer di liste, una per ogni livello (ply) di ricerca.
+     * @param plies Numero di livelli
+     * @return L'array di liste preallocate
+     */
+    public static MoveList[] forPlies(int plies) {
+        MoveList[] res = new MoveList[plies];
+        for (int i = 0; i < plies; i++) {
+            res[i] = new MoveList();
+        }
+        return res;
+    }
+
+    /**
+     * Aggiunge una mossa in coda.
+     * @param move La mossa codificata
+     */
+    public void add(int move) {
+        moves[size++] = move;
+    }
+
+    /**
+     * Restituisce la mossa in posizione i.
+     * @param i Indice della mossa
+     * @return La mossa codificata
+     */
+    public int get(int i) {
+        return moves[i];
+    }
+
+    /**
+     * Restituisce il punteggio di ordinamento associato alla mossa in posizione i.
+     * @param i Indice della mossa
+     * @return Il punteggio
+     */
+    public int getScore(int i) {
+        return scores[i];
+    }
+
+    /**
+     * Imposta il punteggio di ordinamento associato alla mossa in posizione i.
+     * @param i     Indice della mossa
+     * @param score Il punteggio
+     */
+    public void setScore(int i, int score) {
+        scores[i] = score;
+    }
+
+    /**
+     * Scambia due mosse (e i rispettivi punteggi).
+     * @param i Indice della prima mossa
+     * @param j Indice della seconda mossa
+     */
+    public void swap(int i, int j) {
+        int move = moves[i];
+        moves[i] = moves[j];
+        moves[j] = move;
+
+        int score = scores[i];
+        scores[i] = scores[j];
+        scores[j] = score;
+    }
+
+    /**
+     * Porta in posizione i la mossa con il punteggio più alto tra quelle rimanenti (selection sort incrementale).
+     * @param i Indice da cui partire
+     * @return La mossa scelta
+     */
+    public int pickBest(int i) {
+        int best = i;
+        for (int j = i + 1; j < size; j++) {
+            if (scores[j] > scores[best]) best = j;
+        }
+        if (best != i) swap(i, best);
+        return moves[i];
+    }
+
+    /**
+     * Verifica se la lista contiene una mossa.
+     * @param move La mossa codificata
+     * @return true se presente
+     */
+    public boolean contains(int move) {
+        for (int i = 0; i < size; i++) {
+            if (moves[i] == move) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Restituisce il numero di mosse nella lista.
+     * @return La dimensione
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Verifica se la lista è vuota.
+     * @return true se non ci sono mosse
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Svuota la lista senza liberare il buffer.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) sb.append(", ");
+            sb.append(PackedMove.toUci(moves[i]));
+        }
+        return sb.append(']').toString();
+    }
+}
@@ -0,0 +1,328 @@
+package board;
+
+import utils.constant.ChessType;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Libro delle aperture nel formato Polyglot (.bin).
+ *
+ * Il file è una sequenza di voci da 16 byte big-endian ordinate per chiave: chiave (64 bit, {@link PolyglotKey}),
+ * mossa (16 bit), peso (16 bit) e apprendimento (32 bit). Il file viene mappato in memoria con {@link FileChannel#map}
+ * e le voci di una posizione si trovano con una ricerca binaria sulla chiave, senza leggere il libro in memoria:
+ * una ricerca costa pochi accessi e le pagine sono condivise tra tutte le finestre e le partite che aprono lo stesso file.
+ *
+ * La mossa codifica colonna e traversa di arrivo (bit 0-5), di partenza (bit 6-11) e la promozione (bit 12-14);
+ * l'arrocco è scritto come il re che cattura la propria torre (e1h1, e1a1, e8h8, e8a8).
+ */
+public class OpeningBook {
+    public static final int ENTRY_SIZE = 16; // Byte di ogni voce
+    public static final int MAX_WEIGHT = 0xFFFF; // Peso massimo di una voce
+    public static final int BUILD_PLIES = 24; // Semimosse di ogni partita inserite nel libro
+
+    private static final Map<Path, OpeningBook> OPEN = new ConcurrentHashMap<>(); // Libri già mappati
+
+    private final Path path;
+    private final ByteBuffer buffer; // Solo letture assolute, quindi condivisibile tra thread
+    private final int size; // Numero di voci
+
+    /**
+     * Mossa del libro per una posizione.
+     */
+    public static class Entry {
+        private final int move; // PackedMove legale nella posizione
+        private final int weight;
+        private final int learn;
+
+        /**
+         * Costruttore della voce.
+         * @param move   La mossa (PackedMove)
+         * @param weight Il peso, proporzionale alla frequenza con cui la mossa va giocata
+         * @param learn  Il campo di apprendimento
+         */
+        public Entry(int move, int weight, int learn) {
+            this.move = move;
+            this.weight = weight;
+            this.learn = learn;
+        }
+
+        /**
+         * Restituisce la mossa.
+         * @return La mossa (PackedMove)
+         */
+        public int getMove() {
+            return move;
+        }
+
+        /**
+         * Restituisce il peso.
+         * @return Il peso (0-65535)
+         */
+        public int getWeight() {
+            return weight;
+        }
+
+        /**
+         * Restituisce il campo di apprendimento.
+         * @return Il valore a 32 bit
+         */
+        public int getLearn() {
+            return learn;
+        }
+    }
+
+    /**
+     * Costruttore che mappa il file in memoria.
+     * @param path Il file del libro
+     * @throws IOException Se il file non può essere letto o non è un libro valido
+     */
+    private OpeningBook(Path path) throws IOException {
+        this.path = path;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long bytes = channel.size();
+            if (bytes % ENTRY_SIZE != 0 || bytes > Integer.MAX_VALUE) throw new IOException("Libro delle aperture non valido: " + path);
+            // La mappatura resta valida anche dopo la chiusura del canale
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, bytes);
+            this.buffer = mapped;
+            this.size = (int) (bytes / ENTRY_SIZE);
+        }
+    }
+
+    /**
+     * Apre un libro, riusando la mappatura se lo stesso file è già stato aperto.
+     * @param path Il file del libro
+     * @return Il libro
+     * @throws IOException Se il file non può essere letto o non è un libro valido
+     */
+    public static OpeningBook open(Path path) throws IOException {
+        Path real = path.toRealPath();
+        OpeningBook book = OPEN.get(real);
+        if (book == null) {
+            book = new OpeningBook(real);
+            OpeningBook previous = OPEN.putIfAbsent(real, book);
+            if (previous != null) book = previous;
+        }
+        return book;
+    }
+
+    /**
+     * Cerca le mosse del libro per una posizione.
+     * Le voci con mosse non legali nella posizione (collisioni di chiave) vengono scartate.
+     * @param position La posizione
+     * @return Le mosse ordinate per peso decrescente, vuota se la posizione non è nel libro
+     */
+    public List<Entry> lookup(Position position) {
+        List<Entry> entries = new ArrayList<>();
+        long key = PolyglotKey.of(position);
+        MoveList legal = null;
+
+        for (int i = lowerBound(key); i < size && buffer.getLong(i * ENTRY_SIZE) == key; i++) {
+            int offset = i * ENTRY_SIZE;
+            int bookMove = buffer.getShort(offset + 8) & 0xFFFF;
+            int weight = buffer.getShort(offset + 10) & 0xFFFF;
+            int learn = buffer.getInt(offset + 12);
+
+            if (legal == null) legal = MoveGenerator.generateLegalMoves(position);
+            int move = decodeMove(position, bookMove, legal);
+            if (move != PackedMove.NONE) entries.add(new Entry(move, weight, learn));
+        }
+        entries.sort(Comparator.comparingInt(Entry::getWeight).reversed());
+        return entries;
+    }
+
+    /**
+     * Trova la prima voce con chiave maggiore o uguale a quella cercata. Le chiavi sono ordinate come interi senza segno.
+     * @param key La chiave
+     * @return L'indice della voce, oppure il numero di voci se tutte le chiavi sono minori
+     */
+    private int lowerBound(long key) {
+        int low = 0, high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (Long.compareUnsigned(buffer.getLong(middle * ENTRY_SIZE), key) < 0) low = middle + 1;
+            else high = middle;
+        }
+        return low;
+    }
+
+    /**
+     * Traduce una mossa del libro nella mossa legale corrispondente.
+     * @param position La posizione
+     * @param bookMove La mossa nel formato Polyglot
+     * @param legal    Le mosse legali della posizione
+     * @return La mossa (PackedMove), oppure PackedMove.NONE se non è legale
+     */
+    private static int decodeMove(Position position, int bookMove, MoveList legal) {
+        int to = bookMove & 63;
+        int from = (bookMove >>> 6) & 63;
+        int promotion = switch ((bookMove >>> 12) & 7) {
+            case 1 -> ChessType.KNIGHT;
+            case 2 -> ChessType.BISHOP;
+            case 3 -> ChessType.TOWER;
+            case 4 -> ChessType.QUEEN;
+            default -> ChessType.BLANK;
+        };
+
+        // L'arrocco è scritto come il re che cattura la torre: la casella di arrivo del re è due colonne più in là
+        if (position.typeAt(from) == ChessType.KING && position.typeAt(to) == ChessType.TOWER
+                && position.colorAt(to) == position.colorAt(from)) {
+            to = to > from ? from + 2 : from - 2;
+        }
+
+        for (int i = 0; i < legal.size(); i++) {
+            int move = legal.get(i);
+            if (PackedMove.from(move) != from || PackedMove.to(move) != to) continue;
+            if (PackedMove.isPromotion(move) ? PackedMove.promotion(move) == promotion : promotion == ChessType.BLANK) return move;
+        }
+        return PackedMove.NONE;
+    }
+
+    /**
+     * Codifica una mossa nel formato Polyglot.
+     * @param move La mossa (PackedMove)
+     * @return La mossa del libro
+     */
+    private static int encodeMove(int move) {
+        int from = PackedMove.from(move);
+        int to = PackedMove.to(move);
+        if (PackedMove.isCastle(move)) {
+            // Il re "cattura" la torre nell'angolo
+            to = to > from ? from + 3 : from - 4;
+        }
+        int promotion = PackedMove.isPromotion(move) ? PolyglotKey.promotionCode(PackedMove.promotion(move)) : 0;
+        return promotion << 12 | from << 6 | to;
+    }
+
+    /**
+     * Scrive un libro a partire dalle partite salvate: ogni mossa giocata nelle prime semimosse diventa una voce,
+     * con peso pari al numero di partite in cui è stata giocata. La mossa tra due posizioni consecutive viene dedotta
+     * cercando la mossa legale che porta dalla prima alla seconda; le coppie non collegate da una mossa vengono ignorate.
+     * @param file  Il file del libro da scrivere
+     * @param games Le partite (posizioni consecutive)
+     * @param plies Semimosse di ogni partita da inserire
+     * @return Il numero di voci scritte
+     * @throws IOException Se il file non può essere scritto
+     */
+    public static int build(Path file, List<List<Position>> games, int plies) throws IOException {
+        // Conteggio per chiave e mossa
+        Map<Long, Map<Integer, Integer>> counts = new HashMap<>();
+        for (List<Position> game : games) {
+            for (int i = 0; i + 1 < game.size() && i < plies; i++) {
+                Position position = new Position(game.get(i));
+                int move = findMove(position, game.get(i + 1));
+                if (move == PackedMove.NONE) break;
+                counts.computeIfAbsent(PolyglotKey.of(position), k -> new HashMap<>()).merge(encodeMove(move), 1, Integer::sum);
+            }
+        }
+
+        List<long[]> entries = new ArrayList<>();
+        counts.forEach((key, moves) -> moves.forEach((move, count) ->
+                entries.add(new long[]{key, move, Math.min(count, MAX_WEIGHT)})));
+        entries.sort((a, b) -> a[0] != b[0] ? Long.compareUnsigned(a[0], b[0]) : Long.compare(b[2], a[2]));
+
+        ByteBuffer out = ByteBuffer.allocate(entries.size() * ENTRY_SIZE);
+        for (long[] entry : entries) {
+            out.putLong(entry[0]).putShort((short) entry[1]).putShort((short) entry[2]).putInt(0);
+        }
+        out.flip();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (out.hasRemaining()) channel.write(out);
+        }
+        return entries.size();
+    }
+
+    /**
+     * Cerca la mossa legale che porta da una posizione alla successiva, confrontando i pezzi e il lato al tratto.
+     * @param position La posizione di partenza (viene modificata e ripristinata)
+     * @param next     La posizione successiva
+     * @return La mossa, oppure PackedMove.NONE se nessuna mossa collega le due posizioni
+     */
+    private static int findMove(Position position, Position next) {
+        MoveList moves = MoveGenerator.generateLegalMoves(position);
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            position.makeMove(move);
+            boolean same = position.getSideToMove() == next.getSideToMove();
+            for (int piece = 0; piece < 12 && same; piece++) {
+                int color = Position.pieceColor(piece), type = Position.pieceType(piece);
+                same = position.pieces(color, type) == next.pieces(color, type);
+            }
+            position.unmakeMove(move);
+            if (same) return move;
+        }
+        return PackedMove.NONE;
+    }
+
+    /**
+     * Restituisce il numero di voci del libro.
+     * @return Le voci
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Restituisce il file del libro.
+     * @return Il percorso
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Punto di ingresso.
+     * Uso: {@code OpeningBook --build <libro> <file o cartella>...} crea un libro dalle partite salvate;
+     * {@code OpeningBook <libro> [fen]} stampa le mosse del libro per la posizione (di default quella iniziale)
+     * e il tempo medio di una ricerca.
+     * @param args Gli argomenti
+     * @throws IOException Se un file non può essere letto o scritto
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || (args[0].equals("--build") && args.length < 3)) {
+            System.out.println("Uso: OpeningBook --build <libro> <file o cartella>...");
+            System.out.println("     OpeningBook <libro> [fen]");
+            System.exit(1);
+        }
+        if (args[0].equals("--build")) {
+            List<List<Position>> games = new ArrayList<>();
+            for (int i = 2; i < args.length; i++) {
+                for (Path game : GameArchive.files(Path.of(args[i]))) games.add(GameArchive.read(game));
+            }
+            int entries = build(Path.of(args[1]), games, BUILD_PLIES);
+            System.out.println("Libro creato: " + args[1] + " (" + games.size() + " partite, " + entries + " voci)");
+            return;
+        }
+
+        OpeningBook book = open(Path.of(args[0]));
+        Position position = args.length > 1 ? Position.fromFen(args[1]) : Position.startPosition();
+        List<Entry> entries = book.lookup(position);
+
+        int total = 0;
+        for (Entry entry : entries) total += entry.getWeight();
+        System.out.println("Voci nel libro: " + book.size() + ", mosse per la posizione: " + entries.size());
+        for (Entry entry : entries) {
+            System.out.printf("%-6s %6d  %5.1f%%%n", PackedMove.toUci(entry.getMove()), entry.getWeight(),
+                    total == 0 ? 0.0 : entry.getWeight() * 100.0 / total);
+        }
+
+        // Tempo medio di una ricerca, dopo un giro di riscaldamento
+        final int rounds = 100_000;
+        long found = 0;
+        for (int i = 0; i < rounds; i++) found += book.lookup(position).size();
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) found += book.lookup(position).size();
+        long nanos = System.nanoTime() - start;
+        System.out.printf("Ricerca: %.2f us (controllo %d)%n", nanos / 1000.0 / rounds, found);
+    }
+}
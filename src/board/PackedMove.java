@@ -0,0 +1,190 @@
+package board;
+
+import utils.Move;
+import utils.constant.ChessType;
+import utils.constant.MoveType;
+
+/**
+ * Codifica compatta di una mossa in un singolo {@code int}, per generare e scartare mosse senza allocazioni.
+ *
+ * Disposizione dei bit:
+ * - bit 0-5:   casella di partenza (0-63, vedi {@link Square})
+ * - bit 6-11:  casella di arrivo
+ * - bit 12-14: pezzo di promozione (tipo ChessType + 1, 0 se la mossa non è una promozione)
+ * - bit 15-18: flag di cattura, spinta doppia del pedone, en passant e arrocco
+ *
+ * Il valore 0 ({@link #NONE}) non rappresenta alcuna mossa valida (partenza e arrivo coincidono).
+ */
+public class PackedMove {
+    public static final int NONE = 0;
+
+    /* Flag */
+    public static final int CAPTURE = 1 << 15; // Cattura (compreso l'en passant)
+    public static final int DOUBLE_PUSH = 1 << 16; // Spinta di due caselle del pedone
+    public static final int EN_PASSANT = 1 << 17; // Cattura en passant
+    public static final int CASTLE = 1 << 18; // Arrocco (la mossa è quella del re)
+
+    private static final int SQUARE_MASK = 0x3F;
+    private static final int PROMOTION_SHIFT = 12;
+    private static final int PROMOTION_MASK = 0x7 << PROMOTION_SHIFT;
+
+    /**
+     * Codifica una mossa senza promozione.
+     * @param from  Casella di partenza
+     * @param to    Casella di arrivo
+     * @param flags Combinazione dei flag
+     * @return La mossa codificata
+     */
+    public static int of(int from, int to, int flags) {
+        return from | (to << 6) | flags;
+    }
+
+    /**
+     * Codifica una mossa di promozione.
+     * @param from      Casella di partenza
+     * @param to        Casella di arrivo
+     * @param promotion Tipo del pezzo promosso (ChessType)
+     * @param flags     Combinazione dei flag
+     * @return La mossa codificata
+     */
+    public static int promotion(int from, int to, int promotion, int flags) {
+        return from | (to << 6) | ((promotion + 1) << PROMOTION_SHIFT) | flags;
+    }
+
+    /**
+     * Restituisce la casella di partenza.
+     * @param move La mossa codificata
+     * @return La casella di partenza
+     */
+    public static int from(int move) {
+        return move & SQUARE_MASK;
+    }
+
+    /**
+     * Restituisce la casella di arrivo.
+     * @param move La mossa codificata
+     * @return La casella di arrivo
+     */
+    public static int to(int move) {
+        return (move >>> 6) & SQUARE_MASK;
+    }
+
+    /**
+     * Restituisce il tipo del pezzo promosso.
+     * @param move La mossa codificata
+     * @return Il tipo (ChessType), BLANK se la mossa non è una promozione
+     */
+    public static int promotion(int move) {
+        return ((move & PROMOTION_MASK) >>> PROMOTION_SHIFT) - 1;
+    }
+
+    /**
+     * Verifica se la mossa è una promozione.
+     * @param move La mossa codificata
+     * @return true se il flag è presente
+     */
+    public static boolean isPromotion(int move) {
+        return (move & PROMOTION_MASK) != 0;
+    }
+
+    /**
+     * Verifica se la mossa è una cattura (compreso l'en passant).
+     * @param move La mossa codificata
+     * @return true se il flag è presente
+     */
+    public static boolean isCapture(int move) {
+        return (move & CAPTURE) != 0;
+    }
+
+    /**
+     * Verifica se la mossa è una spinta doppia del pedone.
+     * @param move La mossa codificata
+     * @return true se il flag è presente
+     */
+    public static boolean isDoublePush(int move) {
+        return (move & DOUBLE_PUSH) != 0;
+    }
+
+    /**
+     * Verifica se la mossa è una cattura en passant.
+     * @param move La mossa codificata
+     * @return true se il flag è presente
+     */
+    public static boolean isEnPassant(int move) {
+        return (move & EN_PASSANT) != 0;
+    }
+
+    /**
+     * Verifica se la mossa è un arrocco.
+     * @param move La mossa codificata
+     * @return true se il flag è presente
+     */
+    public static boolean isCastle(int move) {
+        return (move & CASTLE) != 0;
+    }
+
+    /**
+     * Restituisce la mossa in notazione UCI, ad esempio "e2e4" o "e7e8q".
+     * @param move La mossa codificata
+     * @return La stringa UCI, "0000" per {@link #NONE}
+     */
+    public static String toUci(int move) {
+        if (move == NONE) return "0000";
+
+        String res = Square.name(from(move)) + Square.name(to(move));
+        if (isPromotion(move)) res += "rbnqkp".charAt(promotion(move));
+        return res;
+    }
+
+    /**
+     * Converte la mossa nella costante di {@link MoveType} usata dalla GUI per suoni e notazione.
+     * Le spinte dei pedoni, singole o doppie, sono di tipo MOVEMENT come nelle mosse generate da Pawn.
+     * @param move  La mossa codificata
+     * @param piece Tipo del pezzo che muove (ChessType)
+     * @return Il tipo di mossa
+     */
+    public static int toMoveType(int move, int piece) {
+        if (isCastle(move)) return to(move) > from(move) ? MoveType.SHORT_CASTLE : MoveType.LONG_CASTLE;
+        if (isEnPassant(move)) return MoveType.ENPASSANT;
+        if (isPromotion(move)) return MoveType.PROMOTE;
+        if (isCapture(move)) return MoveType.CAPTURE;
+        if (isDoublePush(move) || piece == ChessType.PAWN) return MoveType.MOVEMENT;
+        return MoveType.NORMAL;
+    }
+
+    /**
+     * Converte la mossa in un oggetto {@link Move} della GUI, che rappresenta la casella di arrivo
+     * (nelle coordinate della matrice) e il tipo di mossa.
+     * @param move  La mossa codificata
+     * @param piece Tipo del pezzo che muove (ChessType)
+     * @return La mossa della GUI
+     */
+    public static Move toMove(int move, int piece) {
+        int to = to(move);
+        return new Move(Square.row(to), Square.col(to), toMoveType(move, piece));
+    }
+
+    /**
+     * Codifica una mossa della GUI. La GUI descrive la mossa con il pezzo di partenza e un {@link Move}
+     * di arrivo che contiene il tipo di mossa; i flag vengono dedotti da quel tipo.
+     * @param from      Casella di partenza (coordinate della matrice)
+     * @param to        Arrivo e tipo della mossa
+     * @param promotion Tipo del pezzo promosso (ChessType), BLANK se non è una promozione
+     * @return La mossa codificata
+     */
+    public static int fromMove(Move from, Move to, int promotion) {
+        int fromSquare = Square.of(from.getRow(), from.getCol());
+        int toSquare = Square.of(to.getRow(), to.getCol());
+
+        int flags = switch (to.getMoveType()) {
+            case MoveType.CAPTURE -> CAPTURE;
+            case MoveType.ENPASSANT -> CAPTURE | EN_PASSANT;
+            case MoveType.SHORT_CASTLE, MoveType.LONG_CASTLE -> CASTLE;
+            case MoveType.MOVEMENT -> Math.abs(from.getRow() - to.getRow()) == 2 ? DOUBLE_PUSH : 0;
+            default -> 0;
+        };
+
+        if (promotion == ChessType.BLANK) return of(fromSquare, toSquare, flags);
+        return promotion(fromSquare, toSquare, promotion, flags);
+    }
+}
@@ -0,0 +1,96 @@
+package board;
+
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Perft parallelo basato su {@link ForkJoinPool}, pensato come test di carico multi-core del generatore di mosse.
+ *
+ * I primi due livelli dell'albero (la radice e la seconda semimossa) vengono suddivisi in task indipendenti;
+ * ogni task lavora su una propria copia della posizione, quindi i worker non condividono stato mutabile.
+ * Sotto il livello di suddivisione ogni task esegue un normale {@link PerftCounter} sequenziale.
+ */
+public class ParallelPerft implements AutoCloseable {
+    public static final int SPLIT_PLIES = 2; // Livelli suddivisi in task: radice e seconda semimossa
+
+    private final ForkJoinPool pool;
+
+    /**
+     * Costruttore con un pool dedicato.
+     * @param threads Numero di worker
+     */
+    public ParallelPerft(int threads) {
+        if (threads < 1) throw new IllegalArgumentException("Numero di thread non valido: " + threads);
+        this.pool = new ForkJoinPool(threads);
+    }
+
+    /**
+     * Calcola il perft della posizione in parallelo.
+     * @param position La posizione di partenza (non viene modificata)
+     * @param depth    Profondità in semimosse
+     * @return Il numero di nodi foglia
+     */
+    public long perft(Position position, int depth) {
+        if (depth < 0) throw new IllegalArgumentException("Profondità non valida: " + depth);
+        return pool.invoke(new PerftTask(new Position(position), depth, SPLIT_PLIES));
+    }
+
+    /**
+     * Restituisce il numero di worker del pool.
+     * @return Il parallelismo
+     */
+    public int getThreads() {
+        return pool.getParallelism();
+    }
+
+    /**
+     * Chiude il pool, attendendo i task in corso.
+     */
+    @Override
+    public void close() {
+        pool.close();
+    }
+
+    /**
+     * Task che conta i nodi sotto una posizione. Finché restano livelli da suddividere crea un sotto-task
+     * per ogni mossa legale, altrimenti conta in modo sequenziale.
+     */
+    private static class PerftTask extends RecursiveTask<Long> {
+        private final Position position; // Copia della posizione di proprietà del task
+        private final int depth; // Profondità rimanente
+        private final int split; // Livelli ancora da suddividere in task
+
+        /**
+         * Costruttore del task.
+         * @param position La posizione, che appartiene al task
+         * @param depth    Profondità rimanente
+         * @param split    Livelli ancora da suddividere
+         */
+        PerftTask(Position position, int depth, int split) {
+            this.position = position;
+            this.depth = depth;
+            this.split = split;
+        }
+
+        @Override
+        protected Long compute() {
+            // Sotto i due livelli finali suddividere non conviene: il conteggio sequenziale è già immediato
+            if (split == 0 || depth <= 2) return new PerftCounter(position, depth).perft(depth);
+
+            MoveList moves = MoveGenerator.generateLegalMoves(position);
+            ArrayList<PerftTask> tasks = new ArrayList<>(moves.size());
+            for (int i = 0; i < moves.size(); i++) {
+                Position child = new Position(position);
+                child.makeMove(moves.get(i));
+                tasks.add(new PerftTask(child, depth - 1, split - 1));
+            }
+
+            long nodes = 0;
+            for (PerftTask task : invokeAll(tasks)) {
+                nodes += task.join();
+            }
+            return nodes;
+        }
+    }
+}
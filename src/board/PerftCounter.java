@@ -0,0 +1,95 @@
+package board;
+
+import java.util.LinkedHashMap;
+
+/**
+ * Conteggio perft: il numero di posizioni foglia raggiungibili con tutte le sequenze di mosse legali di una data profondità.
+ * Confrontato con i valori di riferimento noti è il modo standard per verificare la correttezza del generatore di mosse,
+ * e misurandone il tempo dà un valore di throughput (nodi al secondo) da seguire nel tempo.
+ *
+ * Il contatore lavora su una propria copia della posizione con makeMove/unmakeMove e usa una {@link MoveList}
+ * preallocata per ogni livello, quindi il conteggio non produce garbage.
+ */
+public class PerftCounter {
+    private final Position position; // Copia di lavoro della posizione
+    private final MoveList[] lists; // Una lista di mosse per ogni livello
+
+    /**
+     * Costruttore del contatore.
+     * @param position La posizione di partenza (viene copiata)
+     * @param maxDepth Profondità massima che verrà richiesta
+     */
+    public PerftCounter(Position position, int maxDepth) {
+        this.position = new Position(position);
+        this.lists = MoveList.forPlies(Math.max(maxDepth, 1));
+    }
+
+    /**
+     * Calcola il perft della posizione.
+     * @param position La posizione di partenza
+     * @param depth    Profondità in semimosse
+     * @return Il numero di nodi foglia
+     */
+    public static long perft(Position position, int depth) {
+        return new PerftCounter(position, depth).perft(depth);
+    }
+
+    /**
+     * Calcola il perft della posizione del contatore.
+     * All'ultimo livello le mosse legali vengono solo contate, senza essere giocate (bulk counting).
+     * @param depth Profondità in semimosse
+     * @return Il numero di nodi foglia
+     */
+    public long perft(int depth) {
+        if (depth < 0 || depth > lists.length) throw new IllegalArgumentException("Profondità non valida: " + depth);
+        if (depth == 0) return 1;
+        return perft(depth, 0);
+    }
+
+    /**
+     * Calcola il perft suddiviso per mossa iniziale ("divide"), utile per trovare la mossa in cui
+     * il generatore si discosta da un motore di riferimento.
+     * @param depth Profondità in semimosse (almeno 1)
+     * @return Per ogni mossa legale della radice, in notazione UCI, il numero di nodi foglia sotto di essa
+     */
+    public LinkedHashMap<String, Long> divide(int depth) {
+        if (depth < 1 || depth > lists.length) throw new IllegalArgumentException("Profondità non valida: " + depth);
+
+        LinkedHashMap<String, Long> res = new LinkedHashMap<>();
+        MoveList moves = lists[0];
+        MoveGenerator.generateLegalMoves(position, moves);
+
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            long nodes = 1;
+            if (depth > 1) {
+                position.makeMove(move);
+                nodes = perft(depth - 1, 1);
+                position.unmakeMove(move);
+            }
+            res.put(PackedMove.toUci(move), nodes);
+        }
+        return res;
+    }
+
+    /**
+     * Ricorsione del perft.
+     * @param depth Profondità rimanente (almeno 1)
+     * @param ply   Livello corrente, indice della lista di mosse da usare
+     * @return Il numero di nodi foglia
+     */
+    private long perft(int depth, int ply) {
+        MoveList moves = lists[ply];
+        MoveGenerator.generateLegalMoves(position, moves);
+        if (depth == 1) return moves.size();
+
+        long nodes = 0;
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            position.makeMove(move);
+            nodes += perft(depth - 1, ply + 1);
+            position.unmakeMove(move);
+        }
+        return nodes;
+    }
+}
@@ -0,0 +1,113 @@
+package board;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+
+/**
+ * Suite di regressione del generatore di mosse basata su perft.
+ * Contiene le posizioni di riferimento standard (posizione iniziale, Kiwipete e le altre posizioni della
+ * Chess Programming Wiki) e un insieme di posizioni limite su en passant, arrocco, promozione e stallo,
+ * ognuna con il numero di nodi atteso a una data profondità.
+ *
+ * Ogni modifica alle regole deve lasciare la suite verde; il tempo totale dà anche una misura del throughput.
+ */
+public class PerftSuite {
+
+    /**
+     * Singola posizione della suite con il conteggio atteso.
+     */
+    public static class Entry {
+        public final String name; // Descrizione della posizione
+        public final String fen; // Posizione in notazione FEN
+        public final int depth; // Profondità del conteggio
+        public final long nodes; // Numero di nodi atteso
+
+        /**
+         * Costruttore di una posizione della suite.
+         * @param name  Descrizione della posizione
+         * @param fen   Posizione in notazione FEN
+         * @param depth Profondità del conteggio
+         * @param nodes Numero di nodi atteso
+         */
+        public Entry(String name, String fen, int depth, long nodes) {
+            this.name = name;
+            this.fen = fen;
+            this.depth = depth;
+            this.nodes = nodes;
+        }
+    }
+
+    public static final ArrayList<Entry> ENTRIES = new ArrayList<>() {{
+        /* Posizioni di riferimento standard */
+        add(new Entry("Posizione iniziale", Position.START_FEN, 5, 4_865_609L));
+        add(new Entry("Kiwipete", "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1", 4, 4_085_603L));
+        add(new Entry("Posizione 3", "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1", 6, 11_030_083L));
+        add(new Entry("Posizione 4", "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1", 5, 15_833_292L));
+        add(new Entry("Posizione 4 specchiata", "r2q1rk1/pP1p2pp/Q4n2/bbp1p3/Np6/1B3NBn/pPPP1PPP/R3K2R b KQ - 0 1", 5, 15_833_292L));
+        add(new Entry("Posizione 5", "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8", 4, 2_103_487L));
+        add(new Entry("Posizione 6", "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10", 4, 3_894_594L));
+
+        /* En passant */
+        add(new Entry("En passant illegale (inchiodatura orizzontale)", "3k4/3p4/8/K1P4r/8/8/8/8 b - - 0 1", 6, 1_134_888L));
+        add(new Entry("En passant illegale (inchiodatura diagonale)", "8/8/4k3/8/2p5/8/B2P2K1/8 w - - 0 1", 6, 1_015_133L));
+        add(new Entry("En passant che dà scacco", "8/8/1k6/2b5/2pP4/8/5K2/8 b - d3 0 1", 6, 1_440_467L));
+
+        /* Arrocco */
+        add(new Entry("Arrocco corto che dà scacco", "5k2/8/8/8/8/8/8/4K2R w K - 0 1", 6, 661_072L));
+        add(new Entry("Arrocco lungo che dà scacco", "3k4/8/8/8/8/8/8/R3K3 w Q - 0 1", 6, 803_711L));
+        add(new Entry("Perdita dei diritti di arrocco", "r3k2r/1b4bq/8/8/8/8/7B/R3K2R w KQkq - 0 1", 4, 1_274_206L));
+        add(new Entry("Arrocco impedito", "r3k2r/8/3Q4/8/8/5q2/8/R3K2R b KQkq - 0 1", 4, 1_720_476L));
+
+        /* Promozione */
+        add(new Entry("Promozione per uscire dallo scacco", "2K2r2/4P3/8/8/8/8/8/3k4 w - - 0 1", 6, 3_821_001L));
+        add(new Entry("Promozione che dà scacco", "4k3/1P6/8/8/8/8/K7/8 w - - 0 1", 6, 217_342L));
+        add(new Entry("Sottopromozione che dà scacco", "8/P1k5/K7/8/8/8/8/8 w - - 0 1", 6, 92_683L));
+
+        /* Scacco di scoperta, stallo e matto */
+        add(new Entry("Scacco di scoperta", "8/8/1P2K3/8/2n5/1q6/8/5k2 b - - 0 1", 5, 1_004_658L));
+        add(new Entry("Autostallo", "K1k5/8/P7/8/8/8/8/8 w - - 0 1", 6, 2_217L));
+        add(new Entry("Stallo e scacco matto", "8/k1P5/8/1K6/8/8/8/8 w - - 0 1", 7, 567_584L));
+        add(new Entry("Stallo e scacco matto 2", "8/8/2k5/5q2/5n2/8/5K2/8 b - - 0 1", 4, 23_527L));
+    }};
+
+    /**
+     * Esegue tutta la suite stampando per ogni posizione il risultato, il tempo e i nodi al secondo.
+     * @param out Stream su cui stampare il report
+     * @return true se tutti i conteggi coincidono con quelli attesi
+     */
+    public static boolean run(PrintStream out) {
+        boolean ok = true;
+        long totalNodes = 0;
+        long totalTime = 0;
+
+        for (Entry entry : ENTRIES) {
+            long start = System.nanoTime();
+            long nodes = PerftCounter.perft(Position.fromFen(entry.fen), entry.depth);
+            long elapsed = System.nanoTime() - start;
+
+            totalNodes += nodes;
+            totalTime += elapsed;
+
+            boolean passed = nodes == entry.nodes;
+            ok &= passed;
+
+            out.printf("%-4s %-48s depth %d  %,14d", passed ? "OK" : "FAIL", entry.name, entry.depth, nodes);
+            if (!passed) out.printf(" (attesi %,d)", entry.nodes);
+            out.printf("  %,8d ms  %,12d nodi/s%n", elapsed / 1_000_000, nodesPerSecond(nodes, elapsed));
+        }
+
+        out.printf("%nTotale: %,d nodi in %,d ms, %,d nodi/s%n", totalNodes, totalTime / 1_000_000, nodesPerSecond(totalNodes, totalTime));
+        out.println(ok ? "Suite superata." : "Suite FALLITA.");
+        return ok;
+    }
+
+    /**
+     * Calcola i nodi al secondo.
+     * @param nodes   Numero di nodi
+     * @param elapsed Tempo trascorso in nanosecondi
+     * @return I nodi al secondo
+     */
+    public static long nodesPerSecond(long nodes, long elapsed) {
+        return elapsed == 0 ? 0 : (long) (nodes / (elapsed / 1e9)); // In virgola mobile: nodes * 1e9 supera long oltre 9,2e9 nodi
+    }
+}
@@ -0,0 +1,776 @@
+package board;
+
+import utils.constant.ChessCastling;
+import utils.constant.ChessColor;
+import utils.constant.ChessType;
+
+import java.util.Arrays;
+
+/**
+ * Classe che rappresenta una posizione di scacchi senza alcuna dipendenza da Swing/AWT.
+ * La scacchiera è memorizzata tramite bitboard: un {@code long} per ogni coppia tipo-colore di pezzo,
+ * più una bitboard di occupazione per colore e una tabella (mailbox) per sapere in O(1) quale pezzo occupa una casella.
+ *
+ * Oltre ai pezzi, la posizione contiene il lato che deve muovere, i diritti di arrocco, la casella en passant
+ * e il contatore delle semimosse, cioè tutto lo stato descritto da una stringa FEN.
+ * La posizione mantiene inoltre una chiave di Zobrist a 64 bit, aggiornata in modo incrementale da makeMove/unmakeMove,
+ * che la identifica per il rilevamento delle ripetizioni e per le tabelle delle trasposizioni.
+ *
+ * I pezzi sono codificati come {@code colore * 6 + tipo}, usando le costanti di {@link ChessColor} e {@link ChessType};
+ * una casella vuota vale {@link ChessType#BLANK}.
+ */
+public class Position {
+    public static final String START_FEN = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+    private final long[] pieces = new long[12]; // Bitboard per ogni pezzo (colore * 6 + tipo)
+    private final long[] occupancy = new long[2]; // Bitboard di occupazione per colore
+    private final int[] board = new int[64]; // Pezzo presente su ogni casella, BLANK se vuota
+
+    private int sideToMove; // Colore che deve muovere
+    private int castlingRights; // Diritti di arrocco, combinazione di ChessCastling
+    private int enPassantSquare = Square.NONE; // Casella di arrivo della cattura en passant
+    private int halfmoveClock; // Semimosse dall'ultima cattura o mossa di pedone
+    private int fullmoveNumber = 1; // Numero della mossa completa
+    private long key; // Chiave di Zobrist, aggiornata in modo incrementale (vedi Zobrist)
+
+    /*
+     * Pila delle informazioni non ricostruibili dalla mossa, usata da unmakeMove.
+     * Per ogni mossa giocata si salvano il pezzo catturato, i diritti di arrocco, la casella en passant,
+     * il contatore delle semimosse e la chiave di Zobrist precedenti.
+     */
+    private int[] undoCaptured = new int[MAX_PLY];
+    private int[] undoCastling = new int[MAX_PLY];
+    private int[] undoEnPassant = new int[MAX_PLY];
+    private int[] undoHalfmove = new int[MAX_PLY];
+    private long[] undoKey = new long[MAX_PLY];
+    private int ply; // Numero di mosse presenti nella pila
+
+    private static final int MAX_PLY = 256; // Dimensione iniziale della pila, raddoppiata se necessario
+
+    /*
+     * Diritti di arrocco che restano validi quando una casella viene toccata (come partenza o arrivo).
+     * Muovere il re o una torre, o catturare una torre nella casella iniziale, fa perdere i relativi diritti.
+     */
+    private static final int[] CASTLING_MASK = new int[64];
+
+    static {
+        Arrays.fill(CASTLING_MASK, ChessCastling.ALL);
+        CASTLING_MASK[Square.E1] &= ~(ChessCastling.WHITE_SHORT | ChessCastling.WHITE_LONG);
+        CASTLING_MASK[Square.H1] &= ~ChessCastling.WHITE_SHORT;
+        CASTLING_MASK[Square.A1] &= ~ChessCastling.WHITE_LONG;
+        CASTLING_MASK[Square.E8] &= ~(ChessCastling.BLACK_SHORT | ChessCastling.BLACK_LONG);
+        CASTLING_MASK[Square.H8] &= ~ChessCastling.BLACK_SHORT;
+        CASTLING_MASK[Square.A8] &= ~ChessCastling.BLACK_LONG;
+    }
+
+    /**
+     * Costruttore di una scacchiera vuota, con il bianco al tratto e nessun diritto di arrocco.
+     */
+    public Position() {
+        Arrays.fill(board, ChessType.BLANK);
+    }
+
+    /**
+     * Costruttore di copia.
+     * @param other La posizione da copiare
+     */
+    public Position(Position other) {
+        System.arraycopy(other.pieces, 0, pieces, 0, pieces.length);
+        System.arraycopy(other.occupancy, 0, occupancy, 0, occupancy.length);
+        System.arraycopy(other.board, 0, board, 0, board.length);
+        this.sideToMove = other.sideToMove;
+        this.castlingRights = other.castlingRights;
+        this.enPassantSquare = other.enPassantSquare;
+        this.halfmoveClock = other.halfmoveClock;
+        this.fullmoveNumber = other.fullmoveNumber;
+        this.key = other.key;
+
+        // Si copia anche la pila, così la copia conosce le posizioni precedenti per il rilevamento delle ripetizioni
+        this.undoCaptured = other.undoCaptured.clone();
+        this.undoCastling = other.undoCastling.clone();
+        this.undoEnPassant = other.undoEnPassant.clone();
+        this.undoHalfmove = other.undoHalfmove.clone();
+        this.undoKey = other.undoKey.clone();
+        this.ply = other.ply;
+    }
+
+    /**
+     * Restituisce la posizione iniziale standard.
+     * @return Una nuova posizione iniziale
+     */
+    public static Position startPosition() {
+        return fromFen(START_FEN);
+    }
+
+    /**
+     * Codifica un pezzo a partire da colore e tipo.
+     * @param color Colore del pezzo (ChessColor)
+     * @param type  Tipo del pezzo (ChessType)
+     * @return Il codice del pezzo
+     */
+    public static int piece(int color, int type) {
+        return color * 6 + type;
+    }
+
+    /**
+     * Restituisce il tipo di un pezzo codificato.
+     * @param piece Codice del pezzo
+     * @return Il tipo (ChessType), BLANK se la casella è vuota
+     */
+    public static int pieceType(int piece) {
+        return piece == ChessType.BLANK ? ChessType.BLANK : piece % 6;
+    }
+
+    /**
+     * Restituisce il colore di un pezzo codificato.
+     * @param piece Codice del pezzo
+     * @return Il colore (ChessColor), BLANK se la casella è vuota
+     */
+    public static int pieceColor(int piece) {
+        return piece == ChessType.BLANK ? ChessColor.BLANK : piece / 6;
+    }
+
+    /**
+     * Aggiunge un pezzo su una casella vuota.
+     * @param color  Colore del pezzo
+     * @param type   Tipo del pezzo
+     * @param square Casella di destinazione
+     */
+    public void putPiece(int color, int type, int square) {
+        long bit = 1L << square;
+        int piece = piece(color, type);
+        pieces[piece] |= bit;
+        occupancy[color] |= bit;
+        board[square] = piece;
+        key ^= Zobrist.PIECE_SQUARE[piece][square];
+    }
+
+    /**
+     * Rimuove il pezzo presente su una casella, se presente.
+     * @param square Casella da svuotare
+     */
+    public void removePiece(int square) {
+        int piece = board[square];
+        if (piece == ChessType.BLANK) return;
+
+        long bit = 1L << square;
+        pieces[piece] &= ~bit;
+        occupancy[piece / 6] &= ~bit;
+        board[square] = ChessType.BLANK;
+        key ^= Zobrist.PIECE_SQUARE[piece][square];
+    }
+
+    /**
+     * Restituisce il pezzo presente su una casella.
+     * @param square Indice della casella
+     * @return Il codice del pezzo, BLANK se vuota
+     */
+    public int pieceAt(int square) {
+        return board[square];
+    }
+
+    /**
+     * Restituisce il tipo del pezzo presente su una casella.
+     * @param square Indice della casella
+     * @return Il tipo del pezzo (ChessType)
+     */
+    public int typeAt(int square) {
+        return pieceType(board[square]);
+    }
+
+    /**
+     * Restituisce il colore del pezzo presente su una casella.
+     * @param square Indice della casella
+     * @return Il colore del pezzo (ChessColor)
+     */
+    public int colorAt(int square) {
+        return pieceColor(board[square]);
+    }
+
+    /**
+     * Restituisce la bitboard dei pezzi di un dato colore e tipo.
+     * @param color Colore dei pezzi
+     * @param type  Tipo dei pezzi
+     * @return La bitboard corrispondente
+     */
+    public long pieces(int color, int type) {
+        return pieces[color * 6 + type];
+    }
+
+    /**
+     * Restituisce la bitboard dei pezzi di un dato tipo, di entrambi i colori.
+     * @param type Tipo dei pezzi
+     * @return La bitboard corrispondente
+     */
+    public long pieces(int type) {
+        return pieces[type] | pieces[6 + type];
+    }
+
+    /**
+     * Restituisce la bitboard di tutti i pezzi di un colore.
+     * @param color Colore dei pezzi
+     * @return La bitboard di occupazione del colore
+     */
+    public long occupancy(int color) {
+        return occupancy[color];
+    }
+
+    /**
+     * Restituisce la bitboard di tutte le caselle occupate.
+     * @return La bitboard di occupazione totale
+     */
+    public long occupied() {
+        return occupancy[ChessColor.WHITE] | occupancy[ChessColor.BLACK];
+    }
+
+    /**
+     * Restituisce la casella del re di un colore.
+     * @param color Colore del re
+     * @return La casella del re, oppure {@link Square#NONE} se non presente
+     */
+    public int kingSquare(int color) {
+        long king = pieces[color * 6 + ChessType.KING];
+        return king == 0 ? Square.NONE : Long.numberOfTrailingZeros(king);
+    }
+
+    /**
+     * Sposta un pezzo da una casella a una casella vuota, aggiornando bitboard e mailbox.
+     * @param from Casella di partenza
+     * @param to   Casella di arrivo
+     */
+    private void movePiece(int from, int to) {
+        int piece = board[from];
+        long fromTo = (1L << from) | (1L << to);
+        pieces[piece] ^= fromTo;
+        occupancy[piece / 6] ^= fromTo;
+        board[from] = ChessType.BLANK;
+        board[to] = piece;
+        key ^= Zobrist.PIECE_SQUARE[piece][from] ^ Zobrist.PIECE_SQUARE[piece][to];
+    }
+
+    /**
+     * Gioca una mossa modificando la posizione sul posto.
+     * Lo stato non ricostruibile (pezzo catturato, arrocco, en passant, semimosse) viene salvato
+     * nella pila interna, così {@link #unmakeMove(int)} può ripristinare la posizione in O(1).
+     * La mossa deve essere almeno pseudo-legale: non viene eseguito alcun controllo.
+     * @param move La mossa codificata (PackedMove)
+     */
+    public void makeMove(int move) {
+        int from = PackedMove.from(move);
+        int to = PackedMove.to(move);
+        int us = sideToMove;
+        int them = us ^ 1;
+        int moving = board[from];
+        int captured = board[to];
+
+        if (ply == undoCaptured.length) growUndoStack();
+
+        undoCastling[ply] = castlingRights;
+        undoEnPassant[ply] = enPassantSquare;
+        undoHalfmove[ply] = halfmoveClock;
+        undoKey[ply] = key;
+
+        halfmoveClock++;
+        key ^= Zobrist.enPassant(enPassantSquare);
+        enPassantSquare = Square.NONE;
+
+        // Cattura, normale o en passant
+        if (PackedMove.isEnPassant(move)) {
+            int capturedSquare = us == ChessColor.WHITE ? to - 8 : to + 8;
+            captured = board[capturedSquare];
+            removePiece(capturedSquare);
+        } else if (captured != ChessType.BLANK) {
+            removePiece(to);
+        }
+        undoCaptured[ply] = captured;
+
+        movePiece(from, to);
+
+        // Promozione: il pedone viene sostituito dal pezzo scelto
+        if (PackedMove.isPromotion(move)) {
+            removePiece(to);
+            putPiece(us, PackedMove.promotion(move), to);
+        }
+
+        // Arrocco: il re è già stato mosso, si sposta la torre
+        if (PackedMove.isCastle(move)) {
+            switch (to) {
+                case Square.G1 -> movePiece(Square.H1, Square.F1);
+                case Square.C1 -> movePiece(Square.A1, Square.D1);
+                case Square.G8 -> movePiece(Square.H8, Square.F8);
+                case Square.C8 -> movePiece(Square.A8, Square.D8);
+            }
+        }
+
+        if (pieceType(moving) == ChessType.PAWN || captured != ChessType.BLANK) halfmoveClock = 0;
+
+        // La casella en passant viene registrata solo se un pedone avversario può davvero catturare
+        if (PackedMove.isDoublePush(move)) {
+            int square = (from + to) >>> 1;
+            if ((Attacks.pawn(us, square) & pieces[them * 6 + ChessType.PAWN]) != 0) {
+                enPassantSquare = square;
+                key ^= Zobrist.enPassant(square);
+            }
+        }
+
+        key ^= Zobrist.CASTLING[castlingRights];
+        castlingRights &= CASTLING_MASK[from] & CASTLING_MASK[to];
+        key ^= Zobrist.CASTLING[castlingRights];
+
+        if (us == ChessColor.BLACK) fullmoveNumber++;
+        sideToMove = them;
+        key ^= Zobrist.SIDE;
+        ply++;
+    }
+
+    /**
+     * Annulla l'ultima mossa giocata con {@link #makeMove(int)}, ripristinando esattamente la posizione precedente.
+     * @param move La stessa mossa passata a makeMove
+     */
+    public void unmakeMove(int move) {
+        ply--;
+        int from = PackedMove.from(move);
+        int to = PackedMove.to(move);
+        int them = sideToMove;
+        int us = them ^ 1;
+
+        sideToMove = us;
+        if (us == ChessColor.BLACK) fullmoveNumber--;
+
+        // Arrocco: si riporta la torre nella casella iniziale
+        if (PackedMove.isCastle(move)) {
+            switch (to) {
+                case Square.G1 -> movePiece(Square.F1, Square.H1);
+                case Square.C1 -> movePiece(Square.D1, Square.A1);
+                case Square.G8 -> movePiece(Square.F8, Square.H8);
+                case Square.C8 -> movePiece(Square.D8, Square.A8);
+            }
+        }
+
+        // Promozione: il pezzo promosso torna pedone
+        if (PackedMove.isPromotion(move)) {
+            removePiece(to);
+            putPiece(us, ChessType.PAWN, to);
+        }
+
+        movePiece(to, from);
+
+        int captured = undoCaptured[ply];
+        if (captured != ChessType.BLANK) {
+            int capturedSquare = to;
+            if (PackedMove.isEnPassant(move)) capturedSquare = us == ChessColor.WHITE ? to - 8 : to + 8;
+            putPiece(them, pieceType(captured), capturedSquare);
+        }
+
+        castlingRights = undoCastling[ply];
+        enPassantSquare = undoEnPassant[ply];
+        halfmoveClock = undoHalfmove[ply];
+        key = undoKey[ply];
+    }
+
+    /**
+     * Raddoppia la dimensione della pila di annullamento, per partite molto lunghe.
+     */
+    private void growUndoStack() {
+        int size = undoCaptured.length * 2;
+        undoCaptured = Arrays.copyOf(undoCaptured, size);
+        undoCastling = Arrays.copyOf(undoCastling, size);
+        undoEnPassant = Arrays.copyOf(undoEnPassant, size);
+        undoHalfmove = Arrays.copyOf(undoHalfmove, size);
+        undoKey = Arrays.copyOf(undoKey, size);
+    }
+
+    /**
+     * Codifica la mossa tra due caselle deducendo i flag dalla posizione corrente:
+     * cattura, spinta doppia, en passant e arrocco (re che si sposta di due colonne).
+     * Utile per tradurre le mosse della GUI o quelle ricevute dal server, che contengono solo le caselle.
+     * Non verifica che la mossa sia legale.
+     * @param from      Casella di partenza
+     * @param to        Casella di arrivo
+     * @param promotion Tipo del pezzo promosso (ChessType), ignorato se la mossa non porta un pedone in ultima traversa
+     * @return La mossa codificata
+     */
+    public int moveFromSquares(int from, int to, int promotion) {
+        int type = typeAt(from);
+        int flags = board[to] != ChessType.BLANK ? PackedMove.CAPTURE : 0;
+
+        if (type == ChessType.PAWN) {
+            if (to == enPassantSquare) flags |= PackedMove.CAPTURE | PackedMove.EN_PASSANT;
+            if (Math.abs(to - from) == 16) flags |= PackedMove.DOUBLE_PUSH;
+
+            int rank = Square.rank(to);
+            if (rank == 0 || rank == 7) {
+                if (promotion == ChessType.BLANK) promotion = ChessType.QUEEN;
+                return PackedMove.promotion(from, to, promotion, flags);
+            }
+        }
+
+        if (type == ChessType.KING && Math.abs(Square.file(to) - Square.file(from)) == 2) flags |= PackedMove.CASTLE;
+
+        return PackedMove.of(from, to, flags);
+    }
+
+    /**
+     * Restituisce tutti i pezzi (di entrambi i colori) che attaccano una casella, data un'occupazione.
+     * L'occupazione è un parametro per poter valutare gli attacchi "a raggi X", ad esempio dopo aver tolto il re.
+     * @param square   Casella attaccata
+     * @param occupied Bitboard delle caselle occupate da considerare
+     * @return La bitboard degli attaccanti
+     */
+    public long attackersTo(int square, long occupied) {
+        long rooksQueens = pieces(ChessType.TOWER) | pieces(ChessType.QUEEN);
+        long bishopsQueens = pieces(ChessType.BISHOP) | pieces(ChessType.QUEEN);
+
+        return (Attacks.pawn(ChessColor.BLACK, square) & pieces(ChessColor.WHITE, ChessType.PAWN))
+                | (Attacks.pawn(ChessColor.WHITE, square) & pieces(ChessColor.BLACK, ChessType.PAWN))
+                | (Attacks.knight(square) & pieces(ChessType.KNIGHT))
+                | (Attacks.king(square) & pieces(ChessType.KING))
+                | (Attacks.rook(square, occupied) & rooksQueens)
+                | (Attacks.bishop(square, occupied) & bishopsQueens);
+    }
+
+    /**
+     * Verifica se una casella è attaccata da almeno un pezzo del colore indicato.
+     * @param square Casella da controllare
+     * @param by     Colore degli attaccanti
+     * @return true se la casella è attaccata
+     */
+    public boolean isSquareAttacked(int square, int by) {
+        long occupied = occupied();
+        int enemy = by * 6;
+
+        return (Attacks.pawn(by ^ 1, square) & pieces[enemy + ChessType.PAWN]) != 0
+                || (Attacks.knight(square) & pieces[enemy + ChessType.KNIGHT]) != 0
+                || (Attacks.king(square) & pieces[enemy + ChessType.KING]) != 0
+                || (Attacks.rook(square, occupied) & (pieces[enemy + ChessType.TOWER] | pieces[enemy + ChessType.QUEEN])) != 0
+                || (Attacks.bishop(square, occupied) & (pieces[enemy + ChessType.BISHOP] | pieces[enemy + ChessType.QUEEN])) != 0;
+    }
+
+    /**
+     * Verifica se il re del colore al tratto è sotto scacco.
+     * @return true se il lato al tratto è sotto scacco
+     */
+    public boolean isInCheck() {
+        int king = kingSquare(sideToMove);
+        return king != Square.NONE && isSquareAttacked(king, sideToMove ^ 1);
+    }
+
+    /**
+     * Verifica se la posizione corrente si è già presentata almeno un certo numero di volte.
+     * Le chiavi delle posizioni precedenti sono quelle salvate nella pila di makeMove; si controllano solo
+     * quelle con lo stesso lato al tratto e successive all'ultima mossa irreversibile (cattura o mossa di pedone),
+     * quindi il costo è proporzionale al numero di semimosse dall'ultima cattura.
+     * @param occurrences Numero di occorrenze richiesto, compresa quella corrente
+     * @return true se la posizione si è presentata almeno occurrences volte
+     */
+    public boolean isRepetition(int occurrences) {
+        int count = 1;
+        int oldest = Math.max(0, ply - halfmoveClock);
+        for (int i = ply - 2; i >= oldest; i -= 2) {
+            if (undoKey[i] == key && ++count >= occurrences) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Verifica la patta per triplice ripetizione.
+     * @return true se la posizione corrente si è presentata tre volte
+     */
+    public boolean isThreefoldRepetition() {
+        return isRepetition(3);
+    }
+
+    /**
+     * Verifica la patta per la regola delle 50 mosse: 100 semimosse senza catture né mosse di pedone.
+     * @return true se il contatore delle semimosse ha raggiunto 100
+     */
+    public boolean isFiftyMoveRule() {
+        return halfmoveClock >= 100;
+    }
+
+    /**
+     * Verifica se nessuno dei due giocatori può dare scacco matto con il materiale rimasto:
+     * re contro re, re e un pezzo leggero contro re, oppure solo alfieri tutti su case dello stesso colore.
+     * @return true se il materiale è insufficiente
+     */
+    public boolean isInsufficientMaterial() {
+        if ((pieces(ChessType.PAWN) | pieces(ChessType.TOWER) | pieces(ChessType.QUEEN)) != 0) return false;
+
+        long knights = pieces(ChessType.KNIGHT);
+        long bishops = pieces(ChessType.BISHOP);
+        if (Long.bitCount(knights | bishops) <= 1) return true;
+        if (knights != 0) return false;
+
+        // Solo alfieri: patta se sono tutti su case chiare o tutti su case scure
+        long dark = 0xAA55AA55AA55AA55L;
+        return (bishops & dark) == 0 || (bishops & ~dark) == 0;
+    }
+
+    /**
+     * Verifica se la posizione è patta per una regola che non dipende dalle mosse legali:
+     * triplice ripetizione, regola delle 50 mosse o materiale insufficiente. Lo stallo va verificato a parte.
+     * @return true se la partita è patta
+     */
+    public boolean isDrawByRule() {
+        return isFiftyMoveRule() || isInsufficientMaterial() || isThreefoldRepetition();
+    }
+
+    /**
+     * Restituisce il colore che deve muovere.
+     * @return Il colore al tratto (ChessColor)
+     */
+    public int getSideToMove() {
+        return sideToMove;
+    }
+
+    /**
+     * Imposta il colore che deve muovere.
+     * @param sideToMove Il colore al tratto (ChessColor)
+     */
+    public void setSideToMove(int sideToMove) {
+        if (this.sideToMove != sideToMove) key ^= Zobrist.SIDE;
+        this.sideToMove = sideToMove;
+    }
+
+    /**
+     * Restituisce i diritti di arrocco.
+     * @return Combinazione di costanti ChessCastling
+     */
+    public int getCastlingRights() {
+        return castlingRights;
+    }
+
+    /**
+     * Imposta i diritti di arrocco.
+     * @param castlingRights Combinazione di costanti ChessCastling
+     */
+    public void setCastlingRights(int castlingRights) {
+        key ^= Zobrist.CASTLING[this.castlingRights] ^ Zobrist.CASTLING[castlingRights];
+        this.castlingRights = castlingRights;
+    }
+
+    /**
+     * Restituisce la casella in cui è possibile catturare en passant.
+     * @return La casella, oppure Square.NONE
+     */
+    public int getEnPassantSquare() {
+        return enPassantSquare;
+    }
+
+    /**
+     * Imposta la casella in cui è possibile catturare en passant.
+     * @param enPassantSquare La casella, oppure Square.NONE
+     */
+    public void setEnPassantSquare(int enPassantSquare) {
+        key ^= Zobrist.enPassant(this.enPassantSquare) ^ Zobrist.enPassant(enPassantSquare);
+        this.enPassantSquare = enPassantSquare;
+    }
+
+    /**
+     * Restituisce la chiave di Zobrist della posizione, che identifica pezzi, lato al tratto,
+     * diritti di arrocco e colonna en passant (non i contatori delle mosse).
+     * @return La chiave a 64 bit
+     */
+    public long getKey() {
+        return key;
+    }
+
+    /**
+     * Ricalcola da zero la chiave di Zobrist. Serve a inizializzare la chiave e a verificare
+     * che l'aggiornamento incrementale sia corretto.
+     * @return La chiave a 64 bit
+     */
+    public long computeKey() {
+        long res = 0;
+        for (int square = 0; square < 64; square++) {
+            if (board[square] != ChessType.BLANK) res ^= Zobrist.PIECE_SQUARE[board[square]][square];
+        }
+        res ^= Zobrist.CASTLING[castlingRights];
+        res ^= Zobrist.enPassant(enPassantSquare);
+        if (sideToMove == ChessColor.BLACK) res ^= Zobrist.SIDE;
+        return res;
+    }
+
+    /**
+     * Restituisce il numero di semimosse dall'ultima cattura o mossa di pedone.
+     * @return Il contatore delle semimosse
+     */
+    public int getHalfmoveClock() {
+        return halfmoveClock;
+    }
+
+    /**
+     * Restituisce il numero della mossa completa corrente.
+     * @return Il numero di mossa
+     */
+    public int getFullmoveNumber() {
+        return fullmoveNumber;
+    }
+
+    /**
+     * Costruisce una posizione a partire da una stringa FEN.
+     * Sono accettate anche FEN abbreviate come quelle usate dalla GUI ("... w"): se il campo dell'arrocco manca,
+     * i diritti vengono dedotti dalla presenza del re e delle torri nelle caselle iniziali.
+     * @param fen La stringa FEN
+     * @return La posizione corrispondente
+     * @throws IllegalArgumentException se la FEN non è valida
+     */
+    public static Position fromFen(String fen) {
+        Position position = new Position();
+        String[] fields = fen.trim().split("\\s+");
+        String[] ranks = fields[0].split("/");
+
+        // Se non ci sono 8 traverse la fen é mal formata
+        if (ranks.length != 8) throw new IllegalArgumentException("FEN non valida: " + fen);
+
+        for (int i = 0; i < 8; i++) {
+            int rank = 7 - i;
+            int file = 0;
+
+            for (char c : ranks[i].toCharArray()) {
+                if (Character.isDigit(c)) {
+                    file += c - '0';
+                } else {
+                    int type = typeFromChar(Character.toLowerCase(c));
+                    if (type == ChessType.BLANK || file > 7) throw new IllegalArgumentException("FEN non valida: " + fen);
+                    // Un pedone sulla prima o sull'ultima traversa non può esistere e porterebbe il generatore fuori dalla scacchiera
+                    if (type == ChessType.PAWN && (rank == 0 || rank == 7))
+                        throw new IllegalArgumentException("FEN non valida, pedone sulla prima o ultima traversa: " + fen);
+                    position.putPiece(Character.isUpperCase(c) ? ChessColor.WHITE : ChessColor.BLACK, type, rank * 8 + file);
+                    file++;
+                }
+            }
+
+            // Se la traversa non ha esattamente 8 caselle la fen é mal formata
+            if (file != 8) throw new IllegalArgumentException("FEN non valida: " + fen);
+        }
+
+        // Lato al tratto
+        if (fields.length < 2 || !(fields[1].equals("w") || fields[1].equals("b")))
+            throw new IllegalArgumentException("FEN non valida, turno mancante: " + fen);
+        position.sideToMove = fields[1].equals("w") ? ChessColor.WHITE : ChessColor.BLACK;
+
+        // Diritti di arrocco
+        if (fields.length > 2) {
+            for (char c : fields[2].toCharArray()) {
+                switch (c) {
+                    case 'K' -> position.castlingRights |= ChessCastling.WHITE_SHORT;
+                    case 'Q' -> position.castlingRights |= ChessCastling.WHITE_LONG;
+                    case 'k' -> position.castlingRights |= ChessCastling.BLACK_SHORT;
+                    case 'q' -> position.castlingRights |= ChessCastling.BLACK_LONG;
+                    case '-' -> {}
+                    default -> throw new IllegalArgumentException("FEN non valida, arrocco: " + fen);
+                }
+            }
+        } else {
+            position.castlingRights = position.inferCastlingRights();
+        }
+
+        // Casella en passant e contatori
+        if (fields.length > 3) position.enPassantSquare = Square.parse(fields[3]);
+        if (position.enPassantSquare != Square.NONE) {
+            // Come in makeMove, la casella en passant viene mantenuta solo se la cattura è possibile
+            int us = position.sideToMove;
+            if ((Attacks.pawn(us ^ 1, position.enPassantSquare) & position.pieces(us, ChessType.PAWN)) == 0)
+                position.enPassantSquare = Square.NONE;
+        }
+        if (fields.length > 4) position.halfmoveClock = Integer.parseInt(fields[4]);
+        if (fields.length > 5) position.fullmoveNumber = Integer.parseInt(fields[5]);
+
+        position.key = position.computeKey();
+        return position;
+    }
+
+    /**
+     * Deduce i diritti di arrocco dalla disposizione dei pezzi, come fa la GUI quando crea i pezzi:
+     * l'arrocco è possibile solo se re e torre si trovano ancora nelle caselle iniziali.
+     * @return I diritti di arrocco dedotti
+     */
+    private int inferCastlingRights() {
+        int rights = ChessCastling.NONE;
+        int whiteKing = piece(ChessColor.WHITE, ChessType.KING);
+        int whiteRook = piece(ChessColor.WHITE, ChessType.TOWER);
+        int blackKing = piece(ChessColor.BLACK, ChessType.KING);
+        int blackRook = piece(ChessColor.BLACK, ChessType.TOWER);
+
+        if (board[Square.E1] == whiteKing) {
+            if (board[Square.H1] == whiteRook) rights |= ChessCastling.WHITE_SHORT;
+            if (board[Square.A1] == whiteRook) rights |= ChessCastling.WHITE_LONG;
+        }
+        if (board[Square.E8] == blackKing) {
+            if (board[Square.H8] == blackRook) rights |= ChessCastling.BLACK_SHORT;
+            if (board[Square.A8] == blackRook) rights |= ChessCastling.BLACK_LONG;
+        }
+        return rights;
+    }
+
+    /**
+     * Restituisce la stringa FEN completa della posizione.
+     * @return La notazione FEN
+     */
+    public String toFen() {
+        StringBuilder sb = new StringBuilder();
+
+        for (int rank = 7; rank >= 0; rank--) {
+            int empty = 0;
+            for (int file = 0; file < 8; file++) {
+                int piece = board[rank * 8 + file];
+                if (piece == ChessType.BLANK) {
+                    empty++;
+                    continue;
+                }
+                if (empty > 0) sb.append(empty);
+                empty = 0;
+                sb.append(pieceToChar(piece));
+            }
+            if (empty > 0) sb.append(empty);
+            if (rank > 0) sb.append('/');
+        }
+
+        sb.append(sideToMove == ChessColor.WHITE ? " w " : " b ");
+
+        if (castlingRights == ChessCastling.NONE) sb.append('-');
+        if ((castlingRights & ChessCastling.WHITE_SHORT) != 0) sb.append('K');
+        if ((castlingRights & ChessCastling.WHITE_LONG) != 0) sb.append('Q');
+        if ((castlingRights & ChessCastling.BLACK_SHORT) != 0) sb.append('k');
+        if ((castlingRights & ChessCastling.BLACK_LONG) != 0) sb.append('q');
+
+        sb.append(' ').append(Square.name(enPassantSquare));
+        sb.append(' ').append(halfmoveClock);
+        sb.append(' ').append(fullmoveNumber);
+
+        return sb.toString();
+    }
+
+    /**
+     * Converte un carattere FEN minuscolo nel tipo di pezzo.
+     * @param c Il carattere FEN
+     * @return Il tipo di pezzo, BLANK se il carattere non è valido
+     */
+    private static int typeFromChar(char c) {
+        return switch (c) {
+            case 'r' -> ChessType.TOWER;
+            case 'b' -> ChessType.BISHOP;
+            case 'n' -> ChessType.KNIGHT;
+            case 'q' -> ChessType.QUEEN;
+            case 'k' -> ChessType.KING;
+            case 'p' -> ChessType.PAWN;
+            default -> ChessType.BLANK;
+        };
+    }
+
+    /**
+     * Converte un pezzo codificato nel carattere FEN corrispondente.
+     * @param piece Codice del pezzo
+     * @return Il carattere FEN (maiuscolo per il bianco)
+     */
+    public static char pieceToChar(int piece) {
+        char c = "rbnqkp".charAt(pieceType(piece));
+        return pieceColor(piece) == ChessColor.WHITE ? Character.toUpperCase(c) : c;
+    }
+
+    @Override
+    public String toString() {
+        return toFen();
+    }
+}
@@ -0,0 +1,88 @@
+package board;
+
+/**
+ * Classe di utilità per gli indici delle caselle usati dal modello a bitboard.
+ * Le caselle vanno da 0 (a1) a 63 (h8): l'indice è {@code rank * 8 + file}.
+ *
+ * Attenzione: la GUI usa invece le coordinate della matrice (riga 0 = traversa 8),
+ * per questo sono presenti i metodi di conversione {@link #of(int, int)}, {@link #row(int)} e {@link #col(int)}.
+ */
+public class Square {
+    public static final int NONE = -1; // Nessuna casella (ad esempio, nessun en passant)
+
+    public static final int A1 = 0, B1 = 1, C1 = 2, D1 = 3, E1 = 4, F1 = 5, G1 = 6, H1 = 7;
+    public static final int A8 = 56, B8 = 57, C8 = 58, D8 = 59, E8 = 60, F8 = 61, G8 = 62, H8 = 63;
+
+    /**
+     * Converte le coordinate della matrice della GUI in un indice di casella.
+     * @param row Riga della matrice (0 = traversa 8)
+     * @param col Colonna della matrice (0 = colonna a)
+     * @return L'indice della casella (0-63)
+     */
+    public static int of(int row, int col) {
+        return (7 - row) * 8 + col;
+    }
+
+    /**
+     * Restituisce la riga della matrice della GUI corrispondente alla casella.
+     * @param square Indice della casella
+     * @return Riga della matrice (0 = traversa 8)
+     */
+    public static int row(int square) {
+        return 7 - (square >>> 3);
+    }
+
+    /**
+     * Restituisce la colonna della matrice della GUI corrispondente alla casella.
+     * @param square Indice della casella
+     * @return Colonna della matrice (0 = colonna a)
+     */
+    public static int col(int square) {
+        return square & 7;
+    }
+
+    /**
+     * Restituisce la traversa della casella (0 = traversa 1).
+     * @param square Indice della casella
+     * @return La traversa
+     */
+    public static int rank(int square) {
+        return square >>> 3;
+    }
+
+    /**
+     * Restituisce la colonna della casella (0 = colonna a).
+     * @param square Indice della casella
+     * @return La colonna
+     */
+    public static int file(int square) {
+        return square & 7;
+    }
+
+    /**
+     * Restituisce il nome della casella in notazione algebrica, ad esempio "e4".
+     * @param square Indice della casella
+     * @return Il nome della casella, oppure "-" se la casella è {@link #NONE}
+     */
+    public static String name(int square) {
+        if (square == NONE) return "-";
+        return (char) ('a' + file(square)) + "" + (char) ('1' + rank(square));
+    }
+
+    /**
+     * Converte il nome di una casella in notazione algebrica nel suo indice.
+     * @param name Nome della casella, ad esempio "e4", oppure "-"
+     * @return L'indice della casella, oppure {@link #NONE} per "-"
+     * @throws IllegalArgumentException se il nome non è valido
+     */
+    public static int parse(String name) {
+        if (name.equals("-")) return NONE;
+        if (name.length() != 2) throw new IllegalArgumentException("Casella non valida: " + name);
+
+        int file = name.charAt(0) - 'a';
+        int rank = name.charAt(1) - '1';
+        if (file < 0 || file > 7 || rank < 0 || rank > 7) throw new IllegalArgumentException("Casella non valida: " + name);
+
+        return rank * 8 + file;
+    }
+}
@@ -0,0 +1,60 @@
+package board;
+
+/**
+ * Chiavi casuali per l'hashing di Zobrist delle posizioni.
+ * La chiave di una posizione è lo XOR delle chiavi di ogni pezzo sulla sua casella, dei diritti di arrocco,
+ * della colonna en passant (se presente) e del lato al tratto. Poiché lo XOR è invertibile, la chiave può essere
+ * aggiornata in modo incrementale a ogni mossa toccando solo gli elementi che cambiano.
+ *
+ * Le chiavi sono generate con un seme fisso, quindi sono identiche a ogni esecuzione e tra macchine diverse:
+ * una chiave salvata (ad esempio nell'archivio delle partite) resta confrontabile.
+ */
+public class Zobrist {
+    public static final long[][] PIECE_SQUARE = new long[12][64]; // Pezzo (colore * 6 + tipo) su ogni casella
+    public static final long[] CASTLING = new long[16]; // Ogni combinazione di diritti di arrocco
+    public static final long[] EN_PASSANT_FILE = new long[8]; // Colonna della casella en passant
+    public static final long SIDE; // Presente quando muove il nero
+
+    private static long seed = 0x4A61766143686573L; // Seme fisso del generatore
+
+    static {
+        for (int piece = 0; piece < 12; piece++) {
+            for (int square = 0; square < 64; square++) {
+                PIECE_SQUARE[piece][square] = next();
+            }
+        }
+
+        // Le combinazioni di arrocco sono lo XOR dei singoli diritti, così cambiarne uno costa un solo XOR
+        long[] rights = {next(), next(), next(), next()};
+        for (int mask = 0; mask < 16; mask++) {
+            for (int i = 0; i < 4; i++) {
+                if ((mask & (1 << i)) != 0) CASTLING[mask] ^= rights[i];
+            }
+        }
+
+        for (int file = 0; file < 8; file++) {
+            EN_PASSANT_FILE[file] = next();
+        }
+        SIDE = next();
+    }
+
+    /**
+     * Generatore SplitMix64, usato solo all'inizializzazione delle chiavi.
+     * @return Il prossimo numero pseudo-casuale a 64 bit
+     */
+    private static long next() {
+        long z = (seed += 0x9E3779B97F4A7C15L);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Restituisce la chiave della casella en passant.
+     * @param square Casella en passant, oppure Square.NONE
+     * @return La chiave della colonna, 0 se non c'è en passant
+     */
+    public static long enPassant(int square) {
+        return square == Square.NONE ? 0L : EN_PASSANT_FILE[square & 7];
+    }
+}
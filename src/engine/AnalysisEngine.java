@@ -0,0 +1,279 @@
+package engine;
+
+import board.PackedMove;
+import board.Position;
+
+/**
+ * Analisi di una posizione su più thread in stile Lazy SMP.
+ *
+ * Tutti i thread eseguono la stessa ricerca iterativa sulla stessa posizione e si scambiano informazioni solo
+ * attraverso la {@link TranspositionTable} condivisa, che non usa lock. I thread ausiliari partono da profondità
+ * diverse, così riempiono la tabella con risultati che il thread principale trova già pronti e i thread
+ * si disallineano naturalmente, esplorando parti diverse dell'albero.
+ *
+ * Solo il thread principale riporta i risultati: alla fine di ogni iterazione il listener riceve profondità,
+ * punteggio, variante principale e le statistiche aggregate di tutti i thread (nodi, nodi al secondo,
+ * riempimento e percentuale di successo della tabella).
+ */
+public class AnalysisEngine implements AutoCloseable {
+    public static final int MAX_THREADS = 256; // Numero massimo di thread di ricerca
+
+    private final TranspositionTable table; // Tabella condivisa da tutti i thread
+    private final int threads;
+
+    private Search[] searches = new Search[0]; // Ricerche dell'analisi in corso, una per thread
+    private Thread[] workers = new Thread[0];
+    private long startTime; // Istante di inizio dell'analisi (System.nanoTime)
+
+    /**
+     * Interfaccia per ricevere gli aggiornamenti dell'analisi.
+     * Il metodo viene chiamato dal thread principale di ricerca, non dall'EDT di Swing.
+     */
+    public interface Listener {
+
+        /**
+         * Chiamato alla fine di ogni iterazione del thread principale.
+         * @param info Risultato dell'iterazione e statistiche
+         */
+        void onInfo(Info info);
+    }
+
+    /**
+     * Risultato di un'iterazione dell'analisi.
+     */
+    public static class Info {
+        private final int depth; // Profondità completata
+        private final int score; // Punteggio dal punto di vista del lato al tratto
+        private final int[] line; // Variante principale
+        private final long nodes; // Nodi visitati da tutti i thread
+        private final long nanos; // Tempo trascorso dall'inizio dell'analisi
+        private final int hashfull; // Riempimento della tabella in millesimi
+        private final long probes; // Accessi alla tabella di tutti i thread
+        private final long hits; // Accessi riusciti di tutti i thread
+
+        /**
+         * Costruttore del risultato.
+         * @param depth    Profondità completata
+         * @param score    Punteggio dal punto di vista del lato al tratto
+         * @param line     Variante principale (PackedMove)
+         * @param nodes    Nodi visitati da tutti i thread
+         * @param nanos    Tempo trascorso in nanosecondi
+         * @param hashfull Riempimento della tabella in millesimi
+         * @param probes   Accessi alla tabella
+         * @param hits     Accessi riusciti
+         */
+        public Info(int depth, int score, int[] line, long nodes, long nanos, int hashfull, long probes, long hits) {
+            this.depth = depth;
+            this.score = score;
+            this.line = line;
+            this.nodes = nodes;
+            this.nanos = nanos;
+            this.hashfull = hashfull;
+            this.probes = probes;
+            this.hits = hits;
+        }
+
+        /**
+         * Restituisce la profondità completata.
+         * @return La profondità
+         */
+        public int getDepth() {
+            return depth;
+        }
+
+        /**
+         * Restituisce il punteggio.
+         * @return Il punteggio in centesimi di pedone dal punto di vista del lato al tratto
+         */
+        public int getScore() {
+            return score;
+        }
+
+        /**
+         * Restituisce la variante principale.
+         * @return Le mosse (PackedMove)
+         */
+        public int[] getLine() {
+            return line.clone();
+        }
+
+        /**
+         * Restituisce i nodi visitati da tutti i thread.
+         * @return Il numero di nodi
+         */
+        public long getNodes() {
+            return nodes;
+        }
+
+        /**
+         * Restituisce il riempimento della tabella.
+         * @return Il riempimento in millesimi
+         */
+        public int getHashfull() {
+            return hashfull;
+        }
+
+        /**
+         * Calcola la velocità di ricerca complessiva.
+         * @return I nodi al secondo
+         */
+        public long nodesPerSecond() {
+            return nanos == 0 ? 0 : (long) (nodes / (nanos / 1e9));
+        }
+
+        /**
+         * Calcola la percentuale di accessi alla tabella che hanno trovato la posizione.
+         * @return La percentuale (0-100)
+         */
+        public double hitRate() {
+            return probes == 0 ? 0 : hits * 100.0 / probes;
+        }
+
+        /**
+         * Formatta il punteggio: centesimi di pedone oppure distanza dal matto in mosse.
+         * @return Il punteggio, ad esempio "+0.35" o "#3"
+         */
+        public String scoreToString() {
+            if (Math.abs(score) >= Search.MATE - Search.MAX_PLY) {
+                int plies = Search.MATE - Math.abs(score);
+                int moves = (plies + 1) / 2;
+                return score > 0 ? "#" + moves : "#-" + moves;
+            }
+            return String.format("%+.2f", score / 100.0);
+        }
+
+        /**
+         * Restituisce la variante principale in notazione UCI.
+         * @return Le mosse separate da spazi
+         */
+        public String lineToUci() {
+            StringBuilder sb = new StringBuilder();
+            for (int move : line) {
+                if (!sb.isEmpty()) sb.append(' ');
+                sb.append(PackedMove.toUci(move));
+            }
+            return sb.toString();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("prof %d  %s  %s  (nodi %d, %d nodi/s, hash %.1f%%, hit %.1f%%)",
+                    depth, scoreToString(), lineToUci(), nodes, nodesPerSecond(), hashfull / 10.0, hitRate());
+        }
+    }
+
+    /**
+     * Costruttore del motore di analisi.
+     * @param threads   Numero di thread di ricerca
+     * @param megabytes Dimensione della tabella delle trasposizioni in MB
+     */
+    public AnalysisEngine(int threads, int megabytes) {
+        if (threads < 1 || threads > MAX_THREADS) throw new IllegalArgumentException("Numero di thread non valido: " + threads);
+        this.threads = threads;
+        this.table = new TranspositionTable(megabytes);
+    }
+
+    /**
+     * Avvia l'analisi di una posizione, fermando quella eventualmente in corso.
+     * L'analisi prosegue finché non viene chiamato {@link #stop()} o non viene trovato un matto.
+     * @param position La posizione (viene copiata)
+     * @param listener Notificato alla fine di ogni iterazione del thread principale
+     */
+    public synchronized void start(Position position, Listener listener) {
+        stop();
+        table.newSearch();
+        startTime = System.nanoTime();
+
+        Position start = new Position(position);
+        searches = new Search[threads];
+        workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            searches[i] = new Search(table);
+        }
+        searches[0].setListener((depth, score, line) -> listener.onInfo(collect(depth, score, line)));
+
+        Search[] current = searches;
+        for (int i = 0; i < threads; i++) {
+            Search search = searches[i];
+            // I thread ausiliari dispari partono una profondità più avanti del thread principale
+            int minDepth = 1 + (i & 1);
+            boolean main = i == 0;
+            workers[i] = new Thread(() -> {
+                search.search(start, Search.INFINITE, minDepth, Search.MAX_PLY - 1);
+
+                // Quando il thread principale termina (matto trovato o profondità massima) si fermano anche gli ausiliari
+                if (main) for (Search other : current) other.stop();
+            }, "Analisi-" + i);
+            workers[i].setDaemon(true);
+        }
+        for (Thread worker : workers) worker.start();
+    }
+
+    /**
+     * Ferma l'analisi in corso e attende la fine di tutti i thread.
+     */
+    public synchronized void stop() {
+        for (Search search : searches) search.stop();
+        try {
+            for (Thread worker : workers) worker.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        workers = new Thread[0];
+        searches = new Search[0];
+    }
+
+    /**
+     * Verifica se un'analisi è in corso.
+     * @return true se almeno un thread di ricerca è attivo
+     */
+    public synchronized boolean isRunning() {
+        for (Thread worker : workers) {
+            if (worker.isAlive()) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Raccoglie le statistiche di tutti i thread per un'iterazione del thread principale.
+     * I contatori dei thread ausiliari vengono letti mentre la ricerca prosegue, quindi sono approssimati.
+     * @param depth Profondità completata
+     * @param score Punteggio
+     * @param line  Variante principale
+     * @return Il risultato dell'iterazione
+     */
+    private Info collect(int depth, int score, int[] line) {
+        long nodes = 0, probes = 0, hits = 0;
+        for (Search search : searches) {
+            nodes += search.getNodes();
+            probes += search.getTableProbes();
+            hits += search.getTableHits();
+        }
+        return new Info(depth, score, line, nodes, System.nanoTime() - startTime, table.hashfull(), probes, hits);
+    }
+
+    /**
+     * Restituisce il numero di thread di ricerca.
+     * @return Il numero di thread
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Restituisce la dimensione della tabella delle trasposizioni.
+     * @return La dimensione in MB
+     */
+    public int getMegabytes() {
+        return table.getMegabytes();
+    }
+
+    /**
+     * Ferma l'analisi in corso.
+     */
+    @Override
+    public void close() {
+        stop();
+    }
+}
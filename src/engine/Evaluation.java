@@ -0,0 +1,232 @@
+package engine;
+
+import board.Position;
+import utils.constant.ChessColor;
+import utils.constant.ChessType;
+
+/**
+ * Valutazione statica di una posizione, in centesimi di pedone dal punto di vista del lato al tratto.
+ * Somma il materiale e il valore posizionale di ogni pezzo (piece-square table), con due serie di valori:
+ * una per il mediogioco e una per il finale. Il punteggio finale è la media dei due pesata sulla fase di gioco,
+ * calcolata dai pezzi rimasti (valutazione "tapered"): il re, ad esempio, deve stare al riparo nel mediogioco
+ * e centralizzarsi nel finale, e i pedoni avanzati valgono di più quando i pezzi sono stati cambiati.
+ *
+ * Le tabelle sono scritte dal punto di vista del bianco con la traversa 8 in alto, come si legge una scacchiera;
+ * per il nero la tabella viene specchiata verticalmente. Ogni termine dipende solo da un pezzo e dalla sua casella,
+ * quindi la valutazione può essere aggiornata in modo incrementale (vedi {@link IncrementalEvaluator}).
+ */
+public class Evaluation {
+    public static final int MAX_PHASE = 24; // Fase con tutti i pezzi sulla scacchiera
+
+    /* Valore dei pezzi in centesimi di pedone, indicizzato per ChessType (usato anche per l'ordinamento delle catture) */
+    public static final int[] PIECE_VALUE = {500, 330, 320, 900, 0, 100};
+
+    /* Materiale nel mediogioco e nel finale, indicizzato per ChessType */
+    private static final int[] MG_VALUE = {477, 365, 337, 1025, 0, 82};
+    private static final int[] EG_VALUE = {512, 297, 281, 936, 0, 94};
+
+    /* Contributo di ogni tipo di pezzo alla fase di gioco, indicizzato per ChessType */
+    private static final int[] PHASE_WEIGHT = {2, 1, 1, 4, 0, 0};
+
+    private static final int[] PAWN_TABLE = {
+             0,   0,   0,   0,   0,   0,   0,   0,
+            50,  50,  50,  50,  50,  50,  50,  50,
+            10,  10,  20,  30,  30,  20,  10,  10,
+             5,   5,  10,  25,  25,  10,   5,   5,
+             0,   0,   0,  20,  20,   0,   0,   0,
+             5,  -5, -10,   0,   0, -10,  -5,   5,
+             5,  10,  10, -20, -20,  10,  10,   5,
+             0,   0,   0,   0,   0,   0,   0,   0
+    };
+
+    private static final int[] KNIGHT_TABLE = {
+            -50, -40, -30, -30, -30, -30, -40, -50,
+            -40, -20,   0,   0,   0,   0, -20, -40,
+            -30,   0,  10,  15,  15,  10,   0, -30,
+            -30,   5,  15,  20,  20,  15,   5, -30,
+            -30,   0,  15,  20,  20,  15,   0, -30,
+            -30,   5,  10,  15,  15,  10,   5, -30,
+            -40, -20,   0,   5,   5,   0, -20, -40,
+            -50, -40, -30, -30, -30, -30, -40, -50
+    };
+
+    private static final int[] BISHOP_TABLE = {
+            -20, -10, -10, -10, -10, -10, -10, -20,
+            -10,   0,   0,   0,   0,   0,   0, -10,
+            -10,   0,   5,  10,  10,   5,   0, -10,
+            -10,   5,   5,  10,  10,   5,   5, -10,
+            -10,   0,  10,  10,  10,  10,   0, -10,
+            -10,  10,  10,  10,  10,  10,  10, -10,
+            -10,   5,   0,   0,   0,   0,   5, -10,
+            -20, -10, -10, -10, -10, -10, -10, -20
+    };
+
+    private static final int[] ROOK_TABLE = {
+             0,   0,   0,   0,   0,   0,   0,   0,
+             5,  10,  10,  10,  10,  10,  10,   5,
+            -5,   0,   0,   0,   0,   0,   0,  -5,
+            -5,   0,   0,   0,   0,   0,   0,  -5,
+            -5,   0,   0,   0,   0,   0,   0,  -5,
+            -5,   0,   0,   0,   0,   0,   0,  -5,
+            -5,   0,   0,   0,   0,   0,   0,  -5,
+             0,   0,   0,   5,   5,   0,   0,   0
+    };
+
+    private static final int[] QUEEN_TABLE = {
+            -20, -10, -10,  -5,  -5, -10, -10, -20,
+            -10,   0,   0,   0,   0,   0,   0, -10,
+            -10,   0,   5,   5,   5,   5,   0, -10,
+             -5,   0,   5,   5,   5,   5,   0,  -5,
+              0,   0,   5,   5,   5,   5,   0,  -5,
+            -10,   5,   5,   5,   5,   5,   0, -10,
+            -10,   0,   5,   0,   0,   0,   0, -10,
+            -20, -10, -10,  -5,  -5, -10, -10, -20
+    };
+
+    private static final int[] KING_TABLE = {
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -20, -30, -30, -40, -40, -30, -30, -20,
+            -10, -20, -20, -20, -20, -20, -20, -10,
+             20,  20,   0,   0,   0,   0,  20,  20,
+             20,  30,  10,   0,   0,  10,  30,  20
+    };
+
+    /* Nel finale il re deve avvicinarsi al centro */
+    private static final int[] KING_END_TABLE = {
+            -50, -40, -30, -20, -20, -30, -40, -50,
+            -30, -20, -10,   0,   0, -10, -20, -30,
+            -30, -10,  20,  30,  30,  20, -10, -30,
+            -30, -10,  30,  40,  40,  30, -10, -30,
+            -30, -10,  30,  40,  40,  30, -10, -30,
+            -30, -10,  20,  30,  30,  20, -10, -30,
+            -30, -30,   0,   0,   0,   0, -30, -30,
+            -50, -30, -30, -30, -30, -30, -30, -50
+    };
+
+    /* Nel finale conta soprattutto quanto il pedone è vicino alla promozione */
+    private static final int[] PAWN_END_TABLE = {
+             0,   0,   0,   0,   0,   0,   0,   0,
+            80,  80,  80,  80,  80,  80,  80,  80,
+            50,  50,  50,  50,  50,  50,  50,  50,
+            30,  30,  30,  30,  30,  30,  30,  30,
+            15,  15,  15,  15,  15,  15,  15,  15,
+             5,   5,   5,   5,   5,   5,   5,   5,
+             0,   0,   0,   0,   0,   0,   0,   0,
+             0,   0,   0,   0,   0,   0,   0,   0
+    };
+
+    /* Tabelle indicizzate per ChessType */
+    private static final int[][] MG_TABLES = {ROOK_TABLE, BISHOP_TABLE, KNIGHT_TABLE, QUEEN_TABLE, KING_TABLE, PAWN_TABLE};
+    private static final int[][] EG_TABLES = {ROOK_TABLE, BISHOP_TABLE, KNIGHT_TABLE, QUEEN_TABLE, KING_END_TABLE, PAWN_END_TABLE};
+
+    /* Materiale più tabella per ogni pezzo (colore * 6 + tipo) e casella, con segno: positivo per il bianco */
+    static final int[][] MG = new int[12][64];
+    static final int[][] EG = new int[12][64];
+
+    static {
+        for (int color = ChessColor.WHITE; color <= ChessColor.BLACK; color++) {
+            int sign = color == ChessColor.WHITE ? 1 : -1;
+            for (int type = 0; type < 6; type++) {
+                int piece = Position.piece(color, type);
+                for (int square = 0; square < 64; square++) {
+                    MG[piece][square] = sign * (MG_VALUE[type] + MG_TABLES[type][tableIndex(square, color)]);
+                    EG[piece][square] = sign * (EG_VALUE[type] + EG_TABLES[type][tableIndex(square, color)]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Valuta la posizione.
+     * @param position La posizione
+     * @return Il punteggio in centesimi di pedone, positivo se il lato al tratto è in vantaggio
+     */
+    public static int evaluate(Position position) {
+        int score = evaluateWhite(position);
+        return position.getSideToMove() == ChessColor.WHITE ? score : -score;
+    }
+
+    /**
+     * Valuta la posizione dal punto di vista del bianco, esaminando tutti i pezzi.
+     * @param position La posizione
+     * @return Il punteggio in centesimi di pedone, positivo se il bianco è in vantaggio
+     */
+    public static int evaluateWhite(Position position) {
+        int mg = 0, eg = 0, phase = 0;
+        for (int piece = 0; piece < 12; piece++) {
+            long pieces = position.pieces(Position.pieceColor(piece), Position.pieceType(piece));
+            phase += Long.bitCount(pieces) * phaseWeight(Position.pieceType(piece));
+            while (pieces != 0) {
+                int square = Long.numberOfTrailingZeros(pieces);
+                pieces &= pieces - 1;
+                mg += MG[piece][square];
+                eg += EG[piece][square];
+            }
+        }
+        return taper(mg, eg, phase);
+    }
+
+    /**
+     * Combina i punteggi di mediogioco e finale in base alla fase.
+     * @param mg    Punteggio di mediogioco
+     * @param eg    Punteggio di finale
+     * @param phase Fase di gioco (MAX_PHASE con tutti i pezzi, 0 con soli re e pedoni); oltre MAX_PHASE, ad esempio
+     *              dopo una promozione, vale come MAX_PHASE
+     * @return Il punteggio pesato
+     */
+    static int taper(int mg, int eg, int phase) {
+        int p = Math.min(phase, MAX_PHASE);
+        return (mg * p + eg * (MAX_PHASE - p)) / MAX_PHASE;
+    }
+
+    /**
+     * Restituisce il contributo di un tipo di pezzo alla fase di gioco.
+     * @param type Tipo del pezzo (ChessType)
+     * @return Il peso nella fase
+     */
+    static int phaseWeight(int type) {
+        return PHASE_WEIGHT[type];
+    }
+
+    /**
+     * Converte una casella (a1 = 0) nell'indice della tabella, scritta con la traversa 8 in alto.
+     * @param square La casella
+     * @param color  Colore del pezzo; per il nero la tabella è specchiata
+     * @return L'indice nella tabella
+     */
+    static int tableIndex(int square, int color) {
+        return color == ChessColor.WHITE ? square ^ 56 : square;
+    }
+
+    /**
+     * Restituisce il materiale di mediogioco di un tipo di pezzo.
+     * @param type Tipo del pezzo (ChessType)
+     * @return Il valore in centesimi di pedone
+     */
+    public static int middlegameValue(int type) {
+        return MG_VALUE[type];
+    }
+
+    /**
+     * Restituisce il bonus posizionale di mediogioco di un pezzo su una casella, dal punto di vista del suo colore.
+     * @param type   Tipo del pezzo (ChessType)
+     * @param color  Colore del pezzo (ChessColor)
+     * @param square La casella
+     * @return Il bonus in centesimi di pedone
+     */
+    public static int middlegameTable(int type, int color, int square) {
+        return MG_TABLES[type][tableIndex(square, color)];
+    }
+
+    /**
+     * Restituisce il valore di un pezzo, usato anche per l'ordinamento delle catture.
+     * @param type Tipo del pezzo (ChessType)
+     * @return Il valore in centesimi di pedone, 0 per BLANK
+     */
+    public static int pieceValue(int type) {
+        return type == ChessType.BLANK ? 0 : PIECE_VALUE[type];
+    }
+}
@@ -0,0 +1,150 @@
+package engine;
+
+import board.GameArchive;
+import board.Position;
+import utils.constant.ChessColor;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Valutazione tapered mantenuta in modo incrementale lungo una partita.
+ *
+ * I termini di mediogioco, di finale e la fase sono somme di contributi che dipendono solo da un pezzo e dalla sua casella.
+ * Per passare da una posizione alla successiva basta quindi confrontare le bitboard dei 12 pezzi con quelle della posizione
+ * precedente: solo le caselle cambiate (di solito due, quattro per l'arrocco) vengono tolte o aggiunte alle somme,
+ * invece di riesaminare tutta la scacchiera. Il confronto funziona per qualsiasi coppia di posizioni, anche senza conoscere
+ * la mossa giocata, per cui si usa allo stesso modo per la barra di valutazione della GUI e per le partite salvate.
+ */
+public final class IncrementalEvaluator {
+    private final long[] pieces = new long[12]; // Bitboard dei pezzi dell'ultima posizione valutata
+    private int mg; // Somma dei termini di mediogioco (dal punto di vista del bianco)
+    private int eg; // Somma dei termini di finale (dal punto di vista del bianco)
+    private int phase; // Fase di gioco
+
+    /**
+     * Costruttore a partire da una posizione, valutata per intero.
+     * @param position La posizione iniziale
+     */
+    public IncrementalEvaluator(Position position) {
+        reset(position);
+    }
+
+    /**
+     * Ricalcola tutti i termini a partire da una posizione.
+     * @param position La posizione
+     */
+    public void reset(Position position) {
+        mg = 0;
+        eg = 0;
+        phase = 0;
+        for (int piece = 0; piece < 12; piece++) {
+            pieces[piece] = 0;
+        }
+        update(position);
+    }
+
+    /**
+     * Aggiorna i termini passando a una nuova posizione, toccando solo le caselle cambiate.
+     * @param position La nuova posizione
+     * @return Il punteggio dal punto di vista del bianco
+     */
+    public int update(Position position) {
+        for (int piece = 0; piece < 12; piece++) {
+            long current = position.pieces(Position.pieceColor(piece), Position.pieceType(piece));
+            long removed = pieces[piece] & ~current;
+            long added = current & ~pieces[piece];
+            if ((removed | added) == 0) continue;
+
+            int weight = Evaluation.phaseWeight(Position.pieceType(piece));
+            while (removed != 0) {
+                int square = Long.numberOfTrailingZeros(removed);
+                removed &= removed - 1;
+                mg -= Evaluation.MG[piece][square];
+                eg -= Evaluation.EG[piece][square];
+                phase -= weight;
+            }
+            while (added != 0) {
+                int square = Long.numberOfTrailingZeros(added);
+                added &= added - 1;
+                mg += Evaluation.MG[piece][square];
+                eg += Evaluation.EG[piece][square];
+                phase += weight;
+            }
+            pieces[piece] = current;
+        }
+        return getScore();
+    }
+
+    /**
+     * Restituisce il punteggio dell'ultima posizione valutata.
+     * @return Il punteggio in centesimi di pedone dal punto di vista del bianco
+     */
+    public int getScore() {
+        return Evaluation.taper(mg, eg, phase);
+    }
+
+    /**
+     * Restituisce la fase di gioco dell'ultima posizione valutata.
+     * @return La fase, da 0 (soli re e pedoni) a Evaluation.MAX_PHASE
+     */
+    public int getPhase() {
+        return Math.min(phase, Evaluation.MAX_PHASE);
+    }
+
+    /**
+     * Valuta tutte le posizioni di una partita, aggiornando la valutazione da una posizione alla successiva.
+     * @param game Le posizioni della partita
+     * @return Il punteggio di ogni posizione dal punto di vista del bianco
+     */
+    public static int[] evaluateGame(List<Position> game) {
+        int[] scores = new int[game.size()];
+        if (game.isEmpty()) return scores;
+
+        IncrementalEvaluator evaluator = new IncrementalEvaluator(game.get(0));
+        scores[0] = evaluator.getScore();
+        for (int i = 1; i < game.size(); i++) {
+            scores[i] = evaluator.update(game.get(i));
+        }
+        return scores;
+    }
+
+    /**
+     * Punto di ingresso per la valutazione in blocco delle partite salvate.
+     * Uso: {@code IncrementalEvaluator [--print] <file o cartella>...}; stampa per ogni partita la valutazione finale
+     * (con --print quella di ogni posizione) e il costo medio per posizione.
+     * @param args Opzioni, file delle partite o cartelle che le contengono
+     * @throws IOException Se un file non può essere letto
+     */
+    public static void main(String[] args) throws IOException {
+        boolean print = args.length > 0 && args[0].equals("--print");
+        int first = print ? 1 : 0;
+        if (args.length == first) {
+            System.out.println("Uso: IncrementalEvaluator [--print] <file o cartella>...");
+            System.exit(1);
+        }
+
+        long positions = 0;
+        long nanos = 0;
+        for (int i = first; i < args.length; i++) {
+            for (Path file : GameArchive.files(Path.of(args[i]))) {
+                List<Position> game = GameArchive.read(file);
+                long start = System.nanoTime();
+                int[] scores = evaluateGame(game);
+                nanos += System.nanoTime() - start;
+                positions += scores.length;
+
+                if (print) {
+                    for (int j = 0; j < scores.length; j++) {
+                        String side = game.get(j).getSideToMove() == ChessColor.WHITE ? "w" : "b";
+                        System.out.printf("%s %d %s %+.2f%n", file, j, side, scores[j] / 100.0);
+                    }
+                } else if (scores.length > 0) {
+                    System.out.printf("%s: %d posizioni, valutazione finale %+.2f%n", file, scores.length, scores[scores.length - 1] / 100.0);
+                }
+            }
+        }
+        System.out.printf("Posizioni: %d, tempo medio: %.1f ns%n", positions, positions == 0 ? 0.0 : (double) nanos / positions);
+    }
+}
@@ -0,0 +1,440 @@
+package engine;
+
+import board.MoveGenerator;
+import board.MoveList;
+import board.PackedMove;
+import board.Position;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Risolutore di problemi "matto in N" basato su depth-first proof-number search (df-pn).
+ *
+ * L'albero è un albero AND/OR: nei nodi OR muove l'attaccante, a cui basta una mossa che porti al matto;
+ * nei nodi AND muove il difensore, e il matto deve seguire a ogni sua risposta. Ogni nodo ha un proof number
+ * (quanti nodi foglia bisogna ancora dimostrare per provare il matto) e un disproof number (quanti per confutarlo);
+ * df-pn espande sempre il nodo più promettente in profondità, tornando indietro solo quando le soglie
+ * del nodo vengono superate.
+ *
+ * I proof/disproof number sono salvati in una tabella di dimensione fissa (memoria limitata),
+ * con bucket da due elementi e sostituzione dell'elemento che ha richiesto meno lavoro.
+ * La profondità rimanente fa parte della chiave, così una stessa posizione con meno semimosse a disposizione
+ * viene valutata separatamente. Per lo stesso motivo la tabella resta valida tra un problema e l'altro
+ * e non viene svuotata, cosa utile quando si verificano molte posizioni in sequenza.
+ */
+public class MateSolver {
+    public static final int INFINITY = 1_000_000_000; // Valore "infinito" per proof e disproof number
+
+    /* Esiti della ricerca */
+    public static final int MATE = 0; // Matto forzato dimostrato
+    public static final int NO_MATE = 1; // Nessun matto entro N mosse
+    public static final int UNKNOWN = 2; // Limite di nodi raggiunto prima di una risposta
+
+    public static final int MAX_MATE = 32; // Massimo N supportato
+    private static final int MAX_PLIES = 2 * MAX_MATE + 1;
+    private static final int ENTRY_BYTES = 20; // chiave + proof + disproof + lavoro
+
+    /* Tabella dei proof/disproof number, bucket da due elementi */
+    private final long[] keys;
+    private final int[] proof;
+    private final int[] disproof;
+    private final int[] work;
+    private final int bucketMask;
+
+    /* Proof e disproof number per ogni figlio, un buffer per livello */
+    private final int[][] childProof = new int[MAX_PLIES][MoveList.MAX_MOVES];
+    private final int[][] childDisproof = new int[MAX_PLIES][MoveList.MAX_MOVES];
+    private final MoveList[] lists = MoveList.forPlies(MAX_PLIES);
+
+    private Position position; // Posizione di lavoro
+    private long nodes; // Nodi espansi nella ricerca corrente
+    private long maxNodes; // Limite di nodi della ricerca corrente
+
+    /* Risultato dell'ultimo nodo espanso da mid */
+    private int lastProof;
+    private int lastDisproof;
+
+    /**
+     * Risultato di una ricerca di matto.
+     */
+    public static class Result {
+        public final int status; // MATE, NO_MATE o UNKNOWN
+        public final int mateIn; // Numero di mosse del matto, 0 se non trovato
+        public final int[] line; // Sequenza di mosse che porta al matto (PackedMove), vuota se non trovato
+        public final long nodes; // Nodi espansi
+        public final long nanos; // Tempo impiegato in nanosecondi
+
+        /**
+         * Costruttore del risultato.
+         * @param status Esito della ricerca
+         * @param mateIn Numero di mosse del matto
+         * @param line   Sequenza di mosse del matto
+         * @param nodes  Nodi espansi
+         * @param nanos  Tempo impiegato in nanosecondi
+         */
+        public Result(int status, int mateIn, int[] line, long nodes, long nanos) {
+            this.status = status;
+            this.mateIn = mateIn;
+            this.line = line;
+            this.nodes = nodes;
+            this.nanos = nanos;
+        }
+
+        /**
+         * Restituisce i nodi espansi al secondo.
+         * @return I nodi al secondo
+         */
+        public long nodesPerSecond() {
+            return nanos == 0 ? 0 : (long) (nodes / (nanos / 1e9));
+        }
+
+        /**
+         * Restituisce la linea di matto in notazione UCI, separata da spazi.
+         * @return La linea, stringa vuota se non c'è matto
+         */
+        public String lineToUci() {
+            StringBuilder sb = new StringBuilder();
+            for (int move : line) {
+                if (!sb.isEmpty()) sb.append(' ');
+                sb.append(PackedMove.toUci(move));
+            }
+            return sb.toString();
+        }
+
+        @Override
+        public String toString() {
+            String res = switch (status) {
+                case MATE -> "Matto in " + mateIn + ": " + lineToUci();
+                case NO_MATE -> "Nessun matto";
+                default -> "Sconosciuto (limite di nodi raggiunto)";
+            };
+            return res + " [" + nodes + " nodi, " + nodesPerSecond() + " nodi/s]";
+        }
+    }
+
+    /**
+     * Costruttore del risolutore.
+     * @param tableMb Dimensione massima della tabella in megabyte
+     */
+    public MateSolver(int tableMb) {
+        if (tableMb < 1) throw new IllegalArgumentException("Dimensione della tabella non valida: " + tableMb);
+
+        // Numero di bucket arrotondato alla potenza di due inferiore
+        long buckets = Long.highestOneBit(tableMb * 1024L * 1024L / (2L * ENTRY_BYTES));
+        int size = (int) Math.min(buckets * 2, 1 << 30);
+
+        this.keys = new long[size];
+        this.proof = new int[size];
+        this.disproof = new int[size];
+        this.work = new int[size];
+        this.bucketMask = size / 2 - 1;
+    }
+
+    /**
+     * Cerca il matto più corto entro N mosse dell'attaccante, cioè il lato al tratto.
+     * Le profondità vengono provate da 1 a N, così la linea restituita è quella di lunghezza minima.
+     * @param start    La posizione (non viene modificata)
+     * @param n        Numero massimo di mosse dell'attaccante
+     * @param maxNodes Limite di nodi espansi, oltre il quale l'esito è UNKNOWN
+     * @return Il risultato della ricerca
+     */
+    public Result solve(Position start, int n, long maxNodes) {
+        if (n < 1 || n > MAX_MATE) throw new IllegalArgumentException("Numero di mosse non valido: " + n);
+
+        long begin = System.nanoTime();
+        this.position = new Position(start);
+        this.nodes = 0;
+        this.maxNodes = maxNodes;
+
+        for (int k = 1; k <= n; k++) {
+            int remaining = 2 * k - 1;
+            mid(remaining, INFINITY, INFINITY, 0);
+
+            if (lastProof == 0) {
+                int[] line = extractLine(remaining);
+                return new Result(MATE, k, line, nodes, System.nanoTime() - begin);
+            }
+            if (nodes >= maxNodes) break;
+        }
+
+        int status = nodes >= maxNodes ? UNKNOWN : NO_MATE;
+        return new Result(status, 0, new int[0], nodes, System.nanoTime() - begin);
+    }
+
+    /**
+     * Svuota la tabella.
+     */
+    public void clear() {
+        Arrays.fill(keys, 0L);
+        Arrays.fill(work, 0);
+    }
+
+    /**
+     * Espansione di un nodo secondo df-pn (multiple iterative deepening).
+     * Il nodo viene espanso finché i suoi proof/disproof number restano sotto le soglie;
+     * al termine i valori vengono salvati nella tabella e in lastProof/lastDisproof.
+     * @param remaining   Semimosse rimanenti; dispari nei nodi OR (attaccante), pari nei nodi AND (difensore)
+     * @param proofTh     Soglia del proof number
+     * @param disproofTh  Soglia del disproof number
+     * @param ply         Livello corrente
+     */
+    private void mid(int remaining, int proofTh, int disproofTh, int ply) {
+        nodes++;
+        long startNodes = nodes;
+        long key = key(remaining);
+        boolean or = (remaining & 1) == 1;
+
+        MoveList moves = lists[ply];
+        MoveGenerator.generateLegalMoves(position, moves);
+
+        // Nodo terminale: il difensore senza mosse e sotto scacco ha subito matto, ogni altro caso è una confutazione
+        if (moves.isEmpty() || remaining == 0) {
+            boolean mated = !or && moves.isEmpty() && position.isInCheck();
+            setResult(key, mated ? 0 : INFINITY, mated ? INFINITY : 0, 1);
+            return;
+        }
+
+        int[] cp = childProof[ply];
+        int[] cd = childDisproof[ply];
+
+        while (true) {
+            // Raccoglie i valori dei figli dalla tabella, 1/1 per quelli mai visti
+            for (int i = 0; i < moves.size(); i++) {
+                position.makeMove(moves.get(i));
+                int index = lookup(key(remaining - 1));
+                position.unmakeMove(moves.get(i));
+
+                cp[i] = index < 0 ? 1 : proof[index];
+                cd[i] = index < 0 ? 1 : disproof[index];
+            }
+
+            int pn, dn, best = 0, second = INFINITY;
+            if (or) {
+                // Nodo OR: basta un figlio dimostrato
+                pn = INFINITY;
+                dn = 0;
+                for (int i = 0; i < moves.size(); i++) {
+                    dn = add(dn, cd[i]);
+                    if (cp[i] < pn) {
+                        second = pn;
+                        pn = cp[i];
+                        best = i;
+                    } else if (cp[i] < second) {
+                        second = cp[i];
+                    }
+                }
+            } else {
+                // Nodo AND: servono tutti i figli dimostrati
+                pn = 0;
+                dn = INFINITY;
+                for (int i = 0; i < moves.size(); i++) {
+                    pn = add(pn, cp[i]);
+                    if (cd[i] < dn) {
+                        second = dn;
+                        dn = cd[i];
+                        best = i;
+                    } else if (cd[i] < second) {
+                        second = cd[i];
+                    }
+                }
+            }
+
+            if (pn >= proofTh || dn >= disproofTh || nodes >= maxNodes) {
+                setResult(key, pn, dn, nodes - startNodes + 1);
+                return;
+            }
+
+            // Soglie del figlio più promettente
+            int childProofTh, childDisproofTh;
+            if (or) {
+                childProofTh = Math.min(proofTh, add(second, 1));
+                childDisproofTh = disproofTh - dn + cd[best];
+            } else {
+                childProofTh = proofTh - pn + cp[best];
+                childDisproofTh = Math.min(disproofTh, add(second, 1));
+            }
+
+            int move = moves.get(best);
+            position.makeMove(move);
+            mid(remaining - 1, childProofTh, childDisproofTh, ply + 1);
+            position.unmakeMove(move);
+        }
+    }
+
+    /**
+     * Ricostruisce la linea di matto dalla tabella dopo una dimostrazione.
+     * Nei nodi dell'attaccante si sceglie un figlio dimostrato, in quelli del difensore la risposta
+     * che ha richiesto più lavoro (la difesa più tenace). Se un valore è stato sostituito nella tabella
+     * il nodo viene dimostrato di nuovo.
+     * @param remaining Semimosse rimanenti alla radice
+     * @return La sequenza di mosse fino al matto
+     */
+    private int[] extractLine(int remaining) {
+        int[] line = new int[remaining];
+        int length = 0;
+
+        while (true) {
+            MoveList moves = MoveGenerator.generateLegalMoves(position);
+            if (moves.isEmpty() || remaining == 0) break;
+
+            int chosen = chooseChild(moves, remaining);
+            if (chosen == PackedMove.NONE) {
+                // Valori sostituiti nella tabella: si dimostra di nuovo il nodo corrente
+                mid(remaining, INFINITY, INFINITY, 0);
+                chosen = chooseChild(moves, remaining);
+                if (chosen == PackedMove.NONE) break;
+            }
+
+            position.makeMove(chosen);
+            line[length++] = chosen;
+            remaining--;
+        }
+
+        // Riporta la posizione di lavoro alla radice
+        for (int i = length - 1; i >= 0; i--) {
+            position.unmakeMove(line[i]);
+        }
+        return Arrays.copyOf(line, length);
+    }
+
+    /**
+     * Sceglie il figlio da seguire nella linea di matto.
+     * @param moves     Le mosse legali del nodo
+     * @param remaining Semimosse rimanenti nel nodo
+     * @return La mossa scelta, NONE se la tabella non contiene un figlio dimostrato
+     */
+    private int chooseChild(MoveList moves, int remaining) {
+        boolean or = (remaining & 1) == 1;
+        int chosen = PackedMove.NONE;
+        int bestWork = -1;
+
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            position.makeMove(move);
+            int index = lookup(key(remaining - 1));
+            position.unmakeMove(move);
+
+            if (index < 0 || proof[index] != 0) {
+                // Un figlio del difensore non dimostrato invalida la scelta
+                if (!or) return PackedMove.NONE;
+                continue;
+            }
+            if (or) return move;
+            if (work[index] > bestWork) {
+                bestWork = work[index];
+                chosen = move;
+            }
+        }
+        return chosen;
+    }
+
+    /**
+     * Salva i valori di un nodo nella tabella e li rende disponibili al chiamante.
+     * @param key       Chiave del nodo
+     * @param pn        Proof number
+     * @param dn        Disproof number
+     * @param nodesUsed Nodi spesi sul nodo, usati come priorità di sostituzione
+     */
+    private void setResult(long key, int pn, int dn, long nodesUsed) {
+        lastProof = pn;
+        lastDisproof = dn;
+        store(key, pn, dn, (int) Math.min(nodesUsed, Integer.MAX_VALUE));
+    }
+
+    /**
+     * Cerca una chiave nel suo bucket.
+     * @param key La chiave
+     * @return L'indice dell'elemento, -1 se assente
+     */
+    private int lookup(long key) {
+        int index = (int) (key & bucketMask) * 2;
+        if (keys[index] == key && work[index] != 0) return index;
+        if (keys[index + 1] == key && work[index + 1] != 0) return index + 1;
+        return -1;
+    }
+
+    /**
+     * Salva un nodo nel suo bucket: aggiorna l'elemento con la stessa chiave,
+     * altrimenti sostituisce quello che ha richiesto meno lavoro.
+     * @param key  La chiave
+     * @param pn   Proof number
+     * @param dn   Disproof number
+     * @param used Lavoro speso sul nodo
+     */
+    private void store(long key, int pn, int dn, int used) {
+        int index = (int) (key & bucketMask) * 2;
+        int slot;
+        if (keys[index] == key) slot = index;
+        else if (keys[index + 1] == key) slot = index + 1;
+        else slot = work[index] <= work[index + 1] ? index : index + 1;
+
+        keys[slot] = key;
+        proof[slot] = pn;
+        disproof[slot] = dn;
+        work[slot] = Math.max(used, 1);
+    }
+
+    /**
+     * Chiave del nodo corrente: chiave di Zobrist della posizione combinata con le semimosse rimanenti.
+     * @param remaining Semimosse rimanenti
+     * @return La chiave a 64 bit
+     */
+    private long key(int remaining) {
+        return position.getKey() ^ (remaining * 0x9E3779B97F4A7C15L);
+    }
+
+    /**
+     * Somma con saturazione a {@link #INFINITY}.
+     * @param a Primo addendo
+     * @param b Secondo addendo
+     * @return La somma, al massimo INFINITY
+     */
+    private static int add(int a, int b) {
+        return (int) Math.min((long) a + b, INFINITY);
+    }
+
+    /**
+     * Punto di ingresso da riga di comando.
+     * Utilizzo: {@code MateSolver <N> <fen>} oppure {@code MateSolver <N> --file <percorso>},
+     * con una FEN per riga nel file (le righe vuote e quelle che iniziano con # vengono ignorate).
+     * @param args Argomenti della riga di comando
+     * @throws IOException Se il file delle posizioni non può essere letto
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2 || (args[1].equals("--file") && args.length < 3)) {
+            System.out.println("Utilizzo: MateSolver <N> <fen> | MateSolver <N> --file <percorso>");
+            return;
+        }
+
+        int n = Integer.parseInt(args[0]);
+        List<String> fens = args[1].equals("--file")
+                ? Files.readAllLines(Path.of(args[2]))
+                : List.of(String.join(" ", Arrays.copyOfRange(args, 1, args.length)));
+
+        MateSolver solver = new MateSolver(64);
+        int solved = 0, total = 0;
+        long totalNodes = 0, totalNanos = 0;
+
+        for (String fen : fens) {
+            fen = fen.strip();
+            if (fen.isEmpty() || fen.startsWith("#")) continue;
+
+            Result result = solver.solve(Position.fromFen(fen), n, 10_000_000L);
+            System.out.println(fen + " -> " + result);
+
+            total++;
+            if (result.status == MATE) solved++;
+            totalNodes += result.nodes;
+            totalNanos += result.nanos;
+        }
+
+        if (total > 1) {
+            long nps = totalNanos == 0 ? 0 : (long) (totalNodes / (totalNanos / 1e9));
+            System.out.println("Matti trovati: " + solved + "/" + total + ", " + totalNodes + " nodi, " + nps + " nodi/s");
+        }
+    }
+}
@@ -0,0 +1,446 @@
+package engine;
+
+import board.MoveGenerator;
+import board.MoveList;
+import board.PackedMove;
+import board.Position;
+import utils.constant.ChessType;
+
+import java.util.Arrays;
+
+/**
+ * Ricerca della mossa migliore con iterative deepening e negamax alpha-beta.
+ *
+ * A ogni iterazione la profondità aumenta di uno e la mossa migliore dell'iterazione precedente viene provata per prima,
+ * così le iterazioni successive tagliano molto di più. Alle foglie una ricerca di quiescenza sulle sole catture e promozioni
+ * evita di valutare posizioni nel mezzo di uno scambio.
+ *
+ * La ricerca si ferma quando scade il tempo assegnato: il controllo viene fatto ogni {@link #CHECK_INTERVAL} nodi
+ * e l'ultima iterazione interrotta viene scartata, restituendo la mossa dell'ultima iterazione completa.
+ * Un oggetto Search non è thread-safe: ogni thread deve usare la propria istanza. Più istanze possono però
+ * condividere la stessa {@link TranspositionTable}, come fa {@link AnalysisEngine}.
+ */
+public class Search {
+    public static final int INFINITY = 32000; // Limite dei punteggi
+    public static final int MATE = 31000; // Punteggio del matto alla radice, diminuito di uno per ogni semimossa
+    public static final int MAX_PLY = 128; // Profondità massima, quiescenza compresa
+    public static final long INFINITE = Long.MAX_VALUE; // Tempo di ricerca illimitato, finché non viene chiamato stop()
+
+    private static final int CHECK_INTERVAL = 2048; // Nodi tra un controllo del tempo e il successivo
+
+    /* Punteggi per l'ordinamento delle mosse */
+    private static final int SCORE_BEST = 1_000_000; // Mossa migliore dell'iterazione precedente
+    private static final int SCORE_CAPTURE = 100_000; // Catture, ordinate per MVV-LVA
+    private static final int SCORE_KILLER = 90_000; // Mosse tranquille che hanno causato un taglio allo stesso livello
+
+    private final MoveList[] lists = MoveList.forPlies(MAX_PLY + 1);
+    private final int[][] killers = new int[MAX_PLY + 1][2];
+    private final int[][] pv = new int[MAX_PLY + 1][MAX_PLY + 1]; // Variante principale di ogni livello (tabella triangolare)
+    private final int[] pvLength = new int[MAX_PLY + 1];
+    private final TranspositionTable table; // Tabella delle trasposizioni, null se non usata
+    private Listener listener; // Notificato alla fine di ogni iterazione
+
+    private Position position; // Posizione di lavoro
+    private long deadline; // Istante (System.nanoTime) in cui la ricerca deve fermarsi
+    private boolean stopped; // true quando il tempo è scaduto o la ricerca è stata interrotta
+    private volatile boolean aborted; // Impostato da stop(), anche da un altro thread
+    private long nodes; // Nodi visitati
+    private long tableProbes; // Accessi alla tabella delle trasposizioni
+    private long tableHits; // Accessi che hanno trovato la posizione
+
+    /* Risultato dell'ultima iterazione completata */
+    private int bestMove;
+    private int bestScore;
+    private int completedDepth;
+    private int[] bestLine = new int[0];
+
+    /**
+     * Interfaccia per ricevere i risultati delle iterazioni durante la ricerca.
+     * Il metodo viene chiamato dal thread che esegue la ricerca.
+     */
+    public interface Listener {
+
+        /**
+         * Chiamato alla fine di ogni iterazione completa.
+         * @param depth Profondità dell'iterazione
+         * @param score Punteggio dal punto di vista del lato al tratto alla radice
+         * @param line  Variante principale (PackedMove)
+         */
+        void onIteration(int depth, int score, int[] line);
+    }
+
+    /**
+     * Costruttore di una ricerca senza tabella delle trasposizioni.
+     */
+    public Search() {
+        this(null);
+    }
+
+    /**
+     * Costruttore di una ricerca che usa una tabella delle trasposizioni, eventualmente condivisa con altri thread.
+     * @param table La tabella, null per non usarla
+     */
+    public Search(TranspositionTable table) {
+        this.table = table;
+    }
+
+    /**
+     * Calcola la durata della ricerca per una mossa a partire dal tempo rimasto sull'orologio,
+     * ad esempio una delle costanti di ChessTime all'inizio della partita.
+     * Si ipotizza che manchino ancora circa 30 mosse, senza mai usare più di un quinto del tempo rimasto.
+     * @param remainingMillis Tempo rimasto in millisecondi
+     * @return Il tempo da dedicare alla mossa in millisecondi
+     */
+    public static long timeForMove(long remainingMillis) {
+        long slice = remainingMillis / 30;
+        return Math.max(10, Math.min(slice, remainingMillis / 5));
+    }
+
+    /**
+     * Cerca la mossa migliore entro il tempo indicato.
+     * @param start      La posizione (non viene modificata)
+     * @param timeMillis Tempo massimo di ricerca in millisecondi, oppure INFINITE
+     * @param maxDepth   Profondità massima dell'iterative deepening
+     * @return La mossa migliore (PackedMove), NONE se la posizione non ha mosse legali
+     */
+    public int search(Position start, long timeMillis, int maxDepth) {
+        return search(start, timeMillis, 1, maxDepth);
+    }
+
+    /**
+     * Cerca la mossa migliore entro il tempo indicato, iniziando l'iterative deepening da una profondità data.
+     * I thread ausiliari dell'analisi partono da profondità diverse per non ripetere lo stesso lavoro del thread principale.
+     * @param start      La posizione (non viene modificata)
+     * @param timeMillis Tempo massimo di ricerca in millisecondi, oppure INFINITE
+     * @param minDepth   Profondità della prima iterazione
+     * @param maxDepth   Profondità massima dell'iterative deepening
+     * @return La mossa migliore (PackedMove), NONE se la posizione non ha mosse legali
+     */
+    public int search(Position start, long timeMillis, int minDepth, int maxDepth) {
+        this.position = new Position(start);
+        this.deadline = timeMillis == INFINITE ? Long.MAX_VALUE : System.nanoTime() + timeMillis * 1_000_000L;
+        this.stopped = aborted;
+        this.nodes = 0;
+        this.tableProbes = 0;
+        this.tableHits = 0;
+        this.bestMove = PackedMove.NONE;
+        this.bestScore = 0;
+        this.completedDepth = 0;
+        this.bestLine = new int[0];
+        for (int[] killer : killers) {
+            killer[0] = PackedMove.NONE;
+            killer[1] = PackedMove.NONE;
+        }
+
+        // Senza mosse legali non c'è nulla da cercare; con una sola mossa la si gioca subito
+        MoveList rootMoves = MoveGenerator.generateLegalMoves(position);
+        if (rootMoves.isEmpty()) return PackedMove.NONE;
+        bestMove = rootMoves.get(0);
+        if (rootMoves.size() == 1 && listener == null) return bestMove;
+
+        long begin = System.nanoTime();
+        for (int depth = Math.max(1, minDepth); depth <= Math.min(maxDepth, MAX_PLY - 1); depth++) {
+            int[] result = searchRoot(depth);
+            if (stopped) break;
+
+            bestMove = result[0];
+            bestScore = result[1];
+            completedDepth = depth;
+            bestLine = Arrays.copyOf(pv[0], pvLength[0]);
+            if (listener != null) listener.onIteration(depth, bestScore, bestLine);
+
+            // Un matto trovato non può migliorare con più profondità
+            if (Math.abs(bestScore) >= MATE - MAX_PLY) break;
+
+            // Se è già passata metà del tempo, l'iterazione successiva quasi certamente non terminerebbe
+            if (System.nanoTime() - begin > (deadline - begin) / 2) break;
+        }
+        return bestMove;
+    }
+
+    /**
+     * Interrompe la ricerca in corso, che restituirà la mossa dell'ultima iterazione completa.
+     * Può essere chiamato da un altro thread, anche prima che la ricerca inizi; l'interruzione è definitiva
+     * e le ricerche successive della stessa istanza terminano subito.
+     */
+    public void stop() {
+        aborted = true;
+    }
+
+    /**
+     * Ricerca alla radice di una singola iterazione.
+     * @param depth Profondità dell'iterazione
+     * @return La mossa migliore e il suo punteggio
+     */
+    private int[] searchRoot(int depth) {
+        pvLength[0] = 0;
+        MoveList moves = lists[0];
+        MoveGenerator.generateLegalMoves(position, moves);
+        scoreMoves(moves, bestMove, 0);
+
+        int alpha = -INFINITY;
+        int best = moves.get(0);
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.pickBest(i);
+            position.makeMove(move);
+            int score = -negamax(depth - 1, -INFINITY, -alpha, 1);
+            position.unmakeMove(move);
+
+            if (stopped) break;
+            if (score > alpha) {
+                alpha = score;
+                best = move;
+                updatePv(0, move);
+            }
+        }
+
+        if (table != null && !stopped) table.store(position.getKey(), best, alpha, depth, TranspositionTable.EXACT);
+        return new int[]{best, alpha};
+    }
+
+    /**
+     * Negamax con potatura alpha-beta.
+     * @param depth Profondità rimanente
+     * @param alpha Limite inferiore
+     * @param beta  Limite superiore
+     * @param ply   Distanza dalla radice
+     * @return Il punteggio della posizione dal punto di vista del lato al tratto
+     */
+    private int negamax(int depth, int alpha, int beta, int ply) {
+        pvLength[ply] = 0;
+        if (ply > 0 && isDraw()) return 0;
+
+        boolean inCheck = position.isInCheck();
+        if (inCheck) depth++; // Estensione dello scacco: non si valuta una posizione sotto scacco
+
+        if (depth <= 0 || ply >= MAX_PLY - 1) return quiescence(alpha, beta, ply);
+
+        if (++nodes % CHECK_INTERVAL == 0 && (aborted || System.nanoTime() > deadline)) stopped = true;
+        if (stopped) return 0;
+
+        // Una voce abbastanza profonda può chiudere il nodo; altrimenti la sua mossa viene provata per prima
+        int tableMove = PackedMove.NONE;
+        if (table != null) {
+            tableProbes++;
+            long entry = table.probe(position.getKey());
+            if (entry != 0) {
+                tableHits++;
+                tableMove = TranspositionTable.move(entry);
+                if (TranspositionTable.depth(entry) >= depth) {
+                    int score = scoreFromTable(TranspositionTable.score(entry), ply);
+                    int bound = TranspositionTable.bound(entry);
+                    if (bound == TranspositionTable.EXACT
+                            || (bound == TranspositionTable.LOWER && score >= beta)
+                            || (bound == TranspositionTable.UPPER && score <= alpha)) return score;
+                }
+            }
+        }
+
+        MoveList moves = lists[ply];
+        MoveGenerator.generateLegalMoves(position, moves);
+        if (moves.isEmpty()) return inCheck ? -MATE + ply : 0;
+
+        int originalAlpha = alpha;
+        int best = PackedMove.NONE;
+        scoreMoves(moves, tableMove, ply);
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.pickBest(i);
+            position.makeMove(move);
+            int score = -negamax(depth - 1, -beta, -alpha, ply + 1);
+            position.unmakeMove(move);
+
+            if (stopped) return 0;
+            if (score >= beta) {
+                // Le mosse tranquille che causano un taglio vengono ricordate per lo stesso livello
+                if (!PackedMove.isCapture(move) && killers[ply][0] != move) {
+                    killers[ply][1] = killers[ply][0];
+                    killers[ply][0] = move;
+                }
+                if (table != null) table.store(position.getKey(), move, scoreToTable(beta, ply), depth, TranspositionTable.LOWER);
+                return beta;
+            }
+            if (score > alpha) {
+                alpha = score;
+                best = move;
+                updatePv(ply, move);
+            }
+        }
+
+        if (table != null) {
+            int bound = alpha > originalAlpha ? TranspositionTable.EXACT : TranspositionTable.UPPER;
+            table.store(position.getKey(), best, scoreToTable(alpha, ply), depth, bound);
+        }
+        return alpha;
+    }
+
+    /**
+     * Ricerca di quiescenza: solo catture e promozioni, finché la posizione non è tranquilla.
+     * Il lato al tratto può sempre scegliere di non catturare (stand pat), salvo quando è sotto scacco:
+     * in quel caso si provano tutte le mosse legali.
+     * @param alpha Limite inferiore
+     * @param beta  Limite superiore
+     * @param ply   Distanza dalla radice
+     * @return Il punteggio della posizione dal punto di vista del lato al tratto
+     */
+    private int quiescence(int alpha, int beta, int ply) {
+        pvLength[ply] = 0;
+        if (++nodes % CHECK_INTERVAL == 0 && (aborted || System.nanoTime() > deadline)) stopped = true;
+        if (stopped) return 0;
+
+        boolean inCheck = position.isInCheck();
+        if (!inCheck) {
+            int standPat = Evaluation.evaluate(position);
+            if (standPat >= beta || ply >= MAX_PLY - 1) return standPat;
+            if (standPat > alpha) alpha = standPat;
+        }
+
+        MoveList moves = lists[ply];
+        MoveGenerator.generateLegalMoves(position, moves);
+        if (moves.isEmpty()) return inCheck ? -MATE + ply : alpha;
+
+        scoreMoves(moves, PackedMove.NONE, ply);
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.pickBest(i);
+            if (!inCheck && !PackedMove.isCapture(move) && !PackedMove.isPromotion(move)) continue;
+
+            position.makeMove(move);
+            int score = -quiescence(-beta, -alpha, ply + 1);
+            position.unmakeMove(move);
+
+            if (stopped) return 0;
+            if (score >= beta) return beta;
+            if (score > alpha) alpha = score;
+        }
+        return alpha;
+    }
+
+    /**
+     * Assegna a ogni mossa un punteggio di ordinamento: prima la mossa migliore nota,
+     * poi le catture (vittima più preziosa, attaccante meno prezioso), le promozioni e le mosse killer.
+     * @param moves La lista delle mosse
+     * @param best  Mossa da provare per prima, NONE se non nota
+     * @param ply   Livello corrente, per le mosse killer
+     */
+    private void scoreMoves(MoveList moves, int best, int ply) {
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            int score = 0;
+
+            if (move == best) {
+                score = SCORE_BEST;
+            } else if (PackedMove.isCapture(move)) {
+                int victim = PackedMove.isEnPassant(move) ? Evaluation.PIECE_VALUE[ChessType.PAWN] : Evaluation.pieceValue(position.typeAt(PackedMove.to(move)));
+                int attacker = Evaluation.pieceValue(position.typeAt(PackedMove.from(move)));
+                score = SCORE_CAPTURE + victim * 10 - attacker / 10;
+            } else if (move == killers[ply][0]) {
+                score = SCORE_KILLER;
+            } else if (move == killers[ply][1]) {
+                score = SCORE_KILLER - 1;
+            }
+
+            if (PackedMove.isPromotion(move)) score += Evaluation.pieceValue(PackedMove.promotion(move));
+            moves.setScore(i, score);
+        }
+    }
+
+    /**
+     * Aggiorna la variante principale di un livello: la mossa seguita dalla variante del livello successivo.
+     * @param ply  Livello
+     * @param move Mossa che ha migliorato alpha
+     */
+    private void updatePv(int ply, int move) {
+        pv[ply][0] = move;
+        System.arraycopy(pv[ply + 1], 0, pv[ply], 1, pvLength[ply + 1]);
+        pvLength[ply] = pvLength[ply + 1] + 1;
+    }
+
+    /**
+     * Converte un punteggio di matto in distanza dal nodo corrente, indipendente dalla radice, prima di salvarlo nella tabella.
+     * @param score Punteggio relativo alla radice
+     * @param ply   Livello del nodo
+     * @return Il punteggio da memorizzare
+     */
+    private static int scoreToTable(int score, int ply) {
+        if (score >= MATE - MAX_PLY) return score + ply;
+        if (score <= -MATE + MAX_PLY) return score - ply;
+        return score;
+    }
+
+    /**
+     * Converte un punteggio letto dalla tabella in punteggio relativo alla radice.
+     * @param score Punteggio memorizzato
+     * @param ply   Livello del nodo
+     * @return Il punteggio relativo alla radice
+     */
+    private static int scoreFromTable(int score, int ply) {
+        if (score >= MATE - MAX_PLY) return score - ply;
+        if (score <= -MATE + MAX_PLY) return score + ply;
+        return score;
+    }
+
+    /**
+     * Verifica le patte all'interno della ricerca. Basta una sola ripetizione precedente:
+     * se la posizione si ripete, il lato che la ripete può ripeterla ancora.
+     * @return true se la posizione è patta
+     */
+    private boolean isDraw() {
+        return position.isFiftyMoveRule() || position.isInsufficientMaterial() || position.isRepetition(2);
+    }
+
+    /**
+     * Imposta l'oggetto da notificare alla fine di ogni iterazione.
+     * @param listener Il listener, null per nessuno
+     */
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Restituisce la variante principale dell'ultima iterazione completa.
+     * Può essere più corta della profondità quando la ricerca è stata chiusa da una voce della tabella.
+     * @return Le mosse (PackedMove) della variante
+     */
+    public int[] getPrincipalVariation() {
+        return bestLine.clone();
+    }
+
+    /**
+     * Restituisce il punteggio dell'ultima iterazione completa.
+     * @return Il punteggio in centesimi di pedone dal punto di vista del lato al tratto
+     */
+    public int getBestScore() {
+        return bestScore;
+    }
+
+    /**
+     * Restituisce la profondità dell'ultima iterazione completa.
+     * @return La profondità
+     */
+    public int getCompletedDepth() {
+        return completedDepth;
+    }
+
+    /**
+     * Restituisce i nodi visitati dall'ultima ricerca.
+     * @return Il numero di nodi
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Restituisce gli accessi alla tabella delle trasposizioni dell'ultima ricerca.
+     * @return Il numero di accessi
+     */
+    public long getTableProbes() {
+        return tableProbes;
+    }
+
+    /**
+     * Restituisce gli accessi alla tabella delle trasposizioni che hanno trovato la posizione.
+     * @return Il numero di accessi riusciti
+     */
+    public long getTableHits() {
+        return tableHits;
+    }
+}
@@ -0,0 +1,183 @@
+package engine;
+
+import board.PackedMove;
+
+import java.util.Arrays;
+
+/**
+ * Tabella delle trasposizioni a dimensione fissa, condivisa senza lock tra più thread di ricerca.
+ *
+ * Ogni voce occupa due long consecutivi di un unico array: il secondo contiene i dati impacchettati
+ * (mossa, punteggio, profondità, tipo di limite e generazione), il primo la chiave di Zobrist in XOR con i dati.
+ * Un thread che legge una voce scritta a metà da un altro thread ottiene una coppia incoerente,
+ * che non supera il controllo {@code (chiave ^ dati) == key} e viene trattata come un'assenza:
+ * in questo modo non servono né lock né operazioni atomiche.
+ *
+ * Layout dei dati (bit):
+ * 0-18  mossa (PackedMove)
+ * 19-34 punteggio (16 bit con segno)
+ * 35-42 profondità
+ * 43-44 tipo di limite (EXACT, LOWER, UPPER; 0 = voce vuota)
+ * 45-52 generazione
+ */
+public class TranspositionTable {
+    public static final int MAX_MB = 8192; // Dimensione massima della tabella: 2^29 voci, 2^30 long, entro il limite degli array e degli indici int
+
+    /* Tipo di limite del punteggio memorizzato */
+    public static final int EXACT = 1; // Punteggio esatto
+    public static final int LOWER = 2; // Il punteggio è almeno quello memorizzato (taglio beta)
+    public static final int UPPER = 3; // Il punteggio è al massimo quello memorizzato (nessuna mossa ha superato alpha)
+
+    private static final int SCORE_SHIFT = 19;
+    private static final int DEPTH_SHIFT = 35;
+    private static final int BOUND_SHIFT = 43;
+    private static final int GENERATION_SHIFT = 45;
+    private static final int HASHFULL_SAMPLE = 1000; // Voci esaminate per stimare il riempimento
+
+    private final long[] table; // Coppie (chiave ^ dati, dati)
+    private final long mask; // Numero di voci - 1, le voci sono una potenza di due
+    private final int megabytes;
+    private int generation; // Generazione corrente, incrementata a ogni nuova ricerca
+
+    /**
+     * Costruttore della tabella.
+     * @param megabytes Dimensione in MB, arrotondata per difetto alla potenza di due di voci più vicina
+     */
+    public TranspositionTable(int megabytes) {
+        if (megabytes < 1 || megabytes > MAX_MB) throw new IllegalArgumentException("Dimensione della tabella non valida: " + megabytes + " MB");
+        long entries = Long.highestOneBit((long) megabytes * 1024 * 1024 / 16);
+        this.table = new long[(int) (entries * 2)];
+        this.mask = entries - 1;
+        this.megabytes = megabytes;
+    }
+
+    /**
+     * Cerca la voce di una posizione.
+     * @param key Chiave di Zobrist della posizione
+     * @return I dati impacchettati, 0 se la posizione non è presente
+     */
+    public long probe(long key) {
+        int index = (int) (key & mask) << 1;
+        long data = table[index + 1];
+        return (table[index] ^ data) == key && bound(data) != 0 ? data : 0;
+    }
+
+    /**
+     * Memorizza il risultato della ricerca di una posizione.
+     * Una voce della generazione corrente viene sostituita solo da una ricerca di profondità simile o maggiore,
+     * o da una ricerca della stessa posizione.
+     * @param key   Chiave di Zobrist della posizione
+     * @param move  Mossa migliore trovata, NONE se non nota
+     * @param score Punteggio (già corretto per i matti rispetto alla radice)
+     * @param depth Profondità della ricerca
+     * @param bound Tipo di limite (EXACT, LOWER o UPPER)
+     */
+    public void store(long key, int move, int score, int depth, int bound) {
+        int index = (int) (key & mask) << 1;
+        long old = table[index + 1];
+        boolean sameKey = (table[index] ^ old) == key;
+        if (bound(old) != 0 && !sameKey && generation(old) == generation && depth + 2 < depth(old)) return;
+
+        // Se la nuova ricerca non ha trovato una mossa, si conserva quella già nota per la stessa posizione
+        if (move == PackedMove.NONE && sameKey) move = move(old);
+
+        long data = (move & 0x7FFFFL)
+                | (long) (score & 0xFFFF) << SCORE_SHIFT
+                | (long) (Math.min(depth, 255)) << DEPTH_SHIFT
+                | (long) bound << BOUND_SHIFT
+                | (long) generation << GENERATION_SHIFT;
+        table[index] = key ^ data;
+        table[index + 1] = data;
+    }
+
+    /**
+     * Inizia una nuova ricerca: le voci delle ricerche precedenti diventano sostituibili.
+     * Va chiamato prima di avviare i thread di ricerca.
+     */
+    public void newSearch() {
+        generation = (generation + 1) & 0xFF;
+    }
+
+    /**
+     * Svuota la tabella.
+     */
+    public void clear() {
+        Arrays.fill(table, 0L);
+        generation = 0;
+    }
+
+    /**
+     * Stima il riempimento della tabella contando le voci della generazione corrente in un campione iniziale.
+     * @return Il riempimento in millesimi (0-1000)
+     */
+    public int hashfull() {
+        int sample = (int) Math.min(HASHFULL_SAMPLE, mask + 1);
+        int used = 0;
+        for (int i = 0; i < sample; i++) {
+            long data = table[(i << 1) + 1];
+            if (bound(data) != 0 && generation(data) == generation) used++;
+        }
+        return used * 1000 / sample;
+    }
+
+    /**
+     * Restituisce la dimensione della tabella.
+     * @return La dimensione in MB richiesta alla creazione
+     */
+    public int getMegabytes() {
+        return megabytes;
+    }
+
+    /**
+     * Restituisce il numero di voci della tabella.
+     * @return Il numero di voci
+     */
+    public long getEntries() {
+        return mask + 1;
+    }
+
+    /**
+     * Estrae la mossa da una voce.
+     * @param data Dati impacchettati
+     * @return La mossa (PackedMove), NONE se non nota
+     */
+    public static int move(long data) {
+        return (int) (data & 0x7FFFF);
+    }
+
+    /**
+     * Estrae il punteggio da una voce.
+     * @param data Dati impacchettati
+     * @return Il punteggio
+     */
+    public static int score(long data) {
+        return (short) (data >>> SCORE_SHIFT);
+    }
+
+    /**
+     * Estrae la profondità da una voce.
+     * @param data Dati impacchettati
+     * @return La profondità
+     */
+    public static int depth(long data) {
+        return (int) (data >>> DEPTH_SHIFT) & 0xFF;
+    }
+
+    /**
+     * Estrae il tipo di limite da una voce.
+     * @param data Dati impacchettati
+     * @return EXACT, LOWER, UPPER oppure 0 se la voce è vuota
+     */
+    public static int bound(long data) {
+        return (int) (data >>> BOUND_SHIFT) & 0x3;
+    }
+
+    /**
+     * Estrae la generazione da una voce.
+     * @param data Dati impacchettati
+     * @return La generazione
+     */
+    private static int generation(long data) {
+        return (int) (data >>> GENERATION_SHIFT) & 0xFF;
+    }
+}
@@ -0,0 +1,96 @@
+package engine.nn;
+
+import board.Position;
+import utils.constant.ChessColor;
+
+/**
+ * Accumulatore dello strato nascosto per le due prospettive (bianco e nero).
+ *
+ * Il valore di ogni neurone prima dell'attivazione è il bias più la somma delle colonne dei pesi degli ingressi attivi.
+ * Come per {@link engine.IncrementalEvaluator}, il passaggio a una nuova posizione confronta le bitboard dei 12 pezzi
+ * con quelle precedenti e somma o sottrae solo le colonne delle caselle cambiate: lungo una partita ogni mossa
+ * costa due o tre colonne per prospettiva invece delle 32 di un ricalcolo completo.
+ */
+class Accumulator {
+    private final Network network;
+    private final Kernel kernel;
+    private final int[][] values; // [prospettiva][neurone]
+    private final long[] pieces = new long[12]; // Bitboard dei pezzi della posizione accumulata
+
+    /**
+     * Costruttore di un accumulatore vuoto (solo bias).
+     * @param network La rete
+     * @param kernel  Le operazioni vettoriali da usare
+     */
+    Accumulator(Network network, Kernel kernel) {
+        this.network = network;
+        this.kernel = kernel;
+        this.values = new int[2][network.getHidden()];
+        clear();
+    }
+
+    /**
+     * Riporta l'accumulatore alla posizione vuota, con i soli bias.
+     */
+    void clear() {
+        for (int[] perspective : values) {
+            System.arraycopy(network.featureBias, 0, perspective, 0, perspective.length);
+        }
+        for (int piece = 0; piece < 12; piece++) {
+            pieces[piece] = 0;
+        }
+    }
+
+    /**
+     * Ricalcola l'accumulatore da zero per una posizione.
+     * @param position La posizione
+     */
+    void refresh(Position position) {
+        clear();
+        update(position);
+    }
+
+    /**
+     * Porta l'accumulatore su una nuova posizione aggiornando solo le caselle cambiate.
+     * @param position La nuova posizione
+     */
+    void update(Position position) {
+        int hidden = network.getHidden();
+        for (int piece = 0; piece < 12; piece++) {
+            int color = Position.pieceColor(piece);
+            int type = Position.pieceType(piece);
+            long current = position.pieces(color, type);
+            long removed = pieces[piece] & ~current;
+            long added = current & ~pieces[piece];
+
+            while (removed != 0) {
+                int square = Long.numberOfTrailingZeros(removed);
+                removed &= removed - 1;
+                for (int perspective = ChessColor.WHITE; perspective <= ChessColor.BLACK; perspective++) {
+                    kernel.sub(values[perspective], network.featureWeights, Network.featureIndex(perspective, color, type, square) * hidden, hidden);
+                }
+            }
+            while (added != 0) {
+                int square = Long.numberOfTrailingZeros(added);
+                added &= added - 1;
+                for (int perspective = ChessColor.WHITE; perspective <= ChessColor.BLACK; perspective++) {
+                    kernel.add(values[perspective], network.featureWeights, Network.featureIndex(perspective, color, type, square) * hidden, hidden);
+                }
+            }
+            pieces[piece] = current;
+        }
+    }
+
+    /**
+     * Calcola l'uscita della rete per la posizione accumulata.
+     * @param sideToMove Il lato al tratto (ChessColor)
+     * @return Il punteggio in centesimi di pedone dal punto di vista del lato al tratto
+     */
+    int evaluate(int sideToMove) {
+        int hidden = network.getHidden();
+        long sum = kernel.clippedDot(values[sideToMove], network.outputWeights, 0, hidden, Network.QA)
+                + kernel.clippedDot(values[sideToMove ^ 1], network.outputWeights, hidden, hidden, Network.QA)
+                + network.outputBias;
+        return (int) (sum * Network.SCALE / ((long) Network.QA * Network.QB));
+    }
+}
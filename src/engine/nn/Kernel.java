@@ -0,0 +1,43 @@
+package engine.nn;
+
+/**
+ * Operazioni vettoriali usate dalla rete, con un'implementazione scalare e una basata sulla Vector API.
+ * Tutti gli array hanno una lunghezza pari al numero di neuroni nascosti (o ne contengono una colonna a un offset).
+ */
+interface Kernel {
+
+    /**
+     * Somma una colonna di pesi all'accumulatore.
+     * @param accumulator L'accumulatore
+     * @param weights     I pesi
+     * @param offset      Inizio della colonna nei pesi
+     * @param length      Numero di neuroni
+     */
+    void add(int[] accumulator, int[] weights, int offset, int length);
+
+    /**
+     * Sottrae una colonna di pesi dall'accumulatore.
+     * @param accumulator L'accumulatore
+     * @param weights     I pesi
+     * @param offset      Inizio della colonna nei pesi
+     * @param length      Numero di neuroni
+     */
+    void sub(int[] accumulator, int[] weights, int offset, int length);
+
+    /**
+     * Prodotto scalare tra l'accumulatore limitato a [0, max] e una riga di pesi di uscita.
+     * @param accumulator L'accumulatore
+     * @param weights     I pesi di uscita
+     * @param offset      Inizio della riga nei pesi
+     * @param length      Numero di neuroni
+     * @param max         Limite superiore dell'attivazione
+     * @return La somma dei prodotti
+     */
+    long clippedDot(int[] accumulator, int[] weights, int offset, int length, int max);
+
+    /**
+     * Restituisce il nome dell'implementazione, per i benchmark.
+     * @return Il nome
+     */
+    String name();
+}
@@ -0,0 +1,50 @@
+package engine.nn;
+
+/**
+ * Scelta dell'implementazione delle operazioni della rete.
+ * La versione SIMD viene caricata per riflessione, così il resto del codice compila ed esegue anche senza
+ * il modulo {@code jdk.incubator.vector}; se il modulo manca si usa la versione scalare.
+ */
+class Kernels {
+    private static final Kernel SCALAR = new ScalarKernel();
+    private static final Kernel SIMD = loadSimd();
+
+    /**
+     * Restituisce l'implementazione migliore disponibile.
+     * @return Il kernel SIMD se disponibile, altrimenti quello scalare
+     */
+    static Kernel best() {
+        return SIMD != null ? SIMD : SCALAR;
+    }
+
+    /**
+     * Restituisce l'implementazione scalare.
+     * @return Il kernel scalare
+     */
+    static Kernel scalar() {
+        return SCALAR;
+    }
+
+    /**
+     * Restituisce l'implementazione SIMD.
+     * @return Il kernel SIMD, null se la Vector API non è disponibile
+     */
+    static Kernel simd() {
+        return SIMD;
+    }
+
+    /**
+     * Prova a caricare il kernel SIMD.
+     * @return Il kernel, null se la classe o il modulo jdk.incubator.vector non sono disponibili
+     */
+    private static Kernel loadSimd() {
+        try {
+            Kernel kernel = (Kernel) Class.forName("engine.nn.SimdKernel").getDeclaredConstructor().newInstance();
+            // Una prima chiamata verifica che il modulo sia davvero risolto a runtime
+            kernel.add(new int[1], new int[1], 0, 1);
+            return kernel;
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+}
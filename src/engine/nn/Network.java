@@ -0,0 +1,210 @@
+package engine.nn;
+
+import engine.Evaluation;
+import utils.constant.ChessColor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Pesi di una rete neurale quantizzata a 768 ingressi (12 pezzi x 64 caselle), con uno strato nascosto
+ * valutato da due prospettive (quella del lato al tratto e quella dell'avversario) e un'uscita lineare.
+ *
+ * Formato del file (little-endian):
+ * <pre>
+ * "JCNN"                          magia
+ * int32  versione (1)
+ * int32  ingressi (768)
+ * int32  neuroni nascosti H
+ * int16  pesi degli ingressi      [768 * H], per ingresso
+ * int16  bias dello strato nascosto [H]
+ * int16  pesi di uscita           [2 * H], prima la prospettiva del lato al tratto
+ * int32  bias di uscita
+ * </pre>
+ * I valori dello strato nascosto sono in scala QA (1.0 = 255) e vengono limitati a [0, QA] (ReLU con saturazione);
+ * i pesi di uscita sono in scala QB (1.0 = 64). Il punteggio in centesimi di pedone è {@code somma * SCALE / (QA * QB)}.
+ * I pesi vengono letti in int16 e allargati a int al caricamento, così i kernel lavorano su un solo tipo di corsia.
+ */
+public class Network {
+    public static final int INPUTS = 768; // 12 pezzi x 64 caselle
+    public static final int QA = 255; // Scala dello strato nascosto
+    public static final int QB = 64; // Scala dei pesi di uscita
+    public static final int SCALE = 400; // Conversione dell'uscita in centesimi di pedone
+
+    private static final int MAGIC = 0x4E4E434A; // "JCNN" letto in little-endian
+    private static final int VERSION = 1;
+
+    private final int hidden; // Neuroni nascosti
+    final int[] featureWeights; // [INPUTS * hidden], la colonna di un ingresso è contigua
+    final int[] featureBias; // [hidden]
+    final int[] outputWeights; // [2 * hidden]
+    final int outputBias;
+
+    /**
+     * Costruttore a partire dai pesi quantizzati.
+     * @param hidden         Neuroni nascosti
+     * @param featureWeights Pesi degli ingressi [INPUTS * hidden]
+     * @param featureBias    Bias dello strato nascosto [hidden]
+     * @param outputWeights  Pesi di uscita [2 * hidden]
+     * @param outputBias     Bias di uscita
+     */
+    public Network(int hidden, int[] featureWeights, int[] featureBias, int[] outputWeights, int outputBias) {
+        if (hidden < 1 || featureWeights.length != INPUTS * hidden || featureBias.length != hidden || outputWeights.length != 2 * hidden)
+            throw new IllegalArgumentException("Dimensioni della rete non valide");
+        this.hidden = hidden;
+        this.featureWeights = featureWeights;
+        this.featureBias = featureBias;
+        this.outputWeights = outputWeights;
+        this.outputBias = outputBias;
+    }
+
+    /**
+     * Restituisce l'indice di un ingresso visto da una prospettiva: i pezzi della prospettiva occupano i primi
+     * 6 * 64 ingressi e, per il nero, la scacchiera viene specchiata, così la rete vede sempre "i propri pezzi dal basso".
+     * @param perspective Colore della prospettiva (ChessColor)
+     * @param color       Colore del pezzo
+     * @param type        Tipo del pezzo (ChessType)
+     * @param square      Casella del pezzo (a1 = 0)
+     * @return L'indice dell'ingresso (0-767)
+     */
+    public static int featureIndex(int perspective, int color, int type, int square) {
+        int relative = color == perspective ? type : 6 + type;
+        return relative * 64 + (perspective == ChessColor.WHITE ? square : square ^ 56);
+    }
+
+    /**
+     * Carica una rete da file.
+     * @param path Il file della rete
+     * @return La rete
+     * @throws IOException Se il file non può essere letto o non è nel formato atteso
+     */
+    public static Network load(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // Legge finché il buffer non è pieno
+            }
+            buffer.flip();
+
+            if (buffer.remaining() < 16 || buffer.getInt() != MAGIC) throw new IOException("File di rete non valido: " + path);
+            int version = buffer.getInt();
+            int inputs = buffer.getInt();
+            int hidden = buffer.getInt();
+            if (version != VERSION || inputs != INPUTS || hidden < 1) throw new IOException("Versione o dimensioni della rete non supportate: " + path);
+
+            long expected = (long) (INPUTS * hidden + hidden + 2 * hidden) * 2 + 4;
+            if (buffer.remaining() != expected) throw new IOException("Dimensione del file di rete non valida: " + path);
+
+            int[] featureWeights = readShorts(buffer, INPUTS * hidden);
+            int[] featureBias = readShorts(buffer, hidden);
+            int[] outputWeights = readShorts(buffer, 2 * hidden);
+            int outputBias = buffer.getInt();
+            return new Network(hidden, featureWeights, featureBias, outputWeights, outputBias);
+        }
+    }
+
+    /**
+     * Salva la rete su file, nel formato letto da {@link #load(Path)}.
+     * @param path Il file di destinazione
+     * @throws IOException Se il file non può essere scritto
+     */
+    public void save(Path path) throws IOException {
+        int size = 16 + (INPUTS * hidden + hidden + 2 * hidden) * 2 + 4;
+        ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(INPUTS).putInt(hidden);
+        writeShorts(buffer, featureWeights);
+        writeShorts(buffer, featureBias);
+        writeShorts(buffer, outputWeights);
+        buffer.putInt(outputBias);
+        buffer.flip();
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) channel.write(buffer);
+        }
+    }
+
+    /**
+     * Costruisce una rete che approssima il materiale e le tabelle posizionali di mediogioco di {@link Evaluation}.
+     * Usa quattro neuroni per prospettiva (materiale e posizione, propri e avversari) e lascia a zero gli altri:
+     * serve come rete di riferimento per verificare il caricamento e misurare le prestazioni finché non è disponibile
+     * una rete addestrata nello stesso formato. Il materiale satura oltre i valori della posizione iniziale
+     * (ad esempio dopo una promozione).
+     * @param hidden Neuroni nascosti (almeno 4)
+     * @return La rete
+     */
+    public static Network fromEvaluation(int hidden) {
+        if (hidden < 4) throw new IllegalArgumentException("Servono almeno 4 neuroni nascosti: " + hidden);
+        final int materialUnit = 16; // Centesimi di pedone per unità del neurone del materiale
+        final int tableUnit = 4; // Centesimi di pedone per unità del neurone posizionale
+        final int tableBias = QA / 2; // I bonus posizionali possono essere negativi: si parte da metà scala
+
+        int[] featureWeights = new int[INPUTS * hidden];
+        for (int perspective = ChessColor.WHITE; perspective <= ChessColor.BLACK; perspective++) {
+            for (int color = ChessColor.WHITE; color <= ChessColor.BLACK; color++) {
+                // Neuroni 0-1 per i pezzi propri, 2-3 per quelli avversari
+                int neuron = color == perspective ? 0 : 2;
+                for (int type = 0; type < 6; type++) {
+                    for (int square = 0; square < 64; square++) {
+                        int offset = featureIndex(perspective, color, type, square) * hidden;
+                        featureWeights[offset + neuron] = Math.round(Evaluation.middlegameValue(type) / (float) materialUnit);
+                        featureWeights[offset + neuron + 1] = Math.round(Evaluation.middlegameTable(type, color, square) / (float) tableUnit);
+                    }
+                }
+            }
+        }
+
+        int[] featureBias = new int[hidden];
+        featureBias[1] = tableBias;
+        featureBias[3] = tableBias;
+
+        // Uscita: propri meno avversari, riportati in centesimi di pedone. Le due prospettive contano lo stesso
+        // materiale con segni opposti, quindi ognuna pesa la metà
+        int[] outputWeights = new int[2 * hidden];
+        int material = Math.round(materialUnit * QA * QB / (2f * SCALE));
+        int table = Math.round(tableUnit * QA * QB / (2f * SCALE));
+        for (int side = 0; side < 2; side++) {
+            int sign = side == 0 ? 1 : -1; // Prospettiva del lato al tratto, poi dell'avversario
+            outputWeights[side * hidden] = sign * material;
+            outputWeights[side * hidden + 1] = sign * table;
+            outputWeights[side * hidden + 2] = -sign * material;
+            outputWeights[side * hidden + 3] = -sign * table;
+        }
+        return new Network(hidden, featureWeights, featureBias, outputWeights, 0);
+    }
+
+    /**
+     * Legge una sequenza di int16 allargandoli a int.
+     * @param buffer Il buffer di lettura
+     * @param count  Numero di valori
+     * @return I valori letti
+     */
+    private static int[] readShorts(ByteBuffer buffer, int count) {
+        int[] values = new int[count];
+        for (int i = 0; i < count; i++) values[i] = buffer.getShort();
+        return values;
+    }
+
+    /**
+     * Scrive una sequenza di valori come int16.
+     * @param buffer Il buffer di scrittura
+     * @param values I valori, che devono stare in 16 bit
+     */
+    private static void writeShorts(ByteBuffer buffer, int[] values) {
+        for (int value : values) {
+            if (value < Short.MIN_VALUE || value > Short.MAX_VALUE) throw new IllegalArgumentException("Peso fuori dall'intervallo int16: " + value);
+            buffer.putShort((short) value);
+        }
+    }
+
+    /**
+     * Restituisce il numero di neuroni nascosti.
+     * @return I neuroni nascosti
+     */
+    public int getHidden() {
+        return hidden;
+    }
+}
@@ -0,0 +1,229 @@
+package engine.nn;
+
+import board.GameArchive;
+import board.MoveGenerator;
+import board.MoveList;
+import board.Position;
+import utils.constant.ChessColor;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Valutazione headless di posizioni con una rete neurale quantizzata ({@link Network}).
+ *
+ * Le posizioni vengono valutate in blocco riusando un solo accumulatore: lungo una partita salvata
+ * (le FEN scritte da Window.writeFen) ogni posizione differisce dalla precedente per una mossa, quindi
+ * l'aggiornamento tocca solo poche colonne di pesi. Le operazioni vettoriali usano la Vector API se disponibile
+ * (esecuzione con {@code --add-modules jdk.incubator.vector}), altrimenti l'implementazione scalare.
+ * Un oggetto NetworkEvaluator non è thread-safe: ogni thread deve usare la propria istanza, la rete può essere condivisa.
+ */
+public class NetworkEvaluator {
+    private static final int BENCH_GAMES = 200; // Partite casuali generate per il benchmark senza archivio
+    private static final int BENCH_PLIES = 120; // Semimosse massime di ogni partita casuale
+
+    private final Network network;
+    private final Kernel kernel;
+    private final Accumulator accumulator;
+
+    /**
+     * Costruttore con l'implementazione migliore disponibile.
+     * @param network La rete
+     */
+    public NetworkEvaluator(Network network) {
+        this(network, true);
+    }
+
+    /**
+     * Costruttore con la scelta dell'implementazione.
+     * @param network La rete
+     * @param simd    true per usare la Vector API se disponibile, false per forzare la versione scalare
+     */
+    public NetworkEvaluator(Network network, boolean simd) {
+        this.network = network;
+        this.kernel = simd ? Kernels.best() : Kernels.scalar();
+        this.accumulator = new Accumulator(network, kernel);
+    }
+
+    /**
+     * Valuta una singola posizione ricalcolando l'accumulatore da zero.
+     * @param position La posizione
+     * @return Il punteggio in centesimi di pedone dal punto di vista del lato al tratto
+     */
+    public int evaluate(Position position) {
+        accumulator.refresh(position);
+        return accumulator.evaluate(position.getSideToMove());
+    }
+
+    /**
+     * Valuta le posizioni di una partita aggiornando l'accumulatore da una posizione alla successiva.
+     * Funziona con qualsiasi sequenza di posizioni; il guadagno è massimo quando sono consecutive.
+     * @param game Le posizioni
+     * @return Il punteggio di ogni posizione in centesimi di pedone dal punto di vista del bianco
+     */
+    public int[] evaluateGame(List<Position> game) {
+        int[] scores = new int[game.size()];
+        accumulator.clear();
+        for (int i = 0; i < scores.length; i++) {
+            Position position = game.get(i);
+            accumulator.update(position);
+            int score = accumulator.evaluate(position.getSideToMove());
+            scores[i] = position.getSideToMove() == ChessColor.WHITE ? score : -score;
+        }
+        return scores;
+    }
+
+    /**
+     * Valuta un blocco di FEN, ad esempio le righe di un file di partita.
+     * @param fens Le FEN (anche abbreviate, come quelle della GUI)
+     * @return Il punteggio di ogni posizione in centesimi di pedone dal punto di vista del bianco
+     * @throws IllegalArgumentException se una FEN non è valida
+     */
+    public int[] evaluateBatch(List<String> fens) {
+        List<Position> positions = new ArrayList<>(fens.size());
+        for (String fen : fens) positions.add(Position.fromFen(fen));
+        return evaluateGame(positions);
+    }
+
+    /**
+     * Restituisce il nome dell'implementazione in uso.
+     * @return "scalare" oppure "SIMD" con la larghezza dei vettori
+     */
+    public String getKernelName() {
+        return kernel.name();
+    }
+
+    /**
+     * Verifica se la Vector API è disponibile in questa esecuzione.
+     * @return true se il kernel SIMD è stato caricato
+     */
+    public static boolean isSimdAvailable() {
+        return Kernels.simd() != null;
+    }
+
+    /**
+     * Punto di ingresso.
+     * Uso:
+     * {@code NetworkEvaluator --create <rete> [neuroni]} crea la rete di riferimento derivata da Evaluation;
+     * {@code NetworkEvaluator --bench <rete> [file o cartella...]} misura le posizioni al secondo, scalare e SIMD;
+     * {@code NetworkEvaluator <rete> <file o cartella>...} annota le partite salvate con la valutazione di ogni posizione.
+     * @param args Gli argomenti
+     * @throws IOException Se un file non può essere letto o scritto
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Uso: NetworkEvaluator --create <rete> [neuroni]");
+            System.out.println("     NetworkEvaluator --bench <rete> [file o cartella...]");
+            System.out.println("     NetworkEvaluator <rete> <file o cartella>...");
+            System.exit(1);
+        }
+
+        if (args[0].equals("--create")) {
+            int hidden = args.length > 2 ? Integer.parseInt(args[2]) : 256;
+            Network.fromEvaluation(hidden).save(Path.of(args[1]));
+            System.out.println("Rete creata: " + args[1] + " (" + hidden + " neuroni)");
+            return;
+        }
+
+        if (args[0].equals("--bench")) {
+            Network network = Network.load(Path.of(args[1]));
+            List<List<Position>> games = new ArrayList<>();
+            for (int i = 2; i < args.length; i++) {
+                for (Path file : GameArchive.files(Path.of(args[i]))) games.add(GameArchive.read(file));
+            }
+            if (games.isEmpty()) games = randomGames();
+            benchmark(network, games);
+            return;
+        }
+
+        Network network = Network.load(Path.of(args[0]));
+        NetworkEvaluator evaluator = new NetworkEvaluator(network);
+        for (int i = 1; i < args.length; i++) {
+            for (Path file : GameArchive.files(Path.of(args[i]))) {
+                List<Position> game = GameArchive.read(file);
+                int[] scores = evaluator.evaluateGame(game);
+                for (int j = 0; j < scores.length; j++) {
+                    System.out.printf("%s %d %s %+.2f%n", file, j, game.get(j).toFen(), scores[j] / 100.0);
+                }
+            }
+        }
+    }
+
+    /**
+     * Misura le posizioni al secondo con i due kernel, ricalcolando l'accumulatore per ogni posizione
+     * oppure aggiornandolo lungo le partite.
+     * @param network La rete
+     * @param games   Le partite su cui misurare
+     */
+    private static void benchmark(Network network, List<List<Position>> games) {
+        long positions = 0;
+        for (List<Position> game : games) positions += game.size();
+        System.out.printf("Rete: %d neuroni, partite: %d, posizioni: %d%n", network.getHidden(), games.size(), positions);
+        if (!isSimdAvailable()) System.out.println("Vector API non disponibile (avviare con --add-modules jdk.incubator.vector): solo scalare");
+
+        List<NetworkEvaluator> evaluators = new ArrayList<>();
+        evaluators.add(new NetworkEvaluator(network, false));
+        if (isSimdAvailable()) evaluators.add(new NetworkEvaluator(network, true));
+
+        for (NetworkEvaluator evaluator : evaluators) {
+            for (boolean incremental : new boolean[]{false, true}) {
+                // Un primo giro a vuoto per la compilazione JIT
+                long checksum = run(evaluator, games, incremental);
+                long start = System.nanoTime();
+                int rounds = 0;
+                do {
+                    run(evaluator, games, incremental);
+                    rounds++;
+                } while (System.nanoTime() - start < 1_000_000_000L);
+                long nanos = System.nanoTime() - start;
+
+                System.out.printf("%-16s %-12s %,12d posizioni/s  (controllo %d)%n", evaluator.getKernelName(),
+                        incremental ? "incrementale" : "completo", positions * rounds * 1_000_000_000L / nanos, checksum);
+            }
+        }
+    }
+
+    /**
+     * Valuta tutte le partite una volta.
+     * @param evaluator   Il valutatore
+     * @param games       Le partite
+     * @param incremental true per aggiornare l'accumulatore lungo la partita, false per ricalcolarlo a ogni posizione
+     * @return La somma dei punteggi, per confrontare i kernel ed evitare che il lavoro venga eliminato
+     */
+    private static long run(NetworkEvaluator evaluator, List<List<Position>> games, boolean incremental) {
+        long sum = 0;
+        for (List<Position> game : games) {
+            if (incremental) {
+                for (int score : evaluator.evaluateGame(game)) sum += score;
+            } else {
+                for (Position position : game) sum += evaluator.evaluate(position);
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Genera partite casuali con un seme fisso, per misurare le prestazioni senza un archivio.
+     * @return Le partite
+     */
+    private static List<List<Position>> randomGames() {
+        Random random = new Random(42);
+        List<List<Position>> games = new ArrayList<>();
+        for (int g = 0; g < BENCH_GAMES; g++) {
+            List<Position> game = new ArrayList<>();
+            Position position = Position.startPosition();
+            game.add(new Position(position));
+            for (int ply = 0; ply < BENCH_PLIES; ply++) {
+                MoveList moves = MoveGenerator.generateLegalMoves(position);
+                if (moves.isEmpty()) break;
+                position.makeMove(moves.get(random.nextInt(moves.size())));
+                game.add(new Position(position));
+            }
+            games.add(game);
+        }
+        return games;
+    }
+}
@@ -0,0 +1,32 @@
+package engine.nn;
+
+/**
+ * Implementazione scalare delle operazioni della rete, usata quando la Vector API non è disponibile.
+ */
+class ScalarKernel implements Kernel {
+
+    @Override
+    public void add(int[] accumulator, int[] weights, int offset, int length) {
+        for (int i = 0; i < length; i++) accumulator[i] += weights[offset + i];
+    }
+
+    @Override
+    public void sub(int[] accumulator, int[] weights, int offset, int length) {
+        for (int i = 0; i < length; i++) accumulator[i] -= weights[offset + i];
+    }
+
+    @Override
+    public long clippedDot(int[] accumulator, int[] weights, int offset, int length, int max) {
+        long sum = 0;
+        for (int i = 0; i < length; i++) {
+            int value = Math.min(Math.max(accumulator[i], 0), max);
+            sum += (long) value * weights[offset + i];
+        }
+        return sum;
+    }
+
+    @Override
+    public String name() {
+        return "scalare";
+    }
+}
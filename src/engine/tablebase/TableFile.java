@@ -0,0 +1,77 @@
+package engine.tablebase;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * File di un finale mappato in memoria.
+ *
+ * Formato (big-endian): "JCTB", versione, metrica (0 DTZ, 1 distanza dal matto), numero di pezzi e poi un byte
+ * per ogni indice ({@link Tablebase#size} valori, vedi {@link Tablebase#index(int[], int, String)}). Ogni byte vale 0
+ * per la patta, d &gt; 0 per la vittoria del lato al tratto a distanza d, -(d + 1) per la sconfitta a distanza d
+ * e -128 per le posizioni impossibili o non canoniche.
+ */
+class TableFile {
+    static final int MAGIC = 0x4A435442; // "JCTB"
+    static final int VERSION = 2; // La versione 1 non sfruttava le simmetrie e non indicava la metrica
+    static final int HEADER = 16; // Byte dell'intestazione
+
+    private final ByteBuffer buffer; // Solo letture assolute, quindi condivisibile tra thread
+
+    /**
+     * Costruttore a partire dal contenuto mappato.
+     * @param buffer Il contenuto del file
+     */
+    private TableFile(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    /**
+     * Mappa in memoria il file di un finale e ne verifica l'intestazione.
+     * @param file      Il file
+     * @param signature La firma del finale, per verificare il numero di pezzi e la dimensione
+     * @param metric    La metrica attesa (Tablebase.DTZ o Tablebase.DTM)
+     * @return Il file mappato
+     * @throws IOException Se il file non può essere letto o non è valido
+     */
+    static TableFile open(Path file, String signature, int metric) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int pieces = signature.length() - 1;
+            if (buffer.capacity() < HEADER || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION || buffer.getInt(8) != metric
+                    || buffer.getInt(12) != pieces || buffer.capacity() != HEADER + Tablebase.size(signature)) {
+                throw new IOException("intestazione o dimensione non valida");
+            }
+            return new TableFile(buffer);
+        }
+    }
+
+    /**
+     * Scrive il file di un finale.
+     * @param file      Il file
+     * @param signature La firma del finale
+     * @param metric    La metrica dei valori (Tablebase.DTZ o Tablebase.DTM)
+     * @param values    Un valore per ogni indice
+     * @throws IOException Se il file non può essere scritto
+     */
+    static void write(Path file, String signature, int metric, byte[] values) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER).putInt(MAGIC).putInt(VERSION).putInt(metric).putInt(signature.length() - 1).flip();
+        ByteBuffer body = ByteBuffer.wrap(values);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (header.hasRemaining()) channel.write(header);
+            while (body.hasRemaining()) channel.write(body);
+        }
+    }
+
+    /**
+     * Legge il valore di un indice.
+     * @param index L'indice
+     * @return Il valore memorizzato
+     */
+    byte value(int index) {
+        return buffer.get(HEADER + index);
+    }
+}
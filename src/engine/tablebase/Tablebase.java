@@ -0,0 +1,498 @@
+package engine.tablebase;
+
+import board.Position;
+import board.Square;
+import utils.constant.ChessColor;
+import utils.constant.ChessPath;
+import utils.constant.ChessType;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Accesso alle tablebase dei finali: per le posizioni con pochi pezzi restituisce il risultato esatto
+ * (vittoria, patta o sconfitta per il lato al tratto) e la distanza in semimosse dalla prossima mossa che azzera
+ * il contatore delle 50 mosse (DTZ: cattura o mossa di pedone) o dal matto (DTM).
+ *
+ * Ogni finale ha un file per metrica, ad esempio "KQvK.jtb" (DTZ) e "KQvK.dtm" (DTM), con il materiale del lato
+ * più forte prima della "v"; la posizione a colori invertiti usa lo stesso file specchiando la scacchiera.
+ * L'indice sfrutta le simmetrie della scacchiera (vedi {@link #index(int[], int, String)}). I file vengono mappati
+ * in memoria al primo accesso e condivisi da tutte le partite. La cartella è {@link ChessPath#TABLEBASES}, oppure quella indicata
+ * dalla proprietà di sistema {@code tablebase.dir}; i file si creano con {@link TablebaseGenerator}.
+ *
+ * Le tablebase non conoscono l'arrocco né l'en passant: le posizioni con questi diritti non vengono risolte.
+ */
+public class Tablebase {
+    public static final int MAX_PIECES = 4; // Pezzi massimi (re compresi) di un finale
+    public static final String EXTENSION = ".jtb"; // Estensione dei file con la DTZ
+    public static final String MATE_EXTENSION = ".dtm"; // Estensione dei file con la distanza dal matto
+    public static final String DIRECTORY_PROPERTY = "tablebase.dir"; // Proprietà di sistema con la cartella
+
+    static final String ORDER = "KQRBNP"; // Ordine dei pezzi nella firma, dal più forte
+    static final byte DRAW = 0; // Valore delle posizioni patte
+    static final byte ILLEGAL = -128; // Valore delle posizioni impossibili
+    static final int DTZ = 0; // Metrica: distanza dalla prossima mossa che azzera il contatore delle 50 mosse
+    static final int DTM = 1; // Metrica: distanza dal matto
+
+    // Caselle ammesse per il re del lato più forte: triangolo a1-d1-d4 senza pedoni, colonne a-d con i pedoni
+    private static final int[] TRIANGLE_SLOT = new int[64];
+    private static final int[] HALF_SLOT = new int[64];
+    static final int TRIANGLE_SLOTS = 10;
+    static final int HALF_SLOTS = 32;
+
+    static {
+        Arrays.fill(TRIANGLE_SLOT, -1);
+        Arrays.fill(HALF_SLOT, -1);
+        int triangle = 0, half = 0;
+        for (int square = 0; square < 64; square++) {
+            int file = square & 7, rank = square >> 3;
+            if (file <= 3) HALF_SLOT[square] = half++;
+            if (file <= 3 && rank <= file) TRIANGLE_SLOT[square] = triangle++;
+        }
+    }
+
+    private static Tablebase defaultTablebase;
+
+    private final Path directory;
+    private final Map<String, Optional<TableFile>> tables = new ConcurrentHashMap<>(); // File aperti per nome, vuoto se mancante
+
+    /**
+     * Risultato della consultazione.
+     */
+    public static class Result {
+        public static final int WIN = 1;
+        public static final int DRAW = 0;
+        public static final int LOSS = -1;
+
+        private final int wdl; // Risultato per il lato al tratto
+        private final int distance; // Semimosse dalla prossima mossa che azzera il contatore, o dal matto
+        private final boolean mate; // true se la distanza è dal matto (DTM)
+
+        /**
+         * Costruttore del risultato con la DTZ.
+         * @param wdl      WIN, DRAW o LOSS per il lato al tratto
+         * @param distance Distanza in semimosse (0 per la patta e per il lato che ha subito matto)
+         */
+        public Result(int wdl, int distance) {
+            this(wdl, distance, false);
+        }
+
+        /**
+         * Costruttore del risultato.
+         * @param wdl      WIN, DRAW o LOSS per il lato al tratto
+         * @param distance Distanza in semimosse (0 per la patta e per il lato che ha subito matto)
+         * @param mate     true se la distanza è dal matto, false se è la DTZ
+         */
+        public Result(int wdl, int distance, boolean mate) {
+            this.wdl = wdl;
+            this.distance = distance;
+            this.mate = mate;
+        }
+
+        /**
+         * Restituisce il risultato per il lato al tratto.
+         * @return WIN, DRAW o LOSS
+         */
+        public int getWdl() {
+            return wdl;
+        }
+
+        /**
+         * Restituisce la distanza dalla prossima mossa che azzera il contatore delle 50 mosse, o dal matto.
+         * @return La distanza in semimosse
+         */
+        public int getDistance() {
+            return distance;
+        }
+
+        /**
+         * Indica la metrica della distanza.
+         * @return true se la distanza è dal matto, false se è la DTZ
+         */
+        public boolean isMate() {
+            return mate;
+        }
+
+        @Override
+        public String toString() {
+            String metric = mate ? "DTM " : "DTZ ";
+            return switch (wdl) {
+                case WIN -> "vittoria (" + metric + distance + ")";
+                case LOSS -> "sconfitta (" + metric + distance + ")";
+                default -> "patta";
+            };
+        }
+    }
+
+    /**
+     * Costruttore a partire dalla cartella dei file.
+     * @param directory La cartella delle tablebase
+     */
+    public Tablebase(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Restituisce le tablebase della cartella predefinita, condivise da tutta l'applicazione.
+     * @return Le tablebase
+     */
+    public static synchronized Tablebase getDefault() {
+        if (defaultTablebase == null) {
+            defaultTablebase = new Tablebase(Path.of(System.getProperty(DIRECTORY_PROPERTY, ChessPath.TABLEBASES)));
+        }
+        return defaultTablebase;
+    }
+
+    /**
+     * Consulta le tablebase per una posizione, con la DTZ.
+     * @param position La posizione
+     * @return Il risultato, oppure null se la posizione ha troppi pezzi, diritti di arrocco o en passant,
+     *         o se il file del finale non è disponibile
+     */
+    public Result probe(Position position) {
+        return probe(position, DTZ);
+    }
+
+    /**
+     * Consulta le tablebase con la DTZ per aggiudicare una partita, tenendo conto della regola delle 50 mosse:
+     * se le semimosse già giocate senza catture né mosse di pedone più la DTZ superano 100, la vittoria non può
+     * essere forzata prima che la partita sia patta, quindi il risultato è patta.
+     * @param position La posizione
+     * @return Il risultato, oppure null come {@link #probe(Position)}
+     */
+    public Result adjudicate(Position position) {
+        Result result = probe(position);
+        if (result == null || result.getWdl() == Result.DRAW) return result;
+        if (position.getHalfmoveClock() + result.getDistance() > 100) return new Result(Result.DRAW, 0);
+        return result;
+    }
+
+    /**
+     * Consulta le tablebase per una posizione, con la distanza dal matto.
+     * @param position La posizione
+     * @return Il risultato, oppure null se la posizione non può essere risolta o il file non è disponibile
+     */
+    public Result probeMate(Position position) {
+        return probe(position, DTM);
+    }
+
+    /**
+     * Consulta il file di una metrica.
+     * @param position La posizione
+     * @param metric   DTZ o DTM
+     * @return Il risultato, oppure null se non disponibile
+     */
+    private Result probe(Position position, int metric) {
+        if (Long.bitCount(position.occupied()) > MAX_PIECES) return null;
+        if (position.getCastlingRights() != 0 || position.getEnPassantSquare() != Square.NONE) return null;
+
+        boolean flip = isFlipped(position);
+        String signature = signature(position, flip);
+        Optional<TableFile> table = tables.computeIfAbsent(fileName(signature, metric), name -> open(name, signature, metric));
+        if (table.isEmpty()) return null;
+
+        byte value = table.get().value(index(position, flip, signature));
+        return decode(value, metric == DTM);
+    }
+
+    /**
+     * Verifica se il file con la DTZ di un finale è disponibile.
+     * @param signature La firma del finale, ad esempio "KQvK"
+     * @return true se il file esiste ed è valido
+     */
+    public boolean isAvailable(String signature) {
+        return isAvailable(signature, false);
+    }
+
+    /**
+     * Verifica se il file di un finale è disponibile.
+     * @param signature La firma del finale, ad esempio "KQvK"
+     * @param mate      true per il file con la distanza dal matto, false per quello con la DTZ
+     * @return true se il file esiste ed è valido
+     */
+    public boolean isAvailable(String signature, boolean mate) {
+        int metric = mate ? DTM : DTZ;
+        return tables.computeIfAbsent(fileName(signature, metric), name -> open(name, signature, metric)).isPresent();
+    }
+
+    /**
+     * Restituisce il nome del file di un finale.
+     * @param signature La firma del finale
+     * @param metric    DTZ o DTM
+     * @return Il nome, ad esempio "KQvK.dtm"
+     */
+    static String fileName(String signature, int metric) {
+        return signature + (metric == DTM ? MATE_EXTENSION : EXTENSION);
+    }
+
+    /**
+     * Apre il file di un finale.
+     * @param name      Il nome del file
+     * @param signature La firma del finale
+     * @param metric    La metrica attesa
+     * @return Il file mappato, vuoto se manca o non è valido
+     */
+    private Optional<TableFile> open(String name, String signature, int metric) {
+        Path file = directory.resolve(name);
+        if (!Files.isRegularFile(file)) return Optional.empty();
+        try {
+            return Optional.of(TableFile.open(file, signature, metric));
+        } catch (IOException e) {
+            System.out.println("Tablebase non valida: " + file + " (" + e.getMessage() + ")");
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Traduce il valore memorizzato in un risultato.
+     * @param value Il valore: 0 patta, d &gt; 0 vittoria a distanza d, -(d + 1) sconfitta a distanza d
+     * @param mate  true se il valore è una distanza dal matto
+     * @return Il risultato, null per le posizioni impossibili
+     */
+    static Result decode(byte value, boolean mate) {
+        if (value == ILLEGAL) return null;
+        if (value == DRAW) return new Result(Result.DRAW, 0, mate);
+        if (value > 0) return new Result(Result.WIN, value, mate);
+        return new Result(Result.LOSS, -value - 1, mate);
+    }
+
+    /**
+     * Codifica una vittoria.
+     * @param distance La distanza in semimosse (1-127)
+     * @return Il valore memorizzato
+     */
+    static byte win(int distance) {
+        return (byte) distance;
+    }
+
+    /**
+     * Codifica una sconfitta.
+     * @param distance La distanza in semimosse (0-126)
+     * @return Il valore memorizzato
+     */
+    static byte loss(int distance) {
+        return (byte) (-distance - 1);
+    }
+
+    /**
+     * Restituisce la lettera di un tipo di pezzo nella firma.
+     * @param type Il tipo (ChessType)
+     * @return La lettera maiuscola
+     */
+    static char letter(int type) {
+        return switch (type) {
+            case ChessType.TOWER -> 'R';
+            case ChessType.BISHOP -> 'B';
+            case ChessType.KNIGHT -> 'N';
+            case ChessType.QUEEN -> 'Q';
+            case ChessType.KING -> 'K';
+            default -> 'P';
+        };
+    }
+
+    /**
+     * Restituisce il tipo di pezzo di una lettera della firma.
+     * @param letter La lettera maiuscola
+     * @return Il tipo (ChessType)
+     * @throws IllegalArgumentException se la lettera non è un pezzo
+     */
+    static int type(char letter) {
+        return switch (letter) {
+            case 'R' -> ChessType.TOWER;
+            case 'B' -> ChessType.BISHOP;
+            case 'N' -> ChessType.KNIGHT;
+            case 'Q' -> ChessType.QUEEN;
+            case 'K' -> ChessType.KING;
+            case 'P' -> ChessType.PAWN;
+            default -> throw new IllegalArgumentException("Pezzo non valido nella firma: " + letter);
+        };
+    }
+
+    /**
+     * Restituisce il materiale di un colore come lettere ordinate dal pezzo più forte.
+     * @param position La posizione
+     * @param color    Il colore
+     * @return Ad esempio "KQ"
+     */
+    private static String material(Position position, int color) {
+        StringBuilder sb = new StringBuilder();
+        for (char letter : ORDER.toCharArray()) {
+            int count = Long.bitCount(position.pieces(color, type(letter)));
+            for (int i = 0; i < count; i++) sb.append(letter);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Confronta il materiale di due lati: vince chi ha più pezzi, poi chi ha il pezzo più forte.
+     * @param a Materiale del primo lato
+     * @param b Materiale del secondo lato
+     * @return Un numero positivo se il primo è più forte, negativo se è più debole, 0 se sono uguali
+     */
+    static int compareMaterial(String a, String b) {
+        if (a.length() != b.length()) return a.length() - b.length();
+        for (int i = 0; i < a.length(); i++) {
+            int diff = ORDER.indexOf(b.charAt(i)) - ORDER.indexOf(a.charAt(i));
+            if (diff != 0) return diff;
+        }
+        return 0;
+    }
+
+    /**
+     * Verifica se la posizione va specchiata a colori invertiti per usare il file del finale, cioè se il nero è più forte.
+     * @param position La posizione
+     * @return true se il nero ha il materiale più forte
+     */
+    static boolean isFlipped(Position position) {
+        return compareMaterial(material(position, ChessColor.WHITE), material(position, ChessColor.BLACK)) < 0;
+    }
+
+    /**
+     * Restituisce la firma del finale di una posizione.
+     * @param position La posizione
+     * @param flip     true se i colori vanno invertiti
+     * @return La firma, ad esempio "KQvK"
+     */
+    static String signature(Position position, boolean flip) {
+        String white = material(position, ChessColor.WHITE);
+        String black = material(position, ChessColor.BLACK);
+        return flip ? black + "v" + white : white + "v" + black;
+    }
+
+    /**
+     * Calcola l'indice di una posizione nella tabella del suo finale.
+     * @param position  La posizione
+     * @param flip      true se i colori vanno invertiti (e la scacchiera specchiata)
+     * @param signature La firma del finale
+     * @return L'indice
+     */
+    static int index(Position position, boolean flip, String signature) {
+        int[] squares = new int[signature.length() - 1];
+        int color = ChessColor.WHITE;
+        for (int i = 0, p = 0; i < signature.length(); i++) {
+            char letter = signature.charAt(i);
+            if (letter == 'v') {
+                color = ChessColor.BLACK;
+                continue;
+            }
+            // Alla prima lettera di un gruppo di pezzi uguali si aggiungono tutte le loro caselle
+            if (i > 0 && signature.charAt(i - 1) == letter) continue;
+            long pieces = position.pieces(flip ? color ^ 1 : color, type(letter));
+            if (flip) pieces = Long.reverseBytes(pieces); // Specchio verticale: casella ^ 56
+            while (pieces != 0) {
+                squares[p++] = Long.numberOfTrailingZeros(pieces);
+                pieces &= pieces - 1;
+            }
+        }
+        int stm = flip ? position.getSideToMove() ^ 1 : position.getSideToMove();
+        return index(squares, stm, signature);
+    }
+
+    /**
+     * Calcola l'indice di una disposizione dei pezzi.
+     * La scacchiera viene prima portata nella forma canonica: senza pedoni il re del lato più forte finisce nel
+     * triangolo a1-d1-d4 con gli specchi orizzontale, verticale e diagonale (8 simmetrie), con i pedoni nelle colonne
+     * a-d con il solo specchio orizzontale; se il re resta sulla diagonale a1-d4 si sceglie, tra la disposizione e la sua
+     * specchiata sulla diagonale, quella con l'indice minore. I pezzi uguali vengono ordinati per casella crescente e l'indice è
+     * {@code (lato * caselle_del_re + casella_del_re) * 64^(n-1) + casella_2 * 64^(n-2) + ... + casella_n},
+     * con il lato 0 per il più forte.
+     * @param squares   Caselle dei pezzi nell'ordine della firma (l'array viene modificato)
+     * @param stm       Lato al tratto (0 il più forte)
+     * @param signature La firma del finale
+     * @return L'indice
+     */
+    static int index(int[] squares, int stm, String signature) {
+        boolean pawns = signature.indexOf('P') >= 0;
+        if ((squares[0] & 7) > 3) {
+            for (int i = 0; i < squares.length; i++) squares[i] ^= 7;
+        }
+        if (!pawns) {
+            if ((squares[0] >> 3) > 3) {
+                for (int i = 0; i < squares.length; i++) squares[i] ^= 56;
+            }
+            if ((squares[0] >> 3) > (squares[0] & 7)) {
+                for (int i = 0; i < squares.length; i++) squares[i] = (squares[i] & 7) << 3 | squares[i] >> 3;
+            }
+        }
+
+        int index = sortedIndex(squares, stm, signature, pawns);
+        if (pawns || (squares[0] >> 3) != (squares[0] & 7)) return index;
+
+        // Con il re sulla diagonale a1-h8 anche la disposizione specchiata sulla diagonale è canonica: vale la minore
+        int[] mirrored = new int[squares.length];
+        for (int i = 0; i < squares.length; i++) mirrored[i] = (squares[i] & 7) << 3 | squares[i] >> 3;
+        int other = sortedIndex(mirrored, stm, signature, false);
+        if (other < index) {
+            System.arraycopy(mirrored, 0, squares, 0, squares.length);
+            return other;
+        }
+        return index;
+    }
+
+    /**
+     * Calcola l'indice di una disposizione già portata nella forma canonica, ordinando i pezzi uguali.
+     * @param squares   Caselle dei pezzi nell'ordine della firma (l'array viene modificato)
+     * @param stm       Lato al tratto (0 il più forte)
+     * @param signature La firma del finale
+     * @param pawns     true se il finale ha pedoni
+     * @return L'indice
+     */
+    private static int sortedIndex(int[] squares, int stm, String signature, boolean pawns) {
+        // Pezzi uguali dello stesso lato in ordine crescente (sono al massimo tre, basta l'ordinamento per inserzione)
+        int side = signature.indexOf('v');
+        for (int i = 1; i < squares.length; i++) {
+            for (int j = i; j > 0 && isSameGroup(signature, side, j) && squares[j] < squares[j - 1]; j--) {
+                int swap = squares[j];
+                squares[j] = squares[j - 1];
+                squares[j - 1] = swap;
+            }
+        }
+
+        int index = stm * (pawns ? HALF_SLOTS : TRIANGLE_SLOTS) + (pawns ? HALF_SLOT : TRIANGLE_SLOT)[squares[0]];
+        for (int i = 1; i < squares.length; i++) index = index * 64 + squares[i];
+        return index;
+    }
+
+    /**
+     * Verifica se il pezzo i e il precedente sono uguali e dello stesso lato.
+     * @param signature La firma del finale
+     * @param side      Posizione della "v" nella firma
+     * @param i         Indice del pezzo (senza contare la "v")
+     * @return true se i due pezzi sono intercambiabili
+     */
+    static boolean isSameGroup(String signature, int side, int i) {
+        if (i == side) return false;
+        int a = i < side ? i : i + 1;
+        int b = i - 1 < side ? i - 1 : i;
+        return signature.charAt(a) == signature.charAt(b);
+    }
+
+    /**
+     * Restituisce il numero di indici della tabella di un finale.
+     * @param signature La firma del finale
+     * @return {@code 2 * caselle_del_re * 64^(n-1)}
+     */
+    static int size(String signature) {
+        int slots = signature.indexOf('P') >= 0 ? HALF_SLOTS : TRIANGLE_SLOTS;
+        return 2 * slots << (6 * (signature.length() - 2));
+    }
+
+    /**
+     * Restituisce la casella del re del lato più forte corrispondente a una posizione nell'indice.
+     * @param slot      La posizione nell'indice
+     * @param signature La firma del finale
+     * @return La casella
+     */
+    static int kingSquare(int slot, String signature) {
+        int[] slots = signature.indexOf('P') >= 0 ? HALF_SLOT : TRIANGLE_SLOT;
+        for (int square = 0; square < 64; square++) {
+            if (slots[square] == slot) return square;
+        }
+        throw new IllegalArgumentException("Casella del re non valida: " + slot);
+    }
+}
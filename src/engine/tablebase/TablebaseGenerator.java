@@ -0,0 +1,811 @@
+package engine.tablebase;
+
+import board.Attacks;
+import board.MoveGenerator;
+import board.MoveList;
+import board.PackedMove;
+import board.Position;
+import utils.constant.ChessColor;
+import utils.constant.ChessPath;
+import utils.constant.ChessType;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Generatore delle tablebase dei finali con pochi pezzi, per analisi retrograda.
+ *
+ * Un primo passaggio su tutti gli indici marca i matti, gli stalli e le mosse che escono dal finale (catture
+ * e promozioni), che prendono il valore dalla tabella del finale più piccolo, generata prima. Poi, livello per livello,
+ * si parte dalle posizioni appena risolte e si generano le mosse all'indietro (i pezzi tornano su caselle vuote,
+ * i pedoni indietreggiano, senza catture né promozioni all'indietro): i predecessori di una sconfitta in n - 1 sono
+ * vinti in n, mentre i predecessori di una vittoria in n - 1 sono persi in n solo se la verifica in avanti con
+ * {@link MoveGenerator} trova che tutte le mosse portano a vittorie dell'avversario, la più lunga in n - 1.
+ * Le posizioni rimaste senza valore quando nessun livello cambia più nulla sono patte.
+ *
+ * Ogni passaggio divide gli indici in intervalli risolti in parallelo con fork/join: all'interno di un livello
+ * ogni scrittura sostituisce un valore sconosciuto con lo stesso valore finale, qualunque sia il thread che ci arriva,
+ * quindi gli intervalli non hanno bisogno di sincronizzarsi.
+ *
+ * La soluzione viene calcolata due volte: prima con la distanza dal matto (DTM), che dà il risultato esatto di ogni
+ * posizione, poi con la distanza dalla prossima mossa che azzera il contatore delle 50 mosse (DTZ), trattando catture
+ * e mosse di pedone come uscite di cui basta il risultato. Per ogni finale vengono scritti entrambi i file.
+ */
+public class TablebaseGenerator {
+    public static final int MAX_DISTANCE = 126; // Distanza massima rappresentabile in semimosse
+    private static final byte UNKNOWN = Byte.MAX_VALUE; // Valore non ancora calcolato, solo durante la generazione
+    private static final int CHUNK = 1 << 12; // Indici risolti da un singolo compito senza dividerlo
+
+    private final ForkJoinPool pool;
+    private final Map<String, byte[]> dtm = new HashMap<>(); // Tabelle con la distanza dal matto, per firma
+    private final Map<String, byte[]> dtz = new HashMap<>(); // Tabelle con la DTZ, per firma
+    private final Map<String, Long> times = new HashMap<>(); // Tempo di generazione in nanosecondi, per firma
+
+    /**
+     * Costruttore con un thread per processore.
+     */
+    public TablebaseGenerator() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Costruttore.
+     * @param threads Numero di thread della generazione
+     */
+    public TablebaseGenerator(int threads) {
+        if (threads < 1) throw new IllegalArgumentException("Numero di thread non valido: " + threads);
+        this.pool = new ForkJoinPool(threads);
+    }
+
+    /**
+     * Normalizza la firma di un finale: accetta "KQK" oppure "KQvK" e mette prima il lato più forte.
+     * @param name Il nome del finale
+     * @return La firma, ad esempio "KQvK"
+     * @throws IllegalArgumentException se il nome non descrive un finale valido
+     */
+    public static String signature(String name) {
+        String upper = name.toUpperCase();
+        String white, black;
+        int v = upper.indexOf('V');
+        if (v >= 0) {
+            white = upper.substring(0, v);
+            black = upper.substring(v + 1);
+        } else {
+            int second = upper.indexOf('K', 1);
+            if (second < 0) throw new IllegalArgumentException("Finale non valido: " + name);
+            white = upper.substring(0, second);
+            black = upper.substring(second);
+        }
+        white = sort(white);
+        black = sort(black);
+        if (!white.startsWith("K") || !black.startsWith("K") || white.indexOf('K', 1) >= 0 || black.indexOf('K', 1) >= 0)
+            throw new IllegalArgumentException("Finale non valido, serve un re per lato: " + name);
+        if (white.length() + black.length() > Tablebase.MAX_PIECES)
+            throw new IllegalArgumentException("Finale con troppi pezzi (massimo " + Tablebase.MAX_PIECES + "): " + name);
+        return Tablebase.compareMaterial(white, black) >= 0 ? white + "v" + black : black + "v" + white;
+    }
+
+    /**
+     * Ordina le lettere di un lato dal pezzo più forte.
+     * @param side Le lettere
+     * @return Le lettere ordinate
+     */
+    private static String sort(String side) {
+        StringBuilder sb = new StringBuilder();
+        for (char letter : Tablebase.ORDER.toCharArray()) {
+            for (char c : side.toCharArray()) {
+                if (c == letter) sb.append(c);
+            }
+        }
+        if (sb.length() != side.length()) throw new IllegalArgumentException("Pezzo non valido: " + side);
+        return sb.toString();
+    }
+
+    /**
+     * Genera un finale e, se servono, i finali più piccoli raggiungibili con catture e promozioni.
+     * @param signature La firma del finale
+     * @return I valori DTZ di ogni indice
+     */
+    public byte[] generate(String signature) {
+        byte[] values = dtz.get(signature);
+        if (values != null) return values;
+
+        // I finali più piccoli vengono generati prima e non contano nel tempo di questo
+        Table mate = new Table(signature, null);
+        for (String sub : subSignatures(mate.colors, mate.types)) generate(sub);
+
+        long start = System.nanoTime();
+        byte[] distanceToMate = solve(mate);
+        dtm.put(signature, distanceToMate);
+        values = solve(new Table(signature, distanceToMate));
+        dtz.put(signature, values);
+        times.put(signature, System.nanoTime() - start);
+        return values;
+    }
+
+    /**
+     * Restituisce la tabella con la distanza dal matto di un finale già generato.
+     * @param signature La firma del finale
+     * @return I valori, oppure null se il finale non è stato generato
+     */
+    public byte[] getMate(String signature) {
+        return dtm.get(signature);
+    }
+
+    /**
+     * Restituisce il tempo impiegato per generare un finale, senza i finali più piccoli.
+     * @param signature La firma del finale
+     * @return Il tempo in secondi, 0 se il finale non è stato generato
+     */
+    public double getSeconds(String signature) {
+        return times.getOrDefault(signature, 0L) / 1e9;
+    }
+
+    /**
+     * Risolve un finale per analisi retrograda.
+     * @param table Lo stato della risoluzione
+     * @return Il valore di ogni indice
+     */
+    private byte[] solve(Table table) {
+        byte[] values = table.values;
+        pool.invoke(new Pass(table, Pass.INIT, 0, 0, values.length));
+
+        for (int level = 1; level <= MAX_DISTANCE; level++) {
+            long changed = pool.invoke(new Pass(table, Pass.WIN, level, 0, values.length));
+            changed += pool.invoke(new Pass(table, Pass.LOSS, level, 0, values.length));
+            // Le uscite possono ancora risolvere posizioni fino alla distanza massima dei finali più piccoli
+            if (changed == 0 && level > table.exitDistance) break;
+        }
+
+        for (int index = 0; index < values.length; index++) {
+            if (values[index] == UNKNOWN) values[index] = Tablebase.DRAW;
+        }
+        return values;
+    }
+
+    /**
+     * Elenca i finali raggiungibili con una cattura o una promozione che richiedono una tabella.
+     * @param colors Colore di ogni pezzo
+     * @param types  Tipo di ogni pezzo
+     * @return Le firme dei finali più piccoli
+     */
+    private static Set<String> subSignatures(int[] colors, int[] types) {
+        Set<String> result = new TreeSet<>();
+        for (int i = 0; i < types.length; i++) {
+            if (types[i] == ChessType.KING) continue;
+            // Cattura del pezzo i
+            addSignature(result, colors, types, i, ChessType.BLANK);
+            // Promozione del pedone i
+            if (types[i] == ChessType.PAWN) {
+                for (int promotion : new int[]{ChessType.QUEEN, ChessType.TOWER, ChessType.BISHOP, ChessType.KNIGHT}) {
+                    addSignature(result, colors, types, i, promotion);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Aggiunge la firma del materiale ottenuto togliendo o cambiando un pezzo, se il finale non è patta per regola.
+     * @param result  L'insieme delle firme
+     * @param colors  Colore di ogni pezzo
+     * @param types   Tipo di ogni pezzo
+     * @param changed Il pezzo da togliere o cambiare
+     * @param type    Il nuovo tipo, oppure BLANK per toglierlo
+     */
+    private static void addSignature(Set<String> result, int[] colors, int[] types, int changed, int type) {
+        StringBuilder white = new StringBuilder(), black = new StringBuilder();
+        for (int i = 0; i < types.length; i++) {
+            int t = i == changed ? type : types[i];
+            if (t == ChessType.BLANK) continue;
+            (colors[i] == ChessColor.WHITE ? white : black).append(Tablebase.letter(t));
+        }
+        String signature = signature(white + "v" + black);
+        if (!isTrivialDraw(signature)) result.add(signature);
+    }
+
+    /**
+     * Verifica se un finale è patta senza bisogno di tabelle: due re soli o un solo pezzo minore senza pedoni.
+     * @param signature La firma del finale
+     * @return true se il finale è patta per materiale insufficiente
+     */
+    static boolean isTrivialDraw(String signature) {
+        String pieces = signature.replace("K", "").replace("v", "");
+        return pieces.isEmpty() || pieces.equals("B") || pieces.equals("N");
+    }
+
+    /**
+     * Restituisce la distanza massima di una tabella.
+     * @param values I valori
+     * @return La distanza massima tra vittorie e sconfitte
+     */
+    private static int maxDistance(byte[] values) {
+        int max = 0;
+        for (byte value : values) {
+            Tablebase.Result result = Tablebase.decode(value, false);
+            if (result != null) max = Math.max(max, result.getDistance());
+        }
+        return max;
+    }
+
+    /**
+     * Stato condiviso della risoluzione di un finale: i pezzi, i valori in calcolo e le distanze delle uscite.
+     * Il lato più forte è sempre il bianco (lato 0 dell'indice).
+     */
+    private class Table {
+        private final String signature;
+        private final int[] colors; // Colore di ogni pezzo, nell'ordine della firma
+        private final int[] types; // Tipo di ogni pezzo, nell'ordine della firma
+        private final int[] kingSquares; // Casella del re più forte per ogni posizione nell'indice
+        private final boolean pawns; // true se il finale ha pedoni (solo lo specchio orizzontale)
+        private final byte[] wdl; // Tabella con la distanza dal matto per la DTZ, null per la distanza dal matto
+        private final byte[] values; // Valori in calcolo
+        private final byte[] exitWin; // Vittoria più breve con un'uscita, 0 se non c'è
+        private final byte[] pendingLoss; // Livello a cui verificare una sconfitta già nota, 0 se non c'è
+        private final int exitDistance; // Livello massimo a cui un'uscita può ancora risolvere una posizione
+        private final ThreadLocal<Worker> workers = ThreadLocal.withInitial(() -> new Worker(this));
+
+        /**
+         * Costruttore dello stato.
+         * @param signature La firma del finale
+         * @param wdl       Tabella con la distanza dal matto dello stesso finale (per la DTZ) oppure null
+         */
+        Table(String signature, byte[] wdl) {
+            this.signature = signature;
+            int pieces = signature.length() - 1;
+            this.colors = new int[pieces];
+            this.types = new int[pieces];
+            int color = ChessColor.WHITE;
+            for (int i = 0, p = 0; i < signature.length(); i++) {
+                if (signature.charAt(i) == 'v') {
+                    color = ChessColor.BLACK;
+                    continue;
+                }
+                colors[p] = color;
+                types[p++] = Tablebase.type(signature.charAt(i));
+            }
+
+            this.pawns = signature.indexOf('P') >= 0;
+            this.kingSquares = new int[pawns ? Tablebase.HALF_SLOTS : Tablebase.TRIANGLE_SLOTS];
+            for (int slot = 0; slot < kingSquares.length; slot++) kingSquares[slot] = Tablebase.kingSquare(slot, signature);
+
+            this.wdl = wdl;
+            int size = Tablebase.size(signature);
+            this.values = new byte[size];
+            this.exitWin = new byte[size];
+            this.pendingLoss = new byte[size];
+
+            // Con la DTZ ogni uscita vale a distanza 0; con la distanza dal matto vale quella del finale più piccolo
+            int exit = 1;
+            if (wdl == null) {
+                for (String sub : subSignatures(colors, types)) exit = Math.max(exit, maxDistance(dtm.get(sub)) + 1);
+            }
+            this.exitDistance = exit;
+        }
+    }
+
+    /**
+     * Un passaggio su un intervallo di indici, diviso a metà finché non è abbastanza piccolo.
+     * Restituisce il numero di posizioni risolte.
+     */
+    private class Pass extends RecursiveTask<Long> {
+        static final int INIT = 0; // Matti, stalli e uscite
+        static final int WIN = 1; // Predecessori delle sconfitte in level - 1
+        static final int LOSS = 2; // Predecessori delle vittorie in level - 1
+
+        private final Table table;
+        private final int kind;
+        private final int level;
+        private final int from;
+        private final int to;
+
+        /**
+         * Costruttore del passaggio.
+         * @param table Lo stato della risoluzione
+         * @param kind  INIT, WIN o LOSS
+         * @param level Il livello (distanza in semimosse)
+         * @param from  Primo indice, incluso
+         * @param to    Ultimo indice, escluso
+         */
+        Pass(Table table, int kind, int level, int from, int to) {
+            this.table = table;
+            this.kind = kind;
+            this.level = level;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Long compute() {
+            if (to - from > CHUNK) {
+                int middle = (from + to) >>> 1;
+                Pass left = new Pass(table, kind, level, from, middle);
+                left.fork();
+                long right = new Pass(table, kind, level, middle, to).compute();
+                return right + left.join();
+            }
+
+            Worker worker = table.workers.get();
+            byte[] values = table.values;
+            long resolved = 0;
+            for (int index = from; index < to; index++) {
+                byte value = values[index];
+                if (kind == INIT) {
+                    worker.initial(index);
+                } else if (kind == WIN) {
+                    if (value == UNKNOWN && table.exitWin[index] == level) {
+                        values[index] = Tablebase.win(level);
+                        resolved++;
+                    } else if (value == Tablebase.loss(level - 1)) {
+                        resolved += worker.retreat(index, level, true);
+                    }
+                } else {
+                    if (value == UNKNOWN && table.pendingLoss[index] == level) {
+                        if (worker.setup(index) && worker.verify(index, level)) resolved++;
+                    } else if (level > 1 && value == Tablebase.win(level - 1)) {
+                        resolved += worker.retreat(index, level, false);
+                    }
+                }
+            }
+            return resolved;
+        }
+    }
+
+    /**
+     * Stato di un thread della generazione: la posizione corrente, ricostruita dall'indice.
+     */
+    private class Worker {
+        private final Table table;
+        private final int[] squares; // Casella di ogni pezzo nella posizione corrente, -1 se assente
+        private final int[] decoded; // Caselle lette dall'indice, prima dei controlli
+        private final int[] origin; // Caselle della posizione di cui si cercano i predecessori
+        private final int[] key; // Copia delle caselle per il calcolo dell'indice, che le modifica
+        private final Position position = new Position();
+        private final MoveList moves = new MoveList();
+        private final MoveList checked = new MoveList();
+
+        /**
+         * Costruttore dello stato di un thread.
+         * @param table Lo stato della risoluzione
+         */
+        Worker(Table table) {
+            this.table = table;
+            int pieces = table.types.length;
+            this.squares = new int[pieces];
+            this.decoded = new int[pieces];
+            this.origin = new int[pieces];
+            this.key = new int[pieces];
+            Arrays.fill(squares, -1);
+        }
+
+        /**
+         * Ricostruisce la posizione di un indice.
+         * @param index L'indice
+         * @return false se la posizione è impossibile (caselle ripetute, pedoni in prima o ultima traversa, lato che non
+         *         muove sotto scacco) o non canonica (un'altra disposizione simmetrica ha lo stesso indice)
+         */
+        boolean setup(int index) {
+            for (int square : squares) {
+                if (square >= 0) position.removePiece(square);
+            }
+            Arrays.fill(squares, -1);
+
+            int n = decoded.length;
+            int rest = index;
+            for (int i = n - 1; i >= 1; i--) {
+                decoded[i] = rest & 63;
+                rest >>>= 6;
+            }
+            decoded[0] = table.kingSquares[rest % table.kingSquares.length];
+            int stm = rest / table.kingSquares.length;
+
+            long occupied = 0;
+            for (int i = 0; i < n; i++) {
+                long bit = 1L << decoded[i];
+                if ((occupied & bit) != 0) return false;
+                if (table.types[i] == ChessType.PAWN && (decoded[i] < 8 || decoded[i] >= 56)) return false;
+                occupied |= bit;
+            }
+            System.arraycopy(decoded, 0, key, 0, n);
+            if (Tablebase.index(key, stm, table.signature) != index) return false;
+
+            for (int i = 0; i < n; i++) {
+                squares[i] = decoded[i];
+                position.putPiece(table.colors[i], table.types[i], squares[i]);
+            }
+            position.setSideToMove(stm);
+            return !position.isSquareAttacked(position.kingSquare(stm ^ 1), stm);
+        }
+
+        /**
+         * Primo passaggio su un indice: posizioni impossibili, matti, stalli e valore delle uscite.
+         * @param index L'indice
+         */
+        void initial(int index) {
+            if (!setup(index)) {
+                table.values[index] = Tablebase.ILLEGAL;
+                return;
+            }
+            MoveGenerator.generateLegalMoves(position, moves);
+            if (moves.isEmpty()) {
+                table.values[index] = position.isInCheck() ? Tablebase.loss(0) : Tablebase.DRAW;
+                return;
+            }
+
+            int bestWin = Integer.MAX_VALUE; // Vittoria più breve con un'uscita
+            int longestLoss = 0; // Sconfitta più lunga, se tutte le uscite perdono
+            boolean allLose = true;
+            boolean inside = false; // true se c'è almeno una mossa che resta nel finale
+            for (int i = 0; i < moves.size(); i++) {
+                int move = moves.get(i);
+                if (!isExit(move)) {
+                    inside = true;
+                    continue;
+                }
+                position.makeMove(move);
+                Tablebase.Result result = exit(move);
+                position.unmakeMove(move);
+
+                if (result.getWdl() == Tablebase.Result.DRAW) {
+                    allLose = false;
+                } else if (result.getWdl() == Tablebase.Result.LOSS) {
+                    allLose = false;
+                    bestWin = Math.min(bestWin, result.getDistance() + 1);
+                } else {
+                    longestLoss = Math.max(longestLoss, result.getDistance() + 1);
+                }
+            }
+
+            table.values[index] = UNKNOWN;
+            if (bestWin != Integer.MAX_VALUE) table.exitWin[index] = (byte) bestWin;
+            else if (!inside && allLose) table.pendingLoss[index] = (byte) longestLoss;
+            else if (!inside) table.values[index] = Tablebase.DRAW;
+        }
+
+        /**
+         * Verifica se una mossa esce dal finale o, per la DTZ, azzera il contatore delle 50 mosse.
+         * @param move La mossa, nella posizione corrente
+         * @return true se il valore della mossa non dipende dalla tabella in calcolo
+         */
+        private boolean isExit(int move) {
+            if (PackedMove.isCapture(move) || PackedMove.isPromotion(move)) return true;
+            return table.wdl != null && position.typeAt(PackedMove.from(move)) == ChessType.PAWN;
+        }
+
+        /**
+         * Valore della posizione corrente, raggiunta con un'uscita, per il lato al tratto.
+         * @param move L'uscita appena giocata
+         * @return Il risultato (con la DTZ sempre a distanza 0)
+         */
+        private Tablebase.Result exit(int move) {
+            Tablebase.Result result;
+            if (!PackedMove.isCapture(move) && !PackedMove.isPromotion(move)) {
+                // Mossa di pedone senza cattura né promozione: il materiale non cambia
+                result = Tablebase.decode(table.wdl[Tablebase.index(position, false, table.signature)], true);
+            } else {
+                boolean flip = Tablebase.isFlipped(position);
+                String sub = Tablebase.signature(position, flip);
+                result = isTrivialDraw(sub) ? new Tablebase.Result(Tablebase.Result.DRAW, 0)
+                        : Tablebase.decode(dtm.get(sub)[Tablebase.index(position, flip, sub)], true);
+            }
+            return table.wdl == null ? result : new Tablebase.Result(result.getWdl(), 0);
+        }
+
+        /**
+         * Genera le mosse all'indietro da una posizione appena risolta e risolve i predecessori ancora sconosciuti.
+         * @param index L'indice della posizione risolta
+         * @param level Il livello in calcolo
+         * @param win   true se la posizione è persa in level - 1 (i predecessori vincono), false se è vinta in level - 1
+         *              (i predecessori perdono solo se lo conferma la verifica in avanti)
+         * @return Il numero di predecessori risolti
+         */
+        long retreat(int index, int level, boolean win) {
+            if (!setup(index)) return 0;
+            int mover = position.getSideToMove() ^ 1; // Il lato che ha appena mosso
+            long occupied = position.occupied();
+            System.arraycopy(squares, 0, origin, 0, origin.length);
+
+            long resolved = 0;
+            for (int i = 0; i < origin.length; i++) {
+                if (table.colors[i] != mover) continue;
+                long from = origins(table.types[i], mover, origin[i], occupied);
+                while (from != 0) {
+                    int square = Long.numberOfTrailingZeros(from);
+                    from &= from - 1;
+
+                    System.arraycopy(origin, 0, key, 0, key.length);
+                    key[i] = square;
+                    int predecessor = Tablebase.index(key, mover, table.signature);
+                    if (table.values[predecessor] != UNKNOWN) continue;
+                    if (win) {
+                        table.values[predecessor] = Tablebase.win(level);
+                        resolved++;
+                    } else if (setup(predecessor) && verify(predecessor, level)) {
+                        resolved++;
+                    }
+                }
+            }
+            return resolved;
+        }
+
+        /**
+         * Caselle da cui un pezzo può essere arrivato con una mossa senza cattura né promozione.
+         * Con la DTZ le mosse di pedone sono uscite e non vengono considerate.
+         * @param type     Tipo del pezzo
+         * @param color    Colore del pezzo
+         * @param square   Casella attuale del pezzo
+         * @param occupied Caselle occupate
+         * @return Le caselle di partenza possibili
+         */
+        private long origins(int type, int color, int square, long occupied) {
+            long empty = ~occupied;
+            return switch (type) {
+                case ChessType.KING -> Attacks.king(square) & empty;
+                case ChessType.KNIGHT -> Attacks.knight(square) & empty;
+                case ChessType.BISHOP -> Attacks.bishop(square, occupied) & empty;
+                case ChessType.TOWER -> Attacks.rook(square, occupied) & empty;
+                case ChessType.QUEEN -> Attacks.queen(square, occupied) & empty;
+                case ChessType.PAWN -> table.wdl != null ? 0 : pawnOrigins(color, square, occupied);
+                default -> 0;
+            };
+        }
+
+        /**
+         * Caselle da cui un pedone può essere avanzato: una casa indietro, o due dalla traversa iniziale.
+         * @param color    Colore del pedone
+         * @param square   Casella attuale del pedone
+         * @param occupied Caselle occupate
+         * @return Le caselle di partenza possibili
+         */
+        private long pawnOrigins(int color, int square, long occupied) {
+            int back = color == ChessColor.WHITE ? -8 : 8;
+            int single = square + back;
+            if (single < 8 || single >= 56 || (occupied & 1L << single) != 0) return 0;
+            long result = 1L << single;
+            int rank = square >> 3;
+            if (rank == (color == ChessColor.WHITE ? 3 : 4) && (occupied & 1L << (single + back)) == 0) {
+                result |= 1L << (single + back);
+            }
+            return result;
+        }
+
+        /**
+         * Verifica in avanti se la posizione corrente è persa a un livello: tutte le mosse devono portare a vittorie
+         * dell'avversario e la più lunga deve durare level - 1. Se tutte perdono ma la più lunga dura di più,
+         * la verifica viene rimandata a quel livello.
+         * @param index L'indice della posizione corrente
+         * @param level Il livello in calcolo
+         * @return true se la posizione è stata risolta come sconfitta a questo livello
+         */
+        boolean verify(int index, int level) {
+            MoveGenerator.generateLegalMoves(position, checked);
+            int longestLoss = 0;
+            for (int i = 0; i < checked.size(); i++) {
+                int move = checked.get(i);
+                boolean exit = isExit(move);
+                position.makeMove(move);
+                Tablebase.Result result;
+                if (exit) {
+                    result = exit(move);
+                } else {
+                    byte value = table.values[Tablebase.index(position, false, table.signature)];
+                    result = value == UNKNOWN ? null : Tablebase.decode(value, table.wdl == null);
+                }
+                position.unmakeMove(move);
+
+                if (result == null || result.getWdl() != Tablebase.Result.WIN) return false;
+                longestLoss = Math.max(longestLoss, result.getDistance() + 1);
+            }
+
+            if (longestLoss == level) {
+                table.values[index] = Tablebase.loss(level);
+                return true;
+            }
+            if (longestLoss > level) table.pendingLoss[index] = (byte) longestLoss;
+            return false;
+        }
+
+        /**
+         * Verifica che le mosse all'indietro siano l'inverso di quelle di {@link MoveGenerator}: ogni mossa legale senza
+         * cattura né promozione (e, per la DTZ, non di pedone) dalla posizione di un indice deve portare a una posizione
+         * da cui la generazione all'indietro ritrova l'indice di partenza.
+         * @param index L'indice di una posizione legale
+         * @return Il numero di mosse per cui l'indice di partenza non viene ritrovato
+         */
+        int checkRetreat(int index) {
+            if (!setup(index)) return 0;
+            MoveGenerator.generateLegalMoves(position, checked);
+            int[] forward = new int[checked.size()];
+            int count = 0;
+            for (int i = 0; i < checked.size(); i++) {
+                int move = checked.get(i);
+                if (isExit(move)) continue;
+                position.makeMove(move);
+                forward[count++] = Tablebase.index(position, false, table.signature);
+                position.unmakeMove(move);
+            }
+
+            int errors = 0;
+            for (int i = 0; i < count; i++) {
+                if (!predecessors(forward[i]).contains(index)) errors++;
+            }
+            return errors;
+        }
+
+        /**
+         * Elenca gli indici dei predecessori di una posizione generati con le mosse all'indietro.
+         * @param index L'indice della posizione
+         * @return Gli indici dei predecessori legali
+         */
+        private Set<Integer> predecessors(int index) {
+            Set<Integer> result = new TreeSet<>();
+            if (!setup(index)) return result;
+            int mover = position.getSideToMove() ^ 1;
+            long occupied = position.occupied();
+            System.arraycopy(squares, 0, origin, 0, origin.length);
+            for (int i = 0; i < origin.length; i++) {
+                if (table.colors[i] != mover) continue;
+                long from = origins(table.types[i], mover, origin[i], occupied);
+                while (from != 0) {
+                    System.arraycopy(origin, 0, key, 0, key.length);
+                    key[i] = Long.numberOfTrailingZeros(from);
+                    from &= from - 1;
+                    result.add(Tablebase.index(key, mover, table.signature));
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Controlla un finale generato su un campione di posizioni casuali. Per ogni posizione verifica che le mosse
+     * all'indietro siano l'inverso di quelle in avanti e che il valore letto dal file con la distanza dal matto sia
+     * coerente con quelli delle posizioni raggiunte con una mossa: una vittoria in d ha una mossa verso una sconfitta
+     * in d - 1 e nessuna più breve, una sconfitta in d ha solo mosse verso vittorie e la più lunga dura d - 1,
+     * una patta non ha mosse verso sconfitte e non tutte verso vittorie.
+     * Le mosse in avanti sono quelle di {@link MoveGenerator}, lo stesso usato dalla generazione: il controllo trova
+     * errori della tabella e delle mosse all'indietro, non delle regole dei pezzi, che sono verificate dalla suite perft.
+     * @param signature La firma del finale, già generato
+     * @param tablebase Le tablebase in cui sono stati scritti i file
+     * @param samples   Numero di posizioni da controllare
+     * @param seed      Seme delle posizioni casuali
+     * @return Il numero di errori trovati
+     */
+    public int verify(String signature, Tablebase tablebase, int samples, long seed) {
+        Table table = new Table(signature, null);
+        Worker worker = new Worker(table);
+        Random random = new Random(seed);
+        byte[] values = dtm.get(signature);
+        int errors = 0;
+
+        for (int checked = 0; checked < samples; ) {
+            int index = random.nextInt(values.length);
+            if (values[index] == Tablebase.ILLEGAL || !worker.setup(index)) continue;
+            checked++;
+            errors += worker.checkRetreat(index);
+            worker.setup(index);
+
+            Position position = new Position(worker.position);
+            Tablebase.Result expected = Tablebase.decode(values[index], true);
+            Tablebase.Result result = tablebase.probeMate(position);
+            if (result == null || result.getWdl() != expected.getWdl() || result.getDistance() != expected.getDistance()) {
+                errors++;
+                continue;
+            }
+            if (!isConsistent(position, result, tablebase)) errors++;
+        }
+        return errors;
+    }
+
+    /**
+     * Verifica che il valore di una posizione sia coerente con quelli delle posizioni raggiunte con una mossa.
+     * @param position  La posizione
+     * @param result    Il suo valore con la distanza dal matto
+     * @param tablebase Le tablebase da consultare
+     * @return true se il valore è coerente
+     */
+    private static boolean isConsistent(Position position, Tablebase.Result result, Tablebase tablebase) {
+        MoveList moves = new MoveList();
+        MoveGenerator.generateLegalMoves(position, moves);
+        if (moves.isEmpty()) {
+            int expected = position.isInCheck() ? Tablebase.Result.LOSS : Tablebase.Result.DRAW;
+            return result.getWdl() == expected && result.getDistance() == 0;
+        }
+
+        int bestWin = Integer.MAX_VALUE, longestLoss = 0;
+        boolean allLose = true;
+        for (int i = 0; i < moves.size(); i++) {
+            position.makeMove(moves.get(i));
+            Tablebase.Result next = tablebase.probeMate(position);
+            if (next == null && isTrivialDraw(Tablebase.signature(position, Tablebase.isFlipped(position)))) {
+                next = new Tablebase.Result(Tablebase.Result.DRAW, 0, true);
+            }
+            position.unmakeMove(moves.get(i));
+            if (next == null) return false;
+
+            if (next.getWdl() == Tablebase.Result.LOSS) bestWin = Math.min(bestWin, next.getDistance() + 1);
+            if (next.getWdl() == Tablebase.Result.WIN) longestLoss = Math.max(longestLoss, next.getDistance() + 1);
+            else allLose = false;
+        }
+
+        return switch (result.getWdl()) {
+            case Tablebase.Result.WIN -> bestWin == result.getDistance();
+            case Tablebase.Result.LOSS -> allLose && longestLoss == result.getDistance();
+            default -> bestWin == Integer.MAX_VALUE && !allLose;
+        };
+    }
+
+    /**
+     * Punto di ingresso.
+     * Uso: {@code TablebaseGenerator [--dir <cartella>] [--threads <n>] [--verify <posizioni>] [finali...]}, ad esempio
+     * {@code TablebaseGenerator KQK KRK KPK KBNK} (i finali predefiniti). Scrive i file DTZ e DTM di ogni finale,
+     * compresi quelli più piccoli necessari, e stampa il tempo di generazione, la dimensione dei file e il numero
+     * di vittorie, patte e sconfitte. Con --verify controlla ogni finale su un campione di posizioni casuali.
+     * @param args Gli argomenti
+     * @throws IOException Se un file non può essere scritto
+     */
+    public static void main(String[] args) throws IOException {
+        Path directory = Path.of(System.getProperty(Tablebase.DIRECTORY_PROPERTY, ChessPath.TABLEBASES));
+        int threads = Runtime.getRuntime().availableProcessors();
+        int samples = 0;
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--dir") && i + 1 < args.length) directory = Path.of(args[++i]);
+            else if (args[i].equals("--threads") && i + 1 < args.length) threads = Integer.parseInt(args[++i]);
+            else if (args[i].equals("--verify") && i + 1 < args.length) samples = Integer.parseInt(args[++i]);
+            else names.add(args[i]);
+        }
+        if (names.isEmpty()) names = List.of("KQK", "KRK", "KPK", "KBNK");
+
+        Files.createDirectories(directory);
+        TablebaseGenerator generator = new TablebaseGenerator(threads);
+        System.out.println("Thread: " + threads);
+        long start = System.nanoTime();
+        for (String name : names) generator.generate(signature(name));
+        System.out.printf("Generazione completata in %.1f s%n", (System.nanoTime() - start) / 1e9);
+
+        // Vengono scritti anche i finali più piccoli generati lungo la strada
+        long total = 0;
+        for (String signature : new TreeMap<>(generator.dtz).keySet()) {
+            byte[] mate = generator.dtm.get(signature);
+            byte[] values = generator.dtz.get(signature);
+            Path mateFile = directory.resolve(Tablebase.fileName(signature, Tablebase.DTM));
+            Path file = directory.resolve(Tablebase.fileName(signature, Tablebase.DTZ));
+            TableFile.write(mateFile, signature, Tablebase.DTM, mate);
+            TableFile.write(file, signature, Tablebase.DTZ, values);
+            long size = Files.size(mateFile) + Files.size(file);
+            total += size;
+
+            long wins = 0, draws = 0, losses = 0;
+            for (byte value : mate) {
+                if (value == Tablebase.ILLEGAL) continue;
+                if (value > 0) wins++;
+                else if (value < 0) losses++;
+                else draws++;
+            }
+            System.out.printf("%-8s %6.1f s  %,11d byte  vittorie %,d  patte %,d  sconfitte %,d  DTM massima %d  DTZ massima %d%n",
+                    signature, generator.getSeconds(signature), size, wins, draws, losses, maxDistance(mate), maxDistance(values));
+        }
+        System.out.printf("File scritti in %s: %,d byte%n", directory, total);
+
+        if (samples > 0) {
+            Tablebase tablebase = new Tablebase(directory);
+            for (String signature : new TreeMap<>(generator.dtz).keySet()) {
+                int errors = generator.verify(signature, tablebase, samples, 42);
+                System.out.printf("%-8s verifica su %,d posizioni: %d errori%n", signature, samples, errors);
+            }
+        }
+    }
+}
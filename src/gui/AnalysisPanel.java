@@ -0,0 +1,148 @@
+package gui;
+
+import board.Position;
+import engine.AnalysisEngine;
+import engine.TranspositionTable;
+
+import javax.swing.*;
+import java.awt.*;
+
+/**
+ * Pannello laterale per l'analisi della posizione corrente con il motore multithread.
+ * Permette di scegliere il numero di thread e la dimensione della tabella delle trasposizioni,
+ * e mostra per ogni iterazione profondità, punteggio, variante principale, nodi al secondo,
+ * riempimento della tabella e percentuale di successo.
+ * Quando la posizione sulla scacchiera cambia, l'analisi in corso riparte dalla nuova posizione.
+ */
+public final class AnalysisPanel extends JPanel {
+    private static final Font TEXT_FONT = new Font("Arial", Font.BOLD, 14);
+    private static final Font LINE_FONT = new Font("Monospaced", Font.PLAIN, 12);
+
+    private final JSpinner threadsSpinner; // Numero di thread di ricerca
+    private final JSpinner hashSpinner; // Dimensione della tabella in MB
+    private final JButton analyzeButton; // Avvia o ferma l'analisi
+    private final JLabel scoreLabel; // Profondità e punteggio dell'ultima iterazione
+    private final JLabel statsLabel; // Nodi al secondo, riempimento e successo della tabella
+    private final JTextArea linesArea; // Varianti principali delle iterazioni
+
+    private AnalysisEngine engine; // Motore, ricreato quando cambiano thread o dimensione della tabella
+    private Position position; // Posizione da analizzare
+    private boolean analyzing; // true se l'analisi è attiva
+    private int run; // Numero dell'analisi corrente: cresce a ogni avvio e a ogni stop
+
+    /**
+     * Costruttore del pannello.
+     */
+    public AnalysisPanel() {
+        super(new BorderLayout(5, 5));
+        setBorder(BorderFactory.createTitledBorder("Analisi"));
+        setPreferredSize(new Dimension(260, 300));
+
+        int processors = Runtime.getRuntime().availableProcessors();
+        threadsSpinner = new JSpinner(new SpinnerNumberModel(processors, 1, AnalysisEngine.MAX_THREADS, 1));
+        hashSpinner = new JSpinner(new SpinnerNumberModel(64, 1, TranspositionTable.MAX_MB, 16));
+
+        // Impostazioni del motore
+        JPanel settingsPanel = new JPanel(new GridLayout(3, 2, 5, 5));
+        settingsPanel.add(new JLabel("Thread:"));
+        settingsPanel.add(threadsSpinner);
+        settingsPanel.add(new JLabel("Hash (MB):"));
+        settingsPanel.add(hashSpinner);
+
+        analyzeButton = new JButton("Analizza posizione");
+        analyzeButton.addActionListener(e -> {
+            if (analyzing) stopAnalysis();
+            else startAnalysis();
+        });
+        settingsPanel.add(analyzeButton);
+
+        scoreLabel = new JLabel("-", SwingConstants.CENTER);
+        scoreLabel.setFont(TEXT_FONT);
+        settingsPanel.add(scoreLabel);
+
+        // Risultati dell'analisi
+        linesArea = new JTextArea();
+        linesArea.setEditable(false);
+        linesArea.setLineWrap(true);
+        linesArea.setWrapStyleWord(true);
+        linesArea.setFont(LINE_FONT);
+
+        statsLabel = new JLabel(" ");
+        statsLabel.setFont(LINE_FONT);
+
+        add(settingsPanel, BorderLayout.NORTH);
+        add(new JScrollPane(linesArea), BorderLayout.CENTER);
+        add(statsLabel, BorderLayout.SOUTH);
+    }
+
+    /**
+     * Aggiorna la posizione da analizzare. Se l'analisi è attiva, riparte dalla nuova posizione.
+     * @param position La posizione corrente della scacchiera (viene copiata)
+     */
+    public void positionChanged(Position position) {
+        this.position = new Position(position);
+        if (analyzing) startAnalysis();
+    }
+
+    /**
+     * Avvia l'analisi della posizione corrente con le impostazioni scelte.
+     */
+    private void startAnalysis() {
+        if (position == null) return;
+
+        int threads = (Integer) threadsSpinner.getValue();
+        int megabytes = (Integer) hashSpinner.getValue();
+
+        // Il motore (e la sua tabella) viene ricreato solo se le impostazioni sono cambiate
+        if (engine == null || engine.getThreads() != threads || engine.getMegabytes() != megabytes) {
+            if (engine != null) engine.close();
+            try {
+                engine = new AnalysisEngine(threads, megabytes);
+            } catch (OutOfMemoryError e) {
+                engine = null;
+                JOptionPane.showMessageDialog(this, "Memoria insufficiente per una tabella di " + megabytes + " MB", "Errore", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+        }
+
+        analyzing = true;
+        analyzeButton.setText("Ferma analisi");
+        threadsSpinner.setEnabled(false);
+        hashSpinner.setEnabled(false);
+        linesArea.setText("");
+        scoreLabel.setText("-");
+
+        // Gli aggiornamenti arrivano dal thread di ricerca e vengono mostrati sull'EDT, con il numero dell'analisi
+        // che li ha prodotti: quelli ancora in coda dopo un riavvio o uno stop vengono scartati
+        int current = ++run;
+        engine.start(position, info -> SwingUtilities.invokeLater(() -> showInfo(current, info)));
+    }
+
+    /**
+     * Ferma l'analisi in corso.
+     */
+    public void stopAnalysis() {
+        if (engine != null) engine.stop();
+        analyzing = false;
+        run++;
+        analyzeButton.setText("Analizza posizione");
+        threadsSpinner.setEnabled(true);
+        hashSpinner.setEnabled(true);
+    }
+
+    /**
+     * Mostra il risultato di un'iterazione, se appartiene all'analisi corrente.
+     * @param analysis Il numero dell'analisi che ha prodotto il risultato
+     * @param info     Il risultato dell'iterazione
+     */
+    private void showInfo(int analysis, AnalysisEngine.Info info) {
+        // Un aggiornamento di un'analisi fermata o riavviata su un'altra posizione non va mostrato
+        if (analysis != run) return;
+
+        scoreLabel.setText("prof " + info.getDepth() + "  " + info.scoreToString());
+        linesArea.insert(info.getDepth() + ": " + info.scoreToString() + "  " + info.lineToUci() + "\n", 0);
+        linesArea.setCaretPosition(0);
+        statsLabel.setText(String.format("%,d nodi/s  hash %.1f%%  hit %.1f%%",
+                info.nodesPerSecond(), info.getHashfull() / 10.0, info.hitRate()));
+    }
+}
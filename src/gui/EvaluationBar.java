@@ -0,0 +1,81 @@
+package gui;
+
+import javax.swing.*;
+import java.awt.*;
+
+/**
+ * Barra verticale che mostra la valutazione della posizione: la parte bianca cresce dal basso quando il bianco
+ * è in vantaggio, quella nera dall'alto quando lo è il nero. Il punteggio viene compresso con una curva logistica,
+ * così la barra si riempie solo con vantaggi decisivi.
+ */
+public final class EvaluationBar extends JComponent {
+    private static final Color WHITE_COLOR = new Color(240, 240, 240);
+    private static final Color BLACK_COLOR = new Color(50, 50, 50);
+    private static final Font SCORE_FONT = new Font("Arial", Font.BOLD, 11);
+    private static final double SCALE = 400.0; // Vantaggio in centesimi di pedone per cui la barra è piena al 95%
+
+    private int score; // Punteggio dal punto di vista del bianco, in centesimi di pedone
+
+    /**
+     * Costruttore della barra, con la posizione in equilibrio.
+     */
+    public EvaluationBar() {
+        setPreferredSize(new Dimension(28, 250));
+        setMinimumSize(new Dimension(28, 100));
+    }
+
+    /**
+     * Aggiorna il punteggio mostrato.
+     * @param score Punteggio in centesimi di pedone dal punto di vista del bianco
+     */
+    public void setScore(int score) {
+        this.score = score;
+        setToolTipText(formatScore());
+        repaint();
+    }
+
+    /**
+     * Restituisce il punteggio mostrato.
+     * @return Il punteggio in centesimi di pedone dal punto di vista del bianco
+     */
+    public int getScore() {
+        return score;
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        int width = getWidth();
+        int height = getHeight();
+
+        // Frazione della barra spettante al bianco, tra 0 e 1
+        double white = 1.0 / (1.0 + Math.exp(-score * Math.log(19) / SCALE));
+        int whiteHeight = (int) Math.round(height * white);
+
+        g.setColor(BLACK_COLOR);
+        g.fillRect(0, 0, width, height - whiteHeight);
+        g.setColor(WHITE_COLOR);
+        g.fillRect(0, height - whiteHeight, width, whiteHeight);
+
+        // Il punteggio è scritto dal lato di chi è in vantaggio, con il colore in contrasto
+        g.setFont(SCORE_FONT);
+        String text = formatScore();
+        FontMetrics metrics = g.getFontMetrics();
+        int x = Math.max(0, (width - metrics.stringWidth(text)) / 2);
+        if (score >= 0) {
+            g.setColor(BLACK_COLOR);
+            g.drawString(text, x, height - 4);
+        } else {
+            g.setColor(WHITE_COLOR);
+            g.drawString(text, x, metrics.getAscent() + 2);
+        }
+    }
+
+    /**
+     * Formatta il punteggio in pedoni.
+     * @return Il punteggio, ad esempio "+0.4"
+     */
+    private String formatScore() {
+        return String.format("%+.1f", score / 100.0);
+    }
+}
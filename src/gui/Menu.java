@@ -2,6 +2,7 @@ package gui;
 
 import player.Player;
 import utils.Move;
+import utils.constant.ChessColor;
 import utils.constant.MoveType;
 
 import javax.swing.*;
@@ -40,20 +41,23 @@ public class Menu extends JFrame {
         titlePanel.setOpaque(false);
         titlePanel.add(titleLabel);
 
-        JPanel buttonPanel = new JPanel(new GridLayout(3, 1, 10, 10));
+        JPanel buttonPanel = new JPanel(new GridLayout(4, 1, 10, 10));
         buttonPanel.setOpaque(false);
 
         JButton btnLocalGame = createStyledButton("Partita Locale (2 Giocatori)", new Color(180, 0, 0));
         JButton btnFenGame = createStyledButton("Partita Locale con FEN", new Color(180, 0, 0));
         JButton btnOnlineGame = createStyledButton("Partita Online con un Amico", new Color(180, 0, 0));
+        JButton btnComputerGame = createStyledButton("Gioca contro il Computer", new Color(180, 0, 0));
 
         btnLocalGame.addActionListener(e -> iniziaGiocoNormale());
         btnFenGame.addActionListener(e -> iniziaConFEN());
         btnOnlineGame.addActionListener(e -> iniziaGiocoOnline());
+        btnComputerGame.addActionListener(e -> iniziaGiocoControComputer());
 
         buttonPanel.add(btnLocalGame);
         buttonPanel.add(btnFenGame);
         buttonPanel.add(btnOnlineGame);
+        buttonPanel.add(btnComputerGame);
 
         JPanel container = new JPanel(new GridBagLayout());
         container.setOpaque(false);
@@ -172,6 +176,28 @@ public class Menu extends JFrame {
         }
     }
 
+    /**
+     * Avvia una partita locale contro il computer, con il colore scelto dal giocatore.
+     */
+    private void iniziaGiocoControComputer() {
+        this.dispose();
+        String nome = chiediInput("Nome Giocatore:");
+        String[] colori = {"Bianco", "Nero"};
+        int scelta = JOptionPane.showOptionDialog(null, "Con quale colore vuoi giocare?", "Scegli il colore",
+                JOptionPane.DEFAULT_OPTION, JOptionPane.QUESTION_MESSAGE, null, colori, colori[0]);
+
+        // Il computer gioca con il colore opposto a quello scelto (se la finestra viene chiusa il giocatore ha il bianco)
+        int computerColor = (scelta == 1) ? ChessColor.WHITE : ChessColor.BLACK;
+        Player player1 = new Player(new Move(0, 0, MoveType.NORMAL), computerColor == ChessColor.WHITE ? "Computer" : nome);
+        Player player2 = new Player(new Move(0, 0, MoveType.NORMAL), computerColor == ChessColor.BLACK ? "Computer" : nome);
+        try {
+            gui.Window w = new gui.Window("Partita contro il Computer", player1, player2, null, true, computerColor);
+            w.setVisible(true);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
     /**
      * Avvia una partita locale con una posizione FEN specificata.
      */
@@ -0,0 +1,117 @@
+package gui;
+
+import board.OpeningBook;
+import board.PackedMove;
+import board.Position;
+import utils.constant.ChessPath;
+
+import javax.swing.*;
+import javax.swing.filechooser.FileNameExtensionFilter;
+import java.awt.*;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Pannello che mostra le mosse del libro delle aperture per la posizione corrente, con il peso di ognuna.
+ * All'avvio viene aperto il libro in {@link ChessPath#OPENING_BOOK}, se presente; un altro libro Polyglot (.bin)
+ * può essere scelto con il pulsante. Il libro è mappato in memoria e condiviso tra tutte le finestre aperte.
+ */
+public final class OpeningPanel extends JPanel {
+    private static final Font LINE_FONT = new Font("Monospaced", Font.PLAIN, 12);
+
+    private final JLabel bookLabel; // Nome del libro aperto
+    private final JTextArea movesArea; // Mosse del libro per la posizione corrente
+
+    private OpeningBook book; // Libro aperto, null se nessuno
+    private Position position; // Posizione corrente
+
+    /**
+     * Costruttore del pannello, con il libro predefinito se esiste.
+     */
+    public OpeningPanel() {
+        super(new BorderLayout(5, 5));
+        setBorder(BorderFactory.createTitledBorder("Aperture"));
+        setPreferredSize(new Dimension(160, 150));
+
+        bookLabel = new JLabel("Nessun libro");
+        JButton chooseButton = new JButton("Libro...");
+        chooseButton.addActionListener(e -> chooseBook());
+
+        JPanel header = new JPanel(new BorderLayout(5, 5));
+        header.add(bookLabel, BorderLayout.CENTER);
+        header.add(chooseButton, BorderLayout.EAST);
+
+        movesArea = new JTextArea();
+        movesArea.setEditable(false);
+        movesArea.setFont(LINE_FONT);
+
+        add(header, BorderLayout.NORTH);
+        add(new JScrollPane(movesArea), BorderLayout.CENTER);
+
+        Path defaultBook = Path.of(ChessPath.OPENING_BOOK);
+        if (Files.isRegularFile(defaultBook)) openBook(defaultBook);
+    }
+
+    /**
+     * Aggiorna le mosse mostrate per una nuova posizione.
+     * @param position La posizione corrente della scacchiera (viene copiata)
+     */
+    public void positionChanged(Position position) {
+        this.position = new Position(position);
+        showMoves();
+    }
+
+    /**
+     * Fa scegliere all'utente un libro Polyglot da aprire.
+     */
+    private void chooseBook() {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setFileFilter(new FileNameExtensionFilter("Libro Polyglot (.bin)", "bin"));
+        if (chooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) openBook(chooser.getSelectedFile().toPath());
+    }
+
+    /**
+     * Apre un libro e aggiorna le mosse mostrate.
+     * @param path Il file del libro
+     */
+    private void openBook(Path path) {
+        try {
+            book = OpeningBook.open(path);
+            bookLabel.setText(path.getFileName().toString());
+            bookLabel.setToolTipText(book.size() + " voci");
+        } catch (IOException e) {
+            book = null;
+            bookLabel.setText("Nessun libro");
+            JOptionPane.showMessageDialog(this, e.getMessage(), "Errore", JOptionPane.ERROR_MESSAGE);
+        }
+        showMoves();
+    }
+
+    /**
+     * Mostra le mosse del libro per la posizione corrente, con il peso in percentuale.
+     */
+    private void showMoves() {
+        if (book == null || position == null) {
+            movesArea.setText("");
+            return;
+        }
+
+        List<OpeningBook.Entry> entries = book.lookup(position);
+        if (entries.isEmpty()) {
+            movesArea.setText("Fuori dal libro");
+            return;
+        }
+
+        long total = 0;
+        for (OpeningBook.Entry entry : entries) total += entry.getWeight();
+        StringBuilder sb = new StringBuilder();
+        for (OpeningBook.Entry entry : entries) {
+            double percent = total == 0 ? 0 : entry.getWeight() * 100.0 / total;
+            sb.append(String.format("%-6s %5.1f%%%n", PackedMove.toUci(entry.getMove()), percent));
+        }
+        movesArea.setText(sb.toString());
+        movesArea.setCaretPosition(0);
+    }
+}
@@ -1,5 +1,14 @@
 package gui;
 
+import board.MoveGenerator;
+import board.MoveList;
+import board.PackedMove;
+import board.Position;
+import board.Square;
+import board.StaticExchange;
+import engine.IncrementalEvaluator;
+import engine.Search;
+import engine.tablebase.Tablebase;
 import org.json.JSONObject;
 
 import utils.Move;
@@ -8,6 +17,7 @@ import utils.constant.MoveType;
 import utils.Pair;
 import utils.constant.ChessColor;
 import utils.constant.ChessType;
+import utils.constant.ChessValue;
 import piece.*;
 import player.Player;
 
@@ -16,6 +26,7 @@ import javax.sound.sampled.AudioSystem;
 import javax.sound.sampled.Clip;
 import javax.swing.*;
 import javax.swing.Timer;
+import javax.swing.border.Border;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ComponentAdapter;
@@ -52,6 +63,7 @@ public class Window extends JFrame {
     private static JLabel playerLabel1; // Etichetta per il nome del giocatore 1
     private static final Color color2 = new Color(115, 149, 82); // Colore della casella 1
     private static final Color color1 = new Color(235, 236, 208); // Colore della casella 2
+    private static final Border HANGING_BORDER = BorderFactory.createLineBorder(new Color(220, 20, 60), 3); // Bordo dei pezzi in presa
     private static JPanel iconListPanel1; //Pannello icone per il giocatore 1
     private static JPanel iconListPanel2; //Pannello icone per il giocatore 2
 
@@ -65,6 +77,7 @@ public class Window extends JFrame {
     private final ArrayList<ChessButton> matrix = new ArrayList<>(); // Matrice dei bottoni della scacchiera
     private final ArrayList<Move> movesMatch = new ArrayList<>(); // Lista delle mosse del match
     private ArrayList<Pair> INITIAL_BOARD; // La scacchiera iniziale
+    private Position position; // Copia headless della scacchiera, usata per le verifiche di scacco con makeMove/unmakeMove
     private String path; // Percorso del file di salvataggio delle mosse
 
     /* Audio */
@@ -74,6 +87,10 @@ public class Window extends JFrame {
     private JPanel boardPanel; // Pannello della scacchiera
     private JPanel bottomPanel; // Pannello inferiore
     private JPanel movePanel; // Pannello delle mosse
+    private AnalysisPanel analysisPanel; // Pannello di analisi della posizione (solo offline)
+    private EvaluationBar evaluationBar; // Barra di valutazione accanto alla lista delle mosse
+    private OpeningPanel openingPanel; // Mosse del libro delle aperture sotto la lista delle mosse
+    private IncrementalEvaluator evaluator; // Valutazione aggiornata a ogni mossa per la barra
     private ChessButton piece1, piece2; // Pulsanti associati ai pezzi
 
     /* Salvataggio */
@@ -96,6 +113,12 @@ public class Window extends JFrame {
     private int moveType; // Tipo di mossa
 
     private final boolean offlineGame; // true se la modalitá di gioco é offline, false altrimenti
+    private final int computerColor; // Colore giocato dal computer, ChessColor.BLANK se giocano due persone
+    private int promotionChoice = ChessType.BLANK; // Pezzo già scelto per la promozione (computer, avversario online o scelta inviata al server), al posto del popup
+    private ChessButton pendingFrom, pendingTo; // Mossa inviata al server e non ancora confermata (solo online)
+    private int pendingMoveType; // Tipo della mossa in attesa di conferma
+    private int pendingPromotion = ChessType.BLANK; // Pezzo scelto per la promozione della mossa in attesa di conferma
+    private volatile boolean gameEnded; // true quando la finestra ha già mostrato il risultato della partita
 
     /**
      * Listener per rilevare e gestire il ridimensionamento del componente (ad esempio, una finestra o pannello).
@@ -136,10 +159,24 @@ public class Window extends JFrame {
      * @param offlineGame true se il game viene giocato in locale, false altrimenti
      */
     public Window(String title, Player player1, Player player2, String fen, boolean offlineGame) {
+        this(title, player1, player2, fen, offlineGame, ChessColor.BLANK);
+    }
+
+    /**
+     * Costruttore della finestra di gioco con un eventuale avversario controllato dal computer.
+     * @param title Titolo della finestra
+     * @param player1 Il primo giocatore
+     * @param player2 Il secondo giocatore
+     * @param fen Notazione FEN per la scacchiera iniziale
+     * @param offlineGame true se il game viene giocato in locale, false altrimenti
+     * @param computerColor Colore giocato dal computer (solo offline), ChessColor.BLANK se giocano due persone
+     */
+    public Window(String title, Player player1, Player player2, String fen, boolean offlineGame, int computerColor) {
         super(title);
         players.add(player1);
         players.add(player2);
         this.offlineGame = offlineGame;
+        this.computerColor = offlineGame ? computerColor : ChessColor.BLANK;
         if (offlineGame) initOffline(WIDTH, HEIGHT, fen);
         else initOnline(WIDTH, HEIGHT);
     }
@@ -163,6 +200,7 @@ public class Window extends JFrame {
             // Ricostruisce la scacchiera dalla notazione FEN fornita, o usa una configurazione standard se il parametro è nullo
             // La notazione FEN di default descrive la configurazione iniziale degli scacchi
             INITIAL_BOARD = reBuildChessBoardFromFen(Objects.requireNonNullElse(fen, "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w"));
+            position = Position.fromFen(Objects.requireNonNullElse(fen, Position.START_FEN));
         } catch (Exception e) {
             // Gestisce eventuali errori durante la ricostruzione della scacchiera
             e.printStackTrace();
@@ -197,16 +235,24 @@ public class Window extends JFrame {
         centerPanel = createCenterPanel(); // Pannello centrale per la scacchiera
         bottomPanel = createPlayerPanel(players.get(0).getName(), ChessColor.WHITE, label_time1, playerLabel0); // Pannello per il giocatore bianco
 
+        // Pannello laterale per l'analisi della posizione con il motore
+        analysisPanel = new AnalysisPanel();
+        if (position != null) analysisPanel.positionChanged(position);
+
         // Aggiunge i pannelli alla finestra principale in base alla disposizione
         this.add(topPanel, BorderLayout.NORTH);
         this.add(centerPanel);
         this.add(bottomPanel, BorderLayout.SOUTH);
+        this.add(analysisPanel, BorderLayout.EAST);
 
         // Riproduce il suono di inizio partita
         playSound(MoveType.START_GAME);
 
         // Salva la posizione iniziale della scacchiera in formato FEN
         writeFen(buildFenFromChessBoard());
+
+        // Se il computer ha il tratto nella posizione iniziale, muove per primo
+        startComputerMove();
     }
 
 
@@ -223,6 +269,11 @@ public class Window extends JFrame {
         timeRemaining0 = RAPID; // Tempo giocatore nero
         timeRemaining1 = RAPID;   // Tempo giocatore bianco
 
+        // Il nome viene chiesto prima di connettersi: il server chiude le connessioni che non lo inviano entro pochi secondi
+        Scanner scanner = new Scanner(System.in);
+        System.out.print("Inserisci il tuo nome: ");
+        String name = scanner.nextLine();
+
         try {
             // Apertura della connessione al server
             socket = new Socket(IP_ADDRESS, 25565);
@@ -231,13 +282,9 @@ public class Window extends JFrame {
 
             // Lettura della richiesta del nome utente dal server
             JSONObject nameRequest = new JSONObject(input.readLine());
-            Scanner scanner = new Scanner(System.in);
 
-            String name = "";
             // Se il server richiede il nome del giocatore
             if (nameRequest.getString("action").equals("request_name")) {
-                System.out.print("Inserisci il tuo nome: ");
-                name = scanner.nextLine();
                 players.getFirst().setName(name);
 
                 // Creazione della risposta con il nome del giocatore
@@ -247,8 +294,14 @@ public class Window extends JFrame {
                 output.println(nameResponse);
             }
 
-            // Ricezione del colore assegnato dal server
+            // Ricezione del colore assegnato dal server, quando trova un avversario.
+            // Nel frattempo il server può comunicare l'attesa stimata in coda
             JSONObject colorResponse = new JSONObject(input.readLine());
+            while (colorResponse.getString("action").equals("queue")) {
+                long wait = colorResponse.getLong("estimated_wait");
+                System.out.println("In attesa di un avversario" + (wait < 0 ? "..." : ", attesa stimata: " + formatTime((int) Math.min(wait, Integer.MAX_VALUE))));
+                colorResponse = new JSONObject(input.readLine());
+            }
             System.out.println("Sei il giocatore con i pezzi " + ((colorResponse.getString("color").equals("0")) ? "bianchi!" : "neri!"));
 
             String color = colorResponse.getString("color");
@@ -262,6 +315,10 @@ public class Window extends JFrame {
             turno = (turnoServer.equals("0")) ? ChessColor.WHITE : ChessColor.BLACK;
             // System.out.println("Ho impostato turno a: " + turno);
 
+            // Impostazione del tempo di gioco iniziale, deciso dal server
+            timeRemaining0 = startGame.optInt("time", RAPID); // Tempo giocatore nero
+            timeRemaining1 = startGame.optInt("time", RAPID);   // Tempo giocatore bianco
+
             // Configurazione della finestra principale del gioco
             this.setSize(width, height);
             this.setLocationRelativeTo(null); // Centra la finestra sullo schermo
@@ -271,6 +328,7 @@ public class Window extends JFrame {
             try {
                 // Impostazione iniziale della scacchiera con la posizione standard FEN
                 INITIAL_BOARD = reBuildChessBoardFromFen("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w");
+                position = Position.startPosition();
             } catch (Exception e) {
                 e.printStackTrace();
             }
@@ -296,10 +354,6 @@ public class Window extends JFrame {
             timer0 = createTimer(label_time0, 0, timer1);
             timer1 = createTimer(label_time1, 1, timer0);
 
-            // Impostazione del tempo di gioco iniziale
-            timeRemaining0 = RAPID; // Tempo giocatore nero
-            timeRemaining1 = RAPID;   // Tempo giocatore bianco
-
             // Thread per la gestione della comunicazione con il server
             new Thread(() -> {
                 try {
@@ -336,6 +390,12 @@ public class Window extends JFrame {
 
                                 moveType = message.getInt("moveType");
 
+                                // Pezzo scelto dall'avversario per la promozione
+                                promotionChoice = message.optInt("promotion", ChessType.BLANK);
+
+                                // Allinea gli orologi a quelli del server
+                                syncClocks(message);
+
                                 // Esecuzione della mossa ricevuta
                                 getOrMakeMoveFromServer();
 
@@ -343,6 +403,44 @@ public class Window extends JFrame {
                                 piece1 = null;
                                 piece2 = null;
                                 moveType = -1;
+                                promotionChoice = ChessType.BLANK;
+                                break;
+
+                            case "update_turn":
+                                // Conferma della propria mossa: ora viene eseguita sulla scacchiera
+                                if (pendingFrom != null) {
+                                    piece1 = pendingFrom;
+                                    piece2 = pendingTo;
+                                    moveType = pendingMoveType;
+                                    promotionChoice = pendingPromotion;
+                                    pendingFrom = pendingTo = null;
+
+                                    getOrMakeMoveFromServer();
+
+                                    piece1 = null;
+                                    piece2 = null;
+                                    moveType = -1;
+                                    promotionChoice = ChessType.BLANK;
+                                }
+
+                                // Allinea gli orologi a quelli del server
+                                syncClocks(message);
+                                break;
+
+                            case "error":
+                                // Mossa rifiutata dal server: non è stata eseguita, il giocatore resta al tratto
+                                pendingFrom = pendingTo = null;
+                                System.out.println("Errore dal server: " + message.optString("message"));
+                                break;
+
+                            case "game_over":
+                                // Fine della partita decisa dal server (tempo, abbandono, disconnessione, matto, patta, tablebase)
+                                showServerResult(message);
+                                return;
+
+                            case "ping":
+                                // Il server misura il ritardo di rete per compensarlo sull'orologio
+                                output.println(new JSONObject().put("action", "pong"));
                                 break;
 
                             default:
@@ -382,10 +480,54 @@ public class Window extends JFrame {
     }
 
 
+    /**
+     * Imposta il tempo rimasto dei due giocatori con i valori inviati dal server, che sono quelli validi.
+     * timeRemaining1 è l'orologio del bianco, timeRemaining0 quello del nero.
+     * @param message Il messaggio del server, con i campi "white_time" e "black_time" in millisecondi
+     */
+    private void syncClocks(JSONObject message) {
+        if (!message.has("white_time") || !message.has("black_time")) return;
+        timeRemaining1 = message.getInt("white_time");
+        timeRemaining0 = message.getInt("black_time");
+        label_time1.setText(formatTime(timeRemaining1));
+        label_time0.setText(formatTime(timeRemaining0));
+    }
+
+    /**
+     * Chiude la partita online con il risultato deciso dal server, se la finestra non lo ha già mostrato.
+     * Ferma i timer e l'analisi, chiude la connessione e mostra la finestra del risultato.
+     * @param message Il messaggio "game_over", con il testo in "result" e il colore del vincitore in "winner" (assente se nessuno vince)
+     */
+    private void showServerResult(JSONObject message) {
+        if (gameEnded) return;
+        gameEnded = true;
+
+        timer0.stop();
+        timer1.stop();
+        if (analysisPanel != null) analysisPanel.stopAnalysis();
+        playSound(MoveType.CHECKMATE);
+        this.dispose();
+        try {
+            socket.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        String result = message.optString("result");
+        if (!message.has("winner")) {
+            new ResultWindow(null, null, players.get(0).getName(), players.get(1).getName(), result);
+            return;
+        }
+        int winnerColor = message.getString("winner").equals("0") ? ChessColor.WHITE : ChessColor.BLACK;
+        int loserColor = winnerColor == ChessColor.WHITE ? ChessColor.BLACK : ChessColor.WHITE;
+        new ResultWindow(winnerColor, loserColor, players.get(winnerColor).getName(), players.get(loserColor).getName(), result);
+    }
+
     /**
      * Crea un timer per il giocatore specificato.
      * Il timer decrementa il tempo rimanente ogni 100 ms e aggiorna l'etichetta corrispondente.
-     * Se il tempo scade, il timer si ferma e dichiara il vincitore e il perdente.
+     * Se il tempo scade, il timer si ferma e dichiara il vincitore e il perdente; online lo segnala al server
+     * e attende il suo verdetto.
      * @param label  JLabel che mostra il tempo rimanente per il giocatore
      * @param player Identificatore del giocatore (0 per il primo, 1 per il secondo)
      * @param other  Il timer dell'altro giocatore, che verrà fermato se questo giocatore perde
@@ -400,11 +542,21 @@ public class Window extends JFrame {
             } else if (player == 0 && timeRemaining0 > 0) {
                 timeRemaining0 -= 100;
                 label.setText(formatTime(timeRemaining0));
+            } else if (!offlineGame) {
+                // Online decide il server, che compensa il ritardo di rete: il client segnala il tempo scaduto
+                // e resta connesso in attesa di "game_over" (o della conferma di una mossa arrivata in tempo)
+                ((Timer) e.getSource()).stop();
+                JSONObject moveJson = new JSONObject();
+                moveJson.put("action", "move");
+                moveJson.put("time-limit", true);
+                output.println(moveJson);
             } else {
                 // Se il tempo è esaurito, ferma entrambi i timer
+                gameEnded = true;
                 ((Timer) e.getSource()).stop();
                 label.setText("HO PERSO");
                 other.stop();
+                if (analysisPanel != null) analysisPanel.stopAnalysis();
 
                 // Dichiarazione del vincitore
                 if (player == 1) label_time0.setText("HO VINTO!");
@@ -418,19 +570,6 @@ public class Window extends JFrame {
 
                 this.dispose();
 
-                // Se il gioco non è offline, invia il messaggio time-limit al server che termina la partita
-                if (!offlineGame){
-                    JSONObject moveJson = new JSONObject();
-                    moveJson.put("action", "move");
-                    moveJson.put("time-limit", true);
-                    output.println(moveJson);
-                    try {
-                        socket.close();
-                    } catch (IOException c) {
-                        c.printStackTrace();
-                    }
-                }
-
                 // Determina il vincitore e mostra la finestra dei risultati
                 // Controlla se il player al quale é scaduto il timer é this player
                 boolean winner = !(turno == ownColor);
@@ -646,6 +785,19 @@ public class Window extends JFrame {
 
         rightPanel.add(scrollPane, BorderLayout.CENTER);
 
+        // Barra di valutazione accanto alla lista delle mosse
+        evaluationBar = new EvaluationBar();
+        if (position != null) {
+            evaluator = new IncrementalEvaluator(position);
+            evaluationBar.setScore(evaluator.getScore());
+        }
+        rightPanel.add(evaluationBar, BorderLayout.WEST);
+
+        // Mosse del libro delle aperture sotto la lista delle mosse
+        openingPanel = new OpeningPanel();
+        if (position != null) openingPanel.positionChanged(position);
+        rightPanel.add(openingPanel, BorderLayout.SOUTH);
+
         // Aggiunge il pannello della scacchiera e il pannello delle mosse al pannello principale
         gbc.gridx = 0;
         gbc.weightx = 0.6;
@@ -766,7 +918,7 @@ public class Window extends JFrame {
 
         switch(piece.getChessType()){
             case ChessType.TOWER -> {
-                button = new Tower(piece,c, 5,i,j);
+                button = new Tower(piece,c, ChessValue.TOWER,i,j);
 
                 // Controllo se torre bianca è già stata mossa
                 if(piece.getChessColor().equals(ChessColor.WHITE)){
@@ -779,9 +931,9 @@ public class Window extends JFrame {
                         button.setAlreadyMoved();
                 }
             }
-            case ChessType.BISHOP -> button = new Bishop(piece,c, 3, i,j);
-            case ChessType.KNIGHT -> button = new Knight(piece,c, 3,i,j);
-            case ChessType.QUEEN -> button = new Queen(piece,c,10, i,j);
+            case ChessType.BISHOP -> button = new Bishop(piece,c, ChessValue.BISHOP, i,j);
+            case ChessType.KNIGHT -> button = new Knight(piece,c, ChessValue.KNIGHT,i,j);
+            case ChessType.QUEEN -> button = new Queen(piece,c,ChessValue.QUEEN, i,j);
             case ChessType.KING -> {
                 button = new King(piece,c,i,j);
 
@@ -799,7 +951,7 @@ public class Window extends JFrame {
                 }
             }
             case ChessType.PAWN -> {
-                button = new Pawn(piece,c, 1, i,j);
+                button = new Pawn(piece,c, ChessValue.PAWN, i,j);
 
                 // Verifica se il pedone è già stato mosso per entrambi i colori
                 if(piece.getChessColor().equals(ChessColor.BLACK)){
@@ -836,8 +988,14 @@ public class Window extends JFrame {
                     System.out.println("Non puoi muoverti, aspetta la mossa dell'avversario.");
                     return; // Se non è il turno del giocatore, il movimento è ignorato
                 }
+
+                // Finché il server non conferma la mossa inviata non se ne possono fare altre
+                if (pendingFrom != null) return;
             }
 
+            // Durante il turno del computer i click sulla scacchiera vengono ignorati
+            if (turno == computerColor) return;
+
             // Controlla se il primo pezzo selezionato è vuoto
             if (piece1 == null && button.getPiece().getChessType().equals(ChessType.BLANK)) {
                 // Se il pezzo è vuoto, ignora il click
@@ -862,20 +1020,35 @@ public class Window extends JFrame {
                 // Verifica se la mossa è valida (usando la logica di movimento degli scacchi)
                 if (isValidMove(piece1, piece2)) {
 
-                    // Se il gioco è online, invia la mossa al server
+                    // Se il gioco è online, invia la mossa al server, che la valida: viene eseguita solo quando
+                    // arriva la conferma (update_turn), così una mossa rifiutata non cambia la scacchiera
                     if (!offlineGame) {
                         JSONObject moveJson = new JSONObject();
                         moveJson.put("action", "move");
                         moveJson.put("move", piece1.printPosition() + "-" + piece2.printPosition());
                         moveJson.put("moveType", moveType);
+
+                        // Il pezzo della promozione va scelto prima dell'invio, perché il server deve conoscerlo.
+                        // Se il popup viene chiuso senza scelta si promuove a donna
+                        pendingPromotion = ChessType.BLANK;
+                        if (piece1 instanceof Pawn && ((Pawn) piece1).isOnPromote()) {
+                            pendingPromotion = ChessType.QUEEN;
+                            new MyPopup(this, result -> pendingPromotion = Integer.parseInt(result), piece1.getPiece().getChessColor()).setVisible(true);
+                            moveJson.put("promotion", pendingPromotion);
+                        }
+                        pendingMoveType = moveType;
+                        pendingTo = piece2;
+                        pendingFrom = piece1;
                         output.println(moveJson);
                     }
 
                     // Gestisci la mossa, inclusa l'eventuale cattura
-                    try {
-                        getOrMakeMoveFromServer();
-                    } catch (InterruptedException ex) {
-                        throw new RuntimeException(ex);
+                    else {
+                        try {
+                            getOrMakeMoveFromServer();
+                        } catch (InterruptedException ex) {
+                            throw new RuntimeException(ex);
+                        }
                     }
                 }
 
@@ -887,39 +1060,73 @@ public class Window extends JFrame {
     }
 
     /**
-     * Gestisce il movimento del pezzo, verifica se la mossa genera scacco matto o stalemate,
+     * Gestisce il movimento del pezzo, verifica se la mossa genera scacco matto o stallo,
      * e aggiorna il file FEN con la posizione corrente della scacchiera.
      * Viene anche verificato se il movimento ha causato uno scacco matto e, in tal caso,
      * termina il gioco mostrando una finestra di risultato.
      */
     public void getOrMakeMoveFromServer() throws InterruptedException {
+        // Salva le caselle della mossa prima che movePiece sposti piece1
+        int from = piece1.square();
+        int to = piece2.square();
+
         // Esegue il movimento del pezzo (inclusa l'eventuale cattura)
         movePiece(piece1, piece2);
 
+        // Aggiorna la posizione headless, il pezzo scelto per un'eventuale promozione è ora nella casella di arrivo
+        position.makeMove(position.moveFromSquares(from, to, matrix.get(piece2.position()).getPiece().getChessType()));
+
+        // Se l'analisi è attiva riparte dalla nuova posizione
+        if (analysisPanel != null) analysisPanel.positionChanged(position);
+
+        // Evidenzia i pezzi rimasti in presa dopo la mossa
+        highlightHangingPieces();
+
+        // Aggiorna la barra di valutazione, ricalcolando solo le caselle cambiate
+        if (evaluator != null) evaluationBar.setScore(evaluator.update(position));
+
+        // Mostra le mosse del libro per la nuova posizione
+        openingPanel.positionChanged(position);
+
         // Verifica se la mossa ha causato uno scacco
         findPossibleChecks();
 
         // Scrive la posizione attuale della scacchiera in formato FEN nel file CSV
         writeFen(buildFenFromChessBoard());
 
-        // Verifica se la mossa ha causato uno scacco matto
-        if (isCheckMate(piece1)) {
+        // Verifica se la mossa ha concluso la partita (scacco matto o patta)
+        boolean noLegalMoves = isGameOver();
+        boolean checkmate = noLegalMoves && position.isInCheck();
+        String drawReason = checkmate ? null : getDrawReason(noLegalMoves);
+
+        // Con pochi pezzi il risultato può essere già deciso: la partita viene aggiudicata secondo le tablebase
+        Tablebase.Result adjudication = checkmate || drawReason != null ? null : Tablebase.getDefault().adjudicate(position);
+        if (adjudication != null && adjudication.getWdl() == Tablebase.Result.DRAW) drawReason = "Patta secondo le tablebase!";
+        boolean decided = adjudication != null && adjudication.getWdl() != Tablebase.Result.DRAW;
+
+        if (checkmate || decided || drawReason != null) {
+
+            gameEnded = true;
+
             // Suona il suono di scacco matto
             playSound(MoveType.CHECKMATE);
 
-            // Ferma i timer del gioco (per entrambi i giocatori)
+            // Ferma i timer del gioco (per entrambi i giocatori) e l'eventuale analisi
             timer0.stop();
             timer1.stop();
+            if (analysisPanel != null) analysisPanel.stopAnalysis();
 
             Thread.sleep(2000);
             this.dispose();
 
-            // Se il gioco non è offline, invia il messaggio checkmate al server che termina la partita
+            // Se il gioco non è offline, invia il messaggio di fine partita al server
             if (!offlineGame) {
                 JSONObject moveJson = new JSONObject();
                 moveJson.put("action", "move");
-                moveJson.put("checkmate", true);
-                output.println(moveJson);
+                if (checkmate) moveJson.put("checkmate", true);
+                else moveJson.put("draw", drawReason);
+                // La vittoria secondo le tablebase viene aggiudicata dal server, che conosce la stessa posizione
+                if (!decided) output.println(moveJson);
                 try {
                     socket.close();
                 } catch (IOException e) {
@@ -927,13 +1134,28 @@ public class Window extends JFrame {
                 }
             }
 
+            // Posizione vinta secondo le tablebase: vince il lato al tratto se la posizione è vinta, altrimenti chi ha mosso
+            if (decided) {
+                int winnerColor = adjudication.getWdl() == Tablebase.Result.WIN ? position.getSideToMove() : position.getSideToMove() ^ 1;
+                int loserColor = winnerColor ^ 1;
+                new ResultWindow(winnerColor, loserColor, players.get(winnerColor).getName(), players.get(loserColor).getName(),
+                        players.get(loserColor).getName() + " è in una posizione persa secondo le tablebase!");
+                return;
+            }
+
+            // Patta: la finestra di risultato usa il layout senza vincitore
+            if (!checkmate) {
+                new ResultWindow(null, null, players.get(0).getName(), players.get(1).getName(), drawReason);
+                return;
+            }
+
             // Determina il giocatore perdente e mostra una finestra di risultato
             boolean winner = turno == ownColor;
             int otherPlayer = (turno == 1) ? 0 : 1;
             if (winner) new ResultWindow(turno, otherPlayer, players.get(turno).getName(), players.get(otherPlayer).getName(), players.get(otherPlayer).getName() + " ha subito scacco matto!");
             else new ResultWindow(otherPlayer, turno, players.get(otherPlayer).getName(), players.get(turno).getName(), players.get(turno).getName() + " ha subito scacco matto!");
 
-            return; // Termina la funzione se c'è scacco matto
+            return; // Termina la funzione se la partita è finita
         }
 
         // Se non c'è scacco matto, cambia il turno
@@ -941,6 +1163,65 @@ public class Window extends JFrame {
 
         // Avvia e ferma i timer per il giocatore successivo
         startAndStopClock();
+
+        // Se ora tocca al computer, avvia la ricerca della sua mossa
+        startComputerMove();
+    }
+
+    /**
+     * Avvia la ricerca della mossa del computer, se è il suo turno.
+     * La ricerca gira in un thread separato (SwingWorker) su una copia della posizione, così l'interfaccia
+     * e i timer restano reattivi; il tempo concesso è una frazione del tempo rimasto sull'orologio del computer,
+     * che nel frattempo continua a scorrere. La mossa trovata viene giocata sull'EDT.
+     */
+    private void startComputerMove() {
+        if (turno != computerColor) return;
+
+        // timeRemaining1 è l'orologio del bianco, timeRemaining0 quello del nero
+        int remaining = computerColor == ChessColor.WHITE ? timeRemaining1 : timeRemaining0;
+        long slice = Search.timeForMove(remaining);
+        Position snapshot = new Position(position);
+
+        new SwingWorker<Integer, Void>() {
+            @Override
+            protected Integer doInBackground() {
+                return new Search().search(snapshot, slice, Search.MAX_PLY);
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    playComputerMove(get());
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+        }.execute();
+    }
+
+    /**
+     * Gioca sulla scacchiera la mossa scelta dal computer, passando per lo stesso percorso delle mosse del giocatore.
+     * @param move La mossa (PackedMove), ignorata se la partita è già terminata
+     * @throws InterruptedException Se l'attesa di fine partita viene interrotta
+     */
+    private void playComputerMove(int move) throws InterruptedException {
+        // La finestra può essere stata chiusa nel frattempo, ad esempio per tempo scaduto
+        if (move == PackedMove.NONE || !isDisplayable() || turno != computerColor) return;
+
+        int from = PackedMove.from(move);
+        int to = PackedMove.to(move);
+        piece1 = matrix.get(Square.row(from) * 8 + Square.col(from));
+        piece2 = matrix.get(Square.row(to) * 8 + Square.col(to));
+
+        // Imposta il tipo di mossa come per una mossa selezionata con il mouse
+        isValidMove(piece1, piece2);
+        if (PackedMove.isPromotion(move)) promotionChoice = PackedMove.promotion(move);
+
+        getOrMakeMoveFromServer();
+
+        promotionChoice = ChessType.BLANK;
+        piece1 = null;
+        piece2 = null;
     }
 
     /**
@@ -1011,448 +1292,41 @@ public class Window extends JFrame {
     }
 
     /***
-     * Metodo per il controllo del checkmate (scacco matto).
-     * Verifica se il giocatore è in scacco matto o se ci sono altre condizioni di fine partita (come stalemate).
-     * @param chessButton il bottone del pezzo che sta cercando di verificare il checkmate
-     * @return true se scacco matto, false altrimenti
+     * Metodo per il controllo della fine della partita dopo una mossa.
+     * Il giocatore che deve muovere non ha mosse legali: se è sotto scacco ha subito scacco matto, altrimenti è stallo.
+     * @return true se il giocatore al tratto non ha mosse legali, false altrimenti
      */
-    private boolean isCheckMate(ChessButton chessButton){
-
-        //1. Verifico che il player sia sotto scacco
-        boolean found = false;
-
-        // System.out.println("TEST COLORE: " + chessButton.getPiece().getChessColor() + ", " + turno);
-
-        // Cerco i pezzi che danno scacco, controllo tutti i pezzi del colore del pezzo che sta dando scacco
-        for(ChessButton button : players.get(turno).getPieces()){
-
-            //Per ogni pezzo, controllo se posso raggiungere il re avversario senza controllare la disposizione degli altri pezzi sulla scacchiera
-            out : for(Move m : button.getAllPossibleMoves()){
-
-                //Il pezzo raggiunge il re, controllo se non si interpongono altri pezzi tra button e il re avversario
-                if(m.equals(players.get(getOppositeColor()).king)){
-
-                    // Verifico che non ci siano pezzi tra il pezzo che dà scacco e il re
-                    for(Move inner : button.getStepForThisMove(players.get(getOppositeColor()).king)){
-                        /*
-                         * Se un qualsiasi pezzo si interpone tra button e il re avversario, allora non può essere scacco
-                         * Posso interrompere la ricerca per button e procedere con il pezzo successivo
-                         */
-                        if(!matrix.get(inner.position()).getPiece().getChessType().equals(ChessType.BLANK)){
-                            break out;
-                        }
-                    }
-
-                    //getActiveCheckPieces: ritorna tutti i pezzi che danno attivamente scacco oppure che controllano una casella dove il re non può muoversi
-                    players.get(turno).addActiveCheckPiece(button);
-                    found = true;
-                }
-            }
-        }
-
-        /*
-        //Se found è impostato a false, allora non c'è alcun scacco
-        if(!found){
-            System.out.println("non sono in scacco, possibile stalemate");
-        }
-        */
-
-        //2. Verifico se il re si può spostare su altre caselle senza finire in scacco
-        boolean canMove = searchSquareCheckMate(matrix.get(players.get(getOppositeColor()).king.position()).getAllPossibleMoves(), chessButton, getOppositeColor());
-
-        /*
-         * Se il re non si può spostare su altre caselle senza finire in scacco e, contemporaneamente, non è in scacco
-         * Allora potrebbe esserci una condizione di stalemate
-         * */
-
-        if(!canMove && !found){
-            // System.out.println("STALEMATE!!!");
-
-            //Verifico se il player avversario può effettuare una qualsiasi mossa legale
-            return !helperStaleMate(players.get(getOppositeColor()).getPieces());
-        }
-
-        /*
-         * Se il re avversario può muoversi senza finire in scacco, allora non c'è scacco matto
-         * */
-        if(canMove){
-            // System.out.println("POSSO MUOVERMI SENZA FINIRE IN SCACCO");
-            players.get(turno).eraseActiveCheckPieces();
-            players.get(getOppositeColor()).eraseActiveCheckPieces();
-            return false;
-        }
-
-        /*
-        System.out.println("PASSATO IL SECONDO TEST");
-        System.out.println(players.get(turno).getActiveCheckPieces());
-        System.out.println(players.get(getOppositeColor()).getActiveCheckPieces());
-        */
-
-        //3. Verifico se un pezzo avversario può sovrapporsi allo scacco oppure mangia un pezzo che da scacco, se ci sono due o più attacchi allora è matto
-        //3.1 Controllo se posso mangiare il pezzo che da scacco
-
-        //player1: uguale turno, player2: opposite, player.king: opposite
-        return helperIsCheckMate(players.get(turno), players.get(getOppositeColor()), chessButton, players.get(getOppositeColor()).king);
+    private boolean isGameOver(){
+        return !MoveGenerator.hasLegalMoves(position);
     }
 
     /***
-     * Metodo che verifica se un giocatore avversario può effettuare una qualsiasi mossa legale.
-     * @param pieces i pezzi del giocatore avversario
-     * @return true se c'è almeno una mossa legale, false altrimenti
+     * Metodo che verifica se la partita è finita in patta dopo l'ultima mossa.
+     * Oltre allo stallo vengono controllate la triplice ripetizione, la regola delle 50 mosse
+     * e il materiale insufficiente, usando le chiavi di Zobrist della posizione headless.
+     * @param noLegalMoves true se il giocatore al tratto non ha mosse legali (e non è sotto scacco)
+     * @return il motivo della patta, null se la partita continua
      */
-    private boolean helperStaleMate(ArrayList<ChessButton> pieces){
-
-        // Verifica ogni pezzo per eventuali mosse legali
-        for(ChessButton chessButton : pieces){
-
-            //Non posso muovere il king, controllo già effettuato con la variabile canMove
-            if(chessButton instanceof King)
-                continue;
-
-            //Faccio un controllo più specifico per il pedone
-            if(chessButton instanceof Pawn){
-                out : for(Move outer: chessButton.getAllPossibleMoves()){
-                    if(outer.getMoveType() == MoveType.MOVEMENT){
-                        for(Move inner : chessButton.getStepForThisMove(outer)){
-                            // se trovo una casella occupata
-                            if(matrix.get(inner.position()).getPiece().getChessType() != ChessType.BLANK){
-                                continue out;
-                            }
-                        }
-
-                        if(matrix.get(outer.position()).getPiece().getChessType() != ChessType.BLANK)
-                            continue;
-
-                        //Posso muovere il pedone
-                        return true;
-                    }else if(outer.getMoveType() == MoveType.CAPTURE){
-                        if(matrix.get(outer.position()).getPiece().getChessType() != getOppositeColor())
-                            continue;
-
-                        //Posso mangiare
-                        return true;
-                    }
-                }
-                continue;
-            }
-
-            // Verifica per ogni altro pezzo
-            out : for(Move outer : chessButton.getAllPossibleMoves()){
-                for(Move inner : chessButton.getStepForThisMove(outer)){
-                    // se trovo una casella occupata
-                    if(matrix.get(inner.position()).getPiece().getChessType() != ChessType.BLANK){
-                        continue out;
-                    }
-                }
-
-                // Ho trovato una mossa valida
-                // Controllo se il pezzo non é pinnato
-                return players.get(getOppositeColor()).checkIfExists(chessButton) == null;
-
-            }
-        }
-
-        return false;
-
-    }
-
-    /**
-     * Metodo di backup per verificare se dopo una mossa il re è ancora sotto scacco.
-     * @param first Il primo ChessButton (pezzo che si sta muovendo)
-     * @param second Il secondo ChessButton (destinazione del movimento)
-     * @return true se dopo il movimento il re è ancora sotto scacco, altrimenti false
-     */
-    private boolean checkAfterMoveIsStillCheckBackup(ChessButton first, ChessButton second){
-        // Crea una copia della matrice di gioco
-        ArrayList<ChessButton> copy = new ArrayList<>(matrix);
-        ChessButton firstCopy = copyChessButton(first);
-
-        // Crea una copia dei giocatori
-        Player copyPlayer1 = new Player(players.get(0));
-        Player copyPlayer2 = new Player(players.get(1));
-
-        // Salva la posizione e il colore del primo pezzo
-        int oldP = firstCopy.position();
-        int rowP = firstCopy.getRow();
-        int colP = firstCopy.getCol();
-        Color oldC = firstCopy.getBackgroundColor();
-
-        // Sposta i pezzi all'interno dell'arraylist dei giocatori, con il controllo per la rimozione di un pezzo catturato
-        if(firstCopy.getPiece().getChessColor().equals(ChessColor.WHITE)){
-            if(second.getPiece().getChessColor().equals(ChessColor.BLACK)){
-                copyPlayer2.removePiece(second);
-            }
-            copyPlayer1.modifyPiece(firstCopy, second);
-        }else if(firstCopy.getPiece().getChessColor().equals(ChessColor.BLACK)){
-            if(second.getPiece().getChessColor().equals(ChessColor.WHITE)){
-                copyPlayer1.removePiece(second);
-            }
-            copyPlayer2.modifyPiece(firstCopy, second);
-        }
-
-        // Sposta il pezzo nella copia e aggiorna la matrice
-        firstCopy.move(second);
-        firstCopy.setAlreadyMoved();
-        copy.set(second.position(), firstCopy);
-        copy.set(oldP, new Blank(new Pair(-1,-1), oldC, rowP, colP));
-
-        //Controllo se muovo il re, devo assumere la sua posizione fittizia
-        Move fakeKing = null;
-        if(firstCopy instanceof King){
-            fakeKing = new Move(second.getRow(), second.getCol(),MoveType.NORMAL);
-        }
-
-        //Il pezzo è stato spostato, verifico se first è ancora pinnato da active. Se questo è vero la mossa è valida altrimenti ritorno false
-        if(firstCopy.getPiece().getChessColor().equals(ChessColor.BLACK)){
-            return helperCheckAfterMoveIsStillCheck(copy, copyPlayer1.getPieces(), fakeKing, players.get(1).king);
-        }
-        else{
-            return helperCheckAfterMoveIsStillCheck(copy, copyPlayer2.getPieces(), fakeKing, players.getFirst().king);
-        }
-    }
-
-    /**
-     * Verifica se una mossa potrebbe portare al checkmate, considerando la possibilità di mangiare il pezzo che da scacco
-     * o di intraprendere una mossa per bloccare lo scacco.
-     * @param active Il giocatore che sta dando lo scacco
-     * @param passive Il giocatore sotto scacco
-     * @param chessButton La casella attuale del pezzo che sta tentando di risolvere lo scacco
-     * @param realKing La mossa reale del re avversario
-     * @return true se il checkmate è possibile, false se ci sono mosse che evitano lo scacco
-     */
-    private boolean helperIsCheckMate(Player active, Player passive, ChessButton chessButton, Move realKing ){
-        // Se due pezzi stanno dando scacco contemporaneamente, è checkmate
-        if(active.getActiveCheckPieces().size() > 1)
-            return true;
-
-        ChessButton checkPiece = active.getActiveCheckPieces().getFirst();
-
-        // Verifica se è possibile mangiare il pezzo che sta dando lo scacco, il pezzo che mangia non deve essere pinnato
-        if(!checkIfCanEatActivePiece(passive, active, chessButton, checkPiece))
-            return false;
-
-        // Verifica se è possibile bloccare lo scacco mettendo un pezzo tra il re e il pezzo che da scacco
-        return checkIfCanObstacleTheCheck(passive, active, checkPiece, realKing);
-    }
-
-    /**
-     * Verifica se un pezzo può mangiare il pezzo che sta dando scacco al re. Il pezzo che mangia non deve essere pinnato.
-     * @param passive Il giocatore sotto scacco
-     * @param active Il giocatore che sta dando lo scacco
-     * @param chessButton La casella del pezzo che sta cercando di mangiare l'avversario
-     * @param checkPiece Il pezzo che sta dando scacco
-     * @return true se non è possibile mangiare il pezzo, false altrimenti
-     */
-    private boolean checkIfCanEatActivePiece(Player passive, Player active, ChessButton chessButton, ChessButton checkPiece){
-        out : for(ChessButton button : passive.getPieces()){
-
-            // Verifica se il pezzo è pinnato
-            if(passive.checkIfExists(chessButton) != null){
-                // System.out.println("il pezzo è pinnato, non posso mangiare");
-                continue;
-            }
-
-            // Verifica se il pezzo può raggiungere il pezzo che dà scacco
-            for(Move move : button.getAllPossibleMoves()){
-
-                //Controllo per il pedone, non posso catturare con una mossa di movimento
-                if(move.getMoveType() == MoveType.MOVEMENT)
-                    continue;
-
-                // Verifica se il percorso è ostacolato da altri pezzi
-                if(move.position() == checkPiece.position()){
-
-                    for(Move inner : button.getStepForThisMove(move)){
-                        if(!matrix.get(inner.position()).getPiece().getChessType().equals(ChessType.BLANK)) {
-                            // É presente un ostacolo, quindi non posso mangiare il pezzo
-                            continue out;
-                        }
-                    }
-
-                    // Se non ci sono ostacoli, verifica se il re è ancora sotto scacco dopo la mossa
-                    if(checkAfterMoveIsStillCheckBackup(button, checkPiece))
-                        continue out;
-
-                    // Dopo aver mangiato il pezzo, rimuove i pezzi attivi
-                    passive.eraseActiveCheckPieces();
-                    active.eraseActiveCheckPieces();
-
-                    return false;
-                }
-            }
-        }
-        return true;
-    }
-
-
-    /**
-     * Verifica se è possibile bloccare lo scacco mettendo un pezzo tra il re e il pezzo che dà scacco.
-     * @param passive Il giocatore sotto scacco
-     * @param active Il giocatore che sta dando lo scacco
-     * @param checkPiece Il pezzo che sta dando lo scacco
-     * @param realKing La mossa del re avversario
-     * @return true se è possibile bloccare lo scacco, false altrimenti
-     */
-    private boolean checkIfCanObstacleTheCheck(Player passive, Player active, ChessButton checkPiece, Move realKing){
-        for(Move move : checkPiece.getStepForThisMove(realKing)){
-            // System.out.println("controllo mossa: " + move);
-            out : for(ChessButton button : passive.getPieces()){
-
-                //Il king non può sovrapporsi allo scacco perché finirebbe in scacco
-                if(button instanceof King)
-                    continue;
-
-                // Verifica se il pezzo è pinnato
-                if(passive.checkIfExists(piece1) != null){
-                    continue;
-                }
-
-                for(Move inner : button.getAllPossibleMoves()){
-                    // Verifica se il pezzo può raggiungere la casella che blocca lo scacco
-                    if(inner.equals(move)){
-
-                        //Controllo del pedone, non posso sovrappormi a uno scacco in diagonale se la casella di destinazione è vuota (quindi non c'è un pezzo da mangiare)
-                        if(inner.getMoveType() == MoveType.CAPTURE && !matrix.get(move.position()).getPiece().getChessColor().equals(ChessColor.BLACK)){
-                            continue;
-                        }
-
-                        for(Move step : button.getStepForThisMove(move)){
-                            if(!matrix.get(step.position()).getPiece().getChessType().equals(ChessType.BLANK)) {
-                                continue out;
-                            }
-                        }
-
-                        passive.eraseActiveCheckPieces();
-                        active.eraseActiveCheckPieces();
-                        // System.out.println("POSSO SOVRAPPORMI con mossa: " + move + " e pezzo: " + button);
-                        return false;
-                    }
-                }
-            }
-        }
-
-        return true;
+    private String getDrawReason(boolean noLegalMoves){
+        if(noLegalMoves) return players.get(getOppositeColor()).getName() + " non ha mosse legali, stallo!";
+        if(position.isThreefoldRepetition()) return "Patta per triplice ripetizione!";
+        if(position.isFiftyMoveRule()) return "Patta per la regola delle 50 mosse!";
+        if(position.isInsufficientMaterial()) return "Patta per materiale insufficiente!";
+        return null;
     }
 
-    /**
-     * Metodo che verifica se un re è in scacco su ogni casella disponibile per il movimento del re.
-     * Se almeno una casella non è sotto scacco, il re può muoversi senza entrare in scacco.
-     * @param kingMoves Le possibili mosse del re
-     * @param first Il ChessButton che rappresenta il re
-     * @param color Il colore del giocatore
-     * @return true se il re può muoversi senza entrare in scacco, false altrimenti
-     */
-    private boolean searchSquareCheckMate(ArrayList<Move> kingMoves, ChessButton first, int color){
-
-        ArrayList<Move> possibleCheckObstacled = new ArrayList<>();
-
-        // Verifica per ogni mossa se il re finisce in scacco
-        for(Move m : kingMoves){
-
-            // Se sono in scacco, non posso arroccare anche se il re si deve ancora muovere
-            if(m.getMoveType() == MoveType.LONG_CASTLE || m.getMoveType() == MoveType.SHORT_CASTLE)
-                continue;
-
-            // Crea una copia della matrice per simulare la mossa
-            ArrayList<ChessButton> copy = cloneArrayPieces(matrix);
-            ChessButton firstCopy = copyChessButton(first);
-
-            int rowP = firstCopy.getRow();
-            int colP = firstCopy.getCol();
-            Color oldC = firstCopy.getBackgroundColor();
-
-            ArrayList<Player> copyPlayer = new ArrayList<>();
-            copyPlayer.add(new Player(players.get(0))); // Giocatore bianco
-            copyPlayer.add(new Player(players.get(1)));  // Giocatore nero
-
-            // Verifica se la casella è occupata da un pezzo dello stesso colore
-            if(copy.get(m.position()).getPiece().getChessColor().equals(color)){
-                continue;
-            }
-
-            // Verifica se il re può mangiare un pezzo avversario
-            if(copy.get(m.position()).getPiece().getChessColor().equals(getOppositeColor())){
-                copyPlayer.get(getOppositeColor()).removePiece(copy.get(m.position()));
-            }
-
-            if(m.position() > 63 || m.position() < 0){
-                continue;
-            }
-
-            // Verifica se la mossa è legale per evitare scacco
-            if (helperSearchSquareCheckMate(m,copy, copyPlayer.get(turno).getPieces(),possibleCheckObstacled , players.get(getOppositeColor()).king, oldC, rowP, colP)) return possibleCheckObstacled.isEmpty();
-
-        }
-        return false;
-    }
 
     /***
-     * Metodo di ricerca per verificare se una mossa lascia il re in scacco o meno.
-     * Se la mossa lascia il re in scacco, continua la ricerca.
-     * Altrimenti, restituisce false se la mossa è valida.
-     * @param m Mossa che il re ha appena fatto.
-     * @param copyMatrix Copia della matrice di gioco già modificata.
-     * @param piecesPlayer Pezzi del giocatore che sta dando scacco.
-     * @param possibleCheckObstacled Elenco dei movimenti possibili con ostacoli.
-     * @param realKing Posizione del re nella matrice originale (non nella copia).
-     * @param oldC Colore del pezzo che si stava muovendo prima di essere spostato.
-     * @param rowP Riga originale del pezzo che si stava muovendo.
-     * @param colP Colonna originale del pezzo che si stava muovendo.
-     * @return boolean Indica se la mossa ha generato scacco o meno.
+     * Metodo che evidenzia con un bordo rosso i pezzi in presa di entrambi i colori,
+     * cioè quelli che l'avversario può catturare guadagnando materiale secondo la valutazione statica degli scambi.
+     * Gli altri bottoni tornano al bordo standard.
      */
-    private boolean helperSearchSquareCheckMate(Move m,ArrayList<ChessButton> copyMatrix, ArrayList<ChessButton> piecesPlayer, ArrayList<Move> possibleCheckObstacled, Move realKing,
-                                                Color oldC, int rowP, int colP){
-
-        // Spostamento temporaneo del re sulla copia della matrice
-        copyMatrix.set(copyMatrix.get(m.position()).position(), new King(matrix.get(realKing.position()).getPiece(), matrix.get(realKing.position()).getBackgroundColor(), m.getRow(), m.getCol()));
-        copyMatrix.set(realKing.position(), new Blank(new Pair(-1,-1), oldC, rowP, colP));
-
-        // Ciclo attraverso i pezzi del giocatore per verificare se sono in grado di minacciare il re
-        piece : for(ChessButton p : piecesPlayer){
-            // Ciclo su tutti i possibili movimenti di ogni pezzo
-            in : for(Move step : p.getAllPossibleMoves()){
-
-                if(step.equals(m)){
-
-                    // Verifica se il pedone vuole "catturare" il re
-                    if(step.getMoveType() == MoveType.CAPTURE){
-                        return false;
-                    }
-
-                    if(p instanceof King){
-                        if(possibleCheckObstacled.contains(m))
-                            possibleCheckObstacled.remove(m);
-                        else
-                            possibleCheckObstacled.add(m);
-                        continue piece;
-                    }
-
-                    // Analizzo i possibili passi di ciascun pezzo per verificare ostacoli
-                    for(Move inner : p.getStepForThisMove(m)){
-
-                        if(!copyMatrix.get(inner.position()).getPiece().getChessColor().equals(ChessColor.BLANK) && !copyMatrix.get(inner.position()).getPiece().getChessColor().equals(getOppositeColor())){
-                            continue in;
-                        }
-
-                        if(!copyMatrix.get(inner.position()).getPiece().getChessColor().equals(ChessColor.BLANK)){
-                            // Trovato un ostacolo per quel movimento
-                            if(possibleCheckObstacled.contains(m))
-                                possibleCheckObstacled.remove(m);
-                            else
-                                possibleCheckObstacled.add(m);
-
-                            continue piece;
-                        }
-                    }
-
-                    // Se raggiungiamo questo punto, significa che è scacco
-                    return false;
-                }
-            }
+    private void highlightHangingPieces(){
+        long hanging = StaticExchange.hangingPieces(position);
+        for(ChessButton button : matrix){
+            if((hanging & (1L << button.square())) != 0) button.setBorder(HANGING_BORDER);
+            else button.setBorder(UIManager.getBorder("Button.border"));
         }
-
-        // Se nessuna delle condizioni ha causato scacco, restituisco true
-        return true;
     }
 
     /***
@@ -1464,61 +1338,11 @@ public class Window extends JFrame {
     }
 
     /***
-     * Metodo per trovare possibili scacchi e pezzi pinnati.
+     * Metodo per verificare se la mossa appena giocata ha dato scacco e riprodurre il suono corrispondente.
+     * La posizione headless è già stata aggiornata, quindi il lato al tratto è quello che potrebbe essere sotto scacco.
      */
     private void findPossibleChecks(){
-        //Svuoto l'array perché sono pronto a trovare dei nuovi pezzi pinnati
-        players.get(getOppositeColor()).erasePinnedPieces();
-
-        // Controllo ogni pezzo del giocatore per verificare se può dare scacco al re avversario
-        for(ChessButton chessButton : players.get(turno).getPieces()){
-            out : for(Move m : chessButton.getAllPossibleMoves()){
-                // Se il pezzo minaccia il re avversario
-                if(m.equals(players.get(getOppositeColor()).king)){
-
-                    /*
-                    Metodo di verifica per la ricerca dei pezzi pinnati
-                    1. se pinnedPiece rimane null, allora non c'è un pezzo pinnato
-                    2. se pinnedPiece non è null e non trovo nessun altro pezzo allora lo aggiungo all'array
-                    3. se pinnedPiece non è null e non trovo un altro pezzo qualsiasi, non è un pezzo pinnato
-                     */
-                    ChessButton pinnedPiece = null;
-
-                    /*
-                    In questo controllo vengono verificate 3 cose
-                    1. p da effettivamente scacco al re
-                    2. p è ostacolato da UN solo pezzo di colore uguale al re, quindi quel pezzo diventa pinnato
-                    3. p è ostacolato da più di un pezzo, quindi non ci sono pezzi pinnati ne scacco
-                     */
-
-                    // Verifica se ci sono ostacoli lungo il percorso per vedere se il pezzo è pinnato
-                    for(Move inner : chessButton.getStepForThisMove(players.get(getOppositeColor()).king)){
-                        if(!matrix.get(inner.position()).getPiece().getChessColor().equals(ChessColor.BLANK)){
-
-                            //Non è presente un pezzo pinnato
-                            if(pinnedPiece != null){
-                                // System.out.println(" ho trovato due o più pezzi");
-                                break out;
-                            }
-
-                            // Se trovo un pezzo valido che potrebbe essere pinnato
-                            if(!matrix.get(inner.position()).getPiece().getChessColor().equals(ChessColor.BLANK)){
-                                pinnedPiece = matrix.get(inner.position());
-                            }
-                        }
-                    }
-
-                    // Se il pezzo trovato è dello stesso colore del re avversario, è un pezzo pinnato
-                    if(pinnedPiece != null && pinnedPiece.getPiece().getChessColor().equals(getOppositeColor())){
-                        // System.out.println("trovato un pezzo pinnato:" + pinnedPiece);
-                        players.get(getOppositeColor()).addPinnesPiece(chessButton, pinnedPiece);
-                    }
-
-                    // Se non ci sono pezzi pinnati, imposta lo stato di scacco
-                    if(pinnedPiece == null) moveType = MoveType.CHECK;
-                }
-            }
-        }
+        if(position.isInCheck()) moveType = MoveType.CHECK;
 
         // Riproduce il suono associato al tipo di mossa
         playSound(moveType);
@@ -1527,335 +1351,29 @@ public class Window extends JFrame {
 
     /***
      * Metodo per verificare se una mossa è valida senza modificare la scacchiera.
+     * La mossa è valida se compare tra le mosse legali della posizione, generate una sola volta
+     * tenendo conto di scacchi, pezzi inchiodati, arrocco ed en passant.
+     * Imposta anche il tipo di mossa usato per suoni, notazione e messaggi al server.
      * @param first Casella di partenza del pezzo.
      * @param second Casella di destinazione del pezzo.
      * @return boolean Restituisce true se la mossa è valida, altrimenti false.
      */
     private boolean isValidMove(ChessButton first, ChessButton second){
+        int from = first.square();
+        int to = second.square();
 
-        // Verifica se le caselle di partenza e destinazione sono uguali
-        if(first.equals(second)){
-            return false;
-        }
-
-        // Verifica se il pezzo sta cercando di mangiare un pezzo dello stesso colore
-        if(first.getPiece().getChessColor().equals(second.getPiece().getChessColor())){
-            return false;
-        }
-
-        // Verifica se si sta cercando di muovere un pezzo pinnato
-        ChessButton active = players.get(turno).checkIfExists(first);
-        if(active != null){
-            ArrayList<ChessButton> copy = new ArrayList<>(matrix);
-            if(!search(copy, active, first, second)) return false;
-        }
-
-        ArrayList<Move> moves = first.getAllPossibleMoves();
-
-        // Tipo di mossa di default
-        moveType = MoveType.NORMAL;
-        boolean isEnPassant = false;
-
-        // Se il pezzo è un pedone, gestiamo i vari casi speciali per i pedoni
-        if(first.getPiece().getChessType().equals(ChessType.PAWN)){
-
-            //Se la casella di destinazione è blank, allora voglio per forza muovermi SENZA mangiare
-            if(second.getPiece().getChessColor().equals(ChessColor.BLANK)) {
-                int step = turno == ChessColor.WHITE ? 1 : -1;
-
-                // Verifica se il pedone sta cercando di mangiare in diagonale
-                if(Math.abs(first.getCol() - second.getCol()) == 1 && (first.getRow() - second.getRow()) == step){
-
-                    // Verifica se il pedone sta cercando di catturare un altro pedone tramite "En Passant"
-                    if(matrix.get((second.getRow()+step) * 8 + second.getCol()) instanceof Pawn){
-
-                        //Controllo se l'ultima mossa del pedone coincide con l'ultima mossa della partita
-                        if(((Pawn) matrix.get((second.getRow()+step) * 8 + second.getCol())).getWhenFirstTwoStep() == movesMatch.size()){
-                            isEnPassant = true;
-                            moveType = MoveType.ENPASSANT;
-                        }
-                    }
-                }
-                if(!isEnPassant)
-                    moveType = MoveType.MOVEMENT;
-            } else {
-                // Se la destinazione non è vuota, deve essere una cattura
-                if (first.getCol() == second.getCol()) return false;
-
-                moveType = MoveType.CAPTURE;
-            }
-        }
-
-        // Verifica se la mossa è consentita per il pezzo
-        Move secondMove = new Move(second.getRow(), second.getCol(), moveType);
-
-        //Cerco se la mossa effettuata è consentita per il pezzo, NON controlla la scacchiera
-        boolean found = false;
-        Move searchedMove = null;
-
-        // Verifica se la mossa è valida tra le mosse disponibili
-        for(Move move : moves){
-            //First TEORICAMENTE può raggiungere second senza controllare la scacchiera
-            if(move.equals(secondMove)){
-                found = true;
-                searchedMove = move;
-                break;
-            }
-        }
-
-        if(!found) return false;
-
-
-        // Verifica se la cattura è legittima
-        if(isOppositeColor(first.getPiece().getChessColor(), second.getPiece().getChessColor()) || isEnPassant){
-            if(isEnPassant){
-                searchedMove.setMoveType(MoveType.ENPASSANT);
-            }else{
-                searchedMove.setMoveType(MoveType.CAPTURE);
-            }
-        }
-
-        //Controllo se il player vuole arroccare
-        if(first instanceof King  && (searchedMove.getMoveType() == MoveType.SHORT_CASTLE || searchedMove.getMoveType() == MoveType.LONG_CASTLE)){
-
-            // Controllo che il re non si sia già mosso
-            if(matrix.get(first.position()).isAlreadyMoved()) return false;
-
-            moveType = searchedMove.getMoveType();
-
-            Move checkTowerPosition;
-            boolean isLong = false;
-
-            // arrocco lungo
-            if(first.getCol() > second.getCol()){
-                checkTowerPosition = new Move(second.getRow(), 0, MoveType.MOVEMENT);
-                // controllo se la torre non si è mai mossa
-                if(!matrix.get(checkTowerPosition.position()).getPiece().getChessType().equals(ChessType.TOWER) || matrix.get(checkTowerPosition.position()).isAlreadyMoved()){
-                    return false;
-                }
-                isLong = true;
-            }
-
-            // arrocco corto
-            else{
-                checkTowerPosition = new Move(second.getRow(), 7, MoveType.MOVEMENT);
-                if(!matrix.get(checkTowerPosition.position()).getPiece().getChessType().equals(ChessType.TOWER) || matrix.get(checkTowerPosition.position()).isAlreadyMoved()){
-                    return false;
-                }
-            }
-
-            ArrayList<Move> kingMoves = ((King) first).getStepForThisMoveCastle(isLong);
-
-            //controllo se i alcuni pezzi del colore avversario controllano le case intermedie
-            return searchCheckSquare(kingMoves);
-        }
-
-        // Controllo se la cattura del pedone è valida
-        if(first.getPiece().getChessType().equals(ChessType.PAWN) && searchedMove.getMoveType() != MoveType.NORMAL && ((secondMove.getMoveType() != MoveType.CAPTURE && searchedMove.getMoveType() == MoveType.CAPTURE))){
-            if(!isEnPassant)return false;
-        }
-
-        // Verifica se ci sono ostacoli tra le caselle di partenza e destinazione
-        for(Move move : first.getStepForThisMove(searchedMove)){
-            if(!matrix.get(move.position()).getPiece().getChessColor().equals(ChessColor.BLANK)) return false;
-        }
+        MoveList legalMoves = MoveGenerator.generateLegalMoves(position);
+        for(int i = 0; i < legalMoves.size(); i++){
+            int move = legalMoves.get(i);
+            if(PackedMove.from(move) != from || PackedMove.to(move) != to) continue;
 
-        // Verifica se la mossa non mette il re in scacco
-        return !checkAfterMoveIsStillCheck(first, second);
-    }
-
-    /***
-     * Verifica se due colori sono opposti (bianco/nero).
-     * @param color1 Primo colore.
-     * @param color2 Secondo colore.
-     * @return boolean Ritorna true se i colori sono opposti, altrimenti false.
-     */
-    private boolean isOppositeColor(int color1, int color2){
-        if(color1 == ChessColor.BLANK || color2 == ChessColor.BLANK) return false;
-
-        return ((color1 == ChessColor.BLACK && color2 == ChessColor.WHITE) || (color1 == ChessColor.WHITE && color2 == ChessColor.BLACK));
-    }
-
-    /***
-     * Metodo che verifica se, dopo una mossa, il re è ancora in scacco.
-     * @param first Il pezzo che sta effettuando la mossa.
-     * @param second La casella di destinazione per il primo pezzo.
-     * @return boolean Restituisce true se il re è ancora in scacco, false altrimenti.
-     */
-    private boolean checkAfterMoveIsStillCheck(ChessButton first, ChessButton second){
-        ArrayList<ChessButton> copy = new ArrayList<>(matrix);
-        ChessButton firstCopy = copyChessButton(first);
-
-        // Crea una copia dei giocatori per verificare se il re è ancora in scacco
-        ArrayList<Player> copyPlayer = new ArrayList<>();
-        copyPlayer.add(new Player(players.get(0))); // Giocatore bianco
-        copyPlayer.add(new Player(players.get(1))); // Giocatore nero
-
-        // Salvo la posizione originale del pezzo che si sta spostando
-        int oldP = firstCopy.position();
-        int rowP = firstCopy.getRow();
-        int colP = firstCopy.getCol();
-        Color oldC = firstCopy.getBackgroundColor();
-
-        // Se il pezzo sta catturando un altro pezzo, rimuoviamo il pezzo catturato
-        if(second.getPiece().getChessColor().equals(getOppositeColor())){
-            copyPlayer.get(getOppositeColor()).removePiece(second);
-        }
-
-        // Aggiorno i pezzi dei giocatori nella copia
-        copyPlayer.get(turno).modifyPiece(firstCopy, second);
-        firstCopy.move(second);
-        firstCopy.setAlreadyMoved();
-
-        // Aggiorno la matrice con il pezzo spostato
-        copy.set(second.position(), firstCopy);
-        copy.set(oldP, new Blank(new Pair(-1,-1), oldC, rowP, colP));
-
-        // Verifico se la mossa lascia il re in scacco
-        Move fakeKing = null;
-        if(firstCopy instanceof King){
-            fakeKing = new Move(second.getRow(), second.getCol(),MoveType.NORMAL);
+            moveType = PackedMove.toMoveType(move, position.typeAt(from));
+            return true;
         }
 
-        //Il pezzo è stato spostato, verifico se first è ancora pinnato da active. Se questo è vero la mossa è valida altrimenti ritorno false
-        return helperCheckAfterMoveIsStillCheck(copy, copyPlayer.get(getOppositeColor()).getPieces(), fakeKing, players.get(turno).king);
-    }
-
-    /**
-     * Metodo universale per bianco e nero
-     * Verifica se il re è ancora sotto scacco dopo una mossa.
-     * @param copyMatrix copia della vera matrice di gioco
-     * @param piecesPlayer lista dei pezzi del giocatore sotto scacco
-     * @param fakeKing se il pezzo che sto spostando è il re
-     * @param realKing posizione del re nella vera matrice
-     * @return true se il re è ancora sotto scacco, altrimenti false
-     */
-    private boolean helperCheckAfterMoveIsStillCheck(ArrayList<ChessButton> copyMatrix, ArrayList<ChessButton> piecesPlayer, Move fakeKing, Move realKing){
-        for(ChessButton chessButton : piecesPlayer){
-            // Per ogni pezzo controllo se può dare scacco
-            out : for(Move m : chessButton.getAllPossibleMoves()){
-                if(m.getMoveType() == MoveType.MOVEMENT) continue;
-
-                fakeKing = (fakeKing != null) ? fakeKing : realKing;
-
-                // Verifica se il movimento corrisponde alla posizione del re
-                if(m.equals(fakeKing)){
-                    // Controllo se un pezzo si trova sulla via del re
-                    for(Move inner : chessButton.getStepForThisMove(fakeKing)){
-                        if(!copyMatrix.get(inner.position()).getPiece().getChessColor().equals(ChessColor.BLANK)){
-                            break out;
-                        }
-                    }
-                    // Se il re è ancora sotto scacco, ritorno true
-                    return true;
-                }
-            }
-        }
-        // Se il re non è più sotto scacco
         return false;
     }
 
-    /**
-     * Metodo per effettuare una deep copy (contenuto e non puntatore) di un'istanza di ChessButton.
-     * Crea una nuova istanza di ChessButton basata sul tipo di pezzo.
-     * @param chessButton il ChessButton da copiare
-     * @return una nuova istanza di ChessButton
-     */
-    private ChessButton copyChessButton(ChessButton chessButton){
-        switch(chessButton.getPiece().getChessType()){
-            case ChessType.TOWER -> {
-                return new Tower(chessButton);
-            }
-            case ChessType.BISHOP -> {
-                return new Bishop(chessButton);
-            }
-            case ChessType.KNIGHT -> {
-                return new Knight(chessButton);
-            }
-            case ChessType.QUEEN -> {
-                return new Queen(chessButton);
-            }
-            case ChessType.KING -> {
-                return new King(chessButton);
-            }
-            case ChessType.PAWN -> {
-                return new Pawn(chessButton);
-            }
-
-            default -> {return new Blank(chessButton);}
-        }
-    }
-
-    /**
-     * Metodo usato per eseguire una deep copy di ogni singolo elemento nell'array chessButtons.
-     * @param chessButtons lista di ChessButton da copiare
-     * @return una nuova lista di ChessButton
-     */
-    private ArrayList<ChessButton> cloneArrayPieces(ArrayList<ChessButton> chessButtons){
-        ArrayList<ChessButton> res = new ArrayList<>();
-        for(ChessButton button : chessButtons){
-            res.add(copyChessButton(button)); // Aggiunge la copia di ogni ChessButton
-        }
-        return res;
-    }
-
-    /**
-     * Metodo che cerca se il re può muoversi senza entrare in scacco.
-     * Se trova una mossa che lascia il re sotto scacco, ritorna false.
-     * @param kingMoves lista delle possibili mosse del re
-     * @return true se tutte le mosse sono sicure per il re, altrimenti false
-     */
-    private boolean searchCheckSquare(ArrayList<Move> kingMoves){
-        // System.out.println(kingMoves);
-        for(Move move : kingMoves){
-
-            // Verifica se la mossa è dentro i limiti della scacchiera
-            if(move.position() > 63 || move.position() < 0) continue;
-
-
-            // Verifica se la casella è occupata da un pezzo dello stesso colore
-            if(!matrix.get(move.position()).getPiece().getChessType().equals(ChessType.BLANK) ){
-                // System.out.println("problema metodo searchCheckSquare");
-                return false;
-            }
-
-            // Verifica se un pezzo avversario può dare scacco alla posizione del re
-            if(!helperSearchCheckSquare(move, players.get(getOppositeColor()).getPieces())) return false;
-        }
-
-        // Il re può muoversi senza entrare in scacco
-        return true;
-    }
-
-    /**
-     * Metodo di supporto per verificare se una casella è sotto scacco.
-     * @param end la mossa effettuata dal re
-     * @param piecesPlayer lista dei pezzi del giocatore avversario
-     * @return true se la casella non è sotto scacco, altrimenti false
-     */
-    private boolean helperSearchCheckSquare(Move end, ArrayList<ChessButton> piecesPlayer){
-        for(ChessButton button : piecesPlayer){
-            // Verifica le mosse di ogni pezzo del giocatore avversario
-            out : for(Move inner : button.getAllPossibleMoves()){
-                if(inner.equals(end)){
-
-                    // Verifica se non ci sono pezzi sulla linea tra il pezzo e il re
-                    for(Move check : button.getStepForThisMove(inner)){
-
-                        //Controllo se un qualsiasi pezzo si interpone tra button e il king
-                        if(!matrix.get(check.position()).getPiece().getChessType().equals(ChessType.BLANK)){
-                            break out;
-                        }
-                    }
-
-                    // Se un pezzo può dare scacco, ritorna false
-                    return false;
-                }
-            }
-        }
-        return true; // Se nessun pezzo dà scacco
-    }
-
 
     /**
      * Metodo che gestisce lo spostamento dei pezzi nella scacchiera.
@@ -1940,8 +1458,12 @@ public class Window extends JFrame {
             if(((Pawn) first).isOnPromote()){
                 isPromote = true;
                 moveType = MoveType.PROMOTE;
-                MyPopup popup = new MyPopup(this, lblResult::setText, first.getPiece().getChessColor());
-                popup.setVisible(true);
+                // Il computer ha già scelto il pezzo, il giocatore lo sceglie dal popup
+                if(promotionChoice != ChessType.BLANK) lblResult.setText(String.valueOf(promotionChoice));
+                else {
+                    MyPopup popup = new MyPopup(this, lblResult::setText, first.getPiece().getChessColor());
+                    popup.setVisible(true);
+                }
             }
         }
 
@@ -2164,64 +1686,6 @@ public class Window extends JFrame {
         return sb.toString();  // Restituisce la notazione FEN finale
     }
 
-    /**
-     * Metodo di supporto per la verifica se una mossa è valida rispetto al "pinned piece" (pezzo intrappolato).
-     * Esamina se un pezzo che si sta spostando è ancora sotto il controllo di un altro pezzo.
-     * @param copy matrice della scacchiera
-     * @param active il pezzo che sta "pinnando"
-     * @param first il pezzo che sta cercando di muoversi
-     * @param second la posizione di destinazione del pezzo
-     * @return true se la mossa è valida, false altrimenti
-     */
-    private boolean search(ArrayList<ChessButton> copy, ChessButton active, ChessButton first, ChessButton second){
-
-        int oldP = first.position();
-        int rowP = first.getRow();
-        int colP = first.getCol();
-        Color oldC = first.getBackgroundColor();
-        ChessButton firstCopy = copyChessButton(first);
-
-        // Esegui il movimento del pezzo
-        firstCopy.move(second);
-
-        // Aggiorna la matrice con la nuova posizione del pezzo
-        copy.set(second.position(), firstCopy);
-        copy.set(oldP, new Blank(new Pair(-1,-1), oldC, rowP, colP));
-
-        // Verifica se il pezzo è "pinned" (intrappolato) da un altro pezzo
-        if(second.equals(active)) return true;
-
-
-        //Verifico se first è ancora pinnato da active. Se questo è vero la mossa è valida altrimenti ritorno false
-        out : for(Move m : active.getAllPossibleMoves()){
-
-            //player.king: stesso colore del turno
-            if(m.equals(players.get(turno).king)){
-                //System.out.println("ho trovato uno scacco: " + m + ", piece " + p.piece);
-                //Verifico che ci posso arrivare
-
-                ChessButton pinnedPiece = null;
-
-                for(Move inner : active.getStepForThisMove(players.get(turno).king)){
-                    if(!copy.get(inner.position()).getPiece().getChessColor().equals(ChessColor.BLANK)){
-                        if(pinnedPiece != null){
-                            break out;
-                        }
-
-                        pinnedPiece = copy.get(inner.position());
-                    }
-                }
-
-                if(pinnedPiece != null){
-                    return true;  // La mossa è valida
-                }
-            }
-        }
-
-        // La mossa non è valida
-        return false;
-    }
-
     /**
      * Metodo di supporto per reBuildChessBoardFromFen.
      * Converte una stringa rappresentante un tipo di pezzo in minuscolo (FEN) in un tipo di pezzo interno.
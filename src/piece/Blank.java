@@ -1,10 +1,8 @@
 package piece;
 
-import utils.Move;
 import utils.Pair;
 
 import java.awt.*;
-import java.util.ArrayList;
 
 /**
  * Classe che rappresenta una casella vuota sulla scacchiera.
@@ -27,23 +25,4 @@ public class Blank extends ChessButton {
     public Blank(ChessButton first) {
         super(first);
     }
-
-    /**
-     * Un pezzo vuoto non ha mosse disponibili, quindi restituisce `null`.
-     * @return `null` perché un "pezzo vuoto" non può muoversi
-     */
-    @Override
-    public ArrayList<Move> getAllPossibleMoves() {
-        return null;
-    }
-
-    /**
-     * Un pezzo vuoto non ha passi intermedi da calcolare, quindi restituisce `null`.
-     * @param end   Posizione di arrivo
-     * @return `null` perché un "pezzo vuoto" non si muove
-     */
-    @Override
-    public ArrayList<Move> getStepForThisMove(Move end) {
-        return null;
-    }
 }
@@ -1,11 +1,11 @@
 package piece;
 
-import utils.Move;
+import board.Attacks;
+import board.Square;
 import utils.Pair;
 
 import javax.swing.*;
 import java.awt.*;
-import java.util.ArrayList;
 import java.util.Objects;
 
 /**
@@ -130,6 +130,14 @@ public abstract class ChessButton extends JButton {
     }
 
 
+    /**
+     * Restituisce l'indice della casella del pezzo nel modello a bitboard (0 = a1, 63 = h8).
+     * @return Indice della casella per le tabelle di {@link Attacks}.
+     */
+    public int square() {
+        return Square.of(this.row, this.col);
+    }
+
     public String printPosition() {
         char columnLetter = (char) ('a' + this.col);
         int rowNumber = 8 - this.row;
@@ -162,20 +170,4 @@ public abstract class ChessButton extends JButton {
     public int hashCode() {
         return Objects.hash(piece, row, col);
     }
-
-    /**
-     * Restituisce tutte le mosse teoricamente possibili per il pezzo,
-     * indipendentemente dagli altri pezzi sulla scacchiera.
-     *
-     * @return Lista di mosse disponibili.
-     */
-    public abstract ArrayList<Move> getAllPossibleMoves();
-
-    /**
-     * Restituisce i passi intermedi necessari per effettuare una mossa dalla posizione di partenza a quella di arrivo.
-     *
-     * @param end Posizione di arrivo del pezzo.
-     * @return Lista di mosse intermedie tra il punto di partenza e quello di arrivo.
-     */
-    public abstract ArrayList<Move> getStepForThisMove(Move end);
 }
@@ -2,8 +2,6 @@ package player;
 
 import piece.*;
 import utils.Move;
-import utils.Pair;
-import utils.PairCheck;
 import utils.constant.ChessColor;
 import utils.constant.ChessType;
 import utils.constant.MoveType;
@@ -13,7 +11,6 @@ import java.util.ArrayList;
 /**
  * Classe che rappresenta un giocatore nel gioco degli scacchi.
  * Ogni giocatore ha un nome, un re, un insieme di pezzi e una lista di pezzi mangiati.
- * Inoltre, tiene traccia dei pezzi "pinnati" e dei pezzi che attaccano il re avversario.
  */
 public class Player {
     public Move king;  // Posizione del re del giocatore
@@ -21,10 +18,6 @@ public class Player {
     private String name;  // Nome del giocatore
 
     private final ArrayList<ChessButton> pieceEaten = new ArrayList<>();  // Lista dei pezzi mangiati dal giocatore
-    private ArrayList<PairCheck> pinnedPieces;  // Lista dei pezzi che sono pinnati (bloccati) dal giocatore avversario
-
-    // Lista dei pezzi che stanno attaccando il re avversario (per il checkmate)
-    private ArrayList<ChessButton> activeCheckPieces = new ArrayList<>();
 
     /**
      * Costruttore del giocatore.
@@ -35,7 +28,6 @@ public class Player {
         this.king = king;
         this.name = name;
         this.pieces = new ArrayList<>();
-        this.pinnedPieces = new ArrayList<>();
     }
 
     /**
@@ -46,7 +38,6 @@ public class Player {
         this.king = new Move(player.king);
         this.name = player.name;
         this.pieces = cloneArrayPieces(player.getPieces());
-        this.pinnedPieces = cloneArrayPinnedPieces(player.getPinnedPieces());
     }
 
     /**
@@ -91,19 +82,6 @@ public class Player {
         return pieceEaten;
     }
 
-    /**
-     * Clona la lista dei pezzi pinnati.
-     * @param input La lista di pezzi pinnati da clonare
-     * @return Una nuova lista di pezzi pinnati clonati
-     */
-    private ArrayList<PairCheck> cloneArrayPinnedPieces(ArrayList<PairCheck> input) {
-        ArrayList<PairCheck> res = new ArrayList<>();
-        for (PairCheck pairCheck : input) {
-            res.add(new PairCheck(pairCheck));
-        }
-        return res;
-    }
-
     /**
      * Clona la lista dei pezzi del giocatore.
      * @param input La lista dei pezzi da clonare
@@ -136,53 +114,6 @@ public class Player {
         }
     }
 
-    /**
-     * Aggiunge un pezzo che sta attaccando il re avversario alla lista dei pezzi che stanno dando scacco.
-     * @param chessButton Il pezzo che sta attaccando il re avversario
-     */
-    public void addActiveCheckPiece(ChessButton chessButton) {
-        this.activeCheckPieces.add(chessButton);
-    }
-
-    /**
-     * Pulisce la lista dei pezzi che stanno dando scacco.
-     */
-    public void eraseActiveCheckPieces() {
-        this.activeCheckPieces = new ArrayList<>();
-    }
-
-    /**
-     * Pulisce la lista dei pezzi pinnati.
-     */
-    public void erasePinnedPieces() {
-        pinnedPieces = new ArrayList<>();
-    }
-
-    /**
-     * Aggiunge una relazione di "pinnaggio" tra due pezzi (un pezzo attivo e un pezzo passivo).
-     * @param active   Il pezzo che sta pinnando
-     * @param passive  Il pezzo pinnato
-     */
-    public void addPinnesPiece(ChessButton active, ChessButton passive) {
-        pinnedPieces.add(new PairCheck(active, passive));
-    }
-
-    /**
-     * Restituisce la lista dei pezzi pinnati.
-     * @return Lista dei pezzi pinnati
-     */
-    public ArrayList<PairCheck> getPinnedPieces() {
-        return pinnedPieces;
-    }
-
-    /**
-     * Restituisce la lista dei pezzi che stanno dando scacco al re avversario.
-     * @return Lista dei pezzi che danno scacco
-     */
-    public ArrayList<ChessButton> getActiveCheckPieces() {
-        return activeCheckPieces;
-    }
-
     /**
      * Restituisce la lista dei pezzi del giocatore.
      * @return Lista dei pezzi
@@ -223,21 +154,6 @@ public class Player {
         }
     }
 
-    /**
-     * Restituisce il pezzo che sta pinnando un dato pezzo.
-     * @param input Il pezzo da verificare
-     * @return Il pezzo che sta pinnando l'input, se esiste, altrimenti null
-     */
-    public ChessButton checkIfExists(ChessButton input) {
-        for (PairCheck b : pinnedPieces) {
-            if (b.getPassive().equals(input)) {
-                // System.out.println(input + " è pinnato da: " + b.getActive());
-                return b.getActive();
-            }
-        }
-        return null;
-    }
-
     /**
      * Stampa le informazioni sul re del giocatore.
      */
@@ -0,0 +1,194 @@
+package server;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.util.List;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lobby con I/O bloccante e un thread per connessione.
+ *
+ * Il thread che accetta le connessioni non legge mai dai socket: ogni nuova connessione riceve un thread
+ * che esegue la presentazione (nome, cadenza e punteggio) e mette il giocatore in coda nel {@link Matchmaker}.
+ * Quando trova un avversario, un nuovo thread assegna i colori e avvia la partita.
+ *
+ * In coda nessuno legge il socket, quindi una disconnessione si scopre solo all'abbinamento: prima di assegnare
+ * i colori i due socket vengono controllati e chi è ancora connesso torna in coda con l'attesa già accumulata.
+ * Con i thread virtuali un client lento blocca solo il proprio thread virtuale, che non occupa un thread
+ * del sistema operativo mentre attende; con i thread di piattaforma il costo di ogni connessione è un thread intero.
+ */
+class BlockingLobby implements Lobby {
+    private static final int BACKLOG = 1024; // Connessioni in attesa di essere accettate
+    private static final int PROBE_TIMEOUT = 1; // Attesa massima del controllo della connessione, in millisecondi
+
+    private final ServerSocket serverSocket; // Socket in ascolto
+    private final ThreadFactory threads; // Crea il thread di ogni connessione
+    private final Matchmaker<Player> matchmaker = new Matchmaker<>(ChessLobbyServer.timers(), this::matched); // Code dei giocatori in attesa
+
+    /**
+     * Costruttore della lobby.
+     * @param address Indirizzo e porta di ascolto
+     * @param threads Crea i thread delle connessioni (virtuali o di piattaforma)
+     * @throws IOException Se il socket non può essere aperto
+     */
+    BlockingLobby(InetSocketAddress address, ThreadFactory threads) throws IOException {
+        this.serverSocket = new ServerSocket();
+        this.serverSocket.bind(address, BACKLOG);
+        this.threads = threads;
+    }
+
+    @Override
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Accetta le connessioni e avvia un thread per ognuna.
+     */
+    @Override
+    public void run() {
+        System.out.println("Server in attesa di giocatori su " + serverSocket.getLocalSocketAddress() + "...");
+        try (serverSocket) {
+            while (true) {
+                Socket socket = serverSocket.accept();
+                threads.newThread(() -> handshake(socket)).start();
+            }
+        } catch (IOException e) {
+            e.printStackTrace(); // Gestione dell'eccezione di I/O
+        }
+    }
+
+    /**
+     * Esegue la presentazione di un giocatore e lo mette in coda.
+     * @param socket Il socket del giocatore
+     */
+    private void handshake(Socket socket) {
+        // Chi non invia il nome in tempo viene disconnesso: la chiusura del socket sblocca la lettura
+        TimingWheel.Timeout timeout = ChessLobbyServer.timers().schedule(() -> closeQuietly(socket), ChessLobbyServer.HANDSHAKE_TIMEOUT, TimeUnit.MILLISECONDS);
+
+        Player player;
+        long time;
+        int rating;
+        try {
+            socket.setTcpNoDelay(true);
+            BufferedReader input = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+            PrintWriter output = new PrintWriter(socket.getOutputStream(), true);
+
+            // Richiede il nome del giocatore
+            output.println(new JSONObject().put("action", "request_name").toString());
+            String line = input.readLine();
+            if (line == null) throw new IOException("connessione chiusa");
+            JSONObject hello = new JSONObject(line);
+            time = ChessLobbyServer.requestedTime(hello);
+            rating = ChessLobbyServer.requestedRating(hello);
+            player = new Player(hello.getString("name"), null, socket, input, output);
+        } catch (IOException | JSONException | IllegalArgumentException e) {
+            System.out.println("Un client si è disconnesso durante la presentazione (" + e.getMessage() + ").");
+            closeQuietly(socket);
+            return;
+        } finally {
+            timeout.cancel();
+        }
+
+        // Comunica l'attesa stimata prima di entrare in coda, così arriva sempre prima del colore
+        player.output.println(ChessLobbyServer.queueMessage(time, matchmaker.estimatedWait(time, rating)));
+        System.out.println(player.name + " è in coda (cadenza " + time / 1000 + " s, punteggio " + rating + ")");
+        matchmaker.join(player, time, rating);
+    }
+
+    /**
+     * Riceve una coppia dal {@link Matchmaker} e avvia la partita in un nuovo thread, perché l'abbinamento
+     * può avvenire sul thread della ruota delle scadenze.
+     * @param white Il biglietto del giocatore con il bianco
+     * @param black Il biglietto del giocatore con il nero
+     */
+    private void matched(Matchmaker<Player>.Ticket white, Matchmaker<Player>.Ticket black) {
+        threads.newThread(() -> start(white, black)).start();
+    }
+
+    /**
+     * Controlla che i due giocatori siano ancora connessi, assegna i colori e avvia la partita.
+     * Se uno dei due si è disconnesso in coda, l'altro torna in coda.
+     * @param white Il biglietto del giocatore con il bianco
+     * @param black Il biglietto del giocatore con il nero
+     */
+    private void start(Matchmaker<Player>.Ticket white, Matchmaker<Player>.Ticket black) {
+        boolean whiteConnected = isConnected(white.getPlayer());
+        boolean blackConnected = isConnected(black.getPlayer());
+        if (!whiteConnected || !blackConnected) {
+            for (Matchmaker<Player>.Ticket ticket : List.of(white, black)) {
+                if (ticket == white ? whiteConnected : blackConnected) {
+                    matchmaker.requeue(ticket);
+                } else {
+                    System.out.println(ticket.getPlayer().name + " si è disconnesso mentre era in coda.");
+                    closeQuietly(ticket.getPlayer().socket);
+                }
+            }
+            return;
+        }
+
+        System.out.println(white.getPlayer().name + " e " + black.getPlayer().name + " abbinati, avvio della partita...");
+        String start = ChessLobbyServer.startGameMessage(white.getTime());
+        for (Matchmaker<Player>.Ticket ticket : List.of(white, black)) {
+            Player player = ticket.getPlayer();
+            player.color = ticket == white ? "0" : "1";
+            JSONObject response = new JSONObject();
+            response.put("action", "assign_color");
+            response.put("color", player.color);
+            player.output.println(response.toString());
+            player.output.println(start);
+        }
+        ChessLobbyServer.startGame(white.getPlayer(), black.getPlayer(), white.getTime());
+    }
+
+    /**
+     * Controlla senza consumare dati che il client non abbia chiuso la connessione. Nessun altro thread
+     * legge il socket mentre il giocatore è in coda, quindi la lettura di prova può essere annullata.
+     * @param player Il giocatore
+     * @return true se la connessione è ancora aperta
+     */
+    private static boolean isConnected(Player player) {
+        try {
+            if (player.input.ready()) return true;
+            player.input.mark(1);
+            player.socket.setSoTimeout(PROBE_TIMEOUT);
+            if (player.input.read() < 0) return false;
+            player.input.reset();
+            return true;
+        } catch (SocketTimeoutException e) {
+            // Nessun dato ma connessione aperta
+            return true;
+        } catch (IOException e) {
+            return false;
+        } finally {
+            try {
+                player.socket.setSoTimeout(0);
+            } catch (SocketException e) {
+                // Il socket è chiuso: se ne accorgerà la partita
+            }
+        }
+    }
+
+    /**
+     * Chiude un socket ignorando gli errori.
+     * @param socket Il socket
+     */
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // La connessione è comunque persa
+        }
+    }
+}
@@ -2,13 +2,32 @@ package server;
 import java.io.*;
 import java.net.*;
 import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import org.json.JSONException;
 import org.json.JSONObject;
 
+import board.MoveGenerator;
+import board.MoveList;
+import board.PackedMove;
+import board.Position;
+import board.Square;
+import engine.tablebase.Tablebase;
+import utils.constant.ChessTime;
+import utils.constant.ChessType;
+import utils.constant.MoveType;
+
 import static utils.server.ServerSocketInit.*;
 
 /**
  * Server per la gestione della lobby.
- * Accetta due giocatori, assegna loro un colore e avvia la partita.
+ * Accetta i giocatori, li abbina a due a due con il {@link Matchmaker} (per cadenza e punteggio) e avvia una partita
+ * per ogni coppia. Le modalità sono:
+ * "nio" (predefinita) con la lobby non bloccante di {@link LobbyFrontEnd} e thread virtuali per le partite,
+ * "virtual" con un thread virtuale per ogni connessione e partita, "platform" con un thread di piattaforma
+ * per ogni connessione e partita.
  */
 public class ChessLobbyServer {
     /*
@@ -18,119 +37,274 @@ public class ChessLobbyServer {
      */
     private static String currentTurn = "0";
 
+    private static ThreadFactory threads = Thread.ofPlatform().factory(); // Crea i thread delle partite
 
-    public static void main(String[] args) {
-        // Crea il server
-        try (ServerSocket serverSocket = new ServerSocket(PORT, 50, InetAddress.getByName(IP_ADDRESS));) {
-            System.out.println("Server in attesa di due giocatori...");
-
-            while (true) {
-                List<Player> players = new ArrayList<>();
-
-                // Attende la connessione di due giocatori
-                while (players.size() < 2) {
-                    Socket playerSocket = serverSocket.accept();
-                    BufferedReader input = new BufferedReader(new InputStreamReader(playerSocket.getInputStream()));
-                    PrintWriter output = new PrintWriter(playerSocket.getOutputStream(), true);
-
-                    // Richiede il nome del giocatore
-                    output.println(new JSONObject().put("action", "request_name").toString());
-                    String name = new JSONObject(input.readLine()).getString("name");
-
-                    // Assegna un colore al giocatore (bianco se primo, nero se secondo)
-                    String color = (players.isEmpty()) ? "0" : "1";
-                    JSONObject response = new JSONObject();
-                    response.put("action", "assign_color");
-                    response.put("color", color);
-                    output.println(response.toString());
-
-                    // Aggiunge il giocatore alla lista
-                    players.add(new Player(name, color, playerSocket, output));
-                    System.out.println(name + " si è connesso con il colore " + (color.equals("0") ? "bianco" : "nero"));
-                }
+    private static final long TIMER_TICK = 10; // Durata di un tick della ruota delle scadenze, in millisecondi
 
-                System.out.println("Due giocatori connessi, avvio della partita...");
+    private static final int TIMER_BUCKETS = 512; // Caselle della ruota delle scadenze
 
-                // Notifica entrambi i giocatori dell'inizio della partita
-                for (Player p : players) {
-                    JSONObject startMsg = new JSONObject();
-                    startMsg.put("action", "start_game");
-                    startMsg.put("current_turn", currentTurn);
-                    p.output.println(startMsg);
-                }
+    private static final TimingWheel timers = new TimingWheel(TIMER_TICK, TimeUnit.MILLISECONDS, TIMER_BUCKETS).start("timing-wheel"); // Scadenze di tutte le partite
 
-                // System.out.println("Numero giocatori: " + players.size());
+    static final long HANDSHAKE_TIMEOUT = 10000; // Tempo per inviare il nome dopo la connessione, in millisecondi
+
+    private static final long STATS_INTERVAL = 60000; // Intervallo tra due righe di statistiche nel log, in millisecondi
+
+    static final int MAX_RATING = 4000; // Punteggio massimo accettato
+
+    private static long time = ChessTime.RAPID; // Cadenza di chi non la indica, in millisecondi
+
+    private static long increment = 0; // Incremento per mossa, in millisecondi
 
-                // Avvia il gestore della partita in un nuovo thread
-                new Thread(new GameHandler(players.get(0), players.get(1))).start();
-            }
 
+    /**
+     * Punto di ingresso del server.
+     * Uso: {@code ChessLobbyServer [--mode nio|virtual|platform] [--time secondi] [--increment secondi] [selettori]},
+     * con la cadenza di chi non ne sceglie una, l'incremento per mossa e il numero di thread che seguono le connessioni
+     * nella lobby in modalità nio.
+     * @param args Gli argomenti
+     */
+    public static void main(String[] args) {
+        String mode = "nio";
+        int selectors = LobbyFrontEnd.DEFAULT_SELECTORS;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--mode") && i + 1 < args.length) mode = args[++i];
+            else if (args[i].equals("--time") && i + 1 < args.length) time = Long.parseLong(args[++i]) * 1000;
+            else if (args[i].equals("--increment") && i + 1 < args.length) increment = Long.parseLong(args[++i]) * 1000;
+            else selectors = Integer.parseInt(args[i]);
+        }
+        try {
+            // Stampa periodicamente le misure della ruota delle scadenze
+            logStats();
+
+            // Crea il server
+            createLobby(mode, new InetSocketAddress(InetAddress.getByName(IP_ADDRESS), PORT), selectors).run();
         } catch (IOException e) {
             e.printStackTrace(); // Gestione dell'eccezione di I/O
         }
     }
-}
 
-/**
- * Rappresenta un giocatore nella partita di scacchi.
- * Contiene informazioni sul nome, colore, socket di connessione e flusso di output del giocatore.
- */
-class Player {
-    String name; // Nome del giocatore
+    /**
+     * Crea la lobby di una modalità e sceglie il tipo di thread delle partite.
+     * @param mode      "nio", "virtual" o "platform"
+     * @param address   Indirizzo e porta di ascolto
+     * @param selectors Numero di selettori, solo per la modalità nio
+     * @return La lobby, da avviare con {@link Lobby#run()}
+     * @throws IOException Se il socket di ascolto non può essere aperto
+     * @throws IllegalArgumentException se la modalità non esiste
+     */
+    static Lobby createLobby(String mode, InetSocketAddress address, int selectors) throws IOException {
+        switch (mode) {
+            case "nio":
+                // I selettori sono pochi thread di piattaforma; partite e lettori, tre per partita, sono virtuali
+                threads = Thread.ofVirtual().name("game-", 0).factory();
+                return new LobbyFrontEnd(address, selectors);
+            case "virtual":
+                threads = Thread.ofVirtual().name("game-", 0).factory();
+                return new BlockingLobby(address, threads);
+            case "platform":
+                threads = Thread.ofPlatform().factory();
+                return new BlockingLobby(address, threads);
+            default:
+                throw new IllegalArgumentException("Modalità del server non valida: " + mode);
+        }
+    }
 
-    String color; // Colore del giocatore ("0" per bianco, "1" per nero)
+    /**
+     * Restituisce la fabbrica dei thread delle partite e dei loro lettori.
+     * @return La fabbrica della modalità corrente
+     */
+    static ThreadFactory threads() {
+        return threads;
+    }
 
-    Socket socket; // Socket di connessione del giocatore
+    /**
+     * Restituisce la ruota delle scadenze condivisa da tutte le partite.
+     * @return La ruota, già avviata
+     */
+    static TimingWheel timers() {
+        return timers;
+    }
 
-    PrintWriter output; // Flusso di output per inviare messaggi al giocatore
+    /**
+     * Stampa le misure della ruota delle scadenze e riprogramma la stampa successiva sulla ruota stessa.
+     */
+    private static void logStats() {
+        System.out.println("Timer: " + timers);
+        timers.schedule(ChessLobbyServer::logStats, STATS_INTERVAL, TimeUnit.MILLISECONDS);
+    }
 
     /**
-     * Costruttore per inizializzare un nuovo giocatore.
-     * @param name Il nome del giocatore.
-     * @param color Il colore del giocatore ("0" per bianco, "1" per nero).
-     * @param socket La connessione socket del giocatore.
-     * @param output Il flusso di output per inviare messaggi al giocatore.
+     * Restituisce la cadenza richiesta nel messaggio con il nome, nel campo facoltativo "time"
+     * ("BULLET", "RAPID", "NORMAL" o "LONG", come in {@link ChessTime}).
+     * @param message Il messaggio con il nome
+     * @return La cadenza in millisecondi, quella predefinita se il campo manca
+     * @throws IllegalArgumentException se la cadenza non esiste
      */
-    public Player(String name, String color, Socket socket, PrintWriter output) {
-        this.name = name;
-        this.color = color;
-        this.socket = socket;
-        this.output = output;
+    static long requestedTime(JSONObject message) {
+        if (!message.has("time")) return time;
+        switch (message.getString("time")) {
+            case "BULLET":
+                return ChessTime.BULLET;
+            case "RAPID":
+                return ChessTime.RAPID;
+            case "NORMAL":
+                return ChessTime.NORMAL;
+            case "LONG":
+                return ChessTime.LONG;
+            default:
+                throw new IllegalArgumentException("Cadenza non valida: " + message.getString("time"));
+        }
+    }
+
+    /**
+     * Restituisce il punteggio indicato nel messaggio con il nome, nel campo facoltativo "rating".
+     * @param message Il messaggio con il nome
+     * @return Il punteggio, {@link Matchmaker#DEFAULT_RATING} se il campo manca
+     * @throws IllegalArgumentException se il punteggio è fuori da 0 - {@link #MAX_RATING}
+     */
+    static int requestedRating(JSONObject message) {
+        int rating = message.optInt("rating", Matchmaker.DEFAULT_RATING);
+        if (rating < 0 || rating > MAX_RATING) throw new IllegalArgumentException("Punteggio non valido: " + rating);
+        return rating;
     }
-}
 
+    /**
+     * Restituisce il messaggio inviato a un giocatore che entra in coda, con l'attesa stimata.
+     * @param time          La cadenza, in millisecondi
+     * @param estimatedWait L'attesa stimata in millisecondi, -1 se non disponibile
+     * @return Il messaggio JSON
+     */
+    static String queueMessage(long time, long estimatedWait) {
+        JSONObject queueMsg = new JSONObject();
+        queueMsg.put("action", "queue");
+        queueMsg.put("time", time);
+        queueMsg.put("estimated_wait", estimatedWait);
+        return queueMsg.toString();
+    }
+
+    /**
+     * Restituisce il messaggio di inizio partita inviato a entrambi i giocatori, con il tempo di gioco.
+     * @param time La cadenza della partita, in millisecondi
+     * @return Il messaggio JSON
+     */
+    static String startGameMessage(long time) {
+        JSONObject startMsg = new JSONObject();
+        startMsg.put("action", "start_game");
+        startMsg.put("current_turn", currentTurn);
+        startMsg.put("time", time);
+        startMsg.put("increment", increment);
+        return startMsg.toString();
+    }
+
+    /**
+     * Avvia il gestore della partita tra due giocatori in un nuovo thread.
+     * @param white Il giocatore con i pezzi bianchi.
+     * @param black Il giocatore con i pezzi neri.
+     * @param time La cadenza della partita, in millisecondi.
+     */
+    static void startGame(Player white, Player black, long time) {
+        threads.newThread(new GameHandler(white, black, time, increment)).start();
+    }
+}
 
 /**
  * Gestisce il flusso della partita di scacchi tra due giocatori.
  * Esegue la gestione dei turni, delle mosse e delle condizioni di fine partita.
+ *
+ * I socket dei due giocatori vengono letti contemporaneamente da due compiti di un {@link GameScope}, che trasformano
+ * ogni riga ricevuta (o la disconnessione) in un evento su un'unica coda. Il thread della partita è l'unico
+ * a consumare la coda e a modificare lo stato, quindi non servono lock: i messaggi fuori turno (abbandono,
+ * proposte di patta, chat) e le disconnessioni vengono gestiti appena arrivano, senza aspettare il turno del giocatore.
+ *
+ * Gli orologi sono quelli del server ({@link GameClock}): a ogni turno il giocatore riceve un ping per stimare
+ * il ritardo di rete e la caduta della bandierina è una scadenza sulla ruota condivisa, che mette un evento nella coda.
+ * Sulla stessa ruota ci sono la scadenza della prima mossa, oltre la quale la partita viene annullata, e il controllo
+ * periodico delle connessioni: chi non risponde ai ping per {@link #IDLE_TIMEOUT} viene considerato disconnesso,
+ * così anche un giocatore non al tratto con la connessione caduta senza chiusura non tiene aperta la partita.
  */
 class GameHandler implements Runnable {
+    static final long FIRST_MOVE_TIMEOUT = 30000; // Tempo per la prima mossa di ogni giocatore, in millisecondi
+
+    static final long IDLE_TIMEOUT = 45000; // Silenzio oltre il quale un giocatore è considerato disconnesso, in millisecondi
+
+    private static final long HEARTBEAT_INTERVAL = 15000; // Intervallo tra due controlli delle connessioni, in millisecondi
+
     private final Player whitePlayer; // Rappresenta il giocatore con i pezzi bianchi
 
     private final Player blackPlayer; // Rappresenta il giocatore con i pezzi neri
 
     private String currentTurn = "0"; // Turno corrente della partita ("0" per il bianco, "1" per il nero)
 
+    private final Position position = Position.startPosition(); // Posizione della partita, su cui vengono validate le mosse
+
+    private final MoveList legalMoves = new MoveList(); // Buffer delle mosse legali, riusato a ogni mossa
+
+    private final BlockingQueue<GameEvent> events = new LinkedBlockingQueue<>(); // Eventi dei due giocatori, in ordine di arrivo
+
+    private Player drawOffer; // Giocatore che ha proposto la patta, null se non ci sono proposte
+
+    private boolean over; // true quando la partita è terminata
+
+    private Player disconnected; // Avversario disconnesso mentre si attende la bandierina del giocatore al tratto, altrimenti null
+
+    private final long time; // Tempo iniziale di ogni giocatore, in millisecondi
+
+    private final long increment; // Incremento per mossa, in millisecondi
+
+    private GameClock clock; // Orologi della partita, creati all'inizio del primo turno
+
+    private final long[] pingSent = new long[2]; // Istante dell'ultimo ping senza risposta di bianco e nero, 0 se nessuno
+
+    private TimingWheel.Timeout flagTimeout; // Scadenza del tempo del giocatore al tratto
+
+    private TimingWheel.Timeout firstMoveTimeout; // Scadenza della prima mossa del giocatore al tratto
+
+    private long firstMoveDeadline; // Istante entro cui il giocatore al tratto deve giocare la sua prima mossa
+
+    private TimingWheel.Timeout heartbeatTimeout; // Prossimo controllo delle connessioni
+
+    private final long[] lastSeen = new long[2]; // Istante dell'ultimo messaggio di bianco e nero
+
+    private int plies; // Semimosse giocate
+
+    /**
+     * Evento ricevuto da un giocatore.
+     * @param player  Il giocatore
+     * @param message La riga ricevuta, oppure null se il giocatore si è disconnesso
+     */
+    private record GameEvent(Player player, String message) {
+    }
+
+    private static final GameEvent CLOCK = new GameEvent(null, null); // Evento della ruota: il tempo del giocatore al tratto è finito
+
+    private static final GameEvent FIRST_MOVE = new GameEvent(null, null); // Evento della ruota: la prima mossa non è arrivata in tempo
+
+    private static final GameEvent HEARTBEAT = new GameEvent(null, null); // Evento della ruota: controllo delle connessioni
+
     /**
      * Costruttore per inizializzare un gestore della partita con i due giocatori.
      * @param whitePlayer Il giocatore con i pezzi bianchi.
      * @param blackPlayer Il giocatore con i pezzi neri.
+     * @param time Il tempo iniziale di ogni giocatore, in millisecondi.
+     * @param increment L'incremento per mossa, in millisecondi.
      */
-    public GameHandler(Player whitePlayer, Player blackPlayer) {
+    public GameHandler(Player whitePlayer, Player blackPlayer, long time, long increment) {
         this.whitePlayer = whitePlayer;
         this.blackPlayer = blackPlayer;
+        this.time = time;
+        this.increment = increment;
     }
 
     /**
-     * Esegue il ciclo di gioco, gestendo il turno dei giocatori e le loro mosse.
-     * Gestisce anche le condizioni di fine partita (scacco matto e limite di tempo).
+     * Esegue il ciclo di gioco: consuma gli eventi dei due giocatori finché la partita non termina.
+     * All'uscita l'ambito chiude i socket e attende la fine dei due lettori.
      */
     @Override
     public void run() {
-        try {
-            // Lettura delle mosse dai giocatori
-            BufferedReader whiteInput = new BufferedReader(new InputStreamReader(whitePlayer.socket.getInputStream()));
-            BufferedReader blackInput = new BufferedReader(new InputStreamReader(blackPlayer.socket.getInputStream()));
+        try (GameScope scope = new GameScope(ChessLobbyServer.threads(), whitePlayer.socket, blackPlayer.socket)) {
+            // Lettura dei messaggi di entrambi i giocatori, in parallelo
+            startReader(scope, whitePlayer);
+            startReader(scope, blackPlayer);
 
             // Invia il nome dell'avversario a ciascun giocatore
             JSONObject whiteOpponentName = new JSONObject();
@@ -143,70 +317,457 @@ class GameHandler implements Runnable {
             blackOpponentName.put("opponent_name", whitePlayer.name);
             blackPlayer.output.println(blackOpponentName.toString());
 
-            // Ciclo di gioco infinito, finché non termina
-            while (true) {
-                // Gestione del turno dei giocatori
-                if (currentTurn.equals("0")) {
-                    processMove(whitePlayer, blackPlayer, whiteInput);  // Elabora la mossa del bianco
-                    JSONObject response = new JSONObject();
-                    response.put("action", "update_turn");
-                    whitePlayer.output.println(response.toString());
-                    currentTurn = "1";  // Passa il turno al nero
-                } else {
-                    processMove(blackPlayer, whitePlayer, blackInput);  // Elabora la mossa del nero
-                    JSONObject response = new JSONObject();
-                    response.put("action", "update_turn");
-                    blackPlayer.output.println(response.toString());
-                    currentTurn = "0";  // Passa il turno al bianco
+            // Avvia l'orologio del bianco e lo avvisa che è il suo turno
+            long now = System.nanoTime();
+            clock = new GameClock(time, increment, now);
+            lastSeen[0] = lastSeen[1] = now;
+            startTurn(whitePlayer);
+            scheduleHeartbeat();
+
+            // Ciclo di gioco, finché non termina
+            while (!over) {
+                GameEvent event = events.take();
+                if (event == CLOCK) checkFlag();
+                else if (event == FIRST_MOVE) checkFirstMove();
+                else if (event == HEARTBEAT) checkConnections();
+                else if (event.message() == null) handleDisconnect(event.player());
+                else {
+                    lastSeen[event.player() == whitePlayer ? 0 : 1] = System.nanoTime();
+                    handleMessage(event.player(), event.message());
                 }
             }
-        } catch (IOException e) {
-            System.out.println("Un giocatore si è disconnesso.");
+        } catch (InterruptedException e) {
+            System.out.println("Partita interrotta.");
+        } finally {
+            // Le scadenze di una partita finita non devono restare sulla ruota
+            if (flagTimeout != null) flagTimeout.cancel();
+            if (firstMoveTimeout != null) firstMoveTimeout.cancel();
+            if (heartbeatTimeout != null) heartbeatTimeout.cancel();
         }
     }
 
     /**
-     * Gestisce una mossa di un giocatore durante il suo turno.
-     * Controlla le condizioni di fine partita, come il tempo limite o lo scacco matto.
-     * @param currentPlayer Il giocatore che sta facendo la mossa.
-     * @param opponent Il giocatore avversario.
-     * @param input BufferedReader per leggere la mossa dal giocatore corrente.
-     * @throws IOException Se si verifica un errore durante la lettura della mossa.
+     * Avvia il compito che legge i messaggi di un giocatore e li trasforma in eventi.
+     * La fine del flusso o un errore di lettura diventano un evento di disconnessione.
+     * @param scope  L'ambito della partita
+     * @param player Il giocatore
      */
-    private void processMove(Player currentPlayer, Player opponent, BufferedReader input) throws IOException {
-        // Avvisa il giocatore che è il suo turno
-        JSONObject turnMsg = new JSONObject();
-        turnMsg.put("action", "your_turn");
-        currentPlayer.output.println(turnMsg.toString());
+    private void startReader(GameScope scope, Player player) {
+        scope.fork(() -> {
+            try {
+                String line;
+                while ((line = player.input.readLine()) != null) events.put(new GameEvent(player, line));
+            } catch (IOException e) {
+                // Socket chiuso o connessione persa: trattato come disconnessione
+            }
+            events.put(new GameEvent(player, null));
+        });
+    }
+
+    /**
+     * Restituisce l'avversario di un giocatore.
+     * @param player Il giocatore
+     * @return L'altro giocatore della partita
+     */
+    private Player opponentOf(Player player) {
+        return player == whitePlayer ? blackPlayer : whitePlayer;
+    }
 
-        // Legge la mossa dal giocatore
-        String message = input.readLine();
-        JSONObject moveJson = new JSONObject(message);
+    /**
+     * Restituisce il giocatore al tratto secondo l'orologio.
+     * @return Il giocatore che deve muovere
+     */
+    private Player playerToMove() {
+        return clock.getTurn() == 0 ? whitePlayer : blackPlayer;
+    }
 
-        // Se l'azione non è "move", esce senza fare nulla
-        if (!moveJson.getString("action").equals("move")) return;
+    /**
+     * Inizia il turno di un giocatore: lo avvisa, gli invia un ping se non ne ha già uno in sospeso
+     * e programma la caduta della bandierina.
+     * @param player Il giocatore al tratto
+     */
+    private void startTurn(Player player) {
+        sendYourTurn(player);
 
-        // Controlla se il tempo è scaduto
-        if (moveJson.optBoolean("time-limit", false)) {
-            endGameTime(opponent, currentPlayer);  // Termina la partita per superamento del limite di tempo
-            return;
+        long now = System.nanoTime();
+        sendPing(player, now);
+        scheduleFlag(now);
+
+        // Il giocatore che non ha ancora mosso ha un tempo massimo per iniziare
+        if (plies < 2) {
+            firstMoveDeadline = now + TimeUnit.MILLISECONDS.toNanos(FIRST_MOVE_TIMEOUT);
+            firstMoveTimeout = ChessLobbyServer.timers().schedule(() -> events.offer(FIRST_MOVE), FIRST_MOVE_TIMEOUT, TimeUnit.MILLISECONDS);
         }
+    }
+
+    /**
+     * Invia un ping a un giocatore, se non ne ha già uno senza risposta.
+     * @param player Il giocatore
+     * @param now    L'istante corrente
+     */
+    private void sendPing(Player player, long now) {
+        int color = player == whitePlayer ? 0 : 1;
+        if (pingSent[color] != 0) return;
+        pingSent[color] = now;
+        player.output.println(new JSONObject().put("action", "ping").toString());
+    }
 
-        // Controlla se la partita è finita con uno scacco matto
-        if (moveJson.optBoolean("checkmate", false)) {
-            endGameCheckMate(currentPlayer, opponent);  // Termina la partita per scacco matto
+    /**
+     * Gestisce la scadenza della prima mossa: se il giocatore al tratto non ha ancora mosso, la partita viene annullata.
+     * Un evento arrivato dopo la mossa, quando la scadenza non è stata annullata in tempo, viene ignorato.
+     */
+    private void checkFirstMove() {
+        if (plies < 2 && System.nanoTime() - firstMoveDeadline >= 0) endGameAborted(playerToMove());
+    }
+
+    /**
+     * Programma sulla ruota il prossimo controllo delle connessioni.
+     */
+    private void scheduleHeartbeat() {
+        heartbeatTimeout = ChessLobbyServer.timers().schedule(() -> events.offer(HEARTBEAT), HEARTBEAT_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Controlla le connessioni dei due giocatori: chi è in silenzio da più di {@link #IDLE_TIMEOUT} viene considerato
+     * disconnesso, agli altri viene inviato un ping, la cui risposta conta come messaggio.
+     */
+    private void checkConnections() {
+        long now = System.nanoTime();
+        long idle = TimeUnit.MILLISECONDS.toNanos(IDLE_TIMEOUT);
+        for (Player player : new Player[]{whitePlayer, blackPlayer}) {
+            if (now - lastSeen[player == whitePlayer ? 0 : 1] > idle) {
+                handleDisconnect(player);
+                return;
+            }
+            sendPing(player, now);
+        }
+        scheduleHeartbeat();
+    }
+
+    /**
+     * Programma sulla ruota la scadenza del tempo del giocatore al tratto.
+     * @param now L'istante corrente
+     */
+    private void scheduleFlag(long now) {
+        if (flagTimeout != null) flagTimeout.cancel();
+        flagTimeout = ChessLobbyServer.timers().schedule(() -> events.offer(CLOCK), clock.untilFlag(now), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Gestisce la scadenza della ruota: se il tempo del giocatore al tratto è davvero finito la partita termina,
+     * altrimenti (ad esempio perché la stima del ritardo di rete è cresciuta) la scadenza viene riprogrammata.
+     */
+    private void checkFlag() {
+        long now = System.nanoTime();
+        if (clock.isFlagged(now)) endGameTime(opponentOf(playerToMove()), playerToMove());
+        else if (disconnected != null && !clock.isInLagWindow(now)) endGameDisconnect(disconnected);
+        else scheduleFlag(now);
+    }
+
+    /**
+     * Gestisce la disconnessione di un giocatore. Se il giocatore al tratto ha già esaurito il tempo la partita
+     * termina per tempo. Se se ne va l'avversario mentre il giocatore al tratto è nella finestra di compensazione,
+     * la decisione aspetta la caduta della bandierina: se la mossa arriva in tempo vince il giocatore al tratto
+     * per abbandono dell'avversario, altrimenti la partita termina per tempo.
+     * @param player Il giocatore disconnesso
+     */
+    private void handleDisconnect(Player player) {
+        long now = System.nanoTime();
+        if (clock.isFlagged(now)) {
+            endGameTime(opponentOf(playerToMove()), playerToMove());
+        } else if (player != playerToMove() && clock.isInLagWindow(now)) {
+            disconnected = player;
+            scheduleFlag(now);
+        } else {
+            endGameDisconnect(player);
+        }
+    }
+
+    /**
+     * Aggiunge a un messaggio il tempo rimasto dei due giocatori, in millisecondi.
+     * @param json Il messaggio
+     * @param now  L'istante corrente
+     * @return Il messaggio stesso
+     */
+    private JSONObject putClocks(JSONObject json, long now) {
+        json.put("white_time", clock.millis(0, now));
+        json.put("black_time", clock.millis(1, now));
+        return json;
+    }
+
+    /**
+     * Gestisce un messaggio di un giocatore, anche fuori dal suo turno.
+     * @param player  Il giocatore che ha inviato il messaggio
+     * @param message Il messaggio JSON
+     */
+    private void handleMessage(Player player, String message) {
+        JSONObject json;
+        try {
+            json = new JSONObject(message);
+        } catch (JSONException e) {
+            sendError(player, "Messaggio non valido.");
             return;
         }
 
+        Player opponent = opponentOf(player);
+        switch (json.optString("action")) {
+            case "move":
+                // Il tempo scaduto dichiarato dal client viene solo verificato sull'orologio del server,
+                // con la stessa compensazione del ritardo usata per la bandierina
+                if (json.optBoolean("time-limit", false)) {
+                    if (clock.isFlagged(System.nanoTime())) endGameTime(opponentOf(playerToMove()), playerToMove());
+                    return;
+                }
+
+                if (!player.color.equals(currentTurn)) {
+                    sendError(player, "Non è il tuo turno.");
+                    return;
+                }
+                if (!processMove(player, opponent, json)) return;
+
+                // La mossa è arrivata in tempo ma l'avversario se n'è andato mentre la si attendeva
+                if (disconnected != null) {
+                    if (!over) endGameDisconnect(disconnected);
+                    return;
+                }
+
+                // Passa il turno all'avversario
+                currentTurn = opponent.color;
+                startTurn(opponent);
+                break;
+
+            case "pong":
+                // Risposta al ping: un campione del tempo di andata e ritorno
+                int color = player == whitePlayer ? 0 : 1;
+                if (pingSent[color] != 0) {
+                    clock.addRoundTrip(color, System.nanoTime() - pingSent[color]);
+                    pingSent[color] = 0;
+                }
+                break;
+
+            case "resign":
+                endGameResign(opponent, player);
+                break;
+
+            case "draw_offer":
+                // Una proposta di patta incrociata vale come accettazione
+                if (drawOffer == opponent) {
+                    endGameDraw(player, opponent, "Patta per accordo.");
+                    return;
+                }
+                drawOffer = player;
+                opponent.output.println(new JSONObject().put("action", "draw_offer").put("from", player.name).toString());
+                break;
+
+            case "draw_accept":
+                if (drawOffer == opponent) endGameDraw(player, opponent, "Patta per accordo.");
+                else sendError(player, "Nessuna proposta di patta da accettare.");
+                break;
+
+            case "draw_decline":
+                if (drawOffer == opponent) {
+                    drawOffer = null;
+                    opponent.output.println(new JSONObject().put("action", "draw_declined").toString());
+                }
+                break;
+
+            case "chat":
+                JSONObject chat = new JSONObject();
+                chat.put("action", "chat");
+                chat.put("from", player.name);
+                chat.put("text", json.optString("text"));
+                opponent.output.println(chat.toString());
+                break;
+
+            default:
+                sendError(player, "Azione sconosciuta: " + json.optString("action"));
+                break;
+        }
+    }
+
+    /**
+     * Avvisa un giocatore che è il suo turno.
+     * @param player Il giocatore
+     */
+    private void sendYourTurn(Player player) {
+        JSONObject turnMsg = new JSONObject();
+        turnMsg.put("action", "your_turn");
+        player.output.println(turnMsg.toString());
+    }
+
+    /**
+     * Invia un messaggio di errore a un giocatore, senza terminare la partita.
+     * @param player  Il giocatore
+     * @param message La descrizione dell'errore
+     */
+    private void sendError(Player player, String message) {
+        JSONObject error = new JSONObject();
+        error.put("action", "error");
+        error.put("message", message);
+        player.output.println(error.toString());
+    }
+
+    /**
+     * Gestisce una mossa di un giocatore durante il suo turno.
+     * La mossa viene validata sulla posizione del server prima di essere inoltrata; matto, stallo e patte vengono
+     * riconosciuti dal server stesso, quindi le rivendicazioni del client ("checkmate", "draw") sono ignorate.
+     * Il tempo della mossa viene tolto dall'orologio del giocatore prima di inoltrarla.
+     * @param currentPlayer Il giocatore che sta facendo la mossa.
+     * @param opponent Il giocatore avversario.
+     * @param moveJson Il messaggio con la mossa.
+     * @return true se la mossa è stata accettata e la partita continua
+     */
+    private boolean processMove(Player currentPlayer, Player opponent, JSONObject moveJson) {
+        // Messaggi senza mossa, come le rivendicazioni di matto o patta: il server li ha già riconosciuti da solo
+        if (!moveJson.has("move")) return false;
+
+        // Cerca la mossa tra quelle legali nella posizione della partita
+        String text = moveJson.optString("move");
+        int move = parseMove(text, moveJson.optInt("promotion", ChessType.QUEEN));
+        if (move == 0) {
+            sendError(currentPlayer, "Mossa illegale: " + text);
+            return false;
+        }
+
+        // Ferma l'orologio: se il tempo, compensato, era già finito la mossa arriva troppo tardi
+        long now = System.nanoTime();
+        if (!clock.press(now)) {
+            endGameTime(opponent, currentPlayer);
+            return false;
+        }
+        flagTimeout.cancel();
+        if (firstMoveTimeout != null) firstMoveTimeout.cancel();
+        plies++;
+
+        // Una mossa annulla la proposta di patta ancora aperta
+        drawOffer = null;
+
         // Mostra la mossa effettuata
-        System.out.println(currentPlayer.name + " (" + currentPlayer.color + ") ha mosso: " + moveJson.getString("move"));
+        System.out.println(currentPlayer.name + " (" + currentPlayer.color + ") ha mosso: " + text);
 
-        // Invia l'aggiornamento della scacchiera all'avversario
+        // Invia l'aggiornamento della scacchiera all'avversario, con il tipo di mossa calcolato dal server e gli orologi
         JSONObject response = new JSONObject();
         response.put("action", "update_board");
-        response.put("move", moveJson.getString("move"));
-        response.put("moveType", moveJson.getInt("moveType"));
-        opponent.output.println(response.toString());
+        response.put("move", text);
+        response.put("moveType", moveType(move));
+        if (PackedMove.isPromotion(move)) response.put("promotion", PackedMove.promotion(move));
+        opponent.output.println(putClocks(response, now).toString());
+
+        // Conferma la mossa al giocatore, anche se chiude la partita: il client la esegue solo a questo punto
+        JSONObject confirm = new JSONObject();
+        confirm.put("action", "update_turn");
+        currentPlayer.output.println(putClocks(confirm, now).toString());
+
+        position.makeMove(move);
+
+        // Matto o stallo: il giocatore al tratto non ha mosse legali
+        MoveGenerator.generateLegalMoves(position, legalMoves);
+        if (legalMoves.isEmpty()) {
+            if (position.isInCheck()) endGameCheckMate(currentPlayer, opponent);
+            else endGameDraw(currentPlayer, opponent, "Patta per stallo.");
+            return false;
+        }
+
+        // Patte riconosciute dalle regole
+        String drawReason = drawReason();
+        if (drawReason != null) {
+            endGameDraw(currentPlayer, opponent, drawReason);
+            return false;
+        }
+
+        // Se la posizione è nelle tablebase, aggiudica subito la partita
+        Tablebase.Result result = Tablebase.getDefault().adjudicate(position);
+        if (result != null) {
+            endGameTablebase(currentPlayer, opponent, result);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Converte una mossa del client nella mossa legale corrispondente della posizione della partita.
+     * @param move      La mossa nel formato inviato dal client, ad esempio "e2-e4"
+     * @param promotion Il pezzo scelto per la promozione (ChessType), ignorato se la mossa non è una promozione
+     * @return La mossa codificata, oppure 0 se non è riconosciuta o non è legale
+     */
+    private int parseMove(String move, int promotion) {
+        int from, to;
+        try {
+            String[] squares = move.split("-");
+            if (squares.length != 2) return 0;
+            from = Square.parse(squares[0]);
+            to = Square.parse(squares[1]);
+        } catch (IllegalArgumentException e) {
+            return 0;
+        }
+
+        MoveGenerator.generateLegalMoves(position, legalMoves);
+        for (int i = 0; i < legalMoves.size(); i++) {
+            int legal = legalMoves.get(i);
+            if (PackedMove.from(legal) != from || PackedMove.to(legal) != to) continue;
+            if (PackedMove.isPromotion(legal) && PackedMove.promotion(legal) != promotion) continue;
+            return legal;
+        }
+        return 0;
+    }
+
+    /**
+     * Restituisce il tipo di mossa usato dal client per suoni, notazione e animazioni, come in {@code Window}.
+     * @param move La mossa codificata
+     * @return La costante di {@link MoveType}
+     */
+    private int moveType(int move) {
+        return PackedMove.toMoveType(move, position.typeAt(PackedMove.from(move)));
+    }
+
+    /**
+     * Verifica se la posizione è patta per ripetizione, regola delle 50 mosse o materiale insufficiente.
+     * @return Il motivo della patta, oppure null se la partita continua
+     */
+    private String drawReason() {
+        if (position.isThreefoldRepetition()) return "Patta per triplice ripetizione.";
+        if (position.isFiftyMoveRule()) return "Patta per la regola delle 50 mosse.";
+        if (position.isInsufficientMaterial()) return "Patta per materiale insufficiente.";
+        return null;
+    }
+
+    /**
+     * Termina la partita secondo le tablebase e invia i messaggi di fine partita ai giocatori.
+     * @param mover    Il giocatore che ha appena mosso.
+     * @param opponent Il giocatore al tratto.
+     * @param result   Il risultato per il giocatore al tratto.
+     */
+    private void endGameTablebase(Player mover, Player opponent, Tablebase.Result result) {
+        if (result.getWdl() == Tablebase.Result.DRAW) {
+            endGameDraw(mover, opponent, "Posizione patta secondo le tablebase.");
+            return;
+        }
+
+        over = true;
+        Player winner = result.getWdl() == Tablebase.Result.WIN ? opponent : mover;
+        Player loser = winner == mover ? opponent : mover;
+        try {
+            // Messaggio per il vincitore
+            JSONObject winnerMsg = new JSONObject();
+            winnerMsg.put("action", "game_over");
+            winnerMsg.put("winner", winner.color);
+            winnerMsg.put("result", "Hai vinto! Posizione vinta secondo le tablebase.");
+            winner.output.println(winnerMsg.toString());
+
+            // Messaggio per il perdente
+            JSONObject loserMsg = new JSONObject();
+            loserMsg.put("action", "game_over");
+            loserMsg.put("winner", winner.color);
+            loserMsg.put("result", "Hai perso! Posizione persa secondo le tablebase.");
+            loser.output.println(loserMsg.toString());
+
+            // Chiude le connessioni con i giocatori
+            winner.socket.close();
+            loser.socket.close();
+            System.out.println("Partita aggiudicata. " + winner.name + " ha vinto.");
+        } catch (IOException e) {
+            System.out.println("Errore durante la chiusura delle connessioni.");
+        }
     }
 
     /**
@@ -215,16 +776,19 @@ class GameHandler implements Runnable {
      * @param loser Il giocatore che ha perso.
      */
     private void endGameCheckMate(Player winner, Player loser) {
+        over = true;
         try {
             // Messaggio per il vincitore
             JSONObject winnerMsg = new JSONObject();
             winnerMsg.put("action", "game_over");
+            winnerMsg.put("winner", winner.color);
             winnerMsg.put("result", "Hai vinto!");
             winner.output.println(winnerMsg.toString());
 
             // Messaggio per il perdente
             JSONObject loserMsg = new JSONObject();
             loserMsg.put("action", "game_over");
+            loserMsg.put("winner", winner.color);
             loserMsg.put("result", "Hai perso! Scacco matto.");
             loser.output.println(loserMsg.toString());
 
@@ -237,22 +801,50 @@ class GameHandler implements Runnable {
         }
     }
 
+    /**
+     * Termina la partita in patta e invia i messaggi di fine partita ai giocatori.
+     * @param first Il primo giocatore.
+     * @param second Il secondo giocatore.
+     * @param reason Il motivo della patta.
+     */
+    private void endGameDraw(Player first, Player second, String reason) {
+        over = true;
+        try {
+            // Messaggio per entrambi i giocatori
+            JSONObject drawMsg = new JSONObject();
+            drawMsg.put("action", "game_over");
+            drawMsg.put("result", "Patta! " + reason);
+            first.output.println(drawMsg.toString());
+            second.output.println(drawMsg.toString());
+
+            // Chiude le connessioni con i giocatori
+            first.socket.close();
+            second.socket.close();
+            System.out.println("Partita terminata in patta.");
+        } catch (IOException e) {
+            System.out.println("Errore durante la chiusura delle connessioni.");
+        }
+    }
+
     /**
      * Termina la partita a causa di superamento del limite di tempo e invia i messaggi di fine partita.
      * @param winner Il giocatore che ha vinto per tempo.
      * @param loser Il giocatore che ha perso per tempo.
      */
     private void endGameTime(Player winner, Player loser) {
+        over = true;
         try {
             // Messaggio per il vincitore
             JSONObject winnerMsg = new JSONObject();
             winnerMsg.put("action", "game_over");
+            winnerMsg.put("winner", winner.color);
             winnerMsg.put("result", "Hai vinto!");
             winner.output.println(winnerMsg.toString());
 
             // Messaggio per il perdente
             JSONObject loserMsg = new JSONObject();
             loserMsg.put("action", "game_over");
+            loserMsg.put("winner", winner.color);
             loserMsg.put("result", "Hai perso! Limite di tempo raggiunto.");
             loser.output.println(loserMsg.toString());
 
@@ -264,4 +856,82 @@ class GameHandler implements Runnable {
             System.out.println("Errore durante la chiusura delle connessioni.");
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Termina la partita per abbandono e invia i messaggi di fine partita ai giocatori.
+     * @param winner Il giocatore che ha vinto.
+     * @param loser Il giocatore che ha abbandonato.
+     */
+    private void endGameResign(Player winner, Player loser) {
+        over = true;
+        try {
+            // Messaggio per il vincitore
+            JSONObject winnerMsg = new JSONObject();
+            winnerMsg.put("action", "game_over");
+            winnerMsg.put("winner", winner.color);
+            winnerMsg.put("result", "Hai vinto! L'avversario ha abbandonato.");
+            winner.output.println(winnerMsg.toString());
+
+            // Messaggio per il perdente
+            JSONObject loserMsg = new JSONObject();
+            loserMsg.put("action", "game_over");
+            loserMsg.put("winner", winner.color);
+            loserMsg.put("result", "Hai perso! Hai abbandonato la partita.");
+            loser.output.println(loserMsg.toString());
+
+            // Chiude le connessioni con i giocatori
+            winner.socket.close();
+            loser.socket.close();
+            System.out.println("Partita terminata per abbandono. " + winner.name + " ha vinto.");
+        } catch (IOException e) {
+            System.out.println("Errore durante la chiusura delle connessioni.");
+        }
+    }
+
+    /**
+     * Termina la partita per la disconnessione di un giocatore e avvisa l'altro, che vince.
+     * @param disconnected Il giocatore che si è disconnesso.
+     */
+    private void endGameDisconnect(Player disconnected) {
+        over = true;
+        Player winner = opponentOf(disconnected);
+        try {
+            // Messaggio per il giocatore rimasto
+            JSONObject winnerMsg = new JSONObject();
+            winnerMsg.put("action", "game_over");
+            winnerMsg.put("winner", winner.color);
+            winnerMsg.put("result", "Hai vinto! L'avversario si è disconnesso.");
+            winner.output.println(winnerMsg.toString());
+
+            // Chiude le connessioni con i giocatori
+            winner.socket.close();
+            disconnected.socket.close();
+            System.out.println(disconnected.name + " si è disconnesso. " + winner.name + " ha vinto.");
+        } catch (IOException e) {
+            System.out.println("Errore durante la chiusura delle connessioni.");
+        }
+    }
+
+    /**
+     * Annulla la partita perché un giocatore non ha giocato la prima mossa in tempo: nessuno vince.
+     * @param idle Il giocatore che non ha mosso.
+     */
+    private void endGameAborted(Player idle) {
+        over = true;
+        try {
+            // Messaggio per entrambi i giocatori
+            JSONObject abortMsg = new JSONObject();
+            abortMsg.put("action", "game_over");
+            abortMsg.put("result", "Partita annullata: " + idle.name + " non ha giocato la prima mossa.");
+            whitePlayer.output.println(abortMsg.toString());
+            blackPlayer.output.println(abortMsg.toString());
+
+            // Chiude le connessioni con i giocatori
+            whitePlayer.socket.close();
+            blackPlayer.socket.close();
+            System.out.println("Partita annullata: " + idle.name + " non ha giocato la prima mossa.");
+        } catch (IOException e) {
+            System.out.println("Errore durante la chiusura delle connessioni.");
+        }
+    }
+}
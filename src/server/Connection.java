@@ -0,0 +1,155 @@
+package server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Connessione non bloccante di un client alla lobby.
+ * Raccoglie i byte letti finché non forma righe complete (un messaggio JSON per riga) e accoda le righe da inviare
+ * finché il socket non le accetta. Tutti i metodi vanno chiamati dal thread del selettore che possiede la connessione:
+ * gli altri thread passano da {@link #owner}.
+ */
+class Connection {
+    static final int MAX_LINE = 8192; // Lunghezza massima di un messaggio in byte
+    private static final int INITIAL_BUFFER = 256; // Dimensione iniziale del buffer di lettura
+
+    final SocketChannel channel; // Canale non bloccante del client
+    final SelectionKey key; // Registrazione del canale nel selettore
+    final Executor owner; // Esegue un'azione sul thread del selettore che possiede la connessione
+
+    String name; // Nome del giocatore, null finché non è stato ricevuto
+    String color; // Colore assegnato ("0" per bianco, "1" per nero)
+    TimingWheel.Timeout handshake; // Scadenza per l'invio del nome, annullata quando il nome arriva
+    Matchmaker<Connection>.Ticket ticket; // Posto in coda per l'abbinamento, null prima del nome
+
+    private ByteBuffer readBuffer = ByteBuffer.allocate(INITIAL_BUFFER); // Byte ricevuti non ancora divisi in righe
+    private final ArrayDeque<ByteBuffer> writeQueue = new ArrayDeque<>(); // Righe in attesa di essere scritte
+    private final StringBuilder kept = new StringBuilder(); // Righe ricevute che spettano a chi riceverà la connessione
+
+    /**
+     * Costruttore della connessione.
+     * @param channel Il canale del client, già non bloccante
+     * @param key     La registrazione del canale nel selettore
+     * @param owner   L'esecutore del thread del selettore
+     */
+    Connection(SocketChannel channel, SelectionKey key, Executor owner) {
+        this.channel = channel;
+        this.key = key;
+        this.owner = owner;
+    }
+
+    /**
+     * Legge i byte disponibili senza bloccare e aggiunge alla lista le righe complete.
+     * Il buffer cresce fino a {@link #MAX_LINE} solo se serve, così le connessioni inattive occupano poca memoria.
+     * @param lines La lista a cui aggiungere le righe ricevute, senza il terminatore
+     * @return false se il client ha chiuso la connessione
+     * @throws IOException Se la lettura fallisce o una riga supera la lunghezza massima
+     */
+    boolean read(List<String> lines) throws IOException {
+        while (true) {
+            if (!readBuffer.hasRemaining()) {
+                if (readBuffer.capacity() >= MAX_LINE) throw new IOException("Messaggio troppo lungo");
+                readBuffer = ByteBuffer.wrap(Arrays.copyOf(readBuffer.array(), readBuffer.capacity() * 2)).position(readBuffer.position());
+            }
+            int read = channel.read(readBuffer);
+            if (read < 0) return false;
+            if (read == 0) return true;
+            extractLines(lines);
+        }
+    }
+
+    /**
+     * Divide il contenuto del buffer di lettura in righe e tiene solo la parte finale incompleta.
+     * @param lines La lista a cui aggiungere le righe
+     */
+    private void extractLines(List<String> lines) {
+        byte[] bytes = readBuffer.array();
+        int end = readBuffer.position();
+        int start = 0;
+        for (int i = 0; i < end; i++) {
+            if (bytes[i] != '\n') continue;
+            int length = i - start;
+            if (length > 0 && bytes[i - 1] == '\r') length--;
+            lines.add(new String(bytes, start, length, StandardCharsets.UTF_8));
+            start = i + 1;
+        }
+        System.arraycopy(bytes, start, bytes, 0, end - start);
+        readBuffer.position(end - start);
+    }
+
+    /**
+     * Conserva una riga già letta che non spetta alla lobby, ad esempio una mossa arrivata subito dopo il nome.
+     * @param line La riga, senza terminatore
+     */
+    void keep(String line) {
+        kept.append(line).append('\n');
+    }
+
+    /**
+     * Restituisce i byte ricevuti ma non consumati dalla lobby: le righe conservate e l'eventuale riga incompleta.
+     * @return I byte in sospeso, nell'ordine di arrivo
+     */
+    byte[] pending() {
+        byte[] lines = kept.toString().getBytes(StandardCharsets.UTF_8);
+        byte[] result = Arrays.copyOf(lines, lines.length + readBuffer.position());
+        System.arraycopy(readBuffer.array(), 0, result, lines.length, readBuffer.position());
+        return result;
+    }
+
+    /**
+     * Accoda una riga da inviare e prova a scriverla subito.
+     * @param line Il messaggio, senza terminatore
+     * @throws IOException Se la scrittura fallisce
+     */
+    void send(String line) throws IOException {
+        writeQueue.add(ByteBuffer.wrap((line + "\n").getBytes(StandardCharsets.UTF_8)));
+        flush();
+    }
+
+    /**
+     * Scrive le righe in coda finché il socket le accetta; se ne restano, chiede al selettore di segnalare quando
+     * il socket torna scrivibile.
+     * @return true se la coda è stata svuotata
+     * @throws IOException Se la scrittura fallisce
+     */
+    boolean flush() throws IOException {
+        while (!writeQueue.isEmpty()) {
+            ByteBuffer buffer = writeQueue.peek();
+            channel.write(buffer);
+            if (buffer.hasRemaining()) {
+                key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                return false;
+            }
+            writeQueue.poll();
+        }
+        key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+        return true;
+    }
+
+    /**
+     * Verifica se ci sono righe ancora da scrivere.
+     * @return true se la coda di scrittura è vuota
+     */
+    boolean isFlushed() {
+        return writeQueue.isEmpty();
+    }
+
+    /**
+     * Chiude la connessione, ignorando gli errori.
+     */
+    void close() {
+        key.cancel();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // La connessione è comunque persa
+        }
+    }
+}
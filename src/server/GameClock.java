@@ -0,0 +1,125 @@
+package server;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Orologi di una partita, tenuti dal server con {@link System#nanoTime()}.
+ *
+ * Il tempo di una mossa va dall'invio del turno al giocatore all'arrivo della sua mossa, quindi comprende anche
+ * il viaggio dei due messaggi in rete. Per non far pagare la rete al giocatore, dal tempo usato si toglie il tempo
+ * di andata e ritorno stimato per quel giocatore (media mobile dei campioni, come per TCP), fino a un massimo
+ * per mossa. Dopo ogni mossa si aggiunge l'incremento.
+ *
+ * Non è thread-safe: viene usato solo dal thread della partita.
+ */
+class GameClock {
+    static final long MAX_LAG_COMPENSATION = TimeUnit.MILLISECONDS.toNanos(1000); // Compensazione massima per mossa
+
+    private final long[] remaining = new long[2]; // Tempo rimasto di bianco e nero all'inizio del turno, in nanosecondi
+    private final long[] roundTrip = new long[2]; // Tempo di andata e ritorno stimato di ogni giocatore, 0 se non misurato
+    private final long increment; // Incremento per mossa, in nanosecondi
+    private int turn; // Colore al tratto (0 bianco, 1 nero)
+    private long turnStart; // Istante di inizio del turno corrente
+
+    /**
+     * Costruttore degli orologi.
+     * @param time      Tempo iniziale di ogni giocatore, in millisecondi
+     * @param increment Incremento per mossa, in millisecondi
+     * @param now       Istante di inizio del turno del bianco, da {@link System#nanoTime()}
+     * @throws IllegalArgumentException se il tempo non è positivo o l'incremento è negativo
+     */
+    GameClock(long time, long increment, long now) {
+        if (time <= 0) throw new IllegalArgumentException("Tempo di gioco non valido: " + time);
+        if (increment < 0) throw new IllegalArgumentException("Incremento non valido: " + increment);
+        this.remaining[0] = this.remaining[1] = TimeUnit.MILLISECONDS.toNanos(time);
+        this.increment = TimeUnit.MILLISECONDS.toNanos(increment);
+        this.turnStart = now;
+    }
+
+    /**
+     * Restituisce il colore al tratto.
+     * @return 0 per il bianco, 1 per il nero
+     */
+    int getTurn() {
+        return turn;
+    }
+
+    /**
+     * Aggiunge un campione del tempo di andata e ritorno di un giocatore.
+     * @param color  Il colore del giocatore
+     * @param sample Il tempo misurato, in nanosecondi
+     */
+    void addRoundTrip(int color, long sample) {
+        if (sample < 0) return;
+        roundTrip[color] = roundTrip[color] == 0 ? sample : roundTrip[color] + (sample - roundTrip[color]) / 8;
+    }
+
+    /**
+     * Restituisce la compensazione concessa al giocatore al tratto per il ritardo di rete.
+     * @return Il tempo di andata e ritorno stimato, al massimo {@link #MAX_LAG_COMPENSATION}
+     */
+    private long compensation() {
+        return Math.min(roundTrip[turn], MAX_LAG_COMPENSATION);
+    }
+
+    /**
+     * Restituisce il tempo usato dal giocatore al tratto, già compensato.
+     * @param now L'istante corrente
+     * @return Il tempo usato, in nanosecondi
+     */
+    private long used(long now) {
+        return Math.max(0, now - turnStart - compensation());
+    }
+
+    /**
+     * Verifica se il giocatore al tratto ha esaurito il tempo.
+     * @param now L'istante corrente
+     * @return true se il tempo, compensato, è finito
+     */
+    boolean isFlagged(long now) {
+        return used(now) >= remaining[turn];
+    }
+
+    /**
+     * Verifica se il giocatore al tratto è nella finestra di compensazione: il suo tempo è finito sull'orologio
+     * senza compensazione, ma non ancora su quello compensato. Una mossa inviata in tempo può essere ancora in viaggio.
+     * @param now L'istante corrente
+     * @return true se il tempo è finito solo senza compensazione
+     */
+    boolean isInLagWindow(long now) {
+        return now - turnStart >= remaining[turn] && !isFlagged(now);
+    }
+
+    /**
+     * Restituisce quanto manca prima che il giocatore al tratto esaurisca il tempo, compensazione compresa.
+     * @param now L'istante corrente
+     * @return Il ritardo in nanosecondi, 0 se il tempo è già finito
+     */
+    long untilFlag(long now) {
+        return Math.max(0, remaining[turn] - used(now));
+    }
+
+    /**
+     * Chiude il turno del giocatore al tratto: toglie il tempo usato, aggiunge l'incremento e passa il turno.
+     * @param now L'istante di arrivo della mossa
+     * @return false se il tempo era già finito, nel qual caso il turno non passa
+     */
+    boolean press(long now) {
+        if (isFlagged(now)) return false;
+        remaining[turn] += increment - used(now);
+        turn ^= 1;
+        turnStart = now;
+        return true;
+    }
+
+    /**
+     * Restituisce il tempo rimasto di un giocatore, senza compensazione per il turno in corso.
+     * @param color Il colore del giocatore
+     * @param now   L'istante corrente
+     * @return Il tempo in millisecondi, mai negativo
+     */
+    long millis(int color, long now) {
+        long left = remaining[color] - (color == turn ? now - turnStart : 0);
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(left));
+    }
+}
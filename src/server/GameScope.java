@@ -0,0 +1,121 @@
+package server;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Ambito strutturato dei compiti di una partita.
+ *
+ * I compiti avviati con {@link #fork(Task)} vivono al massimo quanto l'ambito: appena uno fallisce con un'eccezione
+ * l'ambito viene annullato, le risorse registrate vengono chiuse (sbloccando le letture in corso) e tutti i thread,
+ * compreso quello che ha aperto l'ambito, vengono interrotti. Un compito che termina normalmente non annulla nulla:
+ * ad esempio il lettore di un giocatore disconnesso segnala la disconnessione e lascia che sia la partita a concludersi.
+ * {@link #close()} attende la fine di tutti i compiti, quindi nessun thread di lettura sopravvive alla partita.
+ * È lo stesso schema di {@code StructuredTaskScope.ShutdownOnFailure}, che in Java 21 è ancora in anteprima.
+ */
+class GameScope implements AutoCloseable {
+
+    /**
+     * Compito eseguito nell'ambito.
+     */
+    @FunctionalInterface
+    interface Task {
+
+        /**
+         * Esegue il compito.
+         * @throws Exception Se il compito fallisce
+         */
+        void run() throws Exception;
+    }
+
+    private final ThreadFactory threads; // Crea i thread dei compiti
+    private final Thread owner; // Thread che ha aperto l'ambito
+    private final List<Closeable> resources; // Chiuse all'annullamento
+    private final List<Thread> forked = new ArrayList<>(); // Thread dei compiti avviati
+    private volatile boolean cancelled; // true dopo l'annullamento
+
+    /**
+     * Apre un ambito sul thread corrente.
+     * @param threads   Crea i thread dei compiti (virtuali o di piattaforma)
+     * @param resources Risorse da chiudere all'annullamento, ad esempio i socket dei giocatori
+     */
+    GameScope(ThreadFactory threads, Closeable... resources) {
+        this.threads = threads;
+        this.owner = Thread.currentThread();
+        this.resources = List.of(resources);
+    }
+
+    /**
+     * Avvia un compito in un nuovo thread. Se il compito fallisce, l'ambito viene annullato.
+     * @param task Il compito
+     */
+    synchronized void fork(Task task) {
+        if (cancelled) return;
+        Thread thread = threads.newThread(() -> {
+            try {
+                task.run();
+            } catch (Exception e) {
+                // L'errore di un compito annulla l'intero ambito
+                cancel();
+            }
+        });
+        forked.add(thread);
+        thread.start();
+    }
+
+    /**
+     * Annulla l'ambito: chiude le risorse e interrompe tutti i thread. Le chiamate successive non hanno effetto.
+     */
+    void cancel() {
+        List<Thread> toInterrupt;
+        synchronized (this) {
+            if (cancelled) return;
+            cancelled = true;
+            toInterrupt = new ArrayList<>(forked);
+        }
+        for (Closeable resource : resources) {
+            try {
+                resource.close();
+            } catch (IOException e) {
+                // La risorsa è comunque inutilizzabile
+            }
+        }
+        toInterrupt.add(owner);
+        for (Thread thread : toInterrupt) {
+            if (thread != Thread.currentThread()) thread.interrupt();
+        }
+    }
+
+    /**
+     * Verifica se l'ambito è stato annullato.
+     * @return true se un compito è fallito o l'ambito è stato chiuso
+     */
+    boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Annulla l'ambito e attende la fine di tutti i compiti.
+     */
+    @Override
+    public void close() {
+        cancel();
+        Thread.interrupted(); // L'interruzione dell'annullamento non deve impedire l'attesa
+        List<Thread> toJoin;
+        synchronized (this) {
+            toJoin = new ArrayList<>(forked);
+        }
+        for (Thread thread : toJoin) {
+            while (thread.isAlive()) {
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    // Un annullamento concorrente può interrompere anche l'attesa: i compiti terminano comunque
+                }
+            }
+        }
+    }
+}
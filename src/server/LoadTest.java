@@ -0,0 +1,221 @@
+package server;
+
+import board.MoveGenerator;
+import board.MoveList;
+import board.PackedMove;
+import board.Position;
+import board.Square;
+import org.json.JSONObject;
+import utils.constant.ChessType;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Prova di carico del server: avvia la lobby nella modalità scelta su una porta locale e gioca contemporaneamente
+ * molte partite con client automatici che scelgono mosse legali a caso. Alla fine stampa il tempo totale, le mosse
+ * al secondo, la latenza tra l'invio di una mossa e la conferma del server, il picco di thread di piattaforma
+ * e le misure della ruota delle scadenze.
+ *
+ * I client girano sempre su thread virtuali, quindi il picco di thread misura solo quelli del server.
+ * Con molte partite serve un limite di file aperti adeguato (quattro descrittori per partita, ad esempio {@code ulimit -n}).
+ */
+public class LoadTest {
+    private static final int DEFAULT_GAMES = 1000; // Partite predefinite
+    private static final int DEFAULT_PLIES = 40; // Semimosse predefinite per partita
+    private static final int MIN_RATING = 1200; // Punteggio minimo dei client
+    private static final int RATING_SPREAD = 600; // Ampiezza dell'intervallo dei punteggi dei client
+
+    /**
+     * Client automatico: risponde al protocollo del server e gioca mosse casuali fino al numero di semimosse
+     * richiesto, poi abbandona.
+     */
+    private static class Client implements Runnable {
+        private final int port; // Porta del server
+        private final int id; // Numero del client, usato come nome e seme
+        private final int plies; // Semimosse dopo cui abbandonare
+        private final long[] latencies; // Latenze delle mosse inviate, in nanosecondi
+        private int moves; // Mosse inviate
+        private boolean finished; // true se la partita è terminata con game_over
+        private String error; // Errore della connessione, se c'è stato
+
+        /**
+         * Costruttore del client.
+         * @param port  Porta del server
+         * @param id    Numero del client
+         * @param plies Semimosse dopo cui abbandonare
+         */
+        Client(int port, int id, int plies) {
+            this.port = port;
+            this.id = id;
+            this.plies = plies;
+            this.latencies = new long[plies / 2 + 1];
+        }
+
+        @Override
+        public void run() {
+            Random random = new Random(id);
+            Position position = Position.startPosition();
+            MoveList legal = new MoveList();
+            int played = 0; // Semimosse giocate da entrambi
+            long sent = 0; // Istante dell'ultima mossa inviata
+
+            try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+                socket.setTcpNoDelay(true);
+                BufferedReader input = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+                PrintWriter output = new PrintWriter(socket.getOutputStream(), true);
+
+                String line;
+                while ((line = input.readLine()) != null) {
+                    JSONObject message = new JSONObject(line);
+                    switch (message.getString("action")) {
+                        case "request_name" -> output.println(new JSONObject().put("action", "send_name").put("name", "client-" + id)
+                                .put("rating", MIN_RATING + random.nextInt(RATING_SPREAD)));
+                        case "update_board" -> {
+                            String[] squares = message.getString("move").split("-");
+                            position.makeMove(position.moveFromSquares(Square.parse(squares[0]), Square.parse(squares[1]),
+                                    message.optInt("promotion", ChessType.BLANK)));
+                            played++;
+                        }
+                        case "your_turn" -> {
+                            int move = choose(position, legal, random);
+                            if (played >= plies || move == 0) {
+                                output.println(new JSONObject().put("action", "resign"));
+                                break;
+                            }
+                            String text = Square.name(PackedMove.from(move)) + "-" + Square.name(PackedMove.to(move));
+                            sent = System.nanoTime();
+                            JSONObject moveJson = new JSONObject().put("action", "move").put("move", text).put("moveType", 0);
+                            if (PackedMove.isPromotion(move)) moveJson.put("promotion", PackedMove.promotion(move));
+                            output.println(moveJson);
+                            position.makeMove(move);
+                            played++;
+                        }
+                        case "update_turn" -> {
+                            if (moves < latencies.length) latencies[moves] = System.nanoTime() - sent;
+                            moves++;
+                        }
+                        case "ping" -> output.println(new JSONObject().put("action", "pong"));
+                        case "game_over" -> {
+                            finished = true;
+                            return;
+                        }
+                        default -> {
+                            // Gli altri messaggi non servono alla prova
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                error = e.getMessage();
+            }
+        }
+
+        /**
+         * Sceglie una mossa legale a caso, promozioni a qualsiasi pezzo comprese.
+         * @param position La posizione
+         * @param legal    Buffer delle mosse legali
+         * @param random   Generatore casuale
+         * @return La mossa, oppure 0 se non ci sono mosse
+         */
+        private static int choose(Position position, MoveList legal, Random random) {
+            MoveGenerator.generateLegalMoves(position, legal);
+            return legal.isEmpty() ? 0 : legal.get(random.nextInt(legal.size()));
+        }
+    }
+
+    /**
+     * Punto di ingresso.
+     * Uso: {@code LoadTest <nio|virtual|platform> [partite] [semimosse]}.
+     * @param args Gli argomenti
+     * @throws IOException Se il server non può essere avviato
+     * @throws InterruptedException Se l'attesa dei client viene interrotta
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 1) {
+            System.out.println("Uso: LoadTest <nio|virtual|platform> [partite] [semimosse]");
+            System.exit(1);
+        }
+        String mode = args[0];
+        int games = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_GAMES;
+        int plies = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_PLIES;
+
+        // Il server scrive una riga per ogni mossa: durante la prova l'output viene scartato
+        PrintStream report = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+        Lobby lobby = ChessLobbyServer.createLobby(mode, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), LobbyFrontEnd.DEFAULT_SELECTORS);
+        Thread server = new Thread(lobby, "lobby");
+        server.setDaemon(true);
+        server.start();
+
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        int baseThreads = threadBean.getThreadCount();
+        threadBean.resetPeakThreadCount();
+
+        List<Client> clients = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int i = 0; i < 2 * games; i++) {
+            Client client = new Client(lobby.getPort(), i, plies);
+            clients.add(client);
+            threads.add(Thread.ofVirtual().start(client));
+        }
+        for (Thread thread : threads) thread.join();
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        int finished = 0, moves = 0;
+        int errors = 0;
+        long[] latencies = new long[0];
+        String firstError = null;
+        for (Client client : clients) {
+            if (client.finished) finished++;
+            if (client.error != null) {
+                errors++;
+                if (firstError == null) firstError = client.error;
+            }
+            int count = Math.min(client.moves, client.latencies.length);
+            latencies = Arrays.copyOf(latencies, latencies.length + count);
+            System.arraycopy(client.latencies, 0, latencies, latencies.length - count, count);
+            moves += client.moves;
+        }
+        Arrays.sort(latencies);
+
+        Runtime runtime = Runtime.getRuntime();
+        report.printf("Modalità %s: %d partite da %d semimosse%n", mode, games, plies);
+        report.printf("Tempo totale: %.2f s, partite concluse: %d, errori di connessione: %d%s%n", seconds, finished / 2, errors,
+                firstError == null ? "" : " (" + firstError + ")");
+        report.printf("Mosse: %,d (%,.0f al secondo)%n", moves, moves / seconds);
+        if (latencies.length > 0) {
+            report.printf("Latenza delle mosse: mediana %.2f ms, 99%% %.2f ms, massima %.2f ms%n",
+                    percentile(latencies, 0.5), percentile(latencies, 0.99), latencies[latencies.length - 1] / 1e6);
+        }
+        report.printf("Thread di piattaforma: %d prima della prova, picco %d%n", baseThreads, threadBean.getPeakThreadCount());
+        report.printf("Memoria heap usata: %,d MB%n", (runtime.totalMemory() - runtime.freeMemory()) >> 20);
+        report.println("Timer: " + ChessLobbyServer.timers());
+        System.exit(0);
+    }
+
+    /**
+     * Restituisce un percentile di valori ordinati.
+     * @param sorted   I valori in nanosecondi, in ordine crescente
+     * @param fraction Il percentile, tra 0 e 1
+     * @return Il valore in millisecondi
+     */
+    private static double percentile(long[] sorted, double fraction) {
+        int index = (int) Math.min(sorted.length - 1, Math.round(fraction * (sorted.length - 1)));
+        return sorted[index] / 1e6;
+    }
+}
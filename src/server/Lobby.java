@@ -0,0 +1,13 @@
+package server;
+
+/**
+ * Ingresso della lobby: accetta le connessioni, esegue la presentazione dei giocatori e avvia le partite.
+ */
+interface Lobby extends Runnable {
+
+    /**
+     * Restituisce la porta su cui la lobby è in ascolto.
+     * @return La porta locale
+     */
+    int getPort();
+}
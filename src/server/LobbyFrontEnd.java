@@ -0,0 +1,443 @@
+package server;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.SequenceInputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Ingresso non bloccante della lobby.
+ *
+ * Le connessioni vengono accettate e seguite da pochi thread, ognuno con un {@link Selector}: nessuna lettura blocca,
+ * quindi un client lento o che cade a metà della presentazione non ferma gli altri e migliaia di connessioni inattive
+ * non costano un thread ciascuna. Il selettore 0 accetta le connessioni e le distribuisce a turno tra tutti i selettori.
+ *
+ * Nella presentazione il server chiede il nome, comunica l'attesa stimata e mette il giocatore in coda nel
+ * {@link Matchmaker}; quando trova un avversario controlla che entrambi siano ancora connessi, assegna i colori e invia
+ * l'inizio della partita. A quel punto i due canali tornano bloccanti e passano a {@link GameHandler}. Chi si disconnette
+ * mentre è in coda viene tolto subito; se si disconnette dopo l'abbinamento l'avversario torna in coda, con l'attesa
+ * già accumulata, come in {@link BlockingLobby}.
+ */
+class LobbyFrontEnd implements Lobby {
+    static final int DEFAULT_SELECTORS = 2; // Thread dei selettori predefiniti
+    private static final int BACKLOG = 1024; // Connessioni in attesa di essere accettate
+
+    private final ServerSocketChannel server; // Canale in ascolto
+    private final Loop[] loops; // Un ciclo di selezione per thread
+    private final AtomicInteger next = new AtomicInteger(); // Prossimo selettore a cui assegnare una connessione
+    private final Matchmaker<Connection> matchmaker = new Matchmaker<>(ChessLobbyServer.timers(), this::matched); // Code dei giocatori in attesa
+
+    /**
+     * Costruttore dell'ingresso: apre il canale in ascolto e i selettori.
+     * @param address   Indirizzo e porta di ascolto
+     * @param selectors Numero di thread dei selettori
+     * @throws IOException Se il canale o i selettori non possono essere aperti
+     */
+    LobbyFrontEnd(InetSocketAddress address, int selectors) throws IOException {
+        if (selectors < 1) throw new IllegalArgumentException("Numero di selettori non valido: " + selectors);
+        server = ServerSocketChannel.open();
+        server.bind(address, BACKLOG);
+        server.configureBlocking(false);
+
+        loops = new Loop[selectors];
+        for (int i = 0; i < selectors; i++) loops[i] = new Loop();
+        server.register(loops[0].selector, SelectionKey.OP_ACCEPT);
+    }
+
+    /**
+     * Avvia i selettori: il primo gira sul thread chiamante, gli altri su thread dedicati.
+     */
+    @Override
+    public void run() {
+        for (int i = 1; i < loops.length; i++) new Thread(loops[i], "lobby-selector-" + i).start();
+        System.out.println("Server in attesa di giocatori su " + server.socket().getLocalSocketAddress() + " con " + loops.length + " selettori...");
+        loops[0].run();
+    }
+
+    @Override
+    public int getPort() {
+        return server.socket().getLocalPort();
+    }
+
+    /**
+     * Gestisce un messaggio ricevuto da una connessione nella lobby: il primo è il nome del giocatore, con la cadenza
+     * e il punteggio facoltativi, dopo il quale il giocatore entra in coda.
+     * @param connection La connessione
+     * @param line       Il messaggio
+     * @throws IOException Se la risposta non può essere inviata
+     */
+    private void onMessage(Connection connection, String line) throws IOException {
+        // Dopo il nome i messaggi sono già della partita e restano per il gestore
+        if (connection.name != null) {
+            connection.keep(line);
+            return;
+        }
+        long time;
+        int rating;
+        try {
+            JSONObject hello = new JSONObject(line);
+            time = ChessLobbyServer.requestedTime(hello);
+            rating = ChessLobbyServer.requestedRating(hello);
+            connection.name = hello.getString("name");
+        } catch (JSONException | IllegalArgumentException e) {
+            throw new IOException("Presentazione non valida: " + line);
+        }
+        connection.handshake.cancel();
+
+        // Comunica l'attesa stimata prima di entrare in coda, così arriva sempre prima del colore
+        connection.send(ChessLobbyServer.queueMessage(time, matchmaker.estimatedWait(time, rating)));
+        System.out.println(connection.name + " è in coda (cadenza " + time / 1000 + " s, punteggio " + rating + ")");
+        connection.ticket = matchmaker.join(connection, time, rating);
+    }
+
+    /**
+     * Riceve una coppia dal {@link Matchmaker}: assegna i colori e chiede ai selettori delle due connessioni
+     * di controllare che siano ancora aperte.
+     * Può essere chiamato da qualsiasi thread, il lavoro sulle connessioni passa ai loro selettori.
+     * @param white Il biglietto del giocatore con il bianco
+     * @param black Il biglietto del giocatore con il nero
+     */
+    private void matched(Matchmaker<Connection>.Ticket white, Matchmaker<Connection>.Ticket black) {
+        Match match = new Match(white, black);
+        white.getPlayer().color = "0";
+        black.getPlayer().color = "1";
+        for (Matchmaker<Connection>.Ticket ticket : List.of(white, black)) {
+            Connection connection = ticket.getPlayer();
+            connection.owner.execute(() -> match.confirm(ticket, connection.channel.isOpen()));
+        }
+    }
+
+    /**
+     * Rimette in coda un giocatore il cui avversario si è disconnesso dopo l'abbinamento, se è ancora connesso.
+     * Viene eseguito sul thread del selettore che possiede la connessione, come la sua chiusura.
+     * @param ticket Il biglietto abbinato del giocatore
+     */
+    private void requeue(Matchmaker<Connection>.Ticket ticket) {
+        Connection connection = ticket.getPlayer();
+        connection.owner.execute(() -> {
+            if (connection.channel.isOpen()) connection.ticket = matchmaker.requeue(ticket);
+        });
+    }
+
+    /**
+     * Invia il colore e l'inizio della partita a un giocatore e lo prepara al passaggio al gestore della partita.
+     * Viene eseguito sul thread del selettore che possiede la connessione.
+     * @param connection La connessione del giocatore
+     * @param match      La partita in preparazione
+     */
+    private void startGame(Connection connection, Match match) {
+        connection.owner.execute(() -> {
+            Loop loop = (Loop) connection.owner;
+            if (!connection.channel.isOpen()) {
+                match.deliver(connection.color, null);
+                return;
+            }
+            try {
+                JSONObject response = new JSONObject();
+                response.put("action", "assign_color");
+                response.put("color", connection.color);
+                connection.send(response.toString());
+                connection.send(ChessLobbyServer.startGameMessage(match.time));
+                // Da qui in poi la lettura spetta al gestore della partita
+                connection.key.interestOps(connection.key.interestOps() & ~SelectionKey.OP_READ);
+                loop.handOffs.add(new HandOff(connection, match));
+            } catch (IOException e) {
+                connection.close();
+                match.deliver(connection.color, null);
+            }
+        });
+    }
+
+    /**
+     * Toglie una connessione chiusa dalla coda, se era ancora in attesa di un avversario.
+     * @param connection La connessione
+     */
+    private void leave(Connection connection) {
+        if (connection.ticket != null) matchmaker.leave(connection.ticket);
+    }
+
+    /**
+     * Connessione che, svuotata la coda di scrittura, passa dal selettore al gestore della partita.
+     * @param connection La connessione
+     * @param match      La partita a cui consegnarla
+     */
+    private record HandOff(Connection connection, Match match) {
+    }
+
+    /**
+     * Partita in preparazione. Prima i selettori confermano che le due connessioni sono ancora aperte: se una
+     * è chiusa l'altro giocatore torna in coda, altrimenti si inviano i colori e la partita parte quando entrambi
+     * i giocatori sono passati in modalità bloccante. Se uno dei due si disconnette in quest'ultimo passaggio,
+     * quando ha già ricevuto l'inizio della partita, l'altro riceve la partita annullata e viene disconnesso.
+     */
+    private class Match {
+        private final Matchmaker<Connection>.Ticket whiteTicket; // Biglietto del giocatore con il bianco
+        private final Matchmaker<Connection>.Ticket blackTicket; // Biglietto del giocatore con il nero
+        private final long time; // Cadenza della partita, in millisecondi
+        private final boolean[] open = new boolean[2]; // Esito del controllo delle connessioni di bianco e nero
+        private int confirmed; // Connessioni controllate
+        private Player white; // Giocatore con i pezzi bianchi
+        private Player black; // Giocatore con i pezzi neri
+        private int delivered; // Giocatori consegnati, anche se disconnessi
+        private boolean failed; // true se un giocatore si è disconnesso
+
+        /**
+         * Costruttore della partita in preparazione.
+         * @param whiteTicket Il biglietto del giocatore con il bianco
+         * @param blackTicket Il biglietto del giocatore con il nero
+         */
+        Match(Matchmaker<Connection>.Ticket whiteTicket, Matchmaker<Connection>.Ticket blackTicket) {
+            this.whiteTicket = whiteTicket;
+            this.blackTicket = blackTicket;
+            this.time = whiteTicket.getTime();
+        }
+
+        /**
+         * Registra il controllo di una connessione e, con entrambi i controlli, avvia la partita o rimette in coda
+         * il giocatore rimasto.
+         * @param ticket    Il biglietto del giocatore
+         * @param connected true se la connessione è ancora aperta
+         */
+        synchronized void confirm(Matchmaker<Connection>.Ticket ticket, boolean connected) {
+            open[ticket == whiteTicket ? 0 : 1] = connected;
+            if (!connected) System.out.println(ticket.getPlayer().name + " si è disconnesso mentre era in coda.");
+            if (++confirmed < 2) return;
+
+            if (open[0] && open[1]) {
+                System.out.println(whiteTicket.getPlayer().name + " e " + blackTicket.getPlayer().name + " abbinati, avvio della partita...");
+                startGame(whiteTicket.getPlayer(), this);
+                startGame(blackTicket.getPlayer(), this);
+                return;
+            }
+            if (open[0]) requeue(whiteTicket);
+            if (open[1]) requeue(blackTicket);
+        }
+
+        /**
+         * Consegna un giocatore alla partita e, con entrambi i giocatori, la avvia.
+         * @param color  Il colore del giocatore ("0" per bianco, "1" per nero)
+         * @param player Il giocatore, oppure null se si è disconnesso
+         */
+        synchronized void deliver(String color, Player player) {
+            if (player == null) failed = true;
+            else if (color.equals("0")) white = player;
+            else black = player;
+            if (++delivered < 2) return;
+
+            if (!failed) {
+                ChessLobbyServer.startGame(white, black, time);
+                return;
+            }
+            System.out.println("Un giocatore si è disconnesso prima dell'inizio della partita.");
+            for (Player p : new Player[]{white, black}) {
+                if (p == null) continue;
+                try {
+                    JSONObject abortMsg = new JSONObject();
+                    abortMsg.put("action", "game_over");
+                    abortMsg.put("result", "Partita annullata: l'avversario si è disconnesso prima dell'inizio.");
+                    p.output.println(abortMsg.toString());
+                    p.socket.close();
+                } catch (IOException e) {
+                    System.out.println("Errore durante la chiusura delle connessioni.");
+                }
+            }
+        }
+    }
+
+    /**
+     * Ciclo di un selettore: accetta (solo il primo), legge e scrive le connessioni che gli sono assegnate
+     * ed esegue le azioni richieste dagli altri thread.
+     */
+    private class Loop implements Runnable, Executor {
+        private final Selector selector = Selector.open();
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>(); // Azioni richieste da altri thread
+        private final List<HandOff> handOffs = new ArrayList<>(); // Connessioni da passare al gestore della partita
+        private final List<String> lines = new ArrayList<>(); // Righe lette, riusata a ogni lettura
+
+        /**
+         * Costruttore del ciclo.
+         * @throws IOException Se il selettore non può essere aperto
+         */
+        Loop() throws IOException {
+        }
+
+        @Override
+        public void execute(Runnable task) {
+            tasks.add(task);
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                try {
+                    selector.select();
+                } catch (IOException e) {
+                    e.printStackTrace(); // Gestione dell'eccezione di I/O
+                    return;
+                }
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) continue;
+                    if (key.isAcceptable()) accept();
+                    else process(key);
+                }
+
+                Runnable task;
+                while ((task = tasks.poll()) != null) task.run();
+                completeHandOffs();
+            }
+        }
+
+        /**
+         * Accetta tutte le connessioni in attesa e le assegna a turno ai selettori.
+         */
+        private void accept() {
+            while (true) {
+                SocketChannel channel;
+                try {
+                    channel = server.accept();
+                } catch (IOException e) {
+                    System.out.println("Errore durante l'accettazione di una connessione: " + e.getMessage());
+                    return;
+                }
+                if (channel == null) return;
+
+                Loop loop = loops[Math.floorMod(next.getAndIncrement(), loops.length)];
+                loop.execute(() -> loop.register(channel));
+            }
+        }
+
+        /**
+         * Registra una nuova connessione in questo selettore e chiede il nome del giocatore.
+         * @param channel Il canale accettato
+         */
+        private void register(SocketChannel channel) {
+            Connection connection = null;
+            try {
+                channel.configureBlocking(false);
+                channel.socket().setTcpNoDelay(true);
+                SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+                connection = new Connection(channel, key, this);
+                key.attach(connection);
+                connection.send(new JSONObject().put("action", "request_name").toString());
+
+                // Chi non invia il nome in tempo viene disconnesso, sul thread di questo selettore
+                Connection registered = connection;
+                connection.handshake = ChessLobbyServer.timers().schedule(() -> execute(() -> {
+                    if (registered.name == null && registered.channel.isOpen()) disconnect(registered, "non ha inviato il nome in tempo");
+                }), ChessLobbyServer.HANDSHAKE_TIMEOUT, TimeUnit.MILLISECONDS);
+            } catch (IOException e) {
+                if (connection != null) connection.close();
+                else closeQuietly(channel);
+            }
+        }
+
+        /**
+         * Legge o scrive una connessione pronta.
+         * @param key La registrazione della connessione
+         */
+        private void process(SelectionKey key) {
+            Connection connection = (Connection) key.attachment();
+            try {
+                if (key.isWritable()) connection.flush();
+                if (!key.isValid() || !key.isReadable()) return;
+
+                lines.clear();
+                boolean open = connection.read(lines);
+                for (String line : lines) onMessage(connection, line);
+                if (!open) disconnect(connection, "ha chiuso la connessione");
+            } catch (IOException e) {
+                disconnect(connection, "si è disconnesso (" + e.getMessage() + ")");
+            }
+        }
+
+        /**
+         * Chiude una connessione della lobby.
+         * @param connection La connessione
+         * @param reason     Descrizione della chiusura, per il log
+         */
+        private void disconnect(Connection connection, String reason) {
+            if (connection.handshake != null) connection.handshake.cancel();
+            connection.close();
+            leave(connection);
+            System.out.println((connection.name != null ? connection.name : "Un client") + " " + reason + " durante la presentazione.");
+        }
+
+        /**
+         * Passa al gestore della partita le connessioni con la coda di scrittura vuota: il canale viene tolto
+         * dal selettore, torna bloccante e i byte già ricevuti restano in testa al flusso di lettura.
+         */
+        private void completeHandOffs() {
+            if (handOffs.isEmpty()) return;
+            List<HandOff> ready = new ArrayList<>();
+            for (Iterator<HandOff> it = handOffs.iterator(); it.hasNext(); ) {
+                HandOff handOff = it.next();
+                if (!handOff.connection().channel.isOpen()) {
+                    it.remove();
+                    handOff.match().deliver(handOff.connection().color, null);
+                } else if (handOff.connection().isFlushed()) {
+                    it.remove();
+                    handOff.connection().key.cancel();
+                    ready.add(handOff);
+                }
+            }
+            if (ready.isEmpty()) return;
+
+            try {
+                // La cancellazione delle chiavi diventa effettiva alla selezione successiva
+                selector.selectNow();
+            } catch (IOException e) {
+                e.printStackTrace(); // Gestione dell'eccezione di I/O
+            }
+            for (HandOff handOff : ready) {
+                Connection connection = handOff.connection();
+                try {
+                    connection.channel.configureBlocking(true);
+                    Socket socket = connection.channel.socket();
+                    BufferedReader input = new BufferedReader(new InputStreamReader(
+                            new SequenceInputStream(new ByteArrayInputStream(connection.pending()), socket.getInputStream())));
+                    PrintWriter output = new PrintWriter(socket.getOutputStream(), true);
+                    handOff.match().deliver(connection.color, new Player(connection.name, connection.color, socket, input, output));
+                } catch (IOException e) {
+                    closeQuietly(connection.channel);
+                    handOff.match().deliver(connection.color, null);
+                }
+            }
+        }
+    }
+
+    /**
+     * Chiude un canale ignorando gli errori.
+     * @param channel Il canale
+     */
+    private static void closeQuietly(SocketChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // La connessione è comunque persa
+        }
+    }
+}
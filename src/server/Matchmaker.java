@@ -0,0 +1,337 @@
+package server;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Abbinamento dei giocatori per cadenza e punteggio.
+ *
+ * Ogni cadenza ha la sua coda, un insieme concorrente ordinato per punteggio (una skip list), quindi inserire,
+ * togliere e trovare i vicini di punteggio costa O(log n) e le code di cadenze diverse non si toccano.
+ * Un giocatore viene abbinato all'avversario in attesa con il punteggio più vicino, se la differenza rientra
+ * nella sua finestra, che parte da {@link #BASE_WINDOW} e si allarga col tempo di attesa: chi non trova subito
+ * un avversario riprova a intervalli regolari con una scadenza sulla ruota.
+ *
+ * Non ci sono lock: due giocatori vengono abbinati prenotando entrambi con un compare-and-set, nell'ordine di arrivo
+ * per evitare che due abbinamenti concorrenti si blocchino a vicenda. Chi ha atteso di più gioca con il bianco.
+ *
+ * @param <T> Il tipo del giocatore in attesa, ad esempio la sua connessione
+ */
+class Matchmaker<T> {
+    static final int DEFAULT_RATING = 1500; // Punteggio di chi non lo indica
+    static final int BASE_WINDOW = 100; // Differenza di punteggio ammessa appena entrati in coda
+    static final int WINDOW_GROWTH = 50; // Allargamento della finestra per ogni secondo di attesa
+    static final int MAX_WINDOW = 1000; // Differenza di punteggio massima ammessa
+    private static final long RETRY_INTERVAL = 1000; // Intervallo tra due tentativi di abbinamento, in millisecondi
+
+    /**
+     * Riceve le coppie abbinate. Viene chiamato dal thread che ha trovato la coppia, anche quello della ruota,
+     * quindi deve solo passare il lavoro ad altri thread.
+     * @param <T> Il tipo del giocatore
+     */
+    @FunctionalInterface
+    interface Listener<T> {
+
+        /**
+         * Segnala una coppia abbinata.
+         * @param white Il giocatore con il bianco, quello che ha atteso di più
+         * @param black Il giocatore con il nero
+         */
+        void matched(Matchmaker<T>.Ticket white, Matchmaker<T>.Ticket black);
+    }
+
+    /**
+     * Giocatore in coda.
+     */
+    final class Ticket implements Comparable<Ticket> {
+        private static final int WAITING = 0; // In coda
+        private static final int CLAIMING = 1; // Prenotato da un abbinamento in corso
+        private static final int MATCHED = 2; // Abbinato
+        private static final int LEFT = 3; // Uscito dalla coda
+
+        private final T player; // Il giocatore
+        private final long time; // Cadenza, in millisecondi
+        private final int rating; // Punteggio
+        private final long enqueued; // Istante di ingresso in coda, da System.nanoTime()
+        private final long sequence; // Ordine di arrivo, per rendere unico l'ordinamento
+        private final AtomicInteger state = new AtomicInteger(WAITING); // Stato del biglietto
+        private volatile TimingWheel.Timeout retry; // Prossimo tentativo di abbinamento
+
+        /**
+         * Costruttore del biglietto.
+         * @param player   Il giocatore
+         * @param time     La cadenza, in millisecondi
+         * @param rating   Il punteggio
+         * @param enqueued L'istante di ingresso in coda
+         */
+        private Ticket(T player, long time, int rating, long enqueued) {
+            this.player = player;
+            this.time = time;
+            this.rating = rating;
+            this.enqueued = enqueued;
+            this.sequence = sequences.incrementAndGet();
+        }
+
+        /**
+         * Restituisce il giocatore.
+         * @return Il giocatore
+         */
+        T getPlayer() {
+            return player;
+        }
+
+        /**
+         * Restituisce la cadenza della coda.
+         * @return La cadenza, in millisecondi
+         */
+        long getTime() {
+            return time;
+        }
+
+        /**
+         * Restituisce il punteggio del giocatore.
+         * @return Il punteggio
+         */
+        int getRating() {
+            return rating;
+        }
+
+        /**
+         * Ordina per punteggio e, a parità, per ordine di arrivo.
+         * @param other L'altro biglietto
+         * @return Il risultato del confronto
+         */
+        @Override
+        public int compareTo(Ticket other) {
+            int byRating = Integer.compare(rating, other.rating);
+            return byRating != 0 ? byRating : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    /**
+     * Coda di una cadenza.
+     */
+    private final class Pool {
+        private final ConcurrentSkipListSet<Ticket> waiting = new ConcurrentSkipListSet<>(); // Giocatori in attesa
+        private final AtomicLong averageWait = new AtomicLong(-1); // Media mobile delle attese, in nanosecondi, -1 se non ancora misurata
+    }
+
+    private final ConcurrentHashMap<Long, Pool> pools = new ConcurrentHashMap<>(); // Code per cadenza
+    private final AtomicLong sequences = new AtomicLong(); // Contatore dell'ordine di arrivo
+    private final TimingWheel timers; // Ruota per i nuovi tentativi
+    private final Listener<T> listener; // Riceve le coppie abbinate
+
+    /**
+     * Costruttore dell'abbinamento.
+     * @param timers   La ruota su cui programmare i nuovi tentativi
+     * @param listener Riceve le coppie abbinate
+     */
+    Matchmaker(TimingWheel timers, Listener<T> listener) {
+        this.timers = timers;
+        this.listener = listener;
+    }
+
+    /**
+     * Mette in coda un giocatore e prova subito ad abbinarlo.
+     * @param player Il giocatore
+     * @param time   La cadenza, in millisecondi
+     * @param rating Il punteggio
+     * @return Il biglietto, da usare per togliere il giocatore dalla coda
+     */
+    Ticket join(T player, long time, int rating) {
+        return enqueue(new Ticket(player, time, rating, System.nanoTime()));
+    }
+
+    /**
+     * Rimette in coda il giocatore di un biglietto abbinato, ad esempio perché l'avversario si è disconnesso
+     * prima dell'inizio della partita. Il tempo di attesa già trascorso viene conservato.
+     * @param ticket Il biglietto abbinato
+     * @return Il nuovo biglietto
+     */
+    Ticket requeue(Ticket ticket) {
+        return enqueue(new Ticket(ticket.player, ticket.time, ticket.rating, ticket.enqueued));
+    }
+
+    /**
+     * Inserisce un biglietto nella coda della sua cadenza e, se non trova subito un avversario, programma un nuovo tentativo.
+     * @param ticket Il biglietto
+     * @return Il biglietto stesso
+     */
+    private Ticket enqueue(Ticket ticket) {
+        pools.computeIfAbsent(ticket.time, time -> new Pool()).waiting.add(ticket);
+        if (!tryMatch(ticket)) scheduleRetry(ticket);
+        return ticket;
+    }
+
+    /**
+     * Toglie un giocatore dalla coda, ad esempio perché si è disconnesso.
+     * @param ticket Il biglietto
+     * @return true se il giocatore era ancora in attesa, false se era già stato abbinato
+     */
+    boolean leave(Ticket ticket) {
+        while (true) {
+            int state = ticket.state.get();
+            if (state == Ticket.WAITING && ticket.state.compareAndSet(Ticket.WAITING, Ticket.LEFT)) {
+                pools.get(ticket.time).waiting.remove(ticket);
+                TimingWheel.Timeout retry = ticket.retry;
+                if (retry != null) retry.cancel();
+                return true;
+            }
+            if (state == Ticket.MATCHED || state == Ticket.LEFT) return false;
+
+            // Un abbinamento sta prenotando il biglietto: l'esito arriva in pochi passi
+            settle(ticket);
+        }
+    }
+
+    /**
+     * Stima l'attesa di un giocatore che sta per entrare in coda. Se c'è un avversario in attesa, è il tempo che serve
+     * perché la sua finestra arrivi alla differenza di punteggio (0 se l'abbinamento è immediato); altrimenti è la media
+     * delle ultime attese della cadenza.
+     * @param time   La cadenza, in millisecondi
+     * @param rating Il punteggio
+     * @return L'attesa stimata in millisecondi, -1 se non ci sono dati per stimarla
+     */
+    long estimatedWait(long time, int rating) {
+        Pool pool = pools.get(time);
+        if (pool == null) return -1;
+
+        // Biglietto di prova, mai inserito: serve solo come chiave per cercare i vicini di punteggio
+        long now = System.nanoTime();
+        Ticket probe = new Ticket(null, time, rating, now);
+        Ticket nearest = null;
+        for (Iterator<Ticket> it = pool.waiting.tailSet(probe, false).iterator(); it.hasNext(); ) {
+            Ticket other = it.next();
+            if (other.state.get() != Ticket.WAITING) continue;
+            nearest = other;
+            break;
+        }
+        for (Iterator<Ticket> it = pool.waiting.headSet(probe, false).descendingIterator(); it.hasNext(); ) {
+            Ticket other = it.next();
+            if (other.state.get() != Ticket.WAITING) continue;
+            if (nearest == null || rating - other.rating < nearest.rating - rating) nearest = other;
+            break;
+        }
+
+        if (nearest != null) {
+            int distance = Math.abs(nearest.rating - rating);
+            if (distance <= MAX_WINDOW) {
+                // Tempo perché la finestra dell'avversario, che ha già atteso, copra la differenza
+                long waited = TimeUnit.NANOSECONDS.toMillis(now - nearest.enqueued);
+                return Math.max(0, Math.max(0, distance - BASE_WINDOW) * 1000L / WINDOW_GROWTH - waited);
+            }
+        }
+        long average = pool.averageWait.get();
+        return average < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(average);
+    }
+
+    /**
+     * Restituisce la finestra di punteggio di un giocatore.
+     * @param ticket Il biglietto
+     * @param now    L'istante corrente
+     * @return La differenza di punteggio ammessa
+     */
+    private static int window(Matchmaker<?>.Ticket ticket, long now) {
+        long seconds = TimeUnit.NANOSECONDS.toSeconds(now - ticket.enqueued);
+        return (int) Math.min(MAX_WINDOW, BASE_WINDOW + seconds * WINDOW_GROWTH);
+    }
+
+    /**
+     * Programma sulla ruota un nuovo tentativo di abbinamento.
+     * @param ticket Il biglietto
+     */
+    private void scheduleRetry(Ticket ticket) {
+        ticket.retry = timers.schedule(() -> {
+            if (ticket.state.get() == Ticket.WAITING && !tryMatch(ticket)) scheduleRetry(ticket);
+        }, RETRY_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Cerca, a partire dal punteggio del giocatore e allontanandosi in entrambe le direzioni, il primo avversario
+     * in attesa entro la finestra e prova a prenotare entrambi.
+     * @param ticket Il biglietto del giocatore
+     * @return true se il giocatore è stato abbinato, in questo tentativo o da un altro thread
+     */
+    private boolean tryMatch(Ticket ticket) {
+        Pool pool = pools.get(ticket.time);
+        int window = window(ticket, System.nanoTime());
+        Iterator<Ticket> up = pool.waiting.tailSet(ticket, false).iterator();
+        Iterator<Ticket> down = pool.waiting.headSet(ticket, false).descendingIterator();
+        Ticket nextUp = up.hasNext() ? up.next() : null;
+        Ticket nextDown = down.hasNext() ? down.next() : null;
+
+        while (nextUp != null || nextDown != null) {
+            if (ticket.state.get() != Ticket.WAITING && settle(ticket) != Ticket.WAITING) return ticket.state.get() == Ticket.MATCHED;
+
+            // Il candidato più vicino tra i due lati
+            boolean takeUp = nextDown == null || (nextUp != null && nextUp.rating - ticket.rating <= ticket.rating - nextDown.rating);
+            Ticket candidate = takeUp ? nextUp : nextDown;
+            if (Math.abs(candidate.rating - ticket.rating) > window) return false;
+            if (takeUp) nextUp = up.hasNext() ? up.next() : null;
+            else nextDown = down.hasNext() ? down.next() : null;
+
+            if (candidate.state.get() == Ticket.WAITING && claim(ticket, candidate)) {
+                matched(pool, ticket, candidate);
+                return true;
+            }
+        }
+        return settle(ticket) == Ticket.MATCHED;
+    }
+
+    /**
+     * Attende che la prenotazione in corso di un biglietto si concluda.
+     * @param ticket Il biglietto
+     * @return Lo stato del biglietto, diverso da CLAIMING
+     */
+    private int settle(Ticket ticket) {
+        int state;
+        while ((state = ticket.state.get()) == Ticket.CLAIMING) Thread.onSpinWait();
+        return state;
+    }
+
+    /**
+     * Prenota due biglietti in attesa, prima quello arrivato prima. Se il secondo non è più disponibile
+     * il primo torna in attesa.
+     * @param a Un biglietto
+     * @param b L'altro biglietto
+     * @return true se entrambi sono stati prenotati
+     */
+    private boolean claim(Ticket a, Ticket b) {
+        Ticket first = a.sequence < b.sequence ? a : b;
+        Ticket second = first == a ? b : a;
+        if (!first.state.compareAndSet(Ticket.WAITING, Ticket.CLAIMING)) return false;
+        if (!second.state.compareAndSet(Ticket.WAITING, Ticket.CLAIMING)) {
+            first.state.set(Ticket.WAITING);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Conclude un abbinamento: toglie i due giocatori dalla coda, aggiorna la media delle attese
+     * e consegna la coppia, con il bianco a chi ha atteso di più.
+     * @param pool La coda della cadenza
+     * @param a    Un biglietto prenotato
+     * @param b    L'altro biglietto prenotato
+     */
+    private void matched(Pool pool, Ticket a, Ticket b) {
+        long now = System.nanoTime();
+        for (Ticket ticket : List.of(a, b)) {
+            ticket.state.set(Ticket.MATCHED);
+            pool.waiting.remove(ticket);
+            TimingWheel.Timeout retry = ticket.retry;
+            if (retry != null) retry.cancel();
+
+            // Media mobile delle attese, come per il tempo di andata e ritorno
+            long wait = now - ticket.enqueued;
+            pool.averageWait.updateAndGet(average -> average < 0 ? wait : average + (wait - average) / 8);
+        }
+        Ticket white = a.enqueued <= b.enqueued ? a : b;
+        listener.matched(white, white == a ? b : a);
+    }
+}
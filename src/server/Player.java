@@ -0,0 +1,37 @@
+package server;
+
+import java.io.BufferedReader;
+import java.io.PrintWriter;
+import java.net.Socket;
+
+/**
+ * Rappresenta un giocatore nella partita di scacchi.
+ * Contiene informazioni sul nome, colore, socket di connessione e flusso di output del giocatore.
+ */
+class Player {
+    String name; // Nome del giocatore
+
+    String color; // Colore del giocatore ("0" per bianco, "1" per nero)
+
+    Socket socket; // Socket di connessione del giocatore
+
+    BufferedReader input; // Flusso di input per leggere i messaggi del giocatore
+
+    PrintWriter output; // Flusso di output per inviare messaggi al giocatore
+
+    /**
+     * Costruttore per inizializzare un nuovo giocatore.
+     * @param name Il nome del giocatore.
+     * @param color Il colore del giocatore ("0" per bianco, "1" per nero).
+     * @param socket La connessione socket del giocatore.
+     * @param input Il flusso di input per leggere i messaggi del giocatore, che può contenere messaggi già ricevuti dalla lobby.
+     * @param output Il flusso di output per inviare messaggi al giocatore.
+     */
+    public Player(String name, String color, Socket socket, BufferedReader input, PrintWriter output) {
+        this.name = name;
+        this.color = color;
+        this.socket = socket;
+        this.input = input;
+        this.output = output;
+    }
+}
@@ -0,0 +1,243 @@
+package server;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Timer a ruota con hash per le scadenze di molte partite.
+ *
+ * La ruota ha un numero di caselle potenza di due, ognuna con una lista doppiamente concatenata di scadenze; una casella
+ * copre un tick e una scadenza più lontana di un giro intero conta i giri che mancano. Un solo thread fa avanzare la ruota
+ * e, a ogni tick, esegue le scadenze della casella corrente. Programmare e annullare costano O(1): gli altri thread
+ * mettono le richieste in due code senza lock, che il thread della ruota svuota a ogni tick.
+ *
+ * Le azioni vengono eseguite dal thread della ruota e devono essere brevi, ad esempio mettere un evento nella coda
+ * di una partita. La precisione è di un tick: una scadenza non scatta mai prima del suo istante, al più un tick dopo.
+ *
+ * La ruota tiene due misure: le scadenze in attesa e il ritardo del tick, cioè quanto tardi il thread ha elaborato
+ * l'ultimo tick rispetto al suo istante. Un ritardo che cresce indica azioni troppo lente o un thread senza CPU.
+ */
+class TimingWheel implements Runnable {
+
+    /**
+     * Scadenza programmata sulla ruota.
+     */
+    final class Timeout {
+        private static final int PENDING = 0; // Programmata
+        private static final int CANCELLED = 1; // Annullata prima di scattare
+        private static final int EXPIRED = 2; // Già eseguita
+
+        private final Runnable task; // Azione da eseguire alla scadenza
+        private final long deadline; // Istante della scadenza, in nanosecondi dall'avvio della ruota
+        private final AtomicInteger state = new AtomicInteger(PENDING); // Stato della scadenza
+        private long rounds; // Giri completi della ruota che mancano alla scadenza
+        private int bucket = -1; // Casella in cui si trova, -1 se non ancora inserita
+        private Timeout prev; // Scadenza precedente nella casella
+        private Timeout next; // Scadenza successiva nella casella
+
+        /**
+         * Costruttore della scadenza.
+         * @param task     Azione da eseguire
+         * @param deadline Istante della scadenza, in nanosecondi dall'avvio della ruota
+         */
+        private Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Annulla la scadenza se non è ancora scattata. Può essere chiamato da qualsiasi thread.
+         * @return true se la scadenza è stata annullata, false se era già scattata o annullata
+         */
+        boolean cancel() {
+            if (!state.compareAndSet(PENDING, CANCELLED)) return false;
+            pending.decrementAndGet();
+            cancellations.add(this);
+            return true;
+        }
+    }
+
+    private final long tickNanos; // Durata di un tick
+    private final Timeout[] buckets; // Teste delle liste di ogni casella
+    private final int mask; // Maschera per il numero di casella (caselle - 1)
+    private final Queue<Timeout> additions = new ConcurrentLinkedQueue<>(); // Scadenze da inserire
+    private final Queue<Timeout> cancellations = new ConcurrentLinkedQueue<>(); // Scadenze da togliere
+    private final long startTime = System.nanoTime(); // Istante di riferimento della ruota
+    private long tick; // Tick corrente, usato solo dal thread della ruota
+    private final AtomicLong pending = new AtomicLong(); // Scadenze programmate e non ancora scattate o annullate
+    private volatile long tickLag; // Ritardo dell'ultimo tick, in nanosecondi
+    private volatile long maxTickLag; // Ritardo massimo di un tick, in nanosecondi
+
+    /**
+     * Costruttore della ruota. La ruota non avanza finché {@link #run()} non viene eseguito da un thread.
+     * @param tick     Durata di un tick
+     * @param unit     Unità di misura della durata
+     * @param buckets  Numero di caselle, arrotondato alla potenza di due successiva
+     * @throws IllegalArgumentException se la durata o il numero di caselle non sono positivi
+     */
+    TimingWheel(long tick, TimeUnit unit, int buckets) {
+        if (tick <= 0) throw new IllegalArgumentException("Durata del tick non valida: " + tick);
+        if (buckets <= 0 || buckets > 1 << 30) throw new IllegalArgumentException("Numero di caselle non valido: " + buckets);
+        this.tickNanos = unit.toNanos(tick);
+        int size = Integer.highestOneBit(buckets);
+        if (size < buckets) size <<= 1;
+        this.buckets = new Timeout[size];
+        this.mask = this.buckets.length - 1;
+    }
+
+    /**
+     * Avvia la ruota su un thread di piattaforma demone.
+     * @param name Nome del thread
+     * @return La ruota stessa
+     */
+    TimingWheel start(String name) {
+        Thread thread = new Thread(this, name);
+        thread.setDaemon(true);
+        thread.start();
+        return this;
+    }
+
+    /**
+     * Programma un'azione dopo un ritardo. Può essere chiamato da qualsiasi thread.
+     * @param task  Azione da eseguire sul thread della ruota
+     * @param delay Ritardo, anche negativo per una scadenza già passata
+     * @param unit  Unità di misura del ritardo
+     * @return La scadenza, che può essere annullata
+     */
+    Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        Timeout timeout = new Timeout(task, System.nanoTime() - startTime + unit.toNanos(delay));
+        pending.incrementAndGet();
+        additions.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * Restituisce il numero di scadenze in attesa.
+     * @return Le scadenze programmate e non ancora scattate o annullate
+     */
+    long getPending() {
+        return pending.get();
+    }
+
+    /**
+     * Restituisce il ritardo con cui è stato elaborato l'ultimo tick.
+     * @param unit Unità di misura del risultato
+     * @return Il ritardo
+     */
+    long getTickLag(TimeUnit unit) {
+        return unit.convert(tickLag, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Restituisce il ritardo massimo con cui è stato elaborato un tick dall'avvio della ruota.
+     * @param unit Unità di misura del risultato
+     * @return Il ritardo massimo
+     */
+    long getMaxTickLag(TimeUnit unit) {
+        return unit.convert(maxTickLag, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Restituisce una descrizione delle misure della ruota, per il log.
+     * @return Scadenze in attesa e ritardo del tick
+     */
+    @Override
+    public String toString() {
+        return String.format("scadenze in attesa: %,d, ritardo del tick: %.2f ms (massimo %.2f ms)",
+                pending.get(), tickLag / 1e6, maxTickLag / 1e6);
+    }
+
+    /**
+     * Fa avanzare la ruota di un tick alla volta, per sempre.
+     */
+    @Override
+    public void run() {
+        while (true) {
+            // Attende la fine del tick corrente
+            long tickEnd = (tick + 1) * tickNanos;
+            long now;
+            while ((now = System.nanoTime() - startTime) < tickEnd) LockSupport.parkNanos(tickEnd - now);
+            tickLag = now - tickEnd;
+            if (tickLag > maxTickLag) maxTickLag = tickLag;
+
+            removeCancelled();
+            insertAdded();
+            expire(buckets[(int) (tick & mask)], tickEnd);
+            tick++;
+        }
+    }
+
+    /**
+     * Toglie dalle caselle le scadenze annullate.
+     */
+    private void removeCancelled() {
+        Timeout timeout;
+        while ((timeout = cancellations.poll()) != null) {
+            if (timeout.bucket >= 0) unlink(timeout);
+        }
+    }
+
+    /**
+     * Inserisce le nuove scadenze nella casella del loro tick; quelle già passate finiscono nella casella corrente.
+     */
+    private void insertAdded() {
+        Timeout timeout;
+        while ((timeout = additions.poll()) != null) {
+            if (timeout.state.get() != Timeout.PENDING) continue;
+
+            // Il tick in cui la scadenza è già passata, cioè quello che la contiene arrotondato per eccesso
+            long ticks = Math.max(Math.ceilDiv(timeout.deadline, tickNanos) - 1, tick);
+            timeout.rounds = (ticks - tick) / buckets.length;
+            timeout.bucket = (int) (ticks & mask);
+
+            // Inserimento in testa alla lista della casella
+            timeout.next = buckets[timeout.bucket];
+            if (timeout.next != null) timeout.next.prev = timeout;
+            buckets[timeout.bucket] = timeout;
+        }
+    }
+
+    /**
+     * Esegue le scadenze di una casella arrivate all'ultimo giro e decrementa i giri delle altre.
+     * @param head    Testa della lista della casella
+     * @param tickEnd Fine del tick corrente, in nanosecondi dall'avvio della ruota
+     */
+    private void expire(Timeout head, long tickEnd) {
+        Timeout timeout = head;
+        while (timeout != null) {
+            Timeout next = timeout.next;
+            if (timeout.rounds <= 0 && timeout.deadline <= tickEnd) {
+                unlink(timeout);
+                if (timeout.state.compareAndSet(Timeout.PENDING, Timeout.EXPIRED)) {
+                    pending.decrementAndGet();
+                    try {
+                        timeout.task.run();
+                    } catch (RuntimeException e) {
+                        // L'errore di un'azione non deve fermare la ruota
+                        e.printStackTrace();
+                    }
+                }
+            } else {
+                timeout.rounds--;
+            }
+            timeout = next;
+        }
+    }
+
+    /**
+     * Toglie una scadenza dalla lista della sua casella.
+     * @param timeout La scadenza
+     */
+    private void unlink(Timeout timeout) {
+        if (timeout.prev != null) timeout.prev.next = timeout.next;
+        else buckets[timeout.bucket] = timeout.next;
+        if (timeout.next != null) timeout.next.prev = timeout.prev;
+        timeout.prev = null;
+        timeout.next = null;
+        timeout.bucket = -1;
+    }
+}
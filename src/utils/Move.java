@@ -3,8 +3,6 @@ package utils;
 import utils.constant.ChessType;
 import utils.constant.MoveType;
 
-import java.util.Objects;
-
 import static utils.constant.ChessImg.pieceToUnicode;
 
 /**
@@ -168,8 +166,9 @@ public class Move {
 
     /**
      * Restituisce un valore hash per l'oggetto Move.
+     * Coerente con equals (solo riga e colonna) e senza boxing: coincide con la posizione sulla scacchiera.
      * @return Il valore hash dell'oggetto.
      */
     @Override
-    public int hashCode() { return Objects.hash(row, col, moveType);}
+    public int hashCode() { return position();}
 }
@@ -0,0 +1,14 @@
+package utils.constant;
+
+/**
+ * Classe che definisce i diritti di arrocco come maschere di bit.
+ * I diritti vengono combinati in un unico intero, come nel campo arrocco della notazione FEN ("KQkq").
+ */
+public class ChessCastling {
+    public static final int NONE = 0; // Nessun arrocco disponibile
+    public static final int WHITE_SHORT = 1; // Arrocco corto del bianco (K)
+    public static final int WHITE_LONG = 2; // Arrocco lungo del bianco (Q)
+    public static final int BLACK_SHORT = 4; // Arrocco corto del nero (k)
+    public static final int BLACK_LONG = 8; // Arrocco lungo del nero (q)
+    public static final int ALL = 15; // Tutti gli arrocchi disponibili
+}
@@ -30,4 +30,14 @@ public class ChessPath {
     public static final String START_GAME_AUDIO = "src/resources/audio/game_start.wav";
     public static final String MOVE_AUDIO = "src/resources/audio/move.wav";
     public static final String CHECK_AUDIO = "src/resources/audio/check.wav";
+
+    /**
+     * Percorsi del libro delle aperture
+     */
+    public static final String OPENING_BOOK = "src/resources/book/book.bin";
+
+    /**
+     * Cartella delle tablebase dei finali
+     */
+    public static final String TABLEBASES = "src/resources/tablebases/";
 }
@@ -0,0 +1,26 @@
+package utils.constant;
+
+/**
+ * Classe che definisce il valore dei pezzi per il calcolo strategico (il campo value di ChessButton).
+ * I valori sono espressi in pedoni; il re non ha un valore perché non può essere catturato.
+ */
+public class ChessValue {
+    public static final int TOWER = 5; // Torre
+    public static final int BISHOP = 3; // Alfiere
+    public static final int KNIGHT = 3; // Cavallo
+    public static final int QUEEN = 10; // Regina
+    public static final int KING = 0; // Re
+    public static final int PAWN = 1; // Pedone
+
+    /* Valori indicizzati per ChessType */
+    private static final int[] BY_TYPE = {TOWER, BISHOP, KNIGHT, QUEEN, KING, PAWN};
+
+    /**
+     * Restituisce il valore di un tipo di pezzo.
+     * @param type Tipo del pezzo (ChessType)
+     * @return Il valore in pedoni, 0 per BLANK e per il re
+     */
+    public static int of(int type) {
+        return type == ChessType.BLANK ? 0 : BY_TYPE[type];
+    }
+}